@@ -7,5 +7,6 @@ export interface LotDeStock {
   quantite: number;  // Renommé de quantiteActuelle à quantite pour correspondre au backend
   prixAchatHT?: number;
   produit?: Produit;
+  produitId?: number; // Les lots listés par l'API ne référencent le produit que par son id
   dateReception?: string | Date;
 }
@@ -1,10 +1,13 @@
-export type TypeMouvement = 'Reception' | 'Vente' | 'Perte' | 'Retour';
+export type TypeMouvement = 'RECEPTION' | 'VENTE' | 'ANNULATION_VENTE' | 'PERTE' | 'RETOUR' | 'AJUSTEMENT';
 
+// Ligne du journal de stock (GET /api/stock/mouvements); quantite est signée
 export interface MouvementStock {
+  id: number;
+  dateMouvement: string;
+  type: TypeMouvement;
   produitId: number;
-  typeMouvement: TypeMouvement;
+  lotId: number;
   quantite: number;
-  motif?: string; // Motif est optionnel
-  // Ajoutez d'autres champs si le backend les requiert
-  // par exemple: numeroLot?: string;
+  venteId?: number | null;
+  motif?: string | null;
 }
@@ -0,0 +1,23 @@
+import { Produit } from './Produit';
+import { LotDeStock } from './LotDeStock';
+
+export interface LotsResume {
+  produitId: number;
+  quantiteTotale: number;
+  prochaineExpiration: string | null; // Format YYYY-MM-DD
+  nombreLots: number;
+}
+
+export interface ProduitAvecLots {
+  produit: Produit;
+  resume: LotsResume;
+  lots?: LotDeStock[]; // Absent quand seul le résumé est demandé
+}
+
+export interface Page<T> {
+  content: T[];
+  page: number;
+  size: number;
+  totalElements: number;
+  totalPages: number;
+}
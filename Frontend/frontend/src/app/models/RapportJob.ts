@@ -0,0 +1,28 @@
+/**
+ * Rapport calculé en arrière-plan (POST /rapports/jobs), suivi par GET /rapports/jobs/{id}.
+ * Le CSV est téléchargé via GET /rapports/jobs/{id}/resultat une fois le statut TERMINE.
+ */
+export type TypeRapport = 'VENTES_PAR_PRODUIT' | 'EXPIRATIONS' | 'VALORISATION';
+
+export type StatutRapport = 'EN_ATTENTE' | 'EN_COURS' | 'TERMINE' | 'ECHEC' | 'ANNULE';
+
+export interface DemandeRapport {
+  type: TypeRapport;
+  debut?: string; // YYYY-MM-DD, ignorée pour VALORISATION
+  fin?: string;
+}
+
+export interface RapportJob {
+  id: string;
+  type: TypeRapport;
+  debut: string | null;
+  fin: string | null;
+  statut: StatutRapport;
+  progression: number; // 0 à 100
+  lignes: number;
+  message: string | null; // Cause d'un échec
+  creeLe: string;
+  demarreLe: string | null;
+  termineLe: string | null;
+  tailleResultat: number | null; // Octets du CSV compressé
+}
@@ -0,0 +1,41 @@
+export interface LotExpirant {
+  lotId: number;
+  numeroLot: string;
+  dateExpiration: string; // Format YYYY-MM-DD
+  quantite: number;
+  produitId: number;
+  nomMedicament: string;
+}
+
+export interface MeilleureVente {
+  produitId: number;
+  nomMedicament: string | null; // null si le produit n'est plus au catalogue
+  quantiteVendue: number; // Estimation, au plus erreurMax au-dessus du réel
+}
+
+export type PeriodeVentes = 'HEURE' | 'JOUR' | 'SEMAINE';
+
+/**
+ * Classement servi par GET /rapports/meilleures-ventes, tenu en mémoire côté serveur.
+ */
+export interface ClassementVentes {
+  periode: PeriodeVentes;
+  debut: string;
+  unitesVendues: number;
+  erreurMax: number;
+  produits: MeilleureVente[];
+}
+
+/**
+ * Indicateurs calculés côté serveur par GET /rapports/dashboard (mis en cache quelques secondes).
+ */
+export interface TableauDeBord {
+  calculeA: string;
+  chiffreAffairesJour: number;
+  ventesJour: number;
+  produitsActifs: number;
+  produitsSousSeuil: number;
+  lotsExpirants: number; // Lots en stock expirant dans les 30 jours
+  prochainesExpirations: LotExpirant[];
+  meilleuresVentes: MeilleureVente[]; // Semaine en cours
+}
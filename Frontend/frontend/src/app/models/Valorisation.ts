@@ -0,0 +1,28 @@
+/**
+ * Valorisation du stock au prix d'achat des lots et marge cumulée, servies par GET /rapports/valorisation.
+ * La marge ne porte que sur les ventes dont le coût d'achat est connu (voir quantiteVendueSansCout).
+ */
+export interface Valorisation {
+  produits: number;
+  quantiteStock: number;
+  quantiteSansCout: number; // Unités en stock dont le lot n'a pas de prix d'achat
+  valeurStock: number;
+  quantiteVendue: number;
+  quantiteVendueSansCout: number;
+  chiffreAffaires: number;
+  coutVentes: number;
+  marge: number;
+}
+
+export interface ValorisationProduit {
+  produitId: number;
+  nomMedicament: string | null; // null si le produit a été supprimé
+  quantiteStock: number;
+  quantiteSansCout: number;
+  valeurStock: number;
+  quantiteVendue: number;
+  quantiteVendueSansCout: number;
+  chiffreAffaires: number;
+  coutVentes: number;
+  marge: number;
+}
@@ -141,7 +141,7 @@ export class AlertesService {
           description: 'Lot expirant bientôt',
           valeur: diffDays,
           severity: severity,
-          produitId: lot.produit?.id,
+          produitId: lot.produitId ?? lot.produit?.id,
           lotId: lot.id,
           lien: `/app/stock`,
         });
@@ -1,8 +1,9 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpErrorResponse } from '@angular/common/http';
-import { Observable, throwError, of, forkJoin } from 'rxjs';
+import { Observable, throwError } from 'rxjs';
 import { catchError, map, tap } from 'rxjs/operators';
 import { environment } from '../../environments/environment';
+import { TableauDeBord } from '../models/TableauDeBord';
 
 export interface DashboardStats {
   totalProducts: number;
@@ -25,84 +26,27 @@ export class DashboardService {
     constructor(private http: HttpClient) { }
 
   /**
-   * Récupère toutes les statistiques du tableau de bord
+   * Récupère toutes les statistiques du tableau de bord en un seul appel,
+   * agrégées côté serveur.
    */
   getDashboardStats(): Observable<DashboardStats> {
-    // On utilise forkJoin pour combiner plusieurs appels API en un seul résultat
-    return forkJoin({
-      products: this.getTotalProducts(),
-      sales: this.getTodaySales(),
-      alerts: this.getActiveAlerts(),
-      expirations: this.getExpiringProducts()
-    }).pipe(
-      map(results => ({
-        totalProducts: results.products.total,
-        todaySales: results.sales.count,
-        activeAlerts: results.alerts.count,
-        expiringThisWeek: results.expirations.count,
-        salesTrend: results.sales.trend,
-        alertsTrend: results.alerts.trend,
-        stockTrend: results.products.trend,
-        expirationsTrend: results.expirations.trend
+    return this.http.get<TableauDeBord>(`${this.baseApiUrl}/rapports/dashboard`).pipe(
+      map(tableau => ({
+        totalProducts: tableau.produitsActifs,
+        todaySales: tableau.ventesJour,
+        activeAlerts: tableau.produitsSousSeuil,
+        expiringThisWeek: tableau.lotsExpirants,
+        // Pas encore d'historique côté serveur pour les tendances
+        salesTrend: 0,
+        alertsTrend: 0,
+        stockTrend: 0,
+        expirationsTrend: 0
       })),
       tap(stats => console.log('Statistiques du dashboard récupérées:', stats)),
       catchError(this.handleError)
     );
   }
 
-  /**
-   * Récupère le nombre total de produits et la tendance
-   */
-  private getTotalProducts(): Observable<{total: number, trend: number}> {
-    return this.http.get<{total: number, trend: number}>(`${this.baseApiUrl}/stats/products`)
-      .pipe(
-        catchError(error => {
-          console.error('Erreur lors de la récupération du nombre de produits:', error);
-          // Valeurs par défaut en cas d'erreur
-          return of({total: 0, trend: 0});
-        })
-      );
-  }
-
-  /**
-   * Récupère le nombre de ventes du jour et la tendance
-   */
-  private getTodaySales(): Observable<{count: number, trend: number}> {
-    return this.http.get<{count: number, trend: number}>(`${this.baseApiUrl}/stats/today-sales`)
-      .pipe(
-        catchError(error => {
-          console.error('Erreur lors de la récupération des ventes du jour:', error);
-          return of({count: 0, trend: 0});
-        })
-      );
-  }
-
-  /**
-   * Récupère le nombre d'alertes actives et la tendance
-   */
-  private getActiveAlerts(): Observable<{count: number, trend: number}> {
-    return this.http.get<{count: number, trend: number}>(`${this.baseApiUrl}/stats/active-alerts`)
-      .pipe(
-        catchError(error => {
-          console.error('Erreur lors de la récupération des alertes:', error);
-          return of({count: 0, trend: 0});
-        })
-      );
-  }
-
-  /**
-   * Récupère le nombre de produits qui expirent cette semaine et la tendance
-   */
-  private getExpiringProducts(): Observable<{count: number, trend: number}> {
-    return this.http.get<{count: number, trend: number}>(`${this.baseApiUrl}/stats/expiring-products`)
-      .pipe(
-        catchError(error => {
-          console.error('Erreur lors de la récupération des produits expirants:', error);
-          return of({count: 0, trend: 0});
-        })
-      );
-  }
-
   /**
    * Gestion des erreurs HTTP
    */
@@ -4,6 +4,9 @@ import { Observable, catchError, tap, throwError } from 'rxjs';
 import { Vente } from '../models/Vente';
 import { Produit } from '../models/Produit';
 import { LotDeStock } from '../models/LotDeStock';
+import { ClassementVentes, PeriodeVentes, TableauDeBord } from '../models/TableauDeBord';
+import { Valorisation } from '../models/Valorisation';
+import { DemandeRapport, RapportJob } from '../models/RapportJob';
 import { environment } from '../../environments/environment';
 
 @Injectable({
@@ -64,15 +67,72 @@ export class RapportService {
   /**
    * Récupère les statistiques résumées pour le dashboard
    */
-  getDashboardStats(): Observable<any> {
+  getDashboardStats(): Observable<TableauDeBord> {
     return this.http
-      .get<any>(`${this.apiUrl}/rapports/dashboard`)
+      .get<TableauDeBord>(`${this.apiUrl}/rapports/dashboard`)
       .pipe(
         tap(stats => console.log('Statistiques dashboard chargées')),
         catchError(this.handleError)
       );
   }
 
+  /**
+   * Récupère les meilleures ventes de l'heure, du jour ou de la semaine en cours
+   */
+  getMeilleuresVentes(periode: PeriodeVentes = 'JOUR', k = 20): Observable<ClassementVentes> {
+    const params = new HttpParams()
+      .set('periode', periode)
+      .set('k', k.toString());
+    return this.http
+      .get<ClassementVentes>(`${this.apiUrl}/rapports/meilleures-ventes`, { params })
+      .pipe(catchError(this.handleError));
+  }
+
+  /**
+   * Récupère la valorisation du stock et la marge cumulée
+   */
+  getValorisation(): Observable<Valorisation> {
+    return this.http
+      .get<Valorisation>(`${this.apiUrl}/rapports/valorisation`)
+      .pipe(catchError(this.handleError));
+  }
+
+  /**
+   * Demande un rapport en arrière-plan; une demande identique en cours rend le même rapport
+   */
+  soumettreRapport(demande: DemandeRapport): Observable<RapportJob> {
+    return this.http
+      .post<RapportJob>(`${this.apiUrl}/rapports/jobs`, demande)
+      .pipe(catchError(this.handleError));
+  }
+
+  /**
+   * Récupère l'avancement d'un rapport
+   */
+  getRapport(id: string): Observable<RapportJob> {
+    return this.http
+      .get<RapportJob>(`${this.apiUrl}/rapports/jobs/${id}`)
+      .pipe(catchError(this.handleError));
+  }
+
+  /**
+   * Annule un rapport en attente ou en cours
+   */
+  annulerRapport(id: string): Observable<RapportJob> {
+    return this.http
+      .delete<RapportJob>(`${this.apiUrl}/rapports/jobs/${id}`)
+      .pipe(catchError(this.handleError));
+  }
+
+  /**
+   * Télécharge le CSV d'un rapport terminé
+   */
+  telechargerRapport(id: string): Observable<Blob> {
+    return this.http
+      .get(`${this.apiUrl}/rapports/jobs/${id}/resultat`, { responseType: 'blob' })
+      .pipe(catchError(this.handleError));
+  }
+
   /**
    * Formate une date au format YYYY-MM-DD pour l'API
    */
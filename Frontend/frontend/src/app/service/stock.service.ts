@@ -5,6 +5,7 @@ import { catchError, tap } from 'rxjs/operators';
 import { Produit } from '../models/Produit';
 import { LotDeStock } from '../models/LotDeStock';
 import { MouvementStock } from '../models/MouvementStock';
+import { Page, ProduitAvecLots } from '../models/ProduitAvecLots';
 import { environment } from '../../environments/environment';
 
 @Injectable({
@@ -16,7 +17,6 @@ export class StockService {
   private baseApiUrl = `${this.apiUrlRoot}`;
   private produitsUrl = `${this.baseApiUrl}/produits/all`;
   private lotsUrl = `${this.baseApiUrl}/stock`;
-  private mouvementUrl = `${this.baseApiUrl}/lots/mouvement`;
 
   constructor(private http: HttpClient) {}
 
@@ -31,6 +31,20 @@ export class StockService {
       );
   }
 
+  /**
+   * Récupère une page de produits avec leurs lots en un seul appel,
+   * au lieu d'un appel par produit.
+   * @param avecLots false pour ne recevoir que le résumé (total, expiration la plus proche, nombre de lots)
+   */
+  getProduitsAvecLots(page = 0, size = 50, avecLots = true): Observable<Page<ProduitAvecLots>> {
+    const params = new HttpParams()
+      .set('page', page.toString())
+      .set('size', size.toString())
+      .set('lots', avecLots.toString());
+    return this.http.get<Page<ProduitAvecLots>>(`${this.lotsUrl}/produits`, { params })
+      .pipe(catchError(this.handleError));
+  }
+
   /**
    * Récupère les lots pour un produit spécifique.
    * @param produitId L'ID du produit
@@ -89,28 +103,49 @@ export class StockService {
   }
 
   /**
-   * Ajoute un nouveau mouvement de stock.
-   * @param data Les données du mouvement de stock
+   * Déclare une perte (casse, péremption...) sur un lot.
    */
-  ajouterMouvement(data: MouvementStock): Observable<MouvementStock> {
-    return this.http.post<MouvementStock>(`${this.mouvementUrl}/add`, data)
+  declarerPerte(lotId: number, quantite: number, motif?: string): Observable<LotDeStock> {
+    let params = new HttpParams().set('quantite', quantite.toString());
+    if (motif) {
+      params = params.set('motif', motif);
+    }
+    return this.http.post<LotDeStock>(`${this.lotsUrl}/lot/${lotId}/perte`, null, { params })
       .pipe(
-        tap(mouvement => console.log(`Mouvement de stock ajouté: ${mouvement.typeMouvement} de ${mouvement.quantite} unités`)),
+        tap(() => console.log(`Perte de ${quantite} unités déclarée sur le lot ${lotId}`)),
         catchError(this.handleError)
       );
   }
-  
+
+  /**
+   * Enregistre un retour client : les unités réintègrent le lot.
+   */
+  enregistrerRetour(lotId: number, quantite: number, motif?: string): Observable<LotDeStock> {
+    let params = new HttpParams().set('quantite', quantite.toString());
+    if (motif) {
+      params = params.set('motif', motif);
+    }
+    return this.http.post<LotDeStock>(`${this.lotsUrl}/lot/${lotId}/retour`, null, { params })
+      .pipe(
+        tap(() => console.log(`Retour de ${quantite} unités sur le lot ${lotId}`)),
+        catchError(this.handleError)
+      );
+  }
+
   /**
-   * Récupère l'historique des mouvements de stock
+   * Récupère l'historique des mouvements de stock d'un produit, du plus récent au plus ancien
    */
-  getMouvements(): Observable<MouvementStock[]> {
-    return this.http.get<MouvementStock[]>(`${this.mouvementUrl}/all`)
+  getMouvements(produitId: number, page = 0, size = 50): Observable<Page<MouvementStock>> {
+    const params = new HttpParams()
+      .set('produitId', produitId.toString())
+      .set('page', page.toString())
+      .set('size', size.toString());
+    return this.http.get<Page<MouvementStock>>(`${this.lotsUrl}/mouvements`, { params })
       .pipe(
-        tap(mouvements => console.log(`${mouvements.length} mouvements de stock chargés`)),
+        tap(mouvements => console.log(`${mouvements.content.length} mouvements de stock chargés`)),
         catchError(this.handleError)
       );
   }
-  
 
     createLot(produitId: number, lotData: {
     numeroLot: string;
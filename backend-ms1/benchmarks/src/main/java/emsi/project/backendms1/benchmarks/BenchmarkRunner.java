@@ -0,0 +1,58 @@
+package emsi.project.backendms1.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Point d'entrée de {@code benchmarks.jar}. Accepte les options JMH habituelles
+ * (filtre, -f, -wi, -i, -prof ...) et écrit par défaut les résultats en JSON dans
+ * {@code jmh-results/<commit>.json}, pour comparer deux commits avec un outil comme jmh.morethan.io.
+ * Le commit est lu depuis {@code -Dbench.commit} ou, à défaut, {@code git rev-parse --short HEAD}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+
+        if (cli.getResult().hasValue() || cli.getResultFormat().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+
+        Path dir = Path.of(System.getProperty("bench.output", "jmh-results"));
+        Files.createDirectories(dir);
+        Path result = dir.resolve(commitId() + ".json");
+        options.resultFormat(ResultFormatType.JSON).result(result.toString());
+
+        new Runner(options.build()).run();
+        System.out.println("Résultats JMH écrits dans " + result.toAbsolutePath());
+    }
+
+    private static String commitId() {
+        String fromProperty = System.getProperty("bench.commit");
+        if (fromProperty != null && !fromProperty.isBlank()) {
+            return fromProperty;
+        }
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(git.getInputStream()))) {
+                String line = out.readLine();
+                if (git.waitFor() == 0 && line != null && !line.isBlank()) {
+                    return line.trim();
+                }
+            }
+        } catch (Exception ignored) {
+            // hors dépôt git : nom générique
+        }
+        return "local-" + System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,82 @@
+package emsi.project.backendms1.benchmarks;
+
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.service.FefoAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation FEFO d'une ligne de vente sur des distributions de lots réalistes :
+ * <ul>
+ *     <li>{@code FEW}: quelques lots bien approvisionnés (produit à rotation lente);</li>
+ *     <li>{@code MANY_SMALL}: beaucoup de petits lots (livraisons fréquentes);</li>
+ *     <li>{@code DEPLETED_HEAD}: la plupart des lots les plus anciens sont vides, ils restent
+ *     en base et sont parcourus à chaque vente.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FefoAllocationBenchmark {
+
+    @Param({"FEW", "MANY_SMALL", "DEPLETED_HEAD"})
+    public String distribution;
+
+    @Param({"1", "12", "120"})
+    public int quantite;
+
+    private List<LotDeStock> lots;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        lots = switch (distribution) {
+            case "FEW" -> lots(random, 3, 200, 400, 0);
+            case "MANY_SMALL" -> lots(random, 40, 5, 20, 0);
+            case "DEPLETED_HEAD" -> lots(random, 200, 10, 60, 180);
+            default -> throw new IllegalArgumentException(distribution);
+        };
+    }
+
+    @Benchmark
+    public FefoAllocator.Resultat allocate() {
+        return FefoAllocator.allocate(lots, quantite);
+    }
+
+    static List<LotDeStock> lots(SplittableRandom random, int count, int minQty, int maxQty, int emptyHead) {
+        List<LotDeStock> result = new ArrayList<>(count);
+        LocalDate base = LocalDate.of(2026, 1, 1);
+        for (int i = 0; i < count; i++) {
+            LotDeStock lot = new LotDeStock();
+            lot.setId((long) i);
+            lot.setNumeroLot("LOT-" + i);
+            lot.setDateExpiration(base.plusDays(random.nextInt(30, 900)));
+            lot.setQuantite(random.nextInt(minQty, maxQty + 1));
+            result.add(lot);
+        }
+        result.sort(Comparator.comparing(LotDeStock::getDateExpiration));
+        for (int i = 0; i < emptyHead; i++) {
+            result.get(i).setQuantite(0);
+        }
+        return result;
+    }
+}
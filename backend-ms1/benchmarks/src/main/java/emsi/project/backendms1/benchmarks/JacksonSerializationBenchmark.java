@@ -0,0 +1,123 @@
+package emsi.project.backendms1.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.Vente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation Jackson des graphes renvoyés par les contrôleurs : catalogue de produits,
+ * lots d'un produit (avec leur {@code produit} embarqué) et ventes avec leurs lignes.
+ * L'ObjectMapper est configuré comme celui de Spring Boot (JavaTimeModule, dates ISO).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonSerializationBenchmark {
+
+    @Param({"100", "2000"})
+    public int taille;
+
+    private ObjectMapper mapper;
+    private List<Produit> produits;
+    private List<LotDeStock> lots;
+    private List<Vente> ventes;
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        SplittableRandom random = new SplittableRandom(11);
+        FormeEnum[] formes = FormeEnum.values();
+        produits = new ArrayList<>(taille);
+        for (int i = 0; i < taille; i++) {
+            Produit p = new Produit();
+            p.setId((long) i);
+            p.setNomMedicament("Médicament " + i);
+            p.setCodeEAN(String.valueOf(3400930000000L + i));
+            p.setPrixVenteTTC(BigDecimal.valueOf(random.nextLong(500, 45_000), 2));
+            p.setPrixAchatHT(BigDecimal.valueOf(random.nextLong(300, 30_000), 2));
+            p.setSeuilStock(10);
+            p.setForme(formes[i % formes.length]);
+            p.setDosage((random.nextInt(1, 10) * 100) + "mg");
+            p.setQuantiteTotaleEnStock(random.nextInt(0, 500));
+            produits.add(p);
+        }
+
+        lots = new ArrayList<>(taille);
+        for (int i = 0; i < taille; i++) {
+            LotDeStock lot = new LotDeStock();
+            lot.setId((long) i);
+            lot.setNumeroLot("LOT-" + i);
+            lot.setDateExpiration(LocalDate.of(2027, 1, 1).plusDays(i % 700));
+            lot.setDateReception(LocalDate.of(2025, 6, 1));
+            lot.setQuantite(random.nextInt(1, 200));
+            lot.setPrixAchatHT(BigDecimal.valueOf(random.nextLong(300, 30_000), 2));
+            lot.setProduit(produits.get(i % produits.size()));
+            lots.add(lot);
+        }
+
+        ventes = new ArrayList<>(taille / 4);
+        for (int v = 0; v < Math.max(1, taille / 4); v++) {
+            Vente vente = new Vente();
+            vente.setId((long) v);
+            vente.setDateVente(LocalDateTime.of(2026, 3, 1, 9, 0).plusMinutes(v));
+            BigDecimal total = BigDecimal.ZERO;
+            for (int l = 0; l < 4; l++) {
+                LigneVente ligne = new LigneVente();
+                ligne.setId((long) (v * 4 + l));
+                ligne.setVente(vente);
+                ligne.setProduit(produits.get(random.nextInt(produits.size())));
+                ligne.setQuantite(random.nextInt(1, 4));
+                ligne.setPrixVenteTTC(ligne.getProduit().getPrixVenteTTC());
+                vente.getLignesVente().add(ligne);
+                total = total.add(ligne.getMontantTotalLigne());
+            }
+            vente.setMontantTotal(total);
+            ventes.add(vente);
+        }
+    }
+
+    @Benchmark
+    public byte[] produits() throws Exception {
+        return mapper.writeValueAsBytes(produits);
+    }
+
+    @Benchmark
+    public byte[] lotsAvecProduit() throws Exception {
+        return mapper.writeValueAsBytes(lots);
+    }
+
+    @Benchmark
+    public byte[] ventesAvecLignes() throws Exception {
+        return mapper.writeValueAsBytes(ventes);
+    }
+}
@@ -0,0 +1,73 @@
+package emsi.project.backendms1.benchmarks;
+
+import emsi.project.backendms1.configuration.JwtUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de {@link JwtUtils} tel qu'il est appelé par {@code JwtFilter} à chaque requête
+ * (extraction du username puis validation, soit deux parsings du token) et par le login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+    private String token;
+    private UserDetails userDetails;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        set("secretKey", "A4dR8Pq2sZ7xB9tGvF5jKl3mN6pY0wE1cX8hU7zJ4kL2dS5fA9gH6vB3nM7");
+        set("expirationTime", 86_400_000L);
+        token = jwtUtils.generateToken("pharmacien");
+        userDetails = User.withUsername("pharmacien").password("x").roles("USER").build();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken("pharmacien");
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtils.extractUsername(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtils.validateToken(token, userDetails);
+    }
+
+    /** Chemin complet de JwtFilter : extractUsername + validateToken. */
+    @Benchmark
+    public Boolean filterPath() {
+        String username = jwtUtils.extractUsername(token);
+        return username != null && jwtUtils.validateToken(token, userDetails);
+    }
+
+    private void set(String fieldName, Object value) {
+        Field field = ReflectionUtils.findField(JwtUtils.class, fieldName);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, jwtUtils, value);
+    }
+}
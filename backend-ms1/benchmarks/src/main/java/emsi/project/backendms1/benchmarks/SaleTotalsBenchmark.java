@@ -0,0 +1,117 @@
+package emsi.project.backendms1.benchmarks;
+
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.service.Montant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Totaux de vente : {@code LigneVente.getMontantTotalLigne} et l'accumulation de
+ * {@code montantTotal}, en {@link BigDecimal} (ancien {@code VenteService.creerVente}) puis en
+ * centimes avec {@link Montant}, converti une seule fois en fin de vente.
+ * {@code reportSum} simule un rapport qui additionne toutes les lignes d'une période, et
+ * {@code reportSumCentimes} le même rapport sur une colonne de montants en centimes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaleTotalsBenchmark {
+
+    @Param({"3", "30"})
+    public int lignesParVente;
+
+    @Param({"10000"})
+    public int lignesRapport;
+
+    private List<LigneVente> lignes;
+    private List<LigneVente> lignesDuRapport;
+    private long[] montantsDuRapport;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        lignes = lignes(random, lignesParVente);
+        lignesDuRapport = lignes(random, lignesRapport);
+        montantsDuRapport = lignesDuRapport.stream().mapToLong(LigneVente::getMontantTotalLigneCentimes).toArray();
+    }
+
+    @Benchmark
+    public BigDecimal montantLigne() {
+        return lignes.get(0).getMontantTotalLigne();
+    }
+
+    @Benchmark
+    public BigDecimal totalVente() {
+        Vente vente = new Vente();
+        vente.setMontantTotal(BigDecimal.ZERO);
+        for (LigneVente ligne : lignes) {
+            vente.setMontantTotal(vente.getMontantTotal().add(ligne.getMontantTotalLigne()));
+        }
+        return vente.getMontantTotal();
+    }
+
+    @Benchmark
+    public long montantLigneCentimes() {
+        return lignes.get(0).getMontantTotalLigneCentimes();
+    }
+
+    @Benchmark
+    public BigDecimal totalVenteCentimes() {
+        Vente vente = new Vente();
+        long montantTotal = 0;
+        for (LigneVente ligne : lignes) {
+            montantTotal = Montant.plus(montantTotal, ligne.getMontantTotalLigneCentimes());
+        }
+        vente.setMontantTotal(Montant.euros(montantTotal));
+        return vente.getMontantTotal();
+    }
+
+    @Benchmark
+    public BigDecimal reportSum() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (LigneVente ligne : lignesDuRapport) {
+            total = total.add(ligne.getMontantTotalLigne());
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal reportSumCentimes() {
+        long total = 0;
+        for (long montant : montantsDuRapport) {
+            total = Montant.plus(total, montant);
+        }
+        return Montant.euros(total);
+    }
+
+    static List<LigneVente> lignes(SplittableRandom random, int count) {
+        List<LigneVente> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LigneVente ligne = new LigneVente();
+            ligne.setQuantite(random.nextInt(1, 6));
+            // prix TTC entre 5,00 et 450,00 en centimes
+            ligne.setPrixVenteTTC(BigDecimal.valueOf(random.nextLong(500, 45_000), 2));
+            result.add(ligne);
+        }
+        return result;
+    }
+}
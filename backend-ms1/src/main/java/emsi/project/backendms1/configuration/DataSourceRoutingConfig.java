@@ -0,0 +1,62 @@
+package emsi.project.backendms1.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import emsi.project.backendms1.datasource.ReadWriteRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Active le routage lecture/écriture dès que {@code app.datasource.replica.url} est renseignée.
+ * Deux pools Hikari distincts ({@code primary} et {@code replica}, visibles séparément dans les
+ * métriques {@code hikaricp.*}), un {@link ReadWriteRoutingDataSource} devant eux, et Flyway
+ * qui migre toujours le primaire. Sans réplica, la datasource auto-configurée reste inchangée.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.url")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties primaryProperties, Environment environment) {
+        Binder binder = Binder.get(environment);
+        // Identifiants et pilote du primaire par défaut, surchargés par app.datasource.replica.*
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUsername(primaryProperties.getUsername());
+        properties.setPassword(primaryProperties.getPassword());
+        properties.setDriverClassName(primaryProperties.getDriverClassName());
+        binder.bind("app.datasource.replica", Bindable.ofInstance(properties));
+
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        binder.bind("app.datasource.replica.hikari", Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+    }
+}
@@ -0,0 +1,87 @@
+package emsi.project.backendms1.configuration;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contrôle des doublons avant la migration V2, qui pose des index uniques sur des colonnes que
+ * rien ne contraignait jusque-là. Les doublons ne sont pas supprimés : un produit ou un compte
+ * en double est référencé par des lots, des ventes ou des connexions, le choix de la ligne à
+ * garder revient à l'exploitant. La migration échoue avant de toucher au schéma, avec la liste
+ * des valeurs à corriger.
+ */
+@Component
+public class DoublonsAvantIndexUniques implements Callback {
+
+    static final String VERSION = "2";
+
+    private static final int EXEMPLES = 10;
+
+    private record IndexUnique(String nom, String table, String colonnes) {
+    }
+
+    private static final List<IndexUnique> INDEX = List.of(
+            new IndexUnique("uk_lot_produit_numero", "lot_de_stock", "product_id, numero_lot"),
+            new IndexUnique("uk_produit_code_ean", "produit", "codeean"),
+            new IndexUnique("uk_users_username", "users", "username"),
+            new IndexUnique("uk_users_email", "users", "email"));
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_EACH_MIGRATE;
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        MigrationInfo migration = context.getMigrationInfo();
+        if (migration == null || migration.getVersion() == null || !VERSION.equals(migration.getVersion().getVersion())) {
+            return;
+        }
+        List<String> doublons = new ArrayList<>();
+        try (Statement statement = context.getConnection().createStatement()) {
+            for (IndexUnique index : INDEX) {
+                // NULL n'entre pas en conflit dans un index unique : seules les valeurs renseignées comptent
+                String nonNul = index.colonnes().replace(", ", " IS NOT NULL AND ") + " IS NOT NULL";
+                try (ResultSet rs = statement.executeQuery("SELECT " + index.colonnes() + ", COUNT(*) FROM " + index.table()
+                        + " WHERE " + nonNul + " GROUP BY " + index.colonnes() + " HAVING COUNT(*) > 1 LIMIT " + EXEMPLES)) {
+                    int colonnes = rs.getMetaData().getColumnCount() - 1;
+                    while (rs.next()) {
+                        StringBuilder valeur = new StringBuilder();
+                        for (int i = 1; i <= colonnes; i++) {
+                            valeur.append(i > 1 ? ", " : "").append(rs.getString(i));
+                        }
+                        doublons.add(index.nom() + " (" + index.table() + "." + index.colonnes() + ") : '" + valeur
+                                + "' x" + rs.getLong(colonnes + 1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new FlywayException("Contrôle des doublons avant V2 impossible : " + e.getMessage(), e);
+        }
+        if (!doublons.isEmpty()) {
+            throw new FlywayException("V2 pose des index uniques, mais des doublons existent (" + EXEMPLES
+                    + " premiers par index) :\n  " + String.join("\n  ", doublons)
+                    + "\nCorriger ou fusionner ces lignes (un code EAN vide peut être remis à NULL), puis relancer.");
+        }
+    }
+
+    @Override
+    public String getCallbackName() {
+        return "doublonsAvantIndexUniques";
+    }
+}
@@ -2,6 +2,7 @@ package emsi.project.backendms1.configuration;
 
 import emsi.project.backendms1.filter.JwtFilter;
 import emsi.project.backendms1.service.CustomUserDetailsService;
+import io.micrometer.observation.ObservationRegistry;
 import org.apache.catalina.filters.CorsFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,10 +32,12 @@ import static org.springframework.security.config.Customizer.withDefaults;
 public class SecurityConfig {
     private final CustomUserDetailsService customUserDetailsService;
     private final JwtUtils jwtUtils;
+    private final ObservationRegistry observationRegistry;
 
-    public SecurityConfig(CustomUserDetailsService customUserDetailsService, JwtUtils jwtUtils) {
+    public SecurityConfig(CustomUserDetailsService customUserDetailsService, JwtUtils jwtUtils, ObservationRegistry observationRegistry) {
         this.customUserDetailsService = customUserDetailsService;
         this.jwtUtils = jwtUtils;
+        this.observationRegistry = observationRegistry;
     }
 
     @Bean
@@ -69,8 +72,10 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth ->
                         auth.requestMatchers("/api/auth/**","/actuator/prometheus").permitAll()
+                                // Les enregistrements JFR contiennent propriétés système et variables d'environnement (secrets)
+                                .requestMatchers("/actuator/jfr", "/actuator/jfr/**").hasRole("ADMIN")
                                 .anyRequest().authenticated())
-                .addFilterBefore(new JwtFilter(jwtUtils, customUserDetailsService), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new JwtFilter(jwtUtils, customUserDetailsService, observationRegistry), UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
 
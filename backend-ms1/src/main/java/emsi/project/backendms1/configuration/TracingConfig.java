@@ -0,0 +1,18 @@
+package emsi.project.backendms1.configuration;
+
+import emsi.project.backendms1.observability.LogSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TracingConfig {
+
+    // Exporteur local : les spans partent dans les logs, aucun collecteur requis
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.log-exporter.enabled", havingValue = "true", matchIfMissing = true)
+    public SpanExporter logSpanExporter() {
+        return new LogSpanExporter();
+    }
+}
@@ -0,0 +1,24 @@
+package emsi.project.backendms1.controllers;
+
+import emsi.project.backendms1.service.ChampsPartiels;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 400 commun aux listes partielles ({@code ?fields=}) : le message liste les champs disponibles.
+ * Le champ est vérifié avant toute écriture, la réponse n'est donc jamais déjà engagée.
+ */
+@RestControllerAdvice
+public class ChampsPartielsAdvice {
+
+    @ExceptionHandler(ChampsPartiels.ChampInconnuException.class)
+    public ResponseEntity<String> champInconnu(ChampsPartiels.ChampInconnuException e) {
+        return ResponseEntity.badRequest()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+}
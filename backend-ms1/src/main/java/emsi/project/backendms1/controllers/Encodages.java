@@ -0,0 +1,47 @@
+package emsi.project.backendms1.controllers;
+
+/**
+ * Lecture de l'en-tête {@code Accept-Encoding} avec ses poids : {@code gzip;q=0} refuse gzip, et
+ * {@code *} l'accepte s'il n'est pas cité.
+ */
+final class Encodages {
+
+    private Encodages() {
+    }
+
+    static boolean accepteGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double joker = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parties = element.split(";");
+            String codage = parties[0].trim().toLowerCase();
+            double q = poids(parties);
+            if (codage.equals("gzip") || codage.equals("x-gzip")) {
+                gzip = gzip == null ? q : Math.max(gzip, q);
+            } else if (codage.equals("*")) {
+                joker = q;
+            }
+        }
+        Double retenu = gzip != null ? gzip : joker;
+        return retenu != null && retenu > 0;
+    }
+
+    // Poids absent : 1; poids illisible : 0, le codage n'est pas retenu
+    private static double poids(String[] parties) {
+        for (int i = 1; i < parties.length; i++) {
+            String parametre = parties[i].trim();
+            if (parametre.length() > 1 && Character.toLowerCase(parametre.charAt(0)) == 'q'
+                    && parametre.substring(1).trim().startsWith("=")) {
+                try {
+                    return Double.parseDouble(parametre.substring(parametre.indexOf('=') + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -1,31 +1,76 @@
 package emsi.project.backendms1.controllers;
 
+import emsi.project.backendms1.datasource.ReplicaPinning;
+import emsi.project.backendms1.dtos.LotADateDto;
+import emsi.project.backendms1.dtos.LotDeStockDto;
+import emsi.project.backendms1.dtos.MouvementStockDto;
+import emsi.project.backendms1.dtos.PageDto;
+import emsi.project.backendms1.dtos.ProduitAvecLotsDto;
+import emsi.project.backendms1.dtos.ReceptionRapport;
+import emsi.project.backendms1.dtos.SoldeLotDto;
+import emsi.project.backendms1.dtos.StockADateDto;
+import emsi.project.backendms1.mapper.LotDeStockMapper;
 import emsi.project.backendms1.models.LotDeStock;
 import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.service.CatalogueVersion;
+import emsi.project.backendms1.service.ChampsPartiels;
+import emsi.project.backendms1.service.JournalStockService;
 import emsi.project.backendms1.service.ProduitService;
+import emsi.project.backendms1.service.ProjectionJsonService;
+import emsi.project.backendms1.service.ReceptionImportService;
+import emsi.project.backendms1.service.StockADateService;
 import emsi.project.backendms1.service.StockService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/stock")
 public class LotDeStockController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private StockService stockService;
 
     @Autowired
     private ProduitService produitService;
 
+    @Autowired
+    private LotDeStockMapper lotDeStockMapper;
+
+    @Autowired
+    private ProjectionJsonService projectionJsonService;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private ReceptionImportService receptionImportService;
+
+    @Autowired
+    private JournalStockService journalStockService;
+
+    @Autowired
+    private StockADateService stockADateService;
+
     @PostMapping("/add")
     @PreAuthorize("hasAnyRole('ROLE_USER')")
     public ResponseEntity<?> addStock(
@@ -37,7 +82,7 @@ public class LotDeStockController {
 
         try {
             LotDeStock newStock = stockService.addStock(productId, numeroLot, dateExpiration, quantite, prixAchatHT);
-            return ResponseEntity.status(HttpStatus.CREATED).body(newStock);
+            return ResponseEntity.status(HttpStatus.CREATED).body(lotDeStockMapper.toDto(newStock));
         } catch (IllegalArgumentException | EntityNotFoundException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (IllegalStateException e) {
@@ -55,7 +100,7 @@ public class LotDeStockController {
 
         try {
             LotDeStock updatedStock = stockService.updateStockLot(lotId, numeroLot, dateExpiration, quantite, prixAchatHT);
-            return ResponseEntity.ok(updatedStock);
+            return ResponseEntity.ok(lotDeStockMapper.toDto(updatedStock));
         } catch (IllegalArgumentException | EntityNotFoundException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -65,7 +110,7 @@ public class LotDeStockController {
     public ResponseEntity<?> removeStock(@RequestParam Long lotId, @RequestParam int quantity) {
         try {
             LotDeStock updatedStock = stockService.removeStockFromLot(lotId, quantity);
-            return ResponseEntity.ok(updatedStock);
+            return ResponseEntity.ok(lotDeStockMapper.toDto(updatedStock));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (EntityNotFoundException e) {
@@ -73,19 +118,186 @@ public class LotDeStockController {
         }
     }
 
+    @PostMapping("/lot/{lotId}/perte")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> declarerPerte(@PathVariable Long lotId, @RequestParam int quantite,
+                                           @RequestParam(required = false) String motif) {
+        try {
+            LotDeStock lot = stockService.declarerPerte(lotId, quantite, motif);
+            return ResponseEntity.ok(lotDeStockMapper.toDto(lot));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
 
-    @GetMapping("/{produitId}/stocks")
+    @PostMapping("/lot/{lotId}/retour")
     @PreAuthorize("hasAnyRole('ROLE_USER')")
-    public ResponseEntity<List<LotDeStock>> getAllStocksForProduit(@PathVariable Long produitId) {
-         Produit produit = produitService.getProduitById(produitId);
-         if (produit == null) {
+    public ResponseEntity<?> enregistrerRetour(@PathVariable Long lotId, @RequestParam int quantite,
+                                               @RequestParam(required = false) String motif) {
+        try {
+            LotDeStock lot = stockService.enregistrerRetour(lotId, quantite, motif);
+            return ResponseEntity.ok(lotDeStockMapper.toDto(lot));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (EntityNotFoundException e) {
             return ResponseEntity.notFound().build();
         }
-        List<LotDeStock> stocks = stockService.findAllStocksByProduitId(produitId);
+    }
+
+    // Historique des mouvements d'un produit, du plus récent au plus ancien
+    @GetMapping("/mouvements")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getMouvements(
+            @RequestParam Long produitId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("page doit être positive et size comprise entre 1 et " + MAX_PAGE_SIZE);
+        }
+        PageDto<MouvementStockDto> mouvements = journalStockService.historique(produitId, page, size);
+        return ResponseEntity.ok(mouvements);
+    }
+
+    // Quantité du lot selon le journal (dernier instantané + mouvements suivants), à rapprocher du lot
+    @GetMapping("/lot/{lotId}/solde")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getSoldeLot(@PathVariable Long lotId) {
+        try {
+            SoldeLotDto solde = journalStockService.solde(lotId);
+            return ResponseEntity.ok(solde);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Stock à une date passée (inventaire, contrôle) : produit et ses lots non vides
+    @GetMapping("/a-date")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getStockADate(
+            @RequestParam Long produitId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime date) {
+        try {
+            StockADateDto stock = stockADateService.produit(produitId, date);
+            return ResponseEntity.ok(stock);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/a-date/lot/{lotId}")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getLotADate(
+            @PathVariable Long lotId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime date) {
+        try {
+            LotADateDto lot = stockADateService.lot(lotId, date);
+            return ResponseEntity.ok(lot);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Inventaire de fin d'exercice : quantité de chaque produit en stock à la date
+    @GetMapping("/a-date/inventaire")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<List<StockADateDto>> getInventaireADate(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime date) {
+        return ResponseEntity.ok(stockADateService.inventaire(date));
+    }
+
+    // Listes sous ETag : lues sur le primaire, qui tient aussi la version (voir ReplicaPinning.forcePrimary)
+    @GetMapping("/{produitId}/stocks")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<List<LotDeStockDto>> getAllStocksForProduit(@PathVariable Long produitId, WebRequest request) {
+        if (request.checkNotModified(catalogueVersion.etagLots(produitId.toString()))) {
+            return null;
+        }
+        List<LotDeStockDto> stocks;
+        try (ReplicaPinning.PrimaryScope primaire = ReplicaPinning.forcePrimary()) {
+            Produit produit = produitService.getProduitById(produitId);
+            if (produit == null) {
+                return ResponseEntity.notFound().build();
+            }
+            stocks = stockService.findAllStockDtosByProduitId(produitId);
+        }
         if (stocks.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
-        return ResponseEntity.ok(stocks);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(stocks);
+    }
+
+    // Avec fields, une liste vide est rendue [] (réponse déjà en cours d'écriture)
+    @GetMapping(value = "/{produitId}/stocks", params = "fields")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public void getStocksPartielsForProduit(@PathVariable Long produitId, @RequestParam String fields,
+                                            WebRequest request, HttpServletResponse response) throws IOException {
+        List<String> champs = ChampsPartiels.LOTS.parser(fields);
+        if (request.checkNotModified(catalogueVersion.etagLots(produitId + ":" + String.join(",", champs)))) {
+            return;
+        }
+        try (ReplicaPinning.PrimaryScope primaire = ReplicaPinning.forcePrimary()) {
+            if (produitService.getProduitById(produitId) == null) {
+                response.sendError(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            projectionJsonService.ecrire(ChampsPartiels.LOTS, champs, Map.of("produitId", produitId), response.getOutputStream());
+        }
+    }
+
+    // Vue stock en un seul appel : produits paginés avec leurs lots, ou leur résumé si lots=false
+    @GetMapping("/produits")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getProduitsAvecLots(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "true") boolean lots,
+            WebRequest request) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("page doit être positive et size comprise entre 1 et " + MAX_PAGE_SIZE);
+        }
+        if (request.checkNotModified(catalogueVersion.etagLots(page + "," + size + "," + lots))) {
+            return null;
+        }
+        PageDto<ProduitAvecLotsDto> resultat;
+        try (ReplicaPinning.PrimaryScope primaire = ReplicaPinning.forcePrimary()) {
+            resultat = stockService.findProduitsAvecLots(page, size, lots);
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(resultat);
+    }
+
+    // Bon de livraison complet en un appel (CSV), lu en flux; bilan et erreurs ligne par ligne
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> importerReceptionCsv(HttpServletRequest request) {
+        try {
+            ReceptionRapport rapport = receptionImportService.importerCsv(request.getReader());
+            return ResponseEntity.ok(rapport);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Fichier illisible: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> importerReceptionJson(HttpServletRequest request) {
+        try {
+            ReceptionRapport rapport = receptionImportService.importerJson(request.getInputStream());
+            return ResponseEntity.ok(rapport);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Fichier illisible: " + e.getMessage());
+        }
     }
 
     @DeleteMapping("/lot/{lotId}")
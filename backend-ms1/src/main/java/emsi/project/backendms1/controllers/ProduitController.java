@@ -1,15 +1,32 @@
 package emsi.project.backendms1.controllers;
 
+import emsi.project.backendms1.datasource.ReplicaPinning;
+import emsi.project.backendms1.dtos.CatalogueSyncRapport;
+import emsi.project.backendms1.mapper.ProduitMapper;
 import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.service.CatalogueSnapshot;
+import emsi.project.backendms1.service.CatalogueSnapshotService;
+import emsi.project.backendms1.service.CatalogueSyncService;
+import emsi.project.backendms1.service.CatalogueVersion;
+import emsi.project.backendms1.service.ChampsPartiels;
 import emsi.project.backendms1.service.ProduitService;
+import emsi.project.backendms1.service.ProjectionJsonService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/produits")
@@ -18,11 +35,57 @@ public class ProduitController {
     @Autowired
     private ProduitService produitService;
 
+    @Autowired
+    private ProduitMapper produitMapper;
+
+    @Autowired
+    private ProjectionJsonService projectionJsonService;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    @Autowired
+    private CatalogueSyncService catalogueSyncService;
+
 
     @GetMapping("/all")
     @PreAuthorize("hasAnyRole('ROLE_USER')")
-    public ResponseEntity<List<Produit>> getAllProduits() {
-        return ResponseEntity.ok(produitService.findAllProducts());
+    public ResponseEntity<byte[]> getAllProduits(WebRequest request) {
+        // JSON pré-encodé de la photographie du catalogue, reconstruite si une écriture l'a périmée
+        CatalogueSnapshot catalogue = catalogueSnapshotService.aJour();
+        boolean gzip = Encodages.accepteGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        // ETag de la photographie servie, distinct par encodage : les deux corps ne sont pas identiques octet à octet
+        if (request.checkNotModified(catalogueVersion.etagProduits(catalogue.version(), gzip ? "gzip" : null))) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder reponse = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return reponse.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(catalogue.jsonGzip());
+        }
+        return reponse.body(catalogue.json());
+    }
+
+    // /all?fields=nomMedicament,codeEAN : seules ces colonnes sont lues et rendues
+    @GetMapping(value = "/all", params = "fields")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public void getAllProduitsPartiels(@RequestParam String fields, WebRequest request, HttpServletResponse response)
+            throws IOException {
+        List<String> champs = ChampsPartiels.PRODUITS.parser(fields);
+        if (request.checkNotModified(catalogueVersion.etagProduits(String.join(",", champs)))) {
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        // Lu sur le primaire, qui tient la version de l'ETag : un réplica en retard la démentirait
+        try (ReplicaPinning.PrimaryScope primaire = ReplicaPinning.forcePrimary()) {
+            projectionJsonService.ecrire(ChampsPartiels.PRODUITS, champs, Map.of(), response.getOutputStream());
+        }
     }
 
     @PostMapping("/add")
@@ -37,22 +100,50 @@ public class ProduitController {
             produitn.setSeuilStock(produit.getSeuilStock());
             produitn.setForme(produit.getForme());
             produitn.setDosage(produit.getDosage());
-            produitn.setQuantiteTotaleEnStock(produit.getQuantiteTotaleEnStock());
             produitn.setId(produit.getId());
             Produit createdProduit = produitService.createProduct(produitn);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdProduit);
+            return ResponseEntity.status(HttpStatus.CREATED).body(produitMapper.toDto(createdProduit));
         } catch (RuntimeException e) {
             e.printStackTrace();
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    // Catalogue fournisseur complet : crée ou met à jour par code EAN, désactive les absents sur demande
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> synchroniserCatalogueCsv(@RequestParam(defaultValue = "false") boolean desactiverAbsents,
+                                                      HttpServletRequest request) {
+        try {
+            CatalogueSyncRapport rapport = catalogueSyncService.synchroniserCsv(request.getReader(), desactiverAbsents);
+            return ResponseEntity.ok(rapport);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Fichier illisible: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> synchroniserCatalogueJson(@RequestParam(defaultValue = "false") boolean desactiverAbsents,
+                                                       HttpServletRequest request) {
+        try {
+            CatalogueSyncRapport rapport = catalogueSyncService.synchroniserJson(request.getInputStream(), desactiverAbsents);
+            return ResponseEntity.ok(rapport);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Fichier illisible: " + e.getMessage());
+        }
+    }
+
     @PutMapping("/update/{id}")
     @PreAuthorize("hasAnyRole('ROLE_USER')")
     public ResponseEntity<?> updateProduit(@PathVariable Long id, @RequestBody Produit produit) {
         try {
             Produit updatedProduit = produitService.updateProduct(id, produit);
-            return ResponseEntity.ok(updatedProduit);
+            return ResponseEntity.ok(produitMapper.toDto(updatedProduit));
         } catch (EntityNotFoundException e) {
             return ResponseEntity.notFound().build();
         }
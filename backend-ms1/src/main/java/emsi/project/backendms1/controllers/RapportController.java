@@ -0,0 +1,182 @@
+package emsi.project.backendms1.controllers;
+
+import emsi.project.backendms1.dtos.AgregatVentesDto;
+import emsi.project.backendms1.dtos.DemandeRapport;
+import emsi.project.backendms1.dtos.RapportJobDto;
+import emsi.project.backendms1.dtos.TableauDeBordDto;
+import emsi.project.backendms1.dtos.ValorisationDto;
+import emsi.project.backendms1.dtos.ValorisationProduitDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.enums.PeriodeVentes;
+import emsi.project.backendms1.enums.RegroupementVentes;
+import emsi.project.backendms1.enums.StatutRapport;
+import emsi.project.backendms1.service.HistoriqueVentesService;
+import emsi.project.backendms1.service.MeilleuresVentesService;
+import emsi.project.backendms1.service.RapportJobService;
+import emsi.project.backendms1.service.TableauDeBordService;
+import emsi.project.backendms1.service.ValorisationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+@RestController
+@RequestMapping("/api/rapports")
+public class RapportController {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    @Autowired
+    private TableauDeBordService tableauDeBordService;
+
+    @Autowired
+    private MeilleuresVentesService meilleuresVentesService;
+
+    @Autowired
+    private HistoriqueVentesService historiqueVentesService;
+
+    @Autowired
+    private ValorisationService valorisationService;
+
+    @Autowired
+    private RapportJobService rapportJobService;
+
+    @GetMapping("/dashboard")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<TableauDeBordDto> getTableauDeBord() {
+        return ResponseEntity.ok(tableauDeBordService.tableauDeBord());
+    }
+
+    @GetMapping("/meilleures-ventes")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getMeilleuresVentes(@RequestParam(defaultValue = "JOUR") PeriodeVentes periode,
+                                                 @RequestParam(defaultValue = "20") int k) {
+        try {
+            return ResponseEntity.ok(meilleuresVentesService.classement(periode, k));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Servie par l'historique en colonnes : aucune requête sur la base
+    @GetMapping("/analyses")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<List<AgregatVentesDto>> getAnalyse(
+            @RequestParam RegroupementVentes par,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin,
+            @RequestParam(required = false) FormeEnum forme) {
+        return ResponseEntity.ok(historiqueVentesService.analyser(par, debut, fin, forme));
+    }
+
+    // Cumuls tenus à jour à chaque mouvement : ni les lots ni l'historique des ventes ne sont relus
+    @GetMapping("/valorisation")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<ValorisationDto> getValorisation() {
+        return ResponseEntity.ok(valorisationService.total());
+    }
+
+    @GetMapping("/valorisation/produits")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getValorisationProduits(@RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(defaultValue = "50") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("page doit être positive et size comprise entre 1 et " + MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(valorisationService.produits(page, size));
+    }
+
+    @GetMapping("/valorisation/produits/{produitId}")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<ValorisationProduitDto> getValorisationProduit(@PathVariable Long produitId) {
+        return valorisationService.produit(produitId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Rapport calculé en arrière-plan : 202 et l'adresse à suivre, ou 200 si un calcul identique existe déjà
+    @PostMapping("/jobs")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> soumettreRapport(@RequestBody DemandeRapport demande) {
+        try {
+            RapportJobService.Soumission soumission = rapportJobService.soumettre(demande);
+            RapportJobDto job = soumission.job();
+            URI suivi = URI.create("/api/rapports/jobs/" + job.id());
+            return soumission.existant()
+                    ? ResponseEntity.ok().location(suivi).body(job)
+                    : ResponseEntity.accepted().location(suivi).body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<RapportJobDto> getRapport(@PathVariable String id) {
+        return rapportJobService.job(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<RapportJobDto> annulerRapport(@PathVariable String id) {
+        return rapportJobService.annuler(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // CSV gardé compressé : envoyé tel quel aux clients qui acceptent gzip, décompressé pour les autres
+    @GetMapping("/jobs/{id}/resultat")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public ResponseEntity<?> getResultatRapport(@PathVariable String id,
+                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String encodages)
+            throws IOException {
+        Optional<RapportJobDto> job = rapportJobService.job(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.get().statut() != StatutRapport.TERMINE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Rapport " + job.get().statut() + " : pas de résultat");
+        }
+        Optional<byte[]> resultat = rapportJobService.resultat(id);
+        if (resultat.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity.BodyBuilder reponse = ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rapport-"
+                        + job.get().type().name().toLowerCase() + "-" + id + ".csv\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (Encodages.accepteGzip(encodages)) {
+            return reponse.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(resultat.get());
+        }
+        try (InputStream csv = new GZIPInputStream(new ByteArrayInputStream(resultat.get()))) {
+            return reponse.body(csv.readAllBytes());
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package emsi.project.backendms1.controllers;
 
 
+import emsi.project.backendms1.dtos.VenteDto;
 import emsi.project.backendms1.dtos.VenteRequest;
+import emsi.project.backendms1.mapper.VenteMapper;
 import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.service.ChampsPartiels;
+import emsi.project.backendms1.service.ProjectionJsonService;
 import emsi.project.backendms1.service.VenteService;
 
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.actuate.logging.LoggersEndpoint;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -23,15 +30,19 @@ public class VenteController {
 
     @Autowired
     private VenteService venteService;
+
+    @Autowired
+    private VenteMapper venteMapper;
+
     @Autowired
-    private LoggersEndpoint loggersEndpoint;
+    private ProjectionJsonService projectionJsonService;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('ROLE_USER')")
     public ResponseEntity<?> creerVente( @RequestBody VenteRequest venteRequest) {
         try {
             Vente nouvelleVente = venteService.creerVente(venteRequest);
-            return new ResponseEntity<>(nouvelleVente, HttpStatus.CREATED);
+            return new ResponseEntity<>(venteMapper.toDto(nouvelleVente), HttpStatus.CREATED);
         } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -42,28 +53,36 @@ public class VenteController {
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ROLE_USER')")
-    public ResponseEntity<Vente> getVenteById(@PathVariable Long id) {
-        Optional<Vente> vente = venteService.getVenteById(id);
+    public ResponseEntity<VenteDto> getVenteById(@PathVariable Long id) {
+        Optional<VenteDto> vente = venteService.getVenteDtoById(id);
         return vente.map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ROLE_USER')")
-    public ResponseEntity<List<Vente>> getAllVentes() {
-        List<Vente> ventes = venteService.getAllVentes();
+    public ResponseEntity<List<VenteDto>> getAllVentes() {
+        List<VenteDto> ventes = venteService.getAllVenteDtos();
         if (ventes.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.ok(ventes);
     }
 
+    @GetMapping(params = "fields")
+    @PreAuthorize("hasAnyRole('ROLE_USER')")
+    public void getAllVentesPartielles(@RequestParam String fields, HttpServletResponse response) throws IOException {
+        List<String> champs = ChampsPartiels.VENTES.parser(fields);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        projectionJsonService.ecrire(ChampsPartiels.VENTES, champs, Map.of(), response.getOutputStream());
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('ROLE_USER')")
     public ResponseEntity<?> modifierVente(@PathVariable Long id, @RequestBody VenteRequest venteRequest) {
         try {
             Vente venteModifiee = venteService.modifierVente(id, venteRequest);
-            return ResponseEntity.ok(venteModifiee);
+            return ResponseEntity.ok(venteMapper.toDto(venteModifiee));
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         } catch (IllegalArgumentException | IllegalStateException e) {
@@ -0,0 +1,400 @@
+package emsi.project.backendms1.dataset;
+
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.User;
+import emsi.project.backendms1.repository.UserRepository;
+import emsi.project.backendms1.service.Montant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Génère un jeu de données de pharmacie réaliste pour les benchmarks et les tests de capacité.
+ * <ul>
+ *     <li>popularité des produits en loi de Zipf (quelques références font l'essentiel des ventes);</li>
+ *     <li>ventes saisonnières (pic hivernal, samedi chargé, dimanche de garde, pointes midi et soir);</li>
+ *     <li>lots reçus au fil de l'historique, avec des durées de vie de 12 à 36 mois : une partie est
+ *     déjà périmée, une autre proche de l'expiration;</li>
+ *     <li>journal de stock complet : réception de chaque lot puis ventes prélevées sur lui, dans
+ *     l'ordre chronologique.</li>
+ * </ul>
+ * Les lignes sont écrites par lots JDBC ({@code batchUpdate}) avec des identifiants attribués
+ * à partir du maximum existant : les données s'ajoutent à une base déjà remplie. Pour une même
+ * graine et une même date de référence, le jeu produit est identique.
+ */
+public class DatasetGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private static final String[] RACINES = {"Para", "Ibu", "Amoxi", "Dolo", "Cefa", "Metro", "Lora", "Omepra",
+            "Azithro", "Cipro", "Diclo", "Keto", "Levo", "Pantopra", "Simva", "Ator", "Metfor", "Predni",
+            "Salbu", "Tramado", "Clari", "Doxy", "Fluco", "Genta"};
+    private static final String[] SUFFIXES = {"cétamol", "profène", "cilline", "prane", "lexine", "nidazole",
+            "tadine", "zole", "mycine", "floxacine", "fénac", "conazole", "statine", "formine", "solone", "mol"};
+    private static final String[] DOSAGES = {"100mg", "250mg", "500mg", "1g", "5mg/ml", "20mg", "40mg", "2%"};
+    private static final FormeEnum[] FORMES = FormeEnum.values();
+
+    // Répartition du nombre de lignes par ticket (1 à 5) et des heures d'ouverture (8h à 21h)
+    private static final double[] LIGNES_PAR_VENTE = {0.45, 0.28, 0.15, 0.08, 0.04};
+    private static final double[] HEURES = {0.04, 0.07, 0.10, 0.11, 0.09, 0.06, 0.05, 0.06, 0.07, 0.09, 0.10, 0.08, 0.05, 0.03};
+
+    private static final double ZIPF_EXPOSANT = 1.07;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+
+    public DatasetGenerator(JdbcTemplate jdbcTemplate, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    /**
+     * @param produits nombre de références
+     * @param lots     nombre de lots (au moins un par produit)
+     * @param lignes   nombre de lignes de vente visé, réparties sur {@code jours} jours d'historique
+     * @param users    comptes caissiers {@code caissierN} (mot de passe {@code password})
+     */
+    public record Volumes(int produits, int lots, long lignes, int jours, int users, long seed, int batchSize) {
+
+        public Volumes {
+            if (produits <= 0 || lots < produits || lignes < 0 || jours <= 0 || users < 0 || batchSize <= 0) {
+                throw new IllegalArgumentException("Volumes de jeu de données invalides : " + produits + " produits, "
+                        + lots + " lots, " + lignes + " lignes, " + jours + " jours");
+            }
+        }
+    }
+
+    public record Resultat(int produits, int lots, long ventes, long lignes, int users, long millis) {
+    }
+
+    public Resultat generate(Volumes volumes, LocalDate aujourdhui) {
+        long debut = System.currentTimeMillis();
+        SplittableRandom racine = new SplittableRandom(volumes.seed());
+        SplittableRandom aleaProduits = racine.split();
+        SplittableRandom aleaLots = racine.split();
+        SplittableRandom aleaVentes = racine.split();
+
+        Catalogue catalogue = insertProduits(volumes, aleaProduits);
+        planifierLots(volumes, catalogue, aleaLots, aujourdhui);
+        long[] ventes = insertVentes(volumes, catalogue, aleaVentes, aujourdhui);
+        insertLots(volumes, catalogue);
+        journaliser(catalogue);
+        int users = insertUsers(volumes.users());
+        for (String table : new String[]{"produit", "lot_de_stock", "ventes", "lignes_vente"}) {
+            resynchroniserIdentite(table);
+        }
+
+        Resultat resultat = new Resultat(volumes.produits(), volumes.lots(), ventes[0], ventes[1], users,
+                System.currentTimeMillis() - debut);
+        log.info("Jeu de données généré : {}", resultat);
+        return resultat;
+    }
+
+    // Données du catalogue gardées en mémoire pour générer lots et ventes de manière cohérente
+    private static final class Catalogue {
+        long premierId;
+        BigDecimal[] prixVente;
+        BigDecimal[] prixAchat;
+        double[] popularite;     // répartition cumulée de Zipf, indexée par rang
+        int[] produitParRang;
+        int[] premierLot;        // index du premier lot du produit, lots contigus
+        int[] nbLots;
+        long premierLotId;
+        String[] numeroLot;
+        int[] expiration;        // epochDay
+        int[] reception;         // epochDay, ramené au jour de la première vente du lot si besoin
+        int[] restant;           // stock du lot après ses ventes
+        int[] vendu;
+        long premiereVente;
+    }
+
+    private Catalogue insertProduits(Volumes volumes, SplittableRandom alea) {
+        int n = volumes.produits();
+        Catalogue catalogue = new Catalogue();
+        catalogue.premierId = nextId("produit");
+        catalogue.prixVente = new BigDecimal[n];
+        catalogue.prixAchat = new BigDecimal[n];
+
+        List<Object[]> lignes = new ArrayList<>(volumes.batchSize());
+        for (int i = 0; i < n; i++) {
+            long id = catalogue.premierId + i;
+            double achat = Math.min(2000, Math.max(3, Math.exp(3.0 + 0.9 * gaussienne(alea))));
+            catalogue.prixAchat[i] = BigDecimal.valueOf(achat).setScale(2, RoundingMode.HALF_UP);
+            catalogue.prixVente[i] = BigDecimal.valueOf(achat * (1.3 + 0.3 * alea.nextDouble())).setScale(2, RoundingMode.HALF_UP);
+            String nom = RACINES[alea.nextInt(RACINES.length)] + SUFFIXES[alea.nextInt(SUFFIXES.length)] + " " + id;
+            lignes.add(new Object[]{id, nom, ean13(id), catalogue.prixVente[i], catalogue.prixAchat[i],
+                    5 + alea.nextInt(46), FORMES[alea.nextInt(FORMES.length)].name(), DOSAGES[alea.nextInt(DOSAGES.length)]});
+            if (lignes.size() == volumes.batchSize()) {
+                flushProduits(lignes);
+            }
+        }
+        flushProduits(lignes);
+
+        // Les rangs de popularité sont mélangés pour ne pas favoriser les premiers identifiants
+        catalogue.produitParRang = new int[n];
+        for (int i = 0; i < n; i++) {
+            catalogue.produitParRang[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = alea.nextInt(i + 1);
+            int tmp = catalogue.produitParRang[i];
+            catalogue.produitParRang[i] = catalogue.produitParRang[j];
+            catalogue.produitParRang[j] = tmp;
+        }
+        catalogue.popularite = new double[n];
+        double cumul = 0;
+        for (int rang = 0; rang < n; rang++) {
+            cumul += 1.0 / Math.pow(rang + 1, ZIPF_EXPOSANT);
+            catalogue.popularite[rang] = cumul;
+        }
+        for (int rang = 0; rang < n; rang++) {
+            catalogue.popularite[rang] /= cumul;
+        }
+        return catalogue;
+    }
+
+    private void flushProduits(List<Object[]> lignes) {
+        jdbcTemplate.batchUpdate("INSERT INTO produit (id, nom_medicament, codeean, prix_ventettc, prix_achatht, "
+                + "seuil_stock, forme, dosage, actif) VALUES (?, ?, ?, ?, ?, ?, ?, ?, true)", lignes);
+        lignes.clear();
+    }
+
+    private void planifierLots(Volumes volumes, Catalogue catalogue, SplittableRandom alea, LocalDate aujourdhui) {
+        int n = volumes.produits();
+        // Un lot par produit, le reste réparti selon la racine carrée de la popularité :
+        // les produits qui se vendent le plus sont réapprovisionnés plus souvent.
+        catalogue.nbLots = new int[n];
+        double[] poids = new double[n];
+        double total = 0;
+        for (int rang = 0; rang < n; rang++) {
+            poids[catalogue.produitParRang[rang]] = 1.0 / Math.sqrt(Math.pow(rang + 1, ZIPF_EXPOSANT));
+            total += poids[catalogue.produitParRang[rang]];
+        }
+        int supplementaires = volumes.lots() - n;
+        int attribues = 0;
+        for (int i = 0; i < n; i++) {
+            catalogue.nbLots[i] = 1 + (int) (supplementaires * poids[i] / total);
+            attribues += catalogue.nbLots[i] - 1;
+        }
+        for (int rang = 0; attribues < supplementaires; rang = (rang + 1) % n, attribues++) {
+            catalogue.nbLots[catalogue.produitParRang[rang]]++;
+        }
+
+        // Le journal garde les lots supprimés : leurs ids ne doivent pas resservir
+        Long dernierLotJournal = jdbcTemplate.queryForObject("SELECT MAX(lot_id) FROM mouvement_stock", Long.class);
+        catalogue.premierLotId = Math.max(nextId("lot_de_stock"), dernierLotJournal == null ? 1 : dernierLotJournal + 1);
+        catalogue.premierLot = new int[n];
+        catalogue.numeroLot = new String[volumes.lots()];
+        catalogue.expiration = new int[volumes.lots()];
+        catalogue.reception = new int[volumes.lots()];
+        catalogue.restant = new int[volumes.lots()];
+        catalogue.vendu = new int[volumes.lots()];
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            catalogue.premierLot[i] = index;
+            long produitId = catalogue.premierId + i;
+            for (int k = 0; k < catalogue.nbLots[i]; k++, index++) {
+                LocalDate reception = aujourdhui.minusDays(alea.nextInt(volumes.jours()));
+                LocalDate expiration = reception.plusMonths(12 + alea.nextInt(25));
+                catalogue.numeroLot[index] = "L" + produitId + "-" + (k + 1);
+                catalogue.expiration[index] = (int) expiration.toEpochDay();
+                catalogue.reception[index] = (int) reception.toEpochDay();
+                catalogue.restant[index] = 10 + alea.nextInt(491);
+            }
+        }
+    }
+
+    // Chaque lot est reçu pour couvrir ses ventes et son stock restant
+    private void insertLots(Volumes volumes, Catalogue catalogue) {
+        List<Object[]> lignes = new ArrayList<>(volumes.batchSize());
+        for (int i = 0; i < volumes.produits(); i++) {
+            for (int index = catalogue.premierLot[i]; index < catalogue.premierLot[i] + catalogue.nbLots[i]; index++) {
+                lignes.add(new Object[]{catalogue.premierLotId + index, catalogue.numeroLot[index],
+                        Date.valueOf(LocalDate.ofEpochDay(catalogue.expiration[index])), catalogue.premierId + i,
+                        catalogue.restant[index] + catalogue.vendu[index], catalogue.prixAchat[i],
+                        Date.valueOf(LocalDate.ofEpochDay(catalogue.reception[index]))});
+                if (lignes.size() == volumes.batchSize()) {
+                    flushLots(lignes);
+                }
+            }
+        }
+        flushLots(lignes);
+    }
+
+    /**
+     * Journal de stock : la réception de chaque lot, à sa date, puis une sortie par ligne de vente.
+     * Insérés dans l'ordre chronologique, comme en exploitation : les requêtes à date coupent le
+     * journal par id. Le lot repart ensuite d'un instantané pris après son dernier mouvement.
+     */
+    private void journaliser(Catalogue catalogue) {
+        jdbcTemplate.update("INSERT INTO mouvement_stock (date_mouvement, type, produit_id, lot_id, vente_id, quantite, motif) "
+                + "SELECT date_mouvement, type, produit_id, lot_id, vente_id, quantite, 'Jeu de données' FROM ("
+                + "SELECT v.date_vente AS date_mouvement, 'VENTE' AS type, lv.produit_id, l.id AS lot_id, v.id AS vente_id, "
+                + "-lv.quantite AS quantite FROM lignes_vente lv JOIN ventes v ON v.id = lv.vente_id "
+                + "JOIN lot_de_stock l ON l.product_id = lv.produit_id AND l.numero_lot = lv.numero_lot_stock "
+                + "WHERE v.id >= ? AND l.id >= ? "
+                + "UNION ALL SELECT date_reception, 'RECEPTION', product_id, id, NULL, quantite FROM lot_de_stock "
+                + "WHERE id >= ?) t ORDER BY date_mouvement, vente_id, lot_id",
+                catalogue.premiereVente, catalogue.premierLotId, catalogue.premierLotId);
+
+        jdbcTemplate.update("UPDATE lot_de_stock SET "
+                + "quantite = (SELECT SUM(m.quantite) FROM mouvement_stock m WHERE m.lot_id = lot_de_stock.id), "
+                + "dernier_mouvement_id = (SELECT MAX(m.id) FROM mouvement_stock m WHERE m.lot_id = lot_de_stock.id) "
+                + "WHERE id >= ?", catalogue.premierLotId);
+    }
+
+    private void flushLots(List<Object[]> lignes) {
+        jdbcTemplate.batchUpdate("INSERT INTO lot_de_stock (id, numero_lot, date_expiration, product_id, quantite, "
+                + "prix_achatht, date_reception) VALUES (?, ?, ?, ?, ?, ?, ?)", lignes);
+        lignes.clear();
+    }
+
+    /**
+     * Répartit les lignes visées sur l'historique selon la saisonnalité, puis compose des tickets
+     * de 1 à 5 lignes. Chaque ligne est prélevée sur un lot du produit, compté dans ses ventes.
+     */
+    private long[] insertVentes(Volumes volumes, Catalogue catalogue, SplittableRandom alea, LocalDate aujourdhui) {
+        int jours = volumes.jours();
+        double[] poidsJour = new double[jours];
+        double total = 0;
+        for (int j = 0; j < jours; j++) {
+            poidsJour[j] = saisonnalite(aujourdhui.minusDays(jours - j));
+            total += poidsJour[j];
+        }
+        double[] lignesParVente = cumulative(LIGNES_PAR_VENTE);
+        double[] heures = cumulative(HEURES);
+
+        long venteId = nextId("ventes");
+        long ligneId = nextId("lignes_vente");
+        long premiereVente = venteId;
+        long premiereLigne = ligneId;
+        catalogue.premiereVente = premiereVente;
+        List<Object[]> ventes = new ArrayList<>(volumes.batchSize());
+        List<Object[]> lignes = new ArrayList<>(volumes.batchSize() * 2);
+        double report = 0;
+        for (int j = 0; j < jours; j++) {
+            LocalDate jour = aujourdhui.minusDays(jours - j);
+            double attendu = volumes.lignes() * poidsJour[j] / total + report;
+            long lignesDuJour = Math.round(attendu);
+            report = attendu - lignesDuJour;
+            while (lignesDuJour > 0) {
+                int nb = (int) Math.min(lignesDuJour, 1 + tirage(lignesParVente, alea.nextDouble()));
+                lignesDuJour -= nb;
+                LocalDateTime date = jour.atTime(8 + tirage(heures, alea.nextDouble()), alea.nextInt(60), alea.nextInt(60));
+                long montant = 0;
+                for (int l = 0; l < nb; l++) {
+                    int produit = catalogue.produitParRang[tirage(catalogue.popularite, alea.nextDouble())];
+                    int lot = catalogue.premierLot[produit] + alea.nextInt(catalogue.nbLots[produit]);
+                    int quantite = alea.nextDouble() < 0.7 ? 1 : 2 + alea.nextInt(2);
+                    catalogue.vendu[lot] += quantite;
+                    catalogue.reception[lot] = (int) Math.min(catalogue.reception[lot], jour.toEpochDay());
+                    BigDecimal prix = catalogue.prixVente[produit];
+                    montant = Montant.plus(montant, Montant.fois(Montant.centimes(prix), quantite));
+                    // Les lots d'un produit partagent son prix d'achat : coût connu sans allocation FEFO
+                    lignes.add(new Object[]{ligneId++, venteId, catalogue.premierId + produit, quantite, prix,
+                            Montant.euros(Montant.fois(Montant.centimes(catalogue.prixAchat[produit]), quantite)),
+                            catalogue.numeroLot[lot], Date.valueOf(LocalDate.ofEpochDay(catalogue.expiration[lot]))});
+                }
+                ventes.add(new Object[]{venteId++, Timestamp.valueOf(date), Montant.euros(montant)});
+                if (ventes.size() >= volumes.batchSize()) {
+                    flushVentes(ventes, lignes);
+                }
+            }
+        }
+        flushVentes(ventes, lignes);
+        return new long[]{venteId - premiereVente, ligneId - premiereLigne};
+    }
+
+    private void flushVentes(List<Object[]> ventes, List<Object[]> lignes) {
+        jdbcTemplate.batchUpdate("INSERT INTO ventes (id, date_vente, montant_total) VALUES (?, ?, ?)", ventes);
+        jdbcTemplate.batchUpdate("INSERT INTO lignes_vente (id, vente_id, produit_id, quantite, prix_ventettc, "
+                + "cout_achatht, numero_lot_stock, date_expiration) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", lignes);
+        ventes.clear();
+        lignes.clear();
+    }
+
+    // Peu de comptes : on passe par JPA pour respecter la génération d'identifiants de User
+    private int insertUsers(int count) {
+        String hash = passwordEncoder.encode("password");
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String username = "caissier" + i;
+            if (!userRepository.existsByUsername(username)) {
+                users.add(new User(null, username, hash, username + "@pharmacie.ma", "ROLE_USER"));
+            }
+        }
+        userRepository.saveAll(users);
+        return users.size();
+    }
+
+    // Pic hivernal (grippe, rhumes) vers mi-janvier, samedi chargé, dimanche en pharmacie de garde
+    static double saisonnalite(LocalDate jour) {
+        double saison = 1 + 0.35 * Math.cos(2 * Math.PI * (jour.getDayOfYear() - 15) / 365.0);
+        DayOfWeek dow = jour.getDayOfWeek();
+        double semaine = dow == DayOfWeek.SUNDAY ? 0.45 : dow == DayOfWeek.SATURDAY ? 1.15 : 1.0;
+        return saison * semaine;
+    }
+
+    private static double[] cumulative(double[] poids) {
+        double[] cumul = new double[poids.length];
+        double somme = 0;
+        for (int i = 0; i < poids.length; i++) {
+            somme += poids[i];
+            cumul[i] = somme;
+        }
+        for (int i = 0; i < cumul.length; i++) {
+            cumul[i] /= somme;
+        }
+        return cumul;
+    }
+
+    // Index du premier cumul >= u (recherche dichotomique)
+    private static int tirage(double[] cumul, double u) {
+        int index = Arrays.binarySearch(cumul, u);
+        return Math.min(index >= 0 ? index : -index - 1, cumul.length - 1);
+    }
+
+    private static double gaussienne(SplittableRandom alea) {
+        return Math.sqrt(-2 * Math.log(1 - alea.nextDouble())) * Math.cos(2 * Math.PI * alea.nextDouble());
+    }
+
+    // EAN-13 avec préfixe GS1 Maroc (611) et clé de contrôle valide
+    static String ean13(long id) {
+        String base = "611" + String.format("%09d", id % 1_000_000_000L);
+        int somme = 0;
+        for (int i = 0; i < 12; i++) {
+            int chiffre = base.charAt(i) - '0';
+            somme += (i % 2 == 0) ? chiffre : chiffre * 3;
+        }
+        return base + (10 - somme % 10) % 10;
+    }
+
+    // MySQL recale AUTO_INCREMENT après des identifiants explicites, H2 (tests) non
+    private void resynchroniserIdentite(String table) {
+        String produit = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if ("H2".equals(produit)) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + nextId(table));
+        }
+    }
+
+    private long nextId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max == null ? 1 : max + 1;
+    }
+}
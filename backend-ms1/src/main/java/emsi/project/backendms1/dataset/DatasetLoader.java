@@ -0,0 +1,72 @@
+package emsi.project.backendms1.dataset;
+
+import emsi.project.backendms1.repository.UserRepository;
+import emsi.project.backendms1.service.HistoriqueVentesService;
+import emsi.project.backendms1.service.MeilleuresVentesService;
+import emsi.project.backendms1.service.ValorisationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Remplit la base au démarrage quand le profil {@code dataset} est actif :
+ * <pre>
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=dataset \
+ *     -Dspring-boot.run.arguments="--app.dataset.produits=50000 --app.dataset.lots=500000 --app.dataset.lignes=5000000"
+ * </pre>
+ * Chaque démarrage ajoute un nouveau jeu : à lancer une seule fois sur une base vide.
+ */
+@Component
+@Profile("dataset")
+public class DatasetLoader implements ApplicationRunner {
+
+    private final DatasetGenerator generator;
+    private final MeilleuresVentesService meilleuresVentesService;
+    private final HistoriqueVentesService historiqueVentesService;
+    private final ValorisationService valorisationService;
+
+    @Value("${app.dataset.produits:5000}")
+    private int produits;
+
+    @Value("${app.dataset.lots:50000}")
+    private int lots;
+
+    @Value("${app.dataset.lignes:500000}")
+    private long lignes;
+
+    @Value("${app.dataset.jours:730}")
+    private int jours;
+
+    @Value("${app.dataset.users:20}")
+    private int users;
+
+    @Value("${app.dataset.seed:42}")
+    private long seed;
+
+    @Value("${app.dataset.batch-size:5000}")
+    private int batchSize;
+
+    public DatasetLoader(JdbcTemplate jdbcTemplate, UserRepository userRepository, PasswordEncoder passwordEncoder,
+                         MeilleuresVentesService meilleuresVentesService, HistoriqueVentesService historiqueVentesService,
+                         ValorisationService valorisationService) {
+        this.generator = new DatasetGenerator(jdbcTemplate, userRepository, passwordEncoder);
+        this.meilleuresVentesService = meilleuresVentesService;
+        this.historiqueVentesService = historiqueVentesService;
+        this.valorisationService = valorisationService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        generator.generate(new DatasetGenerator.Volumes(produits, lots, lignes, jours, users, seed, batchSize), LocalDate.now());
+        // Ventes insérées en JDBC, invisibles des écouteurs Hibernate
+        meilleuresVentesService.reconstruire();
+        historiqueVentesService.rattraper();
+        valorisationService.recalculer();
+    }
+}
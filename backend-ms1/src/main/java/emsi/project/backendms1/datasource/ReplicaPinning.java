@@ -0,0 +1,78 @@
+package emsi.project.backendms1.datasource;
+
+/**
+ * Lecture de ses propres écritures : une fois qu'une transaction d'écriture a eu lieu dans la
+ * requête courante, les lectures suivantes de cette requête restent sur le primaire, le
+ * réplica pouvant être en retard. La portée est ouverte et fermée par {@link ReplicaPinningFilter};
+ * hors requête (tâches de fond, démarrage) rien n'est épinglé.
+ */
+public final class ReplicaPinning {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private ReplicaPinning() {
+    }
+
+    static void open(boolean pinned, Runnable onFirstPin) {
+        CURRENT.set(new Scope(pinned, onFirstPin));
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    public static boolean isPinned() {
+        Scope scope = CURRENT.get();
+        return scope != null && scope.pinned;
+    }
+
+    /**
+     * Envoie les lectures du bloc au primaire, sans épingler la requête ni poser de cookie : pour
+     * une réponse dont l'ETag vient d'une version tenue par le primaire ({@code CatalogueVersion}),
+     * un réplica en retard rendrait un corps plus ancien sous le nouvel ETag.
+     */
+    public static PrimaryScope forcePrimary() {
+        Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        return () -> {
+            if (previous == null) {
+                PRIMARY_FORCED.remove();
+            } else {
+                PRIMARY_FORCED.set(previous);
+            }
+        };
+    }
+
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get() != null;
+    }
+
+    /** Portée de {@link #forcePrimary()}, à fermer par try-with-resources. */
+    public interface PrimaryScope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Épingle la requête courante sur le primaire; sans effet hors requête. */
+    public static void pin() {
+        Scope scope = CURRENT.get();
+        if (scope == null || scope.pinned) {
+            return;
+        }
+        scope.pinned = true;
+        if (scope.onFirstPin != null) {
+            scope.onFirstPin.run();
+        }
+    }
+
+    private static final class Scope {
+        boolean pinned;
+        final Runnable onFirstPin;
+
+        Scope(boolean pinned, Runnable onFirstPin) {
+            this.pinned = pinned;
+            this.onFirstPin = onFirstPin;
+        }
+    }
+}
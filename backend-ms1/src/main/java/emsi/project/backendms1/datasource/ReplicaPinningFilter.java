@@ -0,0 +1,55 @@
+package emsi.project.backendms1.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Ouvre la portée d'épinglage de chaque requête. Après une écriture, un cookie de courte durée
+ * ({@code app.datasource.replica.pin-seconds}) garde aussi les requêtes suivantes du même client
+ * sur le primaire, le temps que le réplica rattrape son retard.
+ */
+@Component
+@ConditionalOnProperty(name = "app.datasource.replica.url")
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ReplicaPinningFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "rw-pin";
+
+    private final int pinSeconds;
+
+    public ReplicaPinningFilter(@Value("${app.datasource.replica.pin-seconds:5}") int pinSeconds) {
+        this.pinSeconds = pinSeconds;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean pinned = WebUtils.getCookie(request, COOKIE) != null;
+        ReplicaPinning.open(pinned, () -> {
+            if (!response.isCommitted() && pinSeconds > 0) {
+                Cookie cookie = new Cookie(COOKIE, "1");
+                cookie.setMaxAge(pinSeconds);
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                response.addCookie(cookie);
+            }
+        });
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaPinning.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package emsi.project.backendms1.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+/**
+ * Une ligne d'analyse de l'historique des ventes. {@code cle} est l'id du produit, la forme, le
+ * dosage, le jour de la semaine (1 = lundi) ou l'heure. La marge est calculée sur le coût d'achat
+ * enregistré sur chaque ligne de vente (lots prélevés), comme la valorisation du stock : elle ne
+ * porte que sur les lignes dont le coût est connu, les autres sont comptées dans
+ * {@code quantiteSansCout}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AgregatVentesDto(
+        String cle,
+        String libelle,
+        Long lignes,
+        Long quantite,
+        BigDecimal chiffreAffaires,
+        BigDecimal marge,
+        Long quantiteSansCout) {
+}
@@ -0,0 +1,17 @@
+package emsi.project.backendms1.dtos;
+
+import java.util.List;
+
+/**
+ * Bilan d'une synchronisation du catalogue. {@code erreurs} est tronquée au-delà d'un plafond,
+ * {@code nombreErreurs} reste exact.
+ */
+public record CatalogueSyncRapport(
+        long lignes,
+        int produitsCrees,
+        int produitsModifies,
+        int produitsInchanges,
+        int produitsDesactives,
+        long nombreErreurs,
+        List<ErreurLigne> erreurs) {
+}
@@ -0,0 +1,18 @@
+package emsi.project.backendms1.dtos;
+
+import emsi.project.backendms1.enums.PeriodeVentes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Meilleures ventes de la période en cours, servies depuis la mémoire. {@code erreurMax} borne la
+ * surestimation de chaque quantité; {@code unitesVendues} est le total exact de la période.
+ */
+public record ClassementVentesDto(
+        PeriodeVentes periode,
+        LocalDateTime debut,
+        Long unitesVendues,
+        Long erreurMax,
+        List<MeilleureVenteDto> produits) {
+}
@@ -0,0 +1,11 @@
+package emsi.project.backendms1.dtos;
+
+import emsi.project.backendms1.enums.TypeRapport;
+
+import java.time.LocalDate;
+
+/**
+ * Demande de rapport : période {@code [debut, fin]} incluse, ignorée pour la valorisation.
+ */
+public record DemandeRapport(TypeRapport type, LocalDate debut, LocalDate fin) {
+}
@@ -0,0 +1,7 @@
+package emsi.project.backendms1.dtos;
+
+/**
+ * Ligne rejetée d'un import : numéro de ligne du fichier (ou rang de l'élément JSON) et motif.
+ */
+public record ErreurLigne(long ligne, String message) {
+}
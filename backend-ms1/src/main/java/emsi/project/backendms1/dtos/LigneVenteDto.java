@@ -0,0 +1,30 @@
+package emsi.project.backendms1.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import emsi.project.backendms1.service.Montant;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Ligne de vente telle que rendue par l'API. {@code venteId} sert seulement à regrouper
+ * les lignes lues en une requête sous leur vente.
+ */
+public record LigneVenteDto(
+        Long id,
+        @JsonIgnore Long venteId,
+        Long produitId,
+        Integer quantite,
+        BigDecimal prixVenteTTC,
+        String numeroLotStock,
+        LocalDate dateExpiration) {
+
+    @JsonProperty("montantTotalLigne")
+    public BigDecimal montantTotalLigne() {
+        if (prixVenteTTC == null || quantite == null) {
+            return Montant.euros(0);
+        }
+        return Montant.euros(Montant.fois(Montant.centimes(prixVenteTTC), quantite));
+    }
+}
@@ -0,0 +1,11 @@
+package emsi.project.backendms1.dtos;
+
+import java.time.LocalDate;
+
+/** Quantité d'un lot à une date passée; numéro et expiration sont nuls si le lot a été supprimé depuis. */
+public record LotADateDto(
+        Long lotId,
+        String numeroLot,
+        LocalDate dateExpiration,
+        int quantite) {
+}
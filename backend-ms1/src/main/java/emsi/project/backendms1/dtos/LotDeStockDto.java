@@ -0,0 +1,17 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Lot de stock tel que rendu par l'API; le produit n'est référencé que par son id.
+ */
+public record LotDeStockDto(
+        Long id,
+        String numeroLot,
+        LocalDate dateExpiration,
+        int quantite,
+        BigDecimal prixAchatHT,
+        LocalDate dateReception,
+        Long produitId) {
+}
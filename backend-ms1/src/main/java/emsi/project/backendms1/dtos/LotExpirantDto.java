@@ -0,0 +1,15 @@
+package emsi.project.backendms1.dtos;
+
+import java.time.LocalDate;
+
+/**
+ * Lot encore en stock dont la date d'expiration approche.
+ */
+public record LotExpirantDto(
+        Long lotId,
+        String numeroLot,
+        LocalDate dateExpiration,
+        Integer quantite,
+        Long produitId,
+        String nomMedicament) {
+}
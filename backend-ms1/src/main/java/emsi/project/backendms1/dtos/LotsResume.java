@@ -0,0 +1,33 @@
+package emsi.project.backendms1.dtos;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Agrégat des lots d'un produit : quantité totale, expiration la plus proche, nombre de lots.
+ */
+public record LotsResume(
+        Long produitId,
+        Long quantiteTotale,
+        LocalDate prochaineExpiration,
+        Long nombreLots) {
+
+    public static LotsResume vide(Long produitId) {
+        return new LotsResume(produitId, 0L, null, 0L);
+    }
+
+    public static LotsResume de(Long produitId, List<LotDeStockDto> lots) {
+        if (lots.isEmpty()) {
+            return vide(produitId);
+        }
+        long quantite = 0;
+        LocalDate prochaine = null;
+        for (LotDeStockDto lot : lots) {
+            quantite += lot.quantite();
+            if (prochaine == null || lot.dateExpiration().isBefore(prochaine)) {
+                prochaine = lot.dateExpiration();
+            }
+        }
+        return new LotsResume(produitId, quantite, prochaine, (long) lots.size());
+    }
+}
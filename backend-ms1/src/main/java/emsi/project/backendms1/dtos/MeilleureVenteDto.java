@@ -0,0 +1,11 @@
+package emsi.project.backendms1.dtos;
+
+/**
+ * Produit classé par quantité vendue sur une période. Dans un classement en mémoire, la quantité
+ * est une estimation qui peut dépasser la valeur exacte d'au plus l'erreur du classement.
+ */
+public record MeilleureVenteDto(
+        Long produitId,
+        String nomMedicament,
+        Long quantiteVendue) {
+}
@@ -0,0 +1,17 @@
+package emsi.project.backendms1.dtos;
+
+import emsi.project.backendms1.enums.TypeMouvement;
+
+import java.time.LocalDateTime;
+
+/** Mouvement du journal de stock; {@code quantite} est signée (négative pour une sortie). */
+public record MouvementStockDto(
+        Long id,
+        LocalDateTime dateMouvement,
+        TypeMouvement type,
+        Long produitId,
+        Long lotId,
+        int quantite,
+        Long venteId,
+        String motif) {
+}
@@ -0,0 +1,20 @@
+package emsi.project.backendms1.dtos;
+
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * Page de résultats au format JSON stable (PageImpl n'en garantit pas).
+ */
+public record PageDto<T>(
+        List<T> content,
+        int page,
+        int size,
+        long totalElements,
+        int totalPages) {
+
+    public static <T> PageDto<T> of(Page<?> page, List<T> content) {
+        return new PageDto<>(content, page.getNumber(), page.getSize(), page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -0,0 +1,15 @@
+package emsi.project.backendms1.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Produit et état de son stock; {@code lots} est omis quand seul le résumé est demandé.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProduitAvecLotsDto(
+        ProduitDto produit,
+        LotsResume resume,
+        List<LotDeStockDto> lots) {
+}
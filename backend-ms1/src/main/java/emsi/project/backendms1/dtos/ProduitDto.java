@@ -0,0 +1,20 @@
+package emsi.project.backendms1.dtos;
+
+import emsi.project.backendms1.enums.FormeEnum;
+
+import java.math.BigDecimal;
+
+/**
+ * Produit tel que rendu par l'API : colonnes de la table produit, sans les collections.
+ */
+public record ProduitDto(
+        Long id,
+        String nomMedicament,
+        String codeEAN,
+        BigDecimal prixVenteTTC,
+        BigDecimal prixAchatHT,
+        Integer seuilStock,
+        FormeEnum forme,
+        String dosage,
+        int quantiteTotaleEnStock) {
+}
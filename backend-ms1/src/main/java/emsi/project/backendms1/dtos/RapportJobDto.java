@@ -0,0 +1,26 @@
+package emsi.project.backendms1.dtos;
+
+import emsi.project.backendms1.enums.StatutRapport;
+import emsi.project.backendms1.enums.TypeRapport;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * État d'un rapport en arrière-plan. {@code progression} va de 0 à 100; {@code tailleResultat} est
+ * la taille du CSV compressé, une fois le rapport terminé.
+ */
+public record RapportJobDto(
+        String id,
+        TypeRapport type,
+        LocalDate debut,
+        LocalDate fin,
+        StatutRapport statut,
+        int progression,
+        long lignes,
+        String message,
+        LocalDateTime creeLe,
+        LocalDateTime demarreLe,
+        LocalDateTime termineLe,
+        Long tailleResultat) {
+}
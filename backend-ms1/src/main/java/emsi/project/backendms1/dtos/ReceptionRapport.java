@@ -0,0 +1,16 @@
+package emsi.project.backendms1.dtos;
+
+import java.util.List;
+
+/**
+ * Bilan d'un import de réception. {@code erreurs} est tronquée au-delà d'un plafond,
+ * {@code nombreErreurs} reste exact.
+ */
+public record ReceptionRapport(
+        long lignes,
+        int lotsCrees,
+        int lotsCompletes,
+        int produitsRecalcules,
+        long nombreErreurs,
+        List<ErreurLigne> erreurs) {
+}
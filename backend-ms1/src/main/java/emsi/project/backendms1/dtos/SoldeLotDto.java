@@ -0,0 +1,11 @@
+package emsi.project.backendms1.dtos;
+
+/**
+ * Quantité d'un lot lue dans le journal : son instantané plus les mouvements qui le suivent.
+ */
+public record SoldeLotDto(
+        Long lotId,
+        int quantite,
+        int quantiteInstantane,
+        long mouvementsDepuisInstantane) {
+}
@@ -0,0 +1,18 @@
+package emsi.project.backendms1.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stock d'un produit à une date passée; {@code lots} (non vides seulement) est omis dans
+ * l'inventaire de tous les produits.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record StockADateDto(
+        LocalDateTime date,
+        Long produitId,
+        int quantite,
+        List<LotADateDto> lots) {
+}
@@ -0,0 +1,20 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Indicateurs du tableau de bord, calculés ensemble côté serveur. {@code calculeA} date le calcul :
+ * la réponse peut être servie depuis le cache pendant quelques secondes.
+ */
+public record TableauDeBordDto(
+        LocalDateTime calculeA,
+        BigDecimal chiffreAffairesJour,
+        Long ventesJour,
+        Long produitsActifs,
+        Long produitsSousSeuil,
+        Long lotsExpirants,
+        List<LotExpirantDto> prochainesExpirations,
+        List<MeilleureVenteDto> meilleuresVentes) {
+}
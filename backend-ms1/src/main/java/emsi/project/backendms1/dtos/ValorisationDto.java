@@ -0,0 +1,18 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+
+/**
+ * Valorisation de tout le stock et marge cumulée, mêmes règles que {@link ValorisationProduitDto}.
+ */
+public record ValorisationDto(
+        long produits,
+        long quantiteStock,
+        long quantiteSansCout,
+        BigDecimal valeurStock,
+        long quantiteVendue,
+        long quantiteVendueSansCout,
+        BigDecimal chiffreAffaires,
+        BigDecimal coutVentes,
+        BigDecimal marge) {
+}
@@ -0,0 +1,21 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+
+/**
+ * Valorisation d'un produit : stock au prix d'achat de ses lots, ventes cumulées et leur coût
+ * d'achat. {@code marge} porte sur le chiffre d'affaires des lignes dont le coût est connu;
+ * {@code quantiteVendueSansCout} dit ce qu'elle laisse de côté.
+ */
+public record ValorisationProduitDto(
+        Long produitId,
+        String nomMedicament,
+        long quantiteStock,
+        long quantiteSansCout,
+        BigDecimal valeurStock,
+        long quantiteVendue,
+        long quantiteVendueSansCout,
+        BigDecimal chiffreAffaires,
+        BigDecimal coutVentes,
+        BigDecimal marge) {
+}
@@ -0,0 +1,12 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record VenteDto(
+        Long id,
+        LocalDateTime dateVente,
+        BigDecimal montantTotal,
+        List<LigneVenteDto> lignesVente) {
+}
@@ -0,0 +1,13 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection fermée sur l'en-tête d'une vente : Spring Data ne sélectionne que ces colonnes.
+ */
+public interface VenteResume {
+    Long getId();
+    LocalDateTime getDateVente();
+    BigDecimal getMontantTotal();
+}
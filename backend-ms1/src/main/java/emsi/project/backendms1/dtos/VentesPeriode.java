@@ -0,0 +1,11 @@
+package emsi.project.backendms1.dtos;
+
+import java.math.BigDecimal;
+
+/**
+ * Chiffre d'affaires et nombre de ventes sur une période.
+ */
+public record VentesPeriode(
+        BigDecimal chiffreAffaires,
+        Long nombreVentes) {
+}
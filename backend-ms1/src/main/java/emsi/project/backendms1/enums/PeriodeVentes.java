@@ -0,0 +1,24 @@
+package emsi.project.backendms1.enums;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Périodes calendaires du classement des ventes : l'heure, le jour ou la semaine (du lundi) en cours.
+ */
+public enum PeriodeVentes {
+    HEURE,
+    JOUR,
+    SEMAINE;
+
+    /** Début de la période qui contient {@code date}. */
+    public LocalDateTime debut(LocalDateTime date) {
+        return switch (this) {
+            case HEURE -> date.truncatedTo(ChronoUnit.HOURS);
+            case JOUR -> date.truncatedTo(ChronoUnit.DAYS);
+            case SEMAINE -> date.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package emsi.project.backendms1.enums;
+
+/**
+ * Regroupements proposés par les analyses de l'historique des ventes.
+ */
+public enum RegroupementVentes {
+    PRODUIT,
+    FORME,
+    DOSAGE,
+    JOUR_SEMAINE,
+    HEURE
+}
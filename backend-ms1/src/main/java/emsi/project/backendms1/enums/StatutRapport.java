@@ -0,0 +1,13 @@
+package emsi.project.backendms1.enums;
+
+public enum StatutRapport {
+    EN_ATTENTE,
+    EN_COURS,
+    TERMINE,
+    ECHEC,
+    ANNULE;
+
+    public boolean actif() {
+        return this == EN_ATTENTE || this == EN_COURS;
+    }
+}
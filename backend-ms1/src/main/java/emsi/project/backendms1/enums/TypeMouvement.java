@@ -0,0 +1,10 @@
+package emsi.project.backendms1.enums;
+
+public enum TypeMouvement {
+    RECEPTION,
+    VENTE,
+    ANNULATION_VENTE,
+    PERTE,
+    RETOUR,
+    AJUSTEMENT
+}
@@ -0,0 +1,21 @@
+package emsi.project.backendms1.enums;
+
+/**
+ * Rapports calculés en arrière-plan. Les ventes et les expirations portent sur une période; la
+ * valorisation est celle du moment.
+ */
+public enum TypeRapport {
+    VENTES_PAR_PRODUIT(true),
+    EXPIRATIONS(true),
+    VALORISATION(false);
+
+    private final boolean periode;
+
+    TypeRapport(boolean periode) {
+        this.periode = periode;
+    }
+
+    public boolean avecPeriode() {
+        return periode;
+    }
+}
@@ -2,6 +2,8 @@ package emsi.project.backendms1.filter;
 
 import emsi.project.backendms1.configuration.JwtUtils;
 import emsi.project.backendms1.service.CustomUserDetailsService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,30 +21,35 @@ import java.util.logging.Logger;
 public class JwtFilter extends OncePerRequestFilter {
     private final JwtUtils jwtUtils;
     private final CustomUserDetailsService customUserDetailsService;
+    private final ObservationRegistry observationRegistry;
     private static final Logger logger = Logger.getLogger(JwtFilter.class.getName());
 
-    public JwtFilter(JwtUtils jwtUtils, CustomUserDetailsService customUserDetailsService) {
+    public JwtFilter(JwtUtils jwtUtils, CustomUserDetailsService customUserDetailsService, ObservationRegistry observationRegistry) {
         this.jwtUtils = jwtUtils;
         this.customUserDetailsService = customUserDetailsService;
+        this.observationRegistry = observationRegistry;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        try {
+        final String requestPath = request.getServletPath();
+
+        // Skip token validation for auth endpoints
+        if (requestPath.contains("/api/auth/")) {
+            logger.info("Skipping JWT validation for authentication endpoint");
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Span couvrant le parsing du JWT et le chargement de l'utilisateur, pas le reste de la chaîne
+        Observation observation = Observation.start("jwt.authentication", observationRegistry);
+        try (Observation.Scope ignored = observation.openScope()) {
             final String authHeader = request.getHeader("Authorization");
-            final String requestPath = request.getServletPath();
 
             // Log request info for debugging
             logger.info("Processing request path: " + requestPath);
             logger.info("Authorization header: " + (authHeader != null ? "present" : "not present"));
 
-            // Skip token validation for auth endpoints
-            if (requestPath.contains("/api/auth/")) {
-                logger.info("Skipping JWT validation for authentication endpoint");
-                filterChain.doFilter(request, response);
-                return;
-            }
-
             String username = null;
             String jwt = null;
 
@@ -76,7 +83,10 @@ public class JwtFilter extends OncePerRequestFilter {
                 }
             }
         } catch (Exception e) {
+            observation.error(e);
             logger.severe("Error processing JWT: " + e.getMessage());
+        } finally {
+            observation.stop();
         }
         
         filterChain.doFilter(request, response);
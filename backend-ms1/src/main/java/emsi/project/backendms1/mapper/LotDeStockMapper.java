@@ -0,0 +1,14 @@
+package emsi.project.backendms1.mapper;
+
+import emsi.project.backendms1.dtos.LotDeStockDto;
+import emsi.project.backendms1.models.LotDeStock;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface LotDeStockMapper {
+
+    // produit.getId() ne charge pas le proxy : l'id est connu sans requête
+    @Mapping(target = "produitId", source = "produit.id")
+    LotDeStockDto toDto(LotDeStock lot);
+}
@@ -0,0 +1,11 @@
+package emsi.project.backendms1.mapper;
+
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.models.Produit;
+import org.mapstruct.Mapper;
+
+@Mapper(componentModel = "spring")
+public interface ProduitMapper {
+
+    ProduitDto toDto(Produit produit);
+}
@@ -0,0 +1,23 @@
+package emsi.project.backendms1.mapper;
+
+import emsi.project.backendms1.dtos.LigneVenteDto;
+import emsi.project.backendms1.dtos.VenteDto;
+import emsi.project.backendms1.dtos.VenteResume;
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.Vente;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(componentModel = "spring")
+public interface VenteMapper {
+
+    VenteDto toDto(Vente vente);
+
+    @Mapping(target = "venteId", source = "vente.id")
+    @Mapping(target = "produitId", source = "produit.id")
+    LigneVenteDto toDto(LigneVente ligne);
+
+    VenteDto toDto(VenteResume resume, List<LigneVenteDto> lignesVente);
+}
@@ -1,6 +1,7 @@
 package emsi.project.backendms1.models;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import emsi.project.backendms1.service.Montant;
 import jakarta.persistence.*; // Ou javax.persistence.*
 
 import lombok.Data;
@@ -36,16 +37,26 @@ public class LigneVente {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal prixVenteTTC;
 
+    // Coût d'achat des lots prélevés pour cette ligne; null si inconnu
+    @Column(precision = 12, scale = 2)
+    private BigDecimal coutAchatHT;
+
     @Column(length = 100)
     private String numeroLotStock;
 
     private LocalDate dateExpiration;
 
     public BigDecimal getMontantTotalLigne() {
+        return Montant.euros(getMontantTotalLigneCentimes());
+    }
+
+    /** Prix × quantité en centimes, pour cumuler les totaux sans {@link BigDecimal} intermédiaire. */
+    @JsonIgnore
+    public long getMontantTotalLigneCentimes() {
         if (prixVenteTTC == null || quantite == null) {
-            return BigDecimal.ZERO;
+            return 0;
         }
-        return prixVenteTTC.multiply(BigDecimal.valueOf(quantite));
+        return Montant.fois(Montant.centimes(prixVenteTTC), quantite);
     }
 
     public Long getId() {
@@ -88,6 +99,14 @@ public class LigneVente {
         this.prixVenteTTC = prixVenteTTC;
     }
 
+    public BigDecimal getCoutAchatHT() {
+        return coutAchatHT;
+    }
+
+    public void setCoutAchatHT(BigDecimal coutAchatHT) {
+        this.coutAchatHT = coutAchatHT;
+    }
+
     public String getNumeroLotStock() {
         return numeroLotStock;
     }
@@ -5,6 +5,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Formula;
 import org.antlr.v4.runtime.misc.NotNull;
 
 import java.math.BigDecimal;
@@ -16,6 +19,9 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+// Évincé au commit de chaque mouvement du lot (CatalogueVersion)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class LotDeStock {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,11 +34,22 @@ public class LotDeStock {
     @Column(nullable = false)
     private LocalDate dateExpiration;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "product_id", nullable = false)
     private Produit produit;
 
+    // Instantané : quantité du lot après le mouvement dernierMouvementId, tenue par
+    // JournalStockService.prendreInstantanes
+    @Column(name = "quantite", nullable = false)
+    private int quantiteInstantane;
+
     @Column(nullable = false)
+    private long dernierMouvementId;
+
+    // Quantité courante : l'instantané plus les mouvements du journal qui le suivent. Jamais écrite;
+    // les services n'ajustent que la valeur en mémoire, le journal portant la variation
+    @Formula("(quantite + (SELECT COALESCE(SUM(m.quantite), 0) FROM mouvement_stock m "
+            + "WHERE m.lot_id = id AND m.id > dernier_mouvement_id))")
     private int quantite;
 
     @Column(precision = 10, scale = 2)
@@ -80,6 +97,22 @@ public class LotDeStock {
         this.quantite = quantite;
     }
 
+    public int getQuantiteInstantane() {
+        return quantiteInstantane;
+    }
+
+    public void setQuantiteInstantane(int quantiteInstantane) {
+        this.quantiteInstantane = quantiteInstantane;
+    }
+
+    public long getDernierMouvementId() {
+        return dernierMouvementId;
+    }
+
+    public void setDernierMouvementId(long dernierMouvementId) {
+        this.dernierMouvementId = dernierMouvementId;
+    }
+
     public BigDecimal getPrixAchatHT() {
         return prixAchatHT;
     }
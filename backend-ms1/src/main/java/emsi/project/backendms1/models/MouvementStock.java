@@ -0,0 +1,48 @@
+package emsi.project.backendms1.models;
+
+import emsi.project.backendms1.enums.TypeMouvement;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ligne du journal de stock : variation signée de la quantité d'un lot. Ajout seulement; c'est
+ * la seule écriture d'un mouvement, la quantité d'un lot se lit depuis le journal.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Immutable
+@Table(name = "mouvement_stock")
+public class MouvementStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDateTime dateMouvement;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TypeMouvement type;
+
+    // Identifiants seulement : le lot, le produit ou la vente peuvent avoir été supprimés depuis
+    @Column(nullable = false)
+    private Long produitId;
+
+    @Column(nullable = false)
+    private Long lotId;
+
+    @Column(nullable = false)
+    private int quantite;
+
+    private Long venteId;
+
+    private String motif;
+}
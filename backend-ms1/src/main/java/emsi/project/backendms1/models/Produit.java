@@ -6,6 +6,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -15,6 +18,11 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@NamedEntityGraph(name = "Produit.lotDeStocks", attributeNodes = @NamedAttributeNode("lotDeStocks"))
+// Relu à chaque ligne de vente. Un mouvement de stock n'écrit plus la ligne produit : l'entrée est
+// seulement évincée à son commit (CatalogueVersion), pour que le stock total relu soit à jour
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Produit {
 
     @Id
@@ -45,9 +53,16 @@ public class Produit {
 
     private String dosage;
 
-    @Column(nullable = false)
+    // Somme des lots, chacun lu depuis le journal (voir LotDeStock.quantite); jamais écrite
+    @Formula("((SELECT COALESCE(SUM(l.quantite), 0) FROM lot_de_stock l WHERE l.product_id = id) "
+            + "+ (SELECT COALESCE(SUM(m.quantite), 0) FROM lot_de_stock l JOIN mouvement_stock m "
+            + "ON m.lot_id = l.id AND m.id > l.dernier_mouvement_id WHERE l.product_id = id))")
     private int quantiteTotaleEnStock;
 
+    // Faux pour une référence retirée du catalogue fournisseur : plus proposée à la vente
+    @Column(nullable = false)
+    private boolean actif = true;
+
     @JsonIgnore
     @OneToMany(mappedBy = "produit", fetch = FetchType.LAZY)
     private List<LigneVente> ligneVentes= new ArrayList<>();
@@ -133,6 +148,14 @@ public class Produit {
         this.quantiteTotaleEnStock = quantiteTotaleEnStock;
     }
 
+    public boolean isActif() {
+        return actif;
+    }
+
+    public void setActif(boolean actif) {
+        this.actif = actif;
+    }
+
     public List<LigneVente> getLigneVentes() {
         return ligneVentes;
     }
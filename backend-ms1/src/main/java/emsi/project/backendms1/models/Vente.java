@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.List;
 @Entity
 @Table(name = "ventes")
+@NamedEntityGraph(name = "Vente.lignesVente", attributeNodes = @NamedAttributeNode("lignesVente"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,6 +35,16 @@ public class Vente {
     @JsonManagedReference("vente-lignes")
     private List<LigneVente> lignesVente = new ArrayList<>();
 
+    // Date lue en base : une vente modifiée est redatée, ses anciennes lignes restent décomptées à cette date
+    @Transient
+    @JsonIgnore
+    private LocalDateTime dateVenteEnregistree;
+
+    @PostLoad
+    void retenirDateVente() {
+        dateVenteEnregistree = dateVente;
+    }
+
     public Long getId() {
         return id;
     }
@@ -50,6 +61,11 @@ public class Vente {
         this.dateVente = dateVente;
     }
 
+    /** Date de la vente telle qu'enregistrée avant toute modification dans la session en cours. */
+    public LocalDateTime getDateVenteEnregistree() {
+        return dateVenteEnregistree != null ? dateVenteEnregistree : dateVente;
+    }
+
     public BigDecimal getMontantTotal() {
         return montantTotal;
     }
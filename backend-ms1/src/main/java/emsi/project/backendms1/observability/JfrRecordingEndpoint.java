@@ -0,0 +1,146 @@
+package emsi.project.backendms1.observability;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Endpoint actuator {@code /actuator/jfr} : démarre, inspecte et arrête un enregistrement
+ * Java Flight Recorder avec un profil adapté à l'application.
+ * <ul>
+ *     <li>{@code POST /actuator/jfr} (durée optionnelle en minutes) démarre l'enregistrement;</li>
+ *     <li>{@code GET /actuator/jfr} retourne l'état courant;</li>
+ *     <li>{@code DELETE /actuator/jfr} arrête et écrit le fichier {@code .jfr};</li>
+ *     <li>{@code GET /actuator/jfr/{fichier}} télécharge un enregistrement écrit.</li>
+ * </ul>
+ * Réservé au rôle {@code ADMIN} (voir {@code SecurityConfig}) : un enregistrement contient les
+ * propriétés système et les variables d'environnement, donc les secrets de la base et du JWT. Les
+ * fichiers sont écrits dans un répertoire dédié ({@code app.jfr.directory}), lisible par le seul
+ * utilisateur du processus, et seuls ceux-là sont téléchargeables.
+ */
+@Component
+@Endpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // Réglages appliqués par-dessus le profil JDK "profile" : échantillonnage un peu moins
+    // fréquent, seuils relevés pour rester discret en production, événements métier activés.
+    private static final Map<String, String> OVERRIDES = Map.of(
+            "jdk.ExecutionSample#period", "20 ms",
+            "jdk.ObjectAllocationSample#throttle", "150/s",
+            "jdk.JavaMonitorEnter#threshold", "10 ms",
+            "jdk.SocketRead#threshold", "10 ms",
+            "jdk.SocketWrite#threshold", "10 ms",
+            "emsi.pharmacy.SaleAllocation#enabled", "true",
+            "emsi.pharmacy.SaleAllocation#threshold", "0 ms",
+            "emsi.pharmacy.StockRecompute#enabled", "true",
+            "emsi.pharmacy.StockRecompute#threshold", "0 ms");
+
+    private final Path directory;
+    private Recording recording;
+
+    public JfrRecordingEndpoint(@Value("${app.jfr.directory:data/jfr}") String directory) {
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("name", recording.getName());
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("duration", recording.getDuration());
+        status.put("maxAge", recording.getMaxAge());
+        status.put("size", recording.getSize());
+        status.put("destination", recording.getDestination());
+        return status;
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable Integer minutes) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Un enregistrement JFR est déjà en cours : " + recording.getName());
+        }
+        Map<String, String> settings = new LinkedHashMap<>(Configuration.getConfiguration("profile").getSettings());
+        settings.putAll(OVERRIDES);
+
+        createDirectory();
+        String name = "pharmacy-" + LocalDateTime.now().format(FILE_STAMP);
+        Recording newRecording = new Recording(settings);
+        newRecording.setName(name);
+        newRecording.setToDisk(true);
+        newRecording.setDestination(directory.resolve(name + ".jfr"));
+        newRecording.setMaxAge(Duration.ofHours(1));
+        if (minutes != null && minutes > 0) {
+            newRecording.setDuration(Duration.ofMinutes(minutes));
+        }
+        newRecording.start();
+
+        if (recording != null) {
+            recording.close();
+        }
+        recording = newRecording;
+        return status();
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording == null) {
+            throw new IllegalStateException("Aucun enregistrement JFR en cours");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Map<String, Object> status = status();
+        recording.close();
+        recording = null;
+        return status;
+    }
+
+    private void createDirectory() throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+
+    @ReadOperation
+    public Resource download(@Selector String file) {
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory) || !file.endsWith(".jfr") || !Files.isRegularFile(path)) {
+            return null;
+        }
+        return new FileSystemResource(path);
+    }
+}
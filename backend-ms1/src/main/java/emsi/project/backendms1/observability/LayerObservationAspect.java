@@ -0,0 +1,68 @@
+package emsi.project.backendms1.observability;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ouvre une observation (span + timer) autour de chaque appel de contrôleur, de service
+ * et de repository, pour découper le temps d'une requête couche par couche.
+ */
+@Aspect
+@Component
+public class LayerObservationAspect {
+
+    private final ObservationRegistry observationRegistry;
+
+    public LayerObservationAspect(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Around("within(emsi.project.backendms1.controllers..*) && execution(public * *(..))")
+    public Object observeController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("app.controller", joinPoint);
+    }
+
+    @Around("within(emsi.project.backendms1.service..*) && execution(public * *(..))")
+    public Object observeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("app.service", joinPoint);
+    }
+
+    @Around("execution(public * org.springframework.data.repository.Repository+.*(..))")
+    public Object observeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("app.repository", joinPoint);
+    }
+
+    private Object observe(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> type = "app.repository".equals(name)
+                ? repositoryInterface(joinPoint)
+                : joinPoint.getSignature().getDeclaringType();
+        String method = joinPoint.getSignature().getName();
+
+        Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(type.getSimpleName() + "#" + method)
+                .lowCardinalityKeyValue("class", type.getSimpleName())
+                .lowCardinalityKeyValue("method", method)
+                .start();
+        try (Observation.Scope ignored = observation.openScope()) {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private Class<?> repositoryInterface(ProceedingJoinPoint joinPoint) {
+        for (Class<?> candidate : joinPoint.getThis().getClass().getInterfaces()) {
+            if (candidate.getPackageName().startsWith("emsi.project.backendms1.repository")) {
+                return candidate;
+            }
+        }
+        return joinPoint.getSignature().getDeclaringType();
+    }
+}
@@ -0,0 +1,49 @@
+package emsi.project.backendms1.observability;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+/**
+ * Exporteur de spans sans backend : chaque span terminé est écrit sur une ligne du logger
+ * {@code tracing.spans}, avec traceId/spanId/parentId, durée et attributs.
+ * Rediriger ce logger vers un fichier suffit pour reconstruire les traces hors ligne.
+ */
+public class LogSpanExporter implements SpanExporter {
+
+    private static final Logger spans = LoggerFactory.getLogger("tracing.spans");
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> batch) {
+        if (!spans.isInfoEnabled()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        for (SpanData span : batch) {
+            long durationMicros = (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000;
+            spans.info("span name=\"{}\" traceId={} spanId={} parentId={} kind={} status={} durationUs={} attributes={}",
+                    span.getName(),
+                    span.getTraceId(),
+                    span.getSpanId(),
+                    span.getParentSpanContext().isValid() ? span.getParentSpanId() : "-",
+                    span.getKind(),
+                    span.getStatus().getStatusCode(),
+                    durationMicros,
+                    span.getAttributes().asMap());
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,35 @@
+package emsi.project.backendms1.observability;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR émis par {@code VenteService} pour chaque vente créée ou modifiée.
+ * La durée de l'événement couvre l'allocation FEFO des lots et l'enregistrement de la vente.
+ */
+@Name("emsi.pharmacy.SaleAllocation")
+@Label("Sale Allocation")
+@Category({"Pharmacy", "Ventes"})
+@Description("Allocation des lots d'une vente (FEFO) et enregistrement")
+@StackTrace(false)
+public class SaleAllocationEvent extends Event {
+
+    @Label("Vente Id")
+    public long venteId;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Lignes")
+    public int lignes;
+
+    @Label("Lots touchés")
+    public int lotsTouches;
+
+    @Label("Quantité totale")
+    public int quantiteTotale;
+}
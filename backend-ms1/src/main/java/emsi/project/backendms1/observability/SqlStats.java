@@ -0,0 +1,85 @@
+package emsi.project.backendms1.observability;
+
+/**
+ * Compteurs SQL du thread courant (requêtes émises, entités hydratées, temps JDBC).
+ * Alimentés par {@link SqlStatsStatementInspector}, {@link SqlStatsSessionListener}
+ * et {@link SqlStatsIntegrator}; lus par le filtre HTTP, l'aspect des services et les tests.
+ */
+public final class SqlStats {
+
+    private static final ThreadLocal<Counters> CURRENT = ThreadLocal.withInitial(Counters::new);
+
+    private SqlStats() {
+    }
+
+    public static void reset() {
+        CURRENT.get().clear();
+    }
+
+    public static Snapshot snapshot() {
+        Counters c = CURRENT.get();
+        return new Snapshot(c.statements, c.selects, c.inserts, c.updates, c.deletes, c.entitiesLoaded, c.jdbcNanos);
+    }
+
+    static void recordStatement(String sql) {
+        Counters c = CURRENT.get();
+        c.statements++;
+        switch (firstKeyword(sql)) {
+            case "select", "with" -> c.selects++;
+            case "insert" -> c.inserts++;
+            case "update" -> c.updates++;
+            case "delete" -> c.deletes++;
+            default -> {
+            }
+        }
+    }
+
+    static void recordEntityLoaded() {
+        CURRENT.get().entitiesLoaded++;
+    }
+
+    static void recordJdbcTime(long nanos) {
+        CURRENT.get().jdbcNanos += nanos;
+    }
+
+    private static String firstKeyword(String sql) {
+        int start = 0;
+        int len = sql.length();
+        while (start < len && !Character.isLetter(sql.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < len && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        return sql.substring(start, end).toLowerCase();
+    }
+
+    private static final class Counters {
+        long statements;
+        long selects;
+        long inserts;
+        long updates;
+        long deletes;
+        long entitiesLoaded;
+        long jdbcNanos;
+
+        void clear() {
+            statements = selects = inserts = updates = deletes = entitiesLoaded = jdbcNanos = 0;
+        }
+    }
+
+    public record Snapshot(long statements, long selects, long inserts, long updates, long deletes,
+                           long entitiesLoaded, long jdbcNanos) {
+
+        public Snapshot minus(Snapshot before) {
+            return new Snapshot(statements - before.statements, selects - before.selects,
+                    inserts - before.inserts, updates - before.updates, deletes - before.deletes,
+                    entitiesLoaded - before.entitiesLoaded, jdbcNanos - before.jdbcNanos);
+        }
+
+        public double jdbcMillis() {
+            return jdbcNanos / 1_000_000.0;
+        }
+    }
+}
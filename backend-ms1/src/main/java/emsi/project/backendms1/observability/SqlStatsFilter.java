@@ -0,0 +1,142 @@
+package emsi.project.backendms1.observability;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerMappingIntrospector;
+import org.springframework.web.servlet.handler.MatchableHandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remet à zéro les compteurs SQL au début de chaque requête HTTP et publie, à la fin,
+ * le nombre d'instructions, d'entités hydratées et le temps JDBC par endpoint.
+ * Avec {@code app.sql-stats.response-headers=true} (profil dev), les mêmes valeurs
+ * sont renvoyées dans les en-têtes {@code X-Sql-*}; la réponse est alors bufferisée
+ * pour compter aussi le lazy loading déclenché pendant la sérialisation JSON. Les handlers qui
+ * écrivent eux-mêmes leur réponse ({@code void}, listes {@code ?fields=} en flux) ou rendent un
+ * corps déjà encodé ({@code byte[]}, catalogue pré-sérialisé) ne sont pas bufferisés : leurs
+ * valeurs sont journalisées au lieu d'être envoyées en en-têtes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatsFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final boolean responseHeaders;
+    private final ObjectProvider<HandlerMappingIntrospector> introspector;
+
+    public SqlStatsFilter(MeterRegistry meterRegistry,
+                          @Value("${app.sql-stats.response-headers:false}") boolean responseHeaders,
+                          ObjectProvider<HandlerMappingIntrospector> introspector) {
+        this.meterRegistry = meterRegistry;
+        this.responseHeaders = responseHeaders;
+        this.introspector = introspector;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        SqlStats.reset();
+        if (!responseHeaders) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                record(request, SqlStats.snapshot());
+            }
+            return;
+        }
+        if (sansTampon(request)) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                SqlStats.Snapshot stats = SqlStats.snapshot();
+                record(request, stats);
+                log.info("{} {} : {} instructions SQL, {} entités, {} ms JDBC", request.getMethod(), request.getRequestURI(),
+                        stats.statements(), stats.entitiesLoaded(), String.format("%.3f", stats.jdbcMillis()));
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+        } finally {
+            SqlStats.Snapshot stats = SqlStats.snapshot();
+            record(request, stats);
+            response.setHeader("X-Sql-Statements", Long.toString(stats.statements()));
+            response.setHeader("X-Sql-Entities", Long.toString(stats.entitiesLoaded()));
+            response.setHeader("X-Sql-Time-Ms", String.format("%.3f", stats.jdbcMillis()));
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    // Handler qui écrit la réponse lui-même ou rend des octets prêts à envoyer : le tampon casserait
+    // le flux et doublerait la copie
+    private boolean sansTampon(HttpServletRequest request) {
+        HandlerMappingIntrospector mappings = introspector.getIfAvailable();
+        if (mappings == null) {
+            return false;
+        }
+        ServletRequestPathUtils.parseAndCache(request);
+        try {
+            MatchableHandlerMapping mapping = mappings.getMatchableHandlerMapping(request);
+            HandlerExecutionChain chaine = mapping == null ? null : mapping.getHandler(request);
+            if (chaine == null || !(chaine.getHandler() instanceof HandlerMethod methode)) {
+                return false;
+            }
+            ResolvableType type = ResolvableType.forMethodReturnType(methode.getMethod());
+            if (type.resolve() == ResponseEntity.class) {
+                type = type.getGeneric(0);
+            }
+            return methode.isVoid() || type.resolve() == byte[].class;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            ServletRequestPathUtils.clearParsedRequestPath(request);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStats.Snapshot stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String method = request.getMethod();
+
+        DistributionSummary.builder("http.server.sql.statements")
+                .description("Instructions SQL émises par requête HTTP")
+                .tags("uri", uri, "method", method)
+                .register(meterRegistry)
+                .record(stats.statements());
+        DistributionSummary.builder("http.server.sql.entities")
+                .description("Entités hydratées par requête HTTP")
+                .tags("uri", uri, "method", method)
+                .register(meterRegistry)
+                .record(stats.entitiesLoaded());
+        Timer.builder("http.server.sql.time")
+                .description("Temps JDBC cumulé par requête HTTP")
+                .tags("uri", uri, "method", method)
+                .register(meterRegistry)
+                .record(stats.jdbcNanos(), TimeUnit.NANOSECONDS);
+    }
+}
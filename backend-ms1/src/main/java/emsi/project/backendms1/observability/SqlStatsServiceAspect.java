@@ -0,0 +1,46 @@
+package emsi.project.backendms1.observability;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publie le nombre d'instructions SQL et d'entités hydratées par appel de méthode de service.
+ * Les appels imbriqués sont inclus dans le total de la méthode appelante.
+ */
+@Aspect
+@Component
+public class SqlStatsServiceAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatsServiceAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("within(emsi.project.backendms1.service..*) && execution(public * *(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        SqlStats.Snapshot before = SqlStats.snapshot();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            SqlStats.Snapshot delta = SqlStats.snapshot().minus(before);
+            String service = joinPoint.getSignature().getDeclaringType().getSimpleName();
+            String method = joinPoint.getSignature().getName();
+
+            DistributionSummary.builder("service.sql.statements")
+                    .description("Instructions SQL émises par appel de service")
+                    .tags("service", service, "method", method)
+                    .register(meterRegistry)
+                    .record(delta.statements());
+            DistributionSummary.builder("service.sql.entities")
+                    .description("Entités hydratées par appel de service")
+                    .tags("service", service, "method", method)
+                    .register(meterRegistry)
+                    .record(delta.entitiesLoaded());
+        }
+    }
+}
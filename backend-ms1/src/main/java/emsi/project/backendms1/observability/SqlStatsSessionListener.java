@@ -0,0 +1,33 @@
+package emsi.project.backendms1.observability;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Mesure le temps passé dans les exécutions JDBC (requêtes et batchs) d'une session.
+ * Déclaré via {@code hibernate.session.events.auto}, une instance par session.
+ */
+public class SqlStatsSessionListener implements SessionEventListener {
+
+    private long statementStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlStats.recordJdbcTime(System.nanoTime() - statementStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlStats.recordJdbcTime(System.nanoTime() - batchStart);
+    }
+}
@@ -0,0 +1,16 @@
+package emsi.project.backendms1.observability;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Compte chaque instruction SQL préparée par Hibernate.
+ * Déclaré via {@code hibernate.session_factory.statement_inspector}.
+ */
+public class SqlStatsStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        SqlStats.recordStatement(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,33 @@
+package emsi.project.backendms1.observability;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR émis par {@code StockService} à chaque mouvement sur un lot.
+ * La durée de l'événement couvre la mise à jour de la valorisation du produit; le stock total
+ * n'est plus recalculé, il se lit depuis le journal.
+ */
+@Name("emsi.pharmacy.StockRecompute")
+@Label("Stock Recompute")
+@Category({"Pharmacy", "Stock"})
+@Description("Mouvement de lot et valorisation du produit")
+@StackTrace(false)
+public class StockRecomputeEvent extends Event {
+
+    @Label("Lot Id")
+    public long lotId;
+
+    @Label("Produit Id")
+    public long produitId;
+
+    @Label("Delta")
+    public int delta;
+
+    @Label("Quantité du lot")
+    public int quantiteLot;
+}
@@ -1,11 +1,17 @@
 package emsi.project.backendms1.repository;
 
+import emsi.project.backendms1.dtos.LotDeStockDto;
+import emsi.project.backendms1.dtos.LotExpirantDto;
+import emsi.project.backendms1.dtos.LotsResume;
 import emsi.project.backendms1.models.LotDeStock;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,5 +28,25 @@ public interface LotDeStockRepo extends JpaRepository<LotDeStock,Long> {
     List<LotDeStock> findByProduitIdOrderByDateExpirationAsc(Long produitId);
     List<LotDeStock> findByProduitIdOrderByDateExpirationDesc(Long produitId);
 
+    @Query("SELECT new emsi.project.backendms1.dtos.LotDeStockDto(l.id, l.numeroLot, l.dateExpiration, l.quantite, "
+            + "l.prixAchatHT, l.dateReception, l.produit.id) FROM LotDeStock l WHERE l.produit.id = :produitId")
+    List<LotDeStockDto> findDtoByProduitId(@Param("produitId") Long produitId);
+
+    // Lots d'une page de produits en une requête (vue stock)
+    @Query("SELECT new emsi.project.backendms1.dtos.LotDeStockDto(l.id, l.numeroLot, l.dateExpiration, l.quantite, "
+            + "l.prixAchatHT, l.dateReception, l.produit.id) FROM LotDeStock l WHERE l.produit.id IN :produitIds "
+            + "ORDER BY l.produit.id, l.dateExpiration")
+    List<LotDeStockDto> findDtoByProduitIdIn(@Param("produitIds") Collection<Long> produitIds);
+
+    @Query("SELECT new emsi.project.backendms1.dtos.LotsResume(l.produit.id, SUM(l.quantite), MIN(l.dateExpiration), COUNT(l)) "
+            + "FROM LotDeStock l WHERE l.produit.id IN :produitIds GROUP BY l.produit.id")
+    List<LotsResume> resumerParProduitIdIn(@Param("produitIds") Collection<Long> produitIds);
+
+    long countByQuantiteGreaterThanAndDateExpirationBetween(int quantite, LocalDate debut, LocalDate fin);
+
+    @Query("SELECT new emsi.project.backendms1.dtos.LotExpirantDto(l.id, l.numeroLot, l.dateExpiration, l.quantite, "
+            + "l.produit.id, l.produit.nomMedicament) FROM LotDeStock l "
+            + "WHERE l.quantite > 0 AND l.dateExpiration BETWEEN :debut AND :fin ORDER BY l.dateExpiration, l.id")
+    List<LotExpirantDto> findExpirants(@Param("debut") LocalDate debut, @Param("fin") LocalDate fin, Pageable pageable);
 
 }
@@ -0,0 +1,21 @@
+package emsi.project.backendms1.repository;
+
+import emsi.project.backendms1.dtos.MouvementStockDto;
+import emsi.project.backendms1.models.MouvementStock;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MouvementStockRepo extends JpaRepository<MouvementStock, Long> {
+
+    // Historique d'un produit, du plus récent au plus ancien
+    @Query(value = "SELECT new emsi.project.backendms1.dtos.MouvementStockDto(m.id, m.dateMouvement, m.type, "
+            + "m.produitId, m.lotId, m.quantite, m.venteId, m.motif) FROM MouvementStock m "
+            + "WHERE m.produitId = :produitId ORDER BY m.id DESC",
+            countQuery = "SELECT count(m) FROM MouvementStock m WHERE m.produitId = :produitId")
+    Page<MouvementStockDto> findDtoByProduitId(@Param("produitId") Long produitId, Pageable pageable);
+}
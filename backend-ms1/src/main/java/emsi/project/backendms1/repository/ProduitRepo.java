@@ -1,9 +1,15 @@
 package emsi.project.backendms1.repository;
 
+import emsi.project.backendms1.dtos.ProduitDto;
 import emsi.project.backendms1.models.Produit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +19,19 @@ public interface ProduitRepo extends JpaRepository<Produit,Long> {
     boolean existsByNomMedicament(String nomMedicament);
     boolean existsByCodeEAN(String codeEAN);
     Optional<Produit> findById(Long id);
+
+    // Produit avec ses lots (suppression en cascade)
+    @EntityGraph("Produit.lotDeStocks")
+    Optional<Produit> findWithLotDeStocksById(Long id);
+
+    // Catalogue : projection sur les seules colonnes rendues, sans entité managée; les références
+    // désactivées n'y figurent plus
+    List<ProduitDto> findAllProjectedByActifTrue();
+
+    Page<ProduitDto> findAllProjectedByActifTrue(Pageable pageable);
+
+    long countByActifTrue();
+
+    @Query("SELECT COUNT(p) FROM Produit p WHERE p.actif = true AND p.quantiteTotaleEnStock <= p.seuilStock")
+    long compterSousSeuil();
 }
@@ -1,9 +1,50 @@
 package emsi.project.backendms1.repository;
 
+import emsi.project.backendms1.dtos.LigneVenteDto;
+import emsi.project.backendms1.dtos.MeilleureVenteDto;
+import emsi.project.backendms1.dtos.VenteResume;
+import emsi.project.backendms1.dtos.VentesPeriode;
 import emsi.project.backendms1.models.Vente;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface VenteRepo extends JpaRepository<Vente, Long> {
+
+    // Une vente est toujours rendue avec ses lignes : chargées dans la même requête
+    @Override
+    @EntityGraph("Vente.lignesVente")
+    List<Vente> findAll();
+
+    @Override
+    @EntityGraph("Vente.lignesVente")
+    Optional<Vente> findById(Long id);
+
+    // Lecture seule : en-têtes et lignes projetés séparément, regroupés par VenteService
+    List<VenteResume> findAllProjectedByOrderByIdAsc();
+
+    Optional<VenteResume> findProjectedById(Long id);
+
+    @Query("SELECT new emsi.project.backendms1.dtos.LigneVenteDto(l.id, l.vente.id, l.produit.id, l.quantite, "
+            + "l.prixVenteTTC, l.numeroLotStock, l.dateExpiration) FROM LigneVente l ORDER BY l.vente.id, l.id")
+    List<LigneVenteDto> findAllLignesDto();
+
+    @Query("SELECT new emsi.project.backendms1.dtos.LigneVenteDto(l.id, l.vente.id, l.produit.id, l.quantite, "
+            + "l.prixVenteTTC, l.numeroLotStock, l.dateExpiration) FROM LigneVente l WHERE l.vente.id = :venteId ORDER BY l.id")
+    List<LigneVenteDto> findLignesDtoByVenteId(@Param("venteId") Long venteId);
+
+    @Query("SELECT new emsi.project.backendms1.dtos.VentesPeriode(COALESCE(SUM(v.montantTotal), 0), COUNT(v)) "
+            + "FROM Vente v WHERE v.dateVente >= :debut")
+    VentesPeriode resumerDepuis(@Param("debut") LocalDateTime debut);
+
+    @Query("SELECT new emsi.project.backendms1.dtos.MeilleureVenteDto(l.produit.id, l.produit.nomMedicament, SUM(l.quantite)) "
+            + "FROM LigneVente l WHERE l.vente.dateVente >= :debut GROUP BY l.produit.id, l.produit.nomMedicament")
+    List<MeilleureVenteDto> sommerQuantitesParProduitDepuis(@Param("debut") LocalDateTime debut);
 }
@@ -0,0 +1,174 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.enums.FormeEnum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Photographie immuable du catalogue, en colonnes : un tableau primitif par attribut numérique
+ * (prix en centimes) et des chaînes dédoublonnées. Le JSON de la liste et sa version gzip sont
+ * encodés une fois à la construction, puis écrits tels quels dans chaque réponse.
+ * <p>
+ * Les produits sont triés par id. Jamais modifiée : un changement de catalogue produit une
+ * nouvelle photographie (voir {@link CatalogueSnapshotService}).
+ */
+public final class CatalogueSnapshot {
+
+    private static final long PRIX_ABSENT = Long.MIN_VALUE;
+    private static final FormeEnum[] FORMES = FormeEnum.values();
+
+    private final long version;
+    private final long[] ids;
+    private final String[] noms;
+    private final String[] codesEAN;
+    private final long[] prixVenteCentimes;
+    private final long[] prixAchatCentimes;
+    private final int[] seuils;
+    private final byte[] formes;
+    private final String[] dosages;
+    private final int[] quantites;
+    private final byte[] json;
+    private final byte[] jsonGzip;
+
+    private CatalogueSnapshot(long version, List<ProduitDto> produits, JsonFactory jsonFactory) {
+        int n = produits.size();
+        this.version = version;
+        ids = new long[n];
+        noms = new String[n];
+        codesEAN = new String[n];
+        prixVenteCentimes = new long[n];
+        prixAchatCentimes = new long[n];
+        seuils = new int[n];
+        formes = new byte[n];
+        dosages = new String[n];
+        quantites = new int[n];
+
+        Map<String, String> chaines = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ProduitDto produit = produits.get(i);
+            ids[i] = produit.id();
+            noms[i] = dedoublonner(chaines, produit.nomMedicament());
+            codesEAN[i] = produit.codeEAN();
+            prixVenteCentimes[i] = centimes(produit.prixVenteTTC());
+            prixAchatCentimes[i] = centimes(produit.prixAchatHT());
+            seuils[i] = produit.seuilStock() == null ? -1 : produit.seuilStock();
+            formes[i] = produit.forme() == null ? -1 : (byte) produit.forme().ordinal();
+            dosages[i] = dedoublonner(chaines, produit.dosage());
+            quantites[i] = produit.quantiteTotaleEnStock();
+        }
+        json = encoder(jsonFactory);
+        jsonGzip = gzip(json);
+    }
+
+    public static CatalogueSnapshot de(long version, List<ProduitDto> produits, JsonFactory jsonFactory) {
+        List<ProduitDto> parId = produits.stream().sorted(Comparator.comparing(ProduitDto::id)).toList();
+        return new CatalogueSnapshot(version, parId, jsonFactory);
+    }
+
+    /** Version du catalogue ({@link CatalogueVersion#catalogue()}) lue avant la construction. */
+    public long version() {
+        return version;
+    }
+
+    public int taille() {
+        return ids.length;
+    }
+
+    /** @return le produit d'id donné, ou {@code null} s'il n'est pas au catalogue */
+    public ProduitDto produit(long id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? null : ligne(i);
+    }
+
+    /** Ids des produits retenus par le filtre, par id croissant. */
+    public long[] ids(Predicate<ProduitDto> filtre) {
+        return IntStream.range(0, ids.length).filter(i -> filtre.test(ligne(i))).mapToLong(i -> ids[i]).toArray();
+    }
+
+    public byte[] json() {
+        return json;
+    }
+
+    public byte[] jsonGzip() {
+        return jsonGzip;
+    }
+
+    private ProduitDto ligne(int i) {
+        return new ProduitDto(ids[i], noms[i], codesEAN[i], prix(prixVenteCentimes[i]), prix(prixAchatCentimes[i]),
+                seuils[i] < 0 ? null : seuils[i], formes[i] < 0 ? null : FORMES[formes[i]], dosages[i], quantites[i]);
+    }
+
+    // Même rendu que ProduitDto sérialisé par Jackson : mêmes noms, même ordre, nulls inclus
+    private byte[] encoder(JsonFactory jsonFactory) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, ids.length * 200));
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            gen.writeStartArray();
+            for (int i = 0; i < ids.length; i++) {
+                gen.writeStartObject();
+                gen.writeNumberField("id", ids[i]);
+                gen.writeStringField("nomMedicament", noms[i]);
+                gen.writeStringField("codeEAN", codesEAN[i]);
+                ecrirePrix(gen, "prixVenteTTC", prixVenteCentimes[i]);
+                ecrirePrix(gen, "prixAchatHT", prixAchatCentimes[i]);
+                if (seuils[i] < 0) {
+                    gen.writeNullField("seuilStock");
+                } else {
+                    gen.writeNumberField("seuilStock", seuils[i]);
+                }
+                gen.writeStringField("forme", formes[i] < 0 ? null : FORMES[formes[i]].name());
+                gen.writeStringField("dosage", dosages[i]);
+                gen.writeNumberField("quantiteTotaleEnStock", quantites[i]);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void ecrirePrix(JsonGenerator gen, String champ, long centimes) throws IOException {
+        if (centimes == PRIX_ABSENT) {
+            gen.writeNullField(champ);
+        } else {
+            gen.writeNumberField(champ, prix(centimes));
+        }
+    }
+
+    private static byte[] gzip(byte[] donnees) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, donnees.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(donnees);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Colonnes decimal(38,2) : le centime suffit
+    private static long centimes(BigDecimal prix) {
+        return prix == null ? PRIX_ABSENT : Montant.centimes(prix);
+    }
+
+    private static BigDecimal prix(long centimes) {
+        return centimes == PRIX_ABSENT ? null : Montant.euros(centimes);
+    }
+
+    private static String dedoublonner(Map<String, String> chaines, String valeur) {
+        return valeur == null ? null : chaines.computeIfAbsent(valeur, v -> v);
+    }
+}
@@ -0,0 +1,139 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.repository.ProduitRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tient la photographie courante du catalogue. La photographie porte le stock de chaque produit,
+ * donc chaque vente la rend périmée.
+ * <p>
+ * {@link #aJour()} rend toujours une photographie à la version courante de {@link CatalogueVersion}
+ * : la caisse relit le catalogue juste après une vente et doit y voir le nouveau stock. Une seule
+ * reconstruction tourne à la fois, les lectures concurrentes attendent la même.
+ * <p>
+ * Chaque changement du catalogue programme aussi une reconstruction en arrière-plan, espacée d'au
+ * moins {@code app.catalogue.reconstruction-intervalle-ms} : une rafale de ventes coûte une
+ * reconstruction, et la lecture suivante trouve le plus souvent une photographie déjà chaude.
+ * {@link #courant()} sert les lectures qui tolèrent un retard (libellés des analyses).
+ */
+@Service
+public class CatalogueSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogueSnapshotService.class);
+
+    @Autowired
+    private ProduitRepo productRepository;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.catalogue.reconstruction-intervalle-ms:1000}")
+    private long intervalleMs;
+
+    private volatile CatalogueSnapshot courant;
+    private final AtomicBoolean reconstructionEnCours = new AtomicBoolean();
+    private volatile long derniereReconstruction;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void demarrer() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "catalogue-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        catalogueVersion.surChangementCatalogue(this::prechauffer);
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    /** Photographie la plus récente, éventuellement en retard d'une reconstruction. */
+    public CatalogueSnapshot courant() {
+        CatalogueSnapshot snapshot = courant;
+        if (snapshot == null) {
+            return aJour();
+        }
+        if (snapshot.version() < catalogueVersion.catalogue()) {
+            prechauffer();
+        }
+        return snapshot;
+    }
+
+    /** Photographie à la version courante du catalogue, reconstruite si besoin par l'appelant. */
+    public CatalogueSnapshot aJour() {
+        long version = catalogueVersion.catalogue();
+        CatalogueSnapshot snapshot = courant;
+        if (snapshot != null && snapshot.version() >= version) {
+            return snapshot;
+        }
+        return reconstruire(version);
+    }
+
+    // Au plus une reconstruction programmée : les changements suivants sont repris par elle
+    private void prechauffer() {
+        if (courant != null && reconstructionEnCours.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::reconstruireEnArrierePlan);
+            } catch (RejectedExecutionException e) {
+                reconstructionEnCours.set(false);
+            }
+        }
+    }
+
+    private void reconstruireEnArrierePlan() {
+        try {
+            long attente = derniereReconstruction + intervalleMs - System.currentTimeMillis();
+            if (attente > 0) {
+                Thread.sleep(attente);
+            }
+            aJour();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // L'ancienne photographie reste servie, la prochaine lecture relancera la reconstruction
+            log.warn("Reconstruction de la photographie du catalogue en échec", e);
+        } finally {
+            reconstructionEnCours.set(false);
+        }
+    }
+
+    private synchronized CatalogueSnapshot reconstruire(long version) {
+        CatalogueSnapshot snapshot = courant;
+        if (snapshot != null && snapshot.version() >= version) {
+            return snapshot;
+        }
+        // Transaction en écriture, donc servie par le primaire : un réplica en retard figerait
+        // un catalogue périmé sous la nouvelle version
+        List<ProduitDto> produits = new TransactionTemplate(transactionManager)
+                .execute(status -> productRepository.findAllProjectedByActifTrue());
+        snapshot = CatalogueSnapshot.de(version, produits, objectMapper.getFactory());
+        courant = snapshot;
+        derniereReconstruction = System.currentTimeMillis();
+        return snapshot;
+    }
+}
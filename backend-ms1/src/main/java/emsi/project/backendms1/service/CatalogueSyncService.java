@@ -0,0 +1,269 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import emsi.project.backendms1.dtos.CatalogueSyncRapport;
+import emsi.project.backendms1.dtos.ErreurLigne;
+import emsi.project.backendms1.enums.FormeEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Synchronisation du catalogue avec un fichier fournisseur (CSV ou JSON), lu en flux et rapproché
+ * des produits existants par code EAN. Seules les références qui changent sont écrites, en lots
+ * JDBC : création, mise à jour (et réactivation), désactivation des références absentes du
+ * fichier. Les produits inchangés ne sont ni réécrits ni sortis du cache de second niveau.
+ * <p>
+ * Colonnes : {@code codeEAN} (obligatoire), {@code nomMedicament}, {@code prixVenteTTC},
+ * {@code prixAchatHT}, {@code seuilStock}, {@code forme}, {@code dosage}. Une valeur absente
+ * conserve celle du produit existant; pour une création, le nom, le seuil et la forme sont exigés.
+ * Les produits sans code EAN ne sont jamais touchés.
+ */
+@Service
+public class CatalogueSyncService {
+
+    private static final int TRANCHE = 1000;
+    private static final int ERREURS_MAX = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    /**
+     * @param desactiverAbsents désactive les références actives absentes du fichier (catalogue
+     *                          complet); ignoré si le fichier ne contient aucun code EAN
+     */
+    @Transactional
+    public CatalogueSyncRapport synchroniserCsv(Reader reader, boolean desactiverAbsents) throws IOException {
+        Synchronisation synchronisation = new Synchronisation();
+        LignesImport.csv(reader, synchronisation::ajouter);
+        return synchronisation.terminer(desactiverAbsents);
+    }
+
+    @Transactional
+    public CatalogueSyncRapport synchroniserJson(InputStream in, boolean desactiverAbsents) throws IOException {
+        Synchronisation synchronisation = new Synchronisation();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            LignesImport.json(parser, synchronisation::ajouter);
+        }
+        return synchronisation.terminer(desactiverAbsents);
+    }
+
+    /** État en base d'une référence, tel que lu au début de la synchronisation. */
+    private record Reference(long id, String nomMedicament, BigDecimal prixVenteTTC, BigDecimal prixAchatHT,
+                             Integer seuilStock, String forme, String dosage, boolean actif) {
+    }
+
+    private final class Synchronisation {
+
+        private final Map<String, Reference> produitsParEan = new HashMap<>();
+        private final Set<String> vus = new HashSet<>();
+        private final List<Object[]> insertions = new ArrayList<>();
+        private final List<Object[]> modifications = new ArrayList<>();
+        private final List<Long> produitsEcrits = new ArrayList<>();
+        private final List<ErreurLigne> erreurs = new ArrayList<>();
+        private long lignes;
+        private long nombreErreurs;
+        private int crees;
+        private int modifies;
+        private int inchanges;
+
+        Synchronisation() {
+            jdbcTemplate.query("SELECT id, codeean, nom_medicament, prix_ventettc, prix_achatht, seuil_stock, forme, "
+                    + "dosage, actif FROM produit WHERE codeean IS NOT NULL", rs -> {
+                produitsParEan.put(rs.getString(2), new Reference(rs.getLong(1), rs.getString(3), rs.getBigDecimal(4),
+                        rs.getBigDecimal(5), rs.getObject(6, Integer.class), rs.getString(7), rs.getString(8), rs.getBoolean(9)));
+            });
+        }
+
+        void ajouter(LignesImport.Ligne ligne) {
+            lignes++;
+            try {
+                rapprocher(ligne);
+            } catch (IllegalArgumentException e) {
+                erreur(ligne.numero(), e.getMessage());
+            }
+            if (insertions.size() + modifications.size() >= TRANCHE) {
+                ecrire();
+            }
+        }
+
+        CatalogueSyncRapport terminer(boolean desactiverAbsents) {
+            ecrire();
+            int desactives = 0;
+            // Un fichier sans aucun code EAN lisible viderait le catalogue : on n'en tire rien
+            if (desactiverAbsents && !vus.isEmpty()) {
+                List<Object[]> absents = new ArrayList<>();
+                for (Map.Entry<String, Reference> entree : produitsParEan.entrySet()) {
+                    Reference reference = entree.getValue();
+                    if (reference.actif() && !vus.contains(entree.getKey())) {
+                        absents.add(new Object[]{reference.id()});
+                        produitsEcrits.add(reference.id());
+                    }
+                }
+                if (!absents.isEmpty()) {
+                    jdbcTemplate.batchUpdate("UPDATE produit SET actif = false WHERE id = ?", absents);
+                }
+                desactives = absents.size();
+            }
+            if (crees + modifies + desactives > 0) {
+                catalogueVersion.produitsModifiesHorsJpa(produitsEcrits);
+            }
+            return new CatalogueSyncRapport(lignes, crees, modifies, inchanges, desactives, nombreErreurs,
+                    Collections.unmodifiableList(erreurs));
+        }
+
+        private void rapprocher(LignesImport.Ligne ligne) {
+            String ean = ligne.get("codeEAN");
+            if (ean == null) {
+                throw new IllegalArgumentException("Champ codeEAN manquant");
+            }
+            if (ean.length() > 13) {
+                throw new IllegalArgumentException("Code EAN trop long (13 caractères au plus): " + ean);
+            }
+            if (!vus.add(ean)) {
+                throw new IllegalArgumentException("Code EAN " + ean + " en double dans le fichier");
+            }
+
+            String nom = ligne.get("nomMedicament");
+            if (nom != null && nom.length() > 255) {
+                throw new IllegalArgumentException("Nom du médicament trop long (255 caractères au plus)");
+            }
+            BigDecimal prixVenteTTC = prix(ligne, "prixVenteTTC");
+            BigDecimal prixAchatHT = prix(ligne, "prixAchatHT");
+            Integer seuilStock = seuil(ligne);
+            String forme = forme(ligne);
+            String dosage = ligne.get("dosage");
+
+            Reference existante = produitsParEan.get(ean);
+            if (existante == null) {
+                if (nom == null || seuilStock == null || forme == null) {
+                    throw new IllegalArgumentException("Nouveau produit " + ean + " : nomMedicament, seuilStock et forme sont obligatoires");
+                }
+                insertions.add(new Object[]{nom, ean, prixVenteTTC, prixAchatHT, seuilStock, forme, dosage});
+                crees++;
+                return;
+            }
+
+            Reference cible = new Reference(existante.id(),
+                    nom != null ? nom : existante.nomMedicament(),
+                    prixVenteTTC != null ? prixVenteTTC : existante.prixVenteTTC(),
+                    prixAchatHT != null ? prixAchatHT : existante.prixAchatHT(),
+                    seuilStock != null ? seuilStock : existante.seuilStock(),
+                    forme != null ? forme : existante.forme(),
+                    dosage != null ? dosage : existante.dosage(),
+                    true);
+            if (identiques(existante, cible)) {
+                inchanges++;
+                return;
+            }
+            modifications.add(new Object[]{cible.nomMedicament(), cible.prixVenteTTC(), cible.prixAchatHT(),
+                    cible.seuilStock(), cible.forme(), cible.dosage(), cible.id()});
+            produitsEcrits.add(cible.id());
+            modifies++;
+        }
+
+        private void ecrire() {
+            if (!insertions.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO produit (nom_medicament, codeean, prix_ventettc, prix_achatht, "
+                        + "seuil_stock, forme, dosage, actif) VALUES (?, ?, ?, ?, ?, ?, ?, true)",
+                        insertions);
+                insertions.clear();
+            }
+            if (!modifications.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE produit SET nom_medicament = ?, prix_ventettc = ?, prix_achatht = ?, "
+                        + "seuil_stock = ?, forme = ?, dosage = ?, actif = true WHERE id = ?", modifications);
+                modifications.clear();
+            }
+        }
+
+        // Prix comparés par valeur : 12.5 et 12.50 ne déclenchent pas d'écriture
+        private boolean identiques(Reference a, Reference b) {
+            return a.actif() == b.actif()
+                    && Objects.equals(a.seuilStock(), b.seuilStock())
+                    && Objects.equals(a.nomMedicament(), b.nomMedicament())
+                    && Objects.equals(a.forme(), b.forme())
+                    && Objects.equals(a.dosage(), b.dosage())
+                    && memeMontant(a.prixVenteTTC(), b.prixVenteTTC())
+                    && memeMontant(a.prixAchatHT(), b.prixAchatHT());
+        }
+
+        private boolean memeMontant(BigDecimal a, BigDecimal b) {
+            return a == null ? b == null : b != null && a.compareTo(b) == 0;
+        }
+
+        private BigDecimal prix(LignesImport.Ligne ligne, String champ) {
+            String valeur = ligne.get(champ);
+            if (valeur == null) {
+                return null;
+            }
+            BigDecimal prix;
+            try {
+                prix = new BigDecimal(valeur.replace(',', '.'));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Prix invalide (" + champ + "): " + valeur);
+            }
+            if (prix.signum() < 0) {
+                throw new IllegalArgumentException("Le prix ne peut pas être négatif (" + champ + ")");
+            }
+            return prix;
+        }
+
+        private Integer seuil(LignesImport.Ligne ligne) {
+            String valeur = ligne.get("seuilStock");
+            if (valeur == null) {
+                return null;
+            }
+            int seuil;
+            try {
+                seuil = Integer.parseInt(valeur);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Seuil de stock invalide: " + valeur);
+            }
+            if (seuil < 0) {
+                throw new IllegalArgumentException("Le seuil de stock ne peut pas être négatif");
+            }
+            return seuil;
+        }
+
+        private String forme(LignesImport.Ligne ligne) {
+            String valeur = ligne.get("forme");
+            if (valeur == null) {
+                return null;
+            }
+            try {
+                return FormeEnum.valueOf(valeur.toUpperCase(Locale.ROOT)).name();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Forme inconnue: " + valeur);
+            }
+        }
+
+        private void erreur(long ligne, String message) {
+            nombreErreurs++;
+            if (erreurs.size() < ERREURS_MAX) {
+                erreurs.add(new ErreurLigne(ligne, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.MouvementStock;
+import emsi.project.backendms1.models.Produit;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions du catalogue (table produit) et du stock (table lot_de_stock), incrémentées après le
+ * commit de chaque écriture d'entité. Elles servent d'ETag aux listes : un client dont l'ETag est
+ * à jour reçoit un 304 sans requête SQL. Un mouvement du journal de stock change la quantité de
+ * son lot et le stock total de son produit sans écrire ni l'un ni l'autre : il incrémente les deux
+ * versions et évince leurs entrées du cache de second niveau.
+ * <p>
+ * Les compteurs sont propres à l'instance et repartent d'une époque nouvelle à chaque démarrage.
+ * Les écritures JDBC de l'application le signalent par {@link #modifieHorsJpa}; un script SQL
+ * externe ne les incrémente pas.
+ */
+@Component
+public class CatalogueVersion {
+
+    private final String epoque = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong catalogue = new AtomicLong();
+    private final AtomicLong stock = new AtomicLong();
+    private final List<Runnable> ecouteursCatalogue = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    void ecouterLesCommits() {
+        Ecouteur ecouteur = new Ecouteur();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, ecouteur);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, ecouteur);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, ecouteur);
+    }
+
+    /**
+     * Écritures JDBC (imports en masse), invisibles de Hibernate : au commit de la transaction
+     * courante, ou immédiatement hors transaction, incrémente les versions et vide les régions
+     * du cache de second niveau concernées.
+     */
+    public void modifieHorsJpa(boolean catalogueModifie, boolean stockModifie) {
+        Runnable incrementer = () -> {
+            if (catalogueModifie) {
+                entityManagerFactory.getCache().evict(Produit.class);
+                changementCatalogue();
+            }
+            if (stockModifie) {
+                entityManagerFactory.getCache().evict(LotDeStock.class);
+                stock.incrementAndGet();
+            }
+        };
+        apresCommit(incrementer);
+    }
+
+    /**
+     * Variante ciblée pour le catalogue : seules les entrées des produits écrits quittent le cache
+     * de second niveau, les autres restent chaudes.
+     */
+    public void produitsModifiesHorsJpa(Collection<Long> produitIds) {
+        apresCommit(() -> {
+            Cache cache = entityManagerFactory.getCache();
+            for (Long id : produitIds) {
+                cache.evict(Produit.class, id);
+            }
+            changementCatalogue();
+        });
+    }
+
+    private static void apresCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /** Appelé après chaque changement du catalogue validé, sur le thread qui a validé : doit rendre la main aussitôt. */
+    public void surChangementCatalogue(Runnable ecouteur) {
+        ecouteursCatalogue.add(ecouteur);
+    }
+
+    private void changementCatalogue() {
+        catalogue.incrementAndGet();
+        ecouteursCatalogue.forEach(Runnable::run);
+    }
+
+    public long catalogue() {
+        return catalogue.get();
+    }
+
+    public long stock() {
+        return stock.get();
+    }
+
+    /** ETag fort de la liste des produits; {@code variante} distingue les représentations (fields, pagination). */
+    public String etagProduits(String variante) {
+        return etag("p", catalogue.get(), variante);
+    }
+
+    /** ETag fort d'une photographie du catalogue, à la version qu'elle porte. */
+    public String etagProduits(long version, String variante) {
+        return etag("p", version, variante);
+    }
+
+    /** Les lots dépendent aussi du catalogue : un produit supprimé rend ses lots introuvables. */
+    public String etagLots(String variante) {
+        return etag("l", catalogue.get() + "." + stock.get(), variante);
+    }
+
+    private String etag(String liste, Object version, String variante) {
+        String etag = "\"" + liste + epoque + "." + version;
+        return (variante == null || variante.isEmpty() ? etag : etag + ";" + variante) + "\"";
+    }
+
+    private void incrementer(Object entite) {
+        if (entite instanceof Produit) {
+            changementCatalogue();
+        } else if (entite instanceof LotDeStock) {
+            stock.incrementAndGet();
+        } else if (entite instanceof MouvementStock mouvement) {
+            Cache cache = entityManagerFactory.getCache();
+            cache.evict(LotDeStock.class, mouvement.getLotId());
+            cache.evict(Produit.class, mouvement.getProduitId());
+            stock.incrementAndGet();
+            changementCatalogue();
+        }
+    }
+
+    private final class Ecouteur implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+            PostCommitDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            incrementer(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            incrementer(event.getEntity());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            incrementer(event.getEntity());
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            Class<?> classe = persister.getMappedClass();
+            return classe == Produit.class || classe == LotDeStock.class || classe == MouvementStock.class;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package emsi.project.backendms1.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Champs qu'un client peut demander avec {@code ?fields=} sur une liste, et leur chemin JPQL.
+ * Seules les colonnes demandées sont sélectionnées; {@code id} est toujours rendu.
+ */
+public final class ChampsPartiels {
+
+    public static final ChampsPartiels PRODUITS = new ChampsPartiels("Produit", "e.actif = true", "e.id", Map.of(
+            "id", "e.id",
+            "nomMedicament", "e.nomMedicament",
+            "codeEAN", "e.codeEAN",
+            "prixVenteTTC", "e.prixVenteTTC",
+            "prixAchatHT", "e.prixAchatHT",
+            "seuilStock", "e.seuilStock",
+            "forme", "e.forme",
+            "dosage", "e.dosage",
+            "quantiteTotaleEnStock", "e.quantiteTotaleEnStock"));
+
+    public static final ChampsPartiels LOTS = new ChampsPartiels("LotDeStock", "e.produit.id = :produitId", "e.dateExpiration, e.id", Map.of(
+            "id", "e.id",
+            "numeroLot", "e.numeroLot",
+            "dateExpiration", "e.dateExpiration",
+            "quantite", "e.quantite",
+            "prixAchatHT", "e.prixAchatHT",
+            "dateReception", "e.dateReception",
+            "produitId", "e.produit.id"));
+
+    // En-têtes seulement : les lignes restent sur la liste complète (sans fields)
+    public static final ChampsPartiels VENTES = new ChampsPartiels("Vente", "", "e.id", Map.of(
+            "id", "e.id",
+            "dateVente", "e.dateVente",
+            "montantTotal", "e.montantTotal"));
+
+    private final String entite;
+    private final String condition;
+    private final String tri;
+    private final Map<String, String> chemins;
+
+    private ChampsPartiels(String entite, String condition, String tri, Map<String, String> chemins) {
+        this.entite = entite;
+        this.condition = condition;
+        this.tri = tri;
+        this.chemins = chemins;
+    }
+
+    /**
+     * @param fields liste séparée par des virgules, telle que reçue dans la requête
+     * @return les champs demandés, {@code id} en tête, sans doublon
+     * @throws ChampInconnuException si un champ n'existe pas pour cette liste
+     */
+    public List<String> parser(String fields) {
+        LinkedHashMap<String, Boolean> champs = new LinkedHashMap<>();
+        champs.put("id", true);
+        for (String champ : fields.split(",")) {
+            String nom = champ.trim();
+            if (nom.isEmpty()) {
+                continue;
+            }
+            if (!chemins.containsKey(nom)) {
+                throw new ChampInconnuException("Champ inconnu: " + nom + ". Champs disponibles: "
+                        + String.join(", ", chemins.keySet().stream().sorted().toList()));
+            }
+            champs.put(nom, true);
+        }
+        return new ArrayList<>(champs.keySet());
+    }
+
+    String jpql(List<String> champs) {
+        StringBuilder jpql = new StringBuilder("SELECT ");
+        for (int i = 0; i < champs.size(); i++) {
+            if (i > 0) {
+                jpql.append(", ");
+            }
+            jpql.append(chemins.get(champs.get(i)));
+        }
+        jpql.append(" FROM ").append(entite).append(" e");
+        if (!condition.isEmpty()) {
+            jpql.append(" WHERE ").append(condition);
+        }
+        return jpql.append(" ORDER BY ").append(tri).toString();
+    }
+
+    /** Champ demandé absent de la liste : rendu en 400 par {@code ChampsPartielsAdvice}. */
+    public static final class ChampInconnuException extends IllegalArgumentException {
+
+        ChampInconnuException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package emsi.project.backendms1.service;
+
+/**
+ * Count-min sketch sur des clés {@code long} : {@code profondeur} lignes de {@code largeur} compteurs,
+ * une fonction de hachage par ligne. L'estimation d'une clé est le minimum de ses compteurs : elle
+ * ne sous-estime jamais (tant que les retraits ne dépassent pas les ajouts) et surestime d'au plus
+ * {@code e·total/largeur} avec une probabilité {@code 1 - e^-profondeur}.
+ * <p>
+ * Non synchronisé : l'appelant protège les accès.
+ */
+final class CountMinSketch {
+
+    private static final long[] SEMENCES = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L};
+
+    private final int largeur;
+    private final long[][] compteurs;
+    private long total;
+
+    /** @param largeur puissance de deux */
+    CountMinSketch(int profondeur, int largeur) {
+        if (profondeur < 1 || profondeur > SEMENCES.length) {
+            throw new IllegalArgumentException("Profondeur entre 1 et " + SEMENCES.length);
+        }
+        if (Integer.bitCount(largeur) != 1) {
+            throw new IllegalArgumentException("La largeur doit être une puissance de deux");
+        }
+        this.largeur = largeur;
+        this.compteurs = new long[profondeur][largeur];
+    }
+
+    /**
+     * Ajoute {@code n} à la clé ({@code n} négatif pour un retrait).
+     *
+     * @return la nouvelle estimation de la clé
+     */
+    long ajouter(long cle, long n) {
+        long estimation = Long.MAX_VALUE;
+        for (int ligne = 0; ligne < compteurs.length; ligne++) {
+            long[] compteursLigne = compteurs[ligne];
+            int i = index(cle, ligne);
+            compteursLigne[i] += n;
+            estimation = Math.min(estimation, compteursLigne[i]);
+        }
+        total += n;
+        return estimation;
+    }
+
+    long estimer(long cle) {
+        long estimation = Long.MAX_VALUE;
+        for (int ligne = 0; ligne < compteurs.length; ligne++) {
+            estimation = Math.min(estimation, compteurs[ligne][index(cle, ligne)]);
+        }
+        return estimation;
+    }
+
+    /** Somme de tous les ajouts et retraits. */
+    long total() {
+        return total;
+    }
+
+    /** Surestimation maximale d'une clé, au seuil de confiance du sketch. */
+    long erreurMax() {
+        return (long) Math.ceil(Math.E * Math.max(total, 0) / largeur);
+    }
+
+    private int index(long cle, int ligne) {
+        // Finaliseur de SplitMix64 : les ids consécutifs se répartissent sur toute la ligne
+        long x = cle ^ SEMENCES[ligne];
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        x = x ^ (x >>> 31);
+        return (int) x & (largeur - 1);
+    }
+}
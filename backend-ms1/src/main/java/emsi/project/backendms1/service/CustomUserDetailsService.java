@@ -3,19 +3,26 @@ package emsi.project.backendms1.service;
 import emsi.project.backendms1.models.User;
 import emsi.project.backendms1.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 @Service
 
 public class CustomUserDetailsService implements UserDetailsService {
     private final UserRepository userRepository;
 
+    // Comptes administrateurs (/actuator/jfr) : ROLE_ADMIN s'ajoute à leur rôle enregistré
+    @Value("${app.securite.admins:}")
+    private Set<String> admins = Set.of();
+
     public CustomUserDetailsService(UserRepository userRepository) {
         this.userRepository = userRepository;
     }
@@ -32,10 +39,16 @@ public class CustomUserDetailsService implements UserDetailsService {
             role = "ROLE_" + role;
         }
 
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority(role));
+        if (admins.contains(user.getUsername()) && !role.equals("ROLE_ADMIN")) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
+        }
+
         return new org.springframework.security.core.userdetails.User(
                 user.getUsername(),
                 user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority(role))
+                authorities
         );
 
     }
@@ -0,0 +1,39 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.models.LotDeStock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocation FEFO (First Expired, First Out) d'une quantité sur des lots déjà triés
+ * par date d'expiration croissante. Pur calcul : ne modifie ni les lots ni la base.
+ */
+public final class FefoAllocator {
+
+    private FefoAllocator() {
+    }
+
+    public static Resultat allocate(List<LotDeStock> lotsParExpiration, int quantite) {
+        List<Prise> prises = new ArrayList<>(Math.min(lotsParExpiration.size(), 4));
+        int reste = quantite;
+        for (LotDeStock lot : lotsParExpiration) {
+            if (reste == 0) break;
+
+            int aPrendre = Math.min(reste, lot.getQuantite());
+            if (aPrendre > 0) {
+                prises.add(new Prise(lot, aPrendre));
+                reste -= aPrendre;
+            }
+        }
+        return new Resultat(prises, reste);
+    }
+
+    /** Quantité prélevée sur un lot. */
+    public record Prise(LotDeStock lot, int quantite) {
+    }
+
+    /** Prélèvements à effectuer et quantité qui n'a pas pu être allouée. */
+    public record Resultat(List<Prise> prises, int reste) {
+    }
+}
@@ -0,0 +1,101 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.enums.PeriodeVentes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Quantités vendues par produit sur la période calendaire en cours : un {@link CountMinSketch} et un
+ * tas minimum des produits candidats au classement. Un produit dont l'estimation dépasse le plus
+ * petit candidat prend sa place; un produit évincé garde ses compteurs dans le sketch et revient
+ * avec son total à sa prochaine vente.
+ * <p>
+ * Quand la période se termine, la fenêtre repart à zéro sur la suivante. Thread-safe.
+ */
+final class FenetreVentes {
+
+    record Candidat(long produitId, long quantite) {
+    }
+
+    private static final Comparator<Candidat> PLUS_PETIT = Comparator.comparingLong(Candidat::quantite)
+            .thenComparing(Candidat::produitId, Comparator.reverseOrder());
+
+    private final PeriodeVentes periode;
+    private final int capacite;
+    private final int profondeur;
+    private final int largeur;
+    private final Map<Long, Candidat> candidats = new HashMap<>();
+    private final PriorityQueue<Candidat> tas = new PriorityQueue<>(PLUS_PETIT);
+    private LocalDateTime debut;
+    private CountMinSketch sketch;
+
+    FenetreVentes(PeriodeVentes periode, LocalDateTime maintenant, int capacite, int profondeur, int largeur) {
+        this.periode = periode;
+        this.capacite = capacite;
+        this.profondeur = profondeur;
+        this.largeur = largeur;
+        reinitialiser(periode.debut(maintenant));
+    }
+
+    /**
+     * Compte une ligne de vente ({@code quantite} négative pour une ligne supprimée). Une vente d'une
+     * période déjà close est ignorée.
+     */
+    synchronized void ajouter(LocalDateTime dateVente, long produitId, long quantite) {
+        LocalDateTime periodeVente = periode.debut(dateVente);
+        if (periodeVente.isBefore(debut)) {
+            return;
+        }
+        if (periodeVente.isAfter(debut)) {
+            reinitialiser(periodeVente);
+        }
+        long estimation = sketch.ajouter(produitId, quantite);
+        Candidat ancien = candidats.remove(produitId);
+        if (ancien != null) {
+            tas.remove(ancien);
+        }
+        if (estimation <= 0) {
+            return;
+        }
+        Candidat candidat = new Candidat(produitId, estimation);
+        if (candidats.size() < capacite) {
+            inserer(candidat);
+        } else if (PLUS_PETIT.compare(candidat, tas.peek()) > 0) {
+            candidats.remove(tas.poll().produitId());
+            inserer(candidat);
+        }
+    }
+
+    /** Les {@code k} premiers candidats, par quantité estimée décroissante. */
+    synchronized Classement classement(LocalDateTime maintenant, int k) {
+        LocalDateTime periodeCourante = periode.debut(maintenant);
+        if (periodeCourante.isAfter(debut)) {
+            reinitialiser(periodeCourante);
+        }
+        List<Candidat> premiers = new ArrayList<>(candidats.values());
+        premiers.sort(PLUS_PETIT.reversed());
+        return new Classement(debut, sketch.total(), sketch.erreurMax(),
+                List.copyOf(premiers.subList(0, Math.min(k, premiers.size()))));
+    }
+
+    record Classement(LocalDateTime debut, long total, long erreurMax, List<Candidat> candidats) {
+    }
+
+    private void inserer(Candidat candidat) {
+        candidats.put(candidat.produitId(), candidat);
+        tas.add(candidat);
+    }
+
+    private void reinitialiser(LocalDateTime nouveauDebut) {
+        debut = nouveauDebut;
+        sketch = new CountMinSketch(profondeur, largeur);
+        candidats.clear();
+        tas.clear();
+    }
+}
@@ -0,0 +1,157 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.DemandeRapport;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Requêtes des rapports en arrière-plan, par tranches : chaque tranche reprend après le dernier id
+ * lu (produit ou lot), si bien qu'aucune requête ne parcourt toute la période d'un coup ni ne garde
+ * de curseur ouvert entre deux tranches. Le CSV est séparé par des points-virgules, comme les imports.
+ */
+final class GenerateurRapports {
+
+    /**
+     * Tranche écrite : id à partir duquel reprendre, unités d'avancement parcourues (produits ou
+     * lots), lignes CSV écrites.
+     */
+    record Tranche(long curseur, int unites, int lignes, boolean derniere) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int taille;
+
+    GenerateurRapports(JdbcTemplate jdbcTemplate, int taille) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taille = taille;
+    }
+
+    String entete(DemandeRapport demande) {
+        return switch (demande.type()) {
+            case VENTES_PAR_PRODUIT -> "produit_id;nom_medicament;quantite_vendue;chiffre_affaires;cout_ventes;marge;"
+                    + "quantite_vendue_sans_cout\n";
+            case EXPIRATIONS -> "lot_id;numero_lot;date_expiration;produit_id;nom_medicament;quantite;prix_achat_ht;valeur\n";
+            case VALORISATION -> "produit_id;nom_medicament;quantite_stock;quantite_sans_cout;valeur_stock;quantite_vendue;"
+                    + "quantite_vendue_sans_cout;chiffre_affaires;cout_ventes;marge\n";
+        };
+    }
+
+    /** Nombre d'unités à parcourir, pour l'avancement. */
+    long total(DemandeRapport demande) {
+        return switch (demande.type()) {
+            case VENTES_PAR_PRODUIT -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM produit", Long.class);
+            case EXPIRATIONS -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lot_de_stock l "
+                    + "WHERE l.date_expiration BETWEEN ? AND ? AND " + JournalStockService.QUANTITE_LOT + " > 0", Long.class,
+                    Date.valueOf(demande.debut()), Date.valueOf(demande.fin()));
+            case VALORISATION -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM valorisation_produit", Long.class);
+        };
+    }
+
+    Tranche suivante(DemandeRapport demande, long curseur, Writer sortie) {
+        return switch (demande.type()) {
+            case VENTES_PAR_PRODUIT -> ventesParProduit(demande, curseur, sortie);
+            case EXPIRATIONS -> expirations(demande, curseur, sortie);
+            case VALORISATION -> valorisation(curseur, sortie);
+        };
+    }
+
+    // Une tranche de produits, puis les ventes de la période pour ces seuls produits (index sur produit_id)
+    private Tranche ventesParProduit(DemandeRapport demande, long curseur, Writer sortie) {
+        List<Object[]> produits = jdbcTemplate.query("SELECT id, nom_medicament FROM produit WHERE id > ? ORDER BY id LIMIT ?",
+                (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2)}, curseur, taille);
+        if (produits.isEmpty()) {
+            return new Tranche(curseur, 0, 0, true);
+        }
+        long premier = (long) produits.get(0)[0];
+        long dernier = (long) produits.get(produits.size() - 1)[0];
+        Map<Long, String> noms = new HashMap<>();
+        for (Object[] produit : produits) {
+            noms.put((Long) produit[0], (String) produit[1]);
+        }
+        int[] lignes = {0};
+        jdbcTemplate.query("SELECT l.produit_id, SUM(l.quantite), SUM(l.quantite * l.prix_ventettc), "
+                + "SUM(CASE WHEN l.cout_achatht IS NULL THEN 0 ELSE l.quantite * l.prix_ventettc END), "
+                + "COALESCE(SUM(l.cout_achatht), 0), SUM(CASE WHEN l.cout_achatht IS NULL THEN l.quantite ELSE 0 END) "
+                + "FROM lignes_vente l JOIN ventes v ON v.id = l.vente_id "
+                + "WHERE l.produit_id BETWEEN ? AND ? AND v.date_vente >= ? AND v.date_vente < ? "
+                + "GROUP BY l.produit_id ORDER BY l.produit_id", rs -> {
+            long produitId = rs.getLong(1);
+            // Ventes d'un produit supprimé depuis : hors catalogue, hors rapport
+            if (!noms.containsKey(produitId)) {
+                return;
+            }
+            BigDecimal cout = rs.getBigDecimal(5);
+            ecrire(sortie, produitId, noms.get(produitId), rs.getLong(2), rs.getBigDecimal(3), cout,
+                    rs.getBigDecimal(4).subtract(cout), rs.getLong(6));
+            lignes[0]++;
+        }, premier, dernier, Timestamp.valueOf(demande.debut().atStartOfDay()),
+                Timestamp.valueOf(demande.fin().plusDays(1).atStartOfDay()));
+        return new Tranche(dernier, produits.size(), lignes[0], produits.size() < taille);
+    }
+
+    private Tranche expirations(DemandeRapport demande, long curseur, Writer sortie) {
+        long[] dernier = {curseur};
+        int[] lignes = {0};
+        jdbcTemplate.query("SELECT l.id, l.numero_lot, l.date_expiration, l.product_id, p.nom_medicament, "
+                + JournalStockService.QUANTITE_LOT + ", l.prix_achatht FROM lot_de_stock l JOIN produit p ON p.id = l.product_id "
+                + "WHERE l.id > ? AND l.date_expiration BETWEEN ? AND ? AND " + JournalStockService.QUANTITE_LOT + " > 0 "
+                + "ORDER BY l.id LIMIT ?", rs -> {
+            dernier[0] = rs.getLong(1);
+            int quantite = rs.getInt(6);
+            BigDecimal prix = rs.getBigDecimal(7);
+            ecrire(sortie, dernier[0], rs.getString(2), rs.getDate(3).toLocalDate(), rs.getLong(4), rs.getString(5),
+                    quantite, prix, prix == null ? null : Montant.euros(Montant.fois(Montant.centimes(prix), quantite)));
+            lignes[0]++;
+        }, curseur, Date.valueOf(demande.debut()), Date.valueOf(demande.fin()), taille);
+        return new Tranche(dernier[0], lignes[0], lignes[0], lignes[0] < taille);
+    }
+
+    private Tranche valorisation(long curseur, Writer sortie) {
+        long[] dernier = {curseur};
+        int[] lignes = {0};
+        jdbcTemplate.query("SELECT v.produit_id, p.nom_medicament, v.quantite_stock, v.quantite_sans_cout, v.valeur_stock, "
+                + "v.quantite_vendue, v.quantite_vendue_sans_cout, v.chiffre_affaires, v.cout_ventes, "
+                + "v.chiffre_affaires_coute - v.cout_ventes FROM valorisation_produit v "
+                + "LEFT JOIN produit p ON p.id = v.produit_id WHERE v.produit_id > ? ORDER BY v.produit_id LIMIT ?", rs -> {
+            dernier[0] = rs.getLong(1);
+            ecrire(sortie, dernier[0], rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getBigDecimal(5), rs.getLong(6),
+                    rs.getLong(7), rs.getBigDecimal(8), rs.getBigDecimal(9), rs.getBigDecimal(10));
+            lignes[0]++;
+        }, curseur, taille);
+        return new Tranche(dernier[0], lignes[0], lignes[0], lignes[0] < taille);
+    }
+
+    private static void ecrire(Writer sortie, Object... valeurs) {
+        try {
+            for (int i = 0; i < valeurs.length; i++) {
+                if (i > 0) {
+                    sortie.write(';');
+                }
+                sortie.write(champ(valeurs[i]));
+            }
+            sortie.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String champ(Object valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        String texte = valeur instanceof BigDecimal montant ? montant.toPlainString() : valeur.toString();
+        if (texte.indexOf(';') < 0 && texte.indexOf('"') < 0 && texte.indexOf('\n') < 0 && texte.indexOf('\r') < 0) {
+            return texte;
+        }
+        return '"' + texte.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,377 @@
+package emsi.project.backendms1.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Historique des lignes de vente en colonnes, dans des fichiers projetés en mémoire : id de la ligne
+ * de vente, date (secondes de l'heure locale), produit, quantité, prix unitaire et coût d'achat de la
+ * ligne en centimes, plus une somme de contrôle. Les lignes sont ajoutées à la fin, jamais
+ * modifiées; une ligne supprimée est compensée par une ligne de même id, de quantité et de coût
+ * opposés.
+ * <p>
+ * Les colonnes sont découpées en segments de taille fixe. Le fichier {@code historique.meta} tient
+ * le nombre de lignes, le plus grand id de ligne de vente repris, la version du format et le nombre
+ * de lignes déjà forcées sur disque par {@link #forcer()}. Les pages projetées partent sur disque
+ * dans n'importe quel ordre : après un arrêt brutal, le compte peut inclure des lignes dont les
+ * colonnes n'ont pas été écrites. À l'ouverture, les lignes au-delà de la dernière écriture forcée
+ * sont donc vérifiées par leur somme de contrôle, et l'historique est coupé à la première qui ne
+ * correspond pas; la reprise depuis la base ({@code HistoriqueVentesService}) rajoute ensuite les
+ * lignes manquantes. Un historique d'un autre format est vidé, puis repris depuis la base.
+ * <p>
+ * Un seul écrivain à la fois ({@link #ajouter} est synchronisé); les lectures ne prennent pas de
+ * verrou et voient toutes les lignes publiées avant leur début.
+ */
+public final class HistoriqueVentes {
+
+    static final int LIGNES_PAR_SEGMENT = 1 << 20;
+    /** Coût d'une ligne dont un lot prélevé n'avait pas de prix d'achat. */
+    public static final long SANS_COUT = Long.MIN_VALUE;
+    // 2 : colonne des coûts d'achat; 3 : ids, sommes de contrôle et lignes forcées
+    static final long FORMAT = 3;
+    // Découpage des segments pour les agrégations parallèles
+    private static final int TRANCHE = 1 << 16;
+
+    /** Clé de regroupement calculée pour chaque ligne. */
+    public enum Cle {
+        PRODUIT,
+        /** 1 = lundi ... 7 = dimanche */
+        JOUR_SEMAINE,
+        /** 0 à 23 */
+        HEURE
+    }
+
+    /**
+     * Filtre des agrégations : période {@code [debut, fin)}, bornes facultatives, et produits
+     * retenus ({@code null} pour tous).
+     */
+    public record Filtre(LocalDateTime debut, LocalDateTime fin, long[] produits) {
+    }
+
+    /**
+     * Sommes d'une clé : lignes (moins les lignes compensées), quantité nette, montant net en centimes
+     * (quantité × prix), puis la part des lignes sans coût connu et, pour les autres, leur montant et
+     * leur coût d'achat.
+     */
+    public record Sommes(long cle, long lignes, long quantite, long montantCentimes, long quantiteSansCout,
+                         long montantCouteCentimes, long coutCentimes) {
+
+        /** Marge des lignes dont le coût est connu. */
+        public long margeCentimes() {
+            return Montant.moins(montantCouteCentimes, coutCentimes);
+        }
+    }
+
+    private final Path repertoire;
+    private final int lignesParSegment;
+    private final int tranche;
+    private final MappedByteBuffer meta;
+    private volatile Segment[] segments;
+    private volatile long lignes;
+    private long dernierLigneId;
+
+    private HistoriqueVentes(Path repertoire, int lignesParSegment) throws IOException {
+        this.repertoire = repertoire;
+        if (Integer.bitCount(lignesParSegment) != 1) {
+            throw new IllegalArgumentException("Le nombre de lignes par segment doit être une puissance de deux");
+        }
+        this.lignesParSegment = lignesParSegment;
+        // Puissances de deux : une tranche ne chevauche jamais deux segments
+        this.tranche = Math.min(TRANCHE, lignesParSegment);
+        Files.createDirectories(repertoire);
+        meta = projeter(repertoire.resolve("historique.meta"), 32);
+        if (meta.getLong(16) != FORMAT) {
+            vider();
+        }
+        long lignesEcrites = meta.getLong(0);
+        long lignesForcees = Math.min(meta.getLong(24), lignesEcrites);
+        dernierLigneId = meta.getLong(8);
+        int nombreSegments = (int) Math.max(1, (lignesEcrites + lignesParSegment - 1) / lignesParSegment);
+        Segment[] ouverts = new Segment[nombreSegments];
+        for (int i = 0; i < nombreSegments; i++) {
+            ouverts[i] = new Segment(i);
+        }
+        segments = ouverts;
+        long valides = lignesForcees;
+        while (valides < lignesEcrites && ligneIntacte(valides)) {
+            valides++;
+        }
+        if (valides < lignesEcrites) {
+            // Colonnes d'une ligne perdues à l'arrêt : coupées ici, reprises depuis la base
+            dernierLigneId = 0;
+            for (long i = 0; i < valides; i++) {
+                dernierLigneId = Math.max(dernierLigneId, segment(i).ids.get(indice(i)));
+            }
+            meta.putLong(0, valides);
+            meta.putLong(8, dernierLigneId);
+            meta.force();
+        }
+        lignes = valides;
+    }
+
+    /** Ouvre (ou crée) l'historique du répertoire donné. */
+    public static HistoriqueVentes ouvrir(Path repertoire) {
+        return ouvrir(repertoire, LIGNES_PAR_SEGMENT);
+    }
+
+    static HistoriqueVentes ouvrir(Path repertoire, int lignesParSegment) {
+        try {
+            return new HistoriqueVentes(repertoire, lignesParSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible d'ouvrir l'historique des ventes " + repertoire, e);
+        }
+    }
+
+    public long lignes() {
+        return lignes;
+    }
+
+    /** Plus grand id de {@code lignes_vente} ajouté, pour la reprise depuis la base. */
+    public synchronized long dernierLigneId() {
+        return dernierLigneId;
+    }
+
+    /**
+     * @param coutCentimes coût d'achat de la ligne, du signe de la quantité, ou {@link #SANS_COUT}
+     */
+    public synchronized void ajouter(long ligneId, LocalDateTime date, long produitId, int quantite, long prixCentimes,
+                                     long coutCentimes) {
+        long n = lignes;
+        int numeroSegment = (int) (n / lignesParSegment);
+        Segment[] courants = segments;
+        if (numeroSegment == courants.length) {
+            courants = Arrays.copyOf(courants, numeroSegment + 1);
+            courants[numeroSegment] = segmentOuvert(numeroSegment);
+            segments = courants;
+        }
+        Segment segment = courants[numeroSegment];
+        int i = (int) (n % lignesParSegment);
+        long secondes = secondes(date);
+        segment.ids.put(i, ligneId);
+        segment.dates.put(i, secondes);
+        segment.produits.put(i, produitId);
+        segment.quantites.put(i, quantite);
+        segment.prix.put(i, prixCentimes);
+        segment.couts.put(i, coutCentimes);
+        segment.controles.put(i, controle(ligneId, secondes, produitId, quantite, prixCentimes, coutCentimes));
+        dernierLigneId = Math.max(dernierLigneId, ligneId);
+        meta.putLong(8, dernierLigneId);
+        meta.putLong(0, n + 1);
+        // Publication : les lecteurs qui lisent le nouveau compte voient la ligne entière
+        lignes = n + 1;
+    }
+
+    /** Écrit sur disque les pages modifiées; les lignes écrites ne seront plus vérifiées à l'ouverture. */
+    public synchronized void forcer() {
+        for (Segment segment : segments) {
+            segment.forcer();
+        }
+        meta.putLong(24, lignes);
+        meta.force();
+    }
+
+    /**
+     * Ids des lignes de vente présentes et non compensées, triés : ce que la base doit contenir
+     * si aucune ligne n'a été manquée.
+     */
+    public long[] idsVivants() {
+        long n = lignes;
+        Segment[] courants = segments;
+        long[] ajoutees = new long[(int) n];
+        long[] compensees = new long[(int) n];
+        int a = 0;
+        int c = 0;
+        for (long i = 0; i < n; i++) {
+            Segment segment = courants[(int) (i / lignesParSegment)];
+            int j = indice(i);
+            if (segment.quantites.get(j) < 0) {
+                compensees[c++] = segment.ids.get(j);
+            } else {
+                ajoutees[a++] = segment.ids.get(j);
+            }
+        }
+        Arrays.sort(ajoutees, 0, a);
+        Arrays.sort(compensees, 0, c);
+        // Différence de multiensembles : une compensation annule un ajout du même id
+        long[] vivants = new long[a];
+        int v = 0;
+        for (int i = 0, k = 0; i < a; i++) {
+            while (k < c && compensees[k] < ajoutees[i]) {
+                k++;
+            }
+            if (k < c && compensees[k] == ajoutees[i]) {
+                k++;
+            } else if (v == 0 || vivants[v - 1] != ajoutees[i]) {
+                vivants[v++] = ajoutees[i];
+            }
+        }
+        return Arrays.copyOf(vivants, v);
+    }
+
+    /**
+     * Sommes par clé des lignes retenues par le filtre. Les segments sont découpés en tranches
+     * agrégées en parallèle, puis fusionnées.
+     */
+    public List<Sommes> agreger(Filtre filtre, Cle cle) {
+        long n = lignes;
+        Segment[] courants = segments;
+        long debut = filtre.debut() == null ? Long.MIN_VALUE : secondes(filtre.debut());
+        long fin = filtre.fin() == null ? Long.MAX_VALUE : secondes(filtre.fin());
+        long[] produits = filtre.produits() == null ? null : trie(filtre.produits());
+        int tranches = (int) ((n + tranche - 1) / tranche);
+
+        SommesParCle total = IntStream.range(0, tranches).parallel()
+                .mapToObj(t -> {
+                    long premiere = (long) t * tranche;
+                    long derniere = Math.min(n, premiere + tranche);
+                    Segment segment = courants[(int) (premiere / lignesParSegment)];
+                    int de = (int) (premiere % lignesParSegment);
+                    return segment.agreger(de, de + (int) (derniere - premiere), debut, fin, produits, cle);
+                })
+                .reduce(SommesParCle::fusionner)
+                .orElseGet(SommesParCle::new);
+        return total.sommes();
+    }
+
+    // Ancien format ou historique neuf : colonnes supprimées, la reprise repart du premier id
+    private void vider() throws IOException {
+        try (var fichiers = Files.list(repertoire)) {
+            for (Path fichier : fichiers.filter(f -> f.getFileName().toString().startsWith("segment-")).toList()) {
+                Files.delete(fichier);
+            }
+        }
+        meta.putLong(0, 0);
+        meta.putLong(8, 0);
+        meta.putLong(16, FORMAT);
+        meta.putLong(24, 0);
+        meta.force();
+    }
+
+    private Segment segment(long ligne) {
+        return segments[(int) (ligne / lignesParSegment)];
+    }
+
+    private int indice(long ligne) {
+        return (int) (ligne % lignesParSegment);
+    }
+
+    private boolean ligneIntacte(long ligne) {
+        Segment segment = segment(ligne);
+        int i = indice(ligne);
+        long id = segment.ids.get(i);
+        return id > 0 && segment.controles.get(i) == controle(id, segment.dates.get(i), segment.produits.get(i),
+                segment.quantites.get(i), segment.prix.get(i), segment.couts.get(i));
+    }
+
+    // Mélange de toutes les colonnes : une page restée à zéro ou d'une autre écriture ne correspond pas
+    static long controle(long id, long date, long produit, int quantite, long prix, long cout) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (long valeur : new long[]{id, date, produit, quantite, prix, cout}) {
+            h = (h ^ valeur) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return h;
+    }
+
+    private static long[] trie(long[] produits) {
+        long[] copie = produits.clone();
+        Arrays.sort(copie);
+        return copie;
+    }
+
+    static long secondes(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private Segment segmentOuvert(int numero) {
+        try {
+            return new Segment(numero);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de créer le segment " + numero + " de l'historique", e);
+        }
+    }
+
+    private static MappedByteBuffer projeter(Path fichier, long taille) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // La projection survit à la fermeture du canal
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, taille);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+
+    private final class Segment {
+
+        private final MappedByteBuffer[] fichiers;
+        private final LongBuffer ids;
+        private final LongBuffer dates;
+        private final LongBuffer produits;
+        private final IntBuffer quantites;
+        private final LongBuffer prix;
+        private final LongBuffer couts;
+        private final LongBuffer controles;
+
+        Segment(int numero) throws IOException {
+            String prefixe = String.format("segment-%05d.", numero);
+            MappedByteBuffer fichierDates = projeter(repertoire.resolve(prefixe + "date"), (long) lignesParSegment * Long.BYTES);
+            MappedByteBuffer fichierProduits = projeter(repertoire.resolve(prefixe + "produit"), (long) lignesParSegment * Long.BYTES);
+            MappedByteBuffer fichierQuantites = projeter(repertoire.resolve(prefixe + "quantite"), (long) lignesParSegment * Integer.BYTES);
+            MappedByteBuffer fichierPrix = projeter(repertoire.resolve(prefixe + "prix"), (long) lignesParSegment * Long.BYTES);
+            MappedByteBuffer fichierCouts = projeter(repertoire.resolve(prefixe + "cout"), (long) lignesParSegment * Long.BYTES);
+            MappedByteBuffer fichierIds = projeter(repertoire.resolve(prefixe + "id"), (long) lignesParSegment * Long.BYTES);
+            MappedByteBuffer fichierControles = projeter(repertoire.resolve(prefixe + "controle"), (long) lignesParSegment * Long.BYTES);
+            fichiers = new MappedByteBuffer[]{fichierDates, fichierProduits, fichierQuantites, fichierPrix, fichierCouts,
+                    fichierIds, fichierControles};
+            dates = fichierDates.asLongBuffer();
+            produits = fichierProduits.asLongBuffer();
+            quantites = fichierQuantites.asIntBuffer();
+            prix = fichierPrix.asLongBuffer();
+            couts = fichierCouts.asLongBuffer();
+            ids = fichierIds.asLongBuffer();
+            controles = fichierControles.asLongBuffer();
+        }
+
+        void forcer() {
+            for (MappedByteBuffer fichier : fichiers) {
+                fichier.force();
+            }
+        }
+
+        // Boucle serrée sur les colonnes; seules les colonnes utiles sont lues
+        SommesParCle agreger(int de, int a, long debut, long fin, long[] produitsRetenus, Cle cle) {
+            SommesParCle sommes = new SommesParCle();
+            for (int i = de; i < a; i++) {
+                long date = dates.get(i);
+                if (date < debut || date >= fin) {
+                    continue;
+                }
+                long produit = produits.get(i);
+                if (produitsRetenus != null && Arrays.binarySearch(produitsRetenus, produit) < 0) {
+                    continue;
+                }
+                long quantite = quantites.get(i);
+                long valeur = switch (cle) {
+                    case PRODUIT -> produit;
+                    case JOUR_SEMAINE -> Math.floorMod(Math.floorDiv(date, 86_400) + 3, 7) + 1;
+                    case HEURE -> Math.floorMod(date, 86_400) / 3_600;
+                };
+                sommes.ajouter(valeur, quantite, quantite * prix.get(i), couts.get(i));
+            }
+            return sommes;
+        }
+    }
+}
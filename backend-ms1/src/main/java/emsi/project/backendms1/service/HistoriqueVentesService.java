@@ -0,0 +1,303 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.AgregatVentesDto;
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.enums.RegroupementVentes;
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.Vente;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Analyses ad hoc des ventes (chiffre d'affaires et marge par produit, forme, dosage, jour de la
+ * semaine, heure) sur {@link HistoriqueVentes}, sans requête sur la base transactionnelle. La marge
+ * repose sur le coût d'achat de chaque ligne ({@code lignes_vente.cout_achatht}), comme
+ * {@link ValorisationService}.
+ * <p>
+ * L'historique est alimenté après le commit de chaque ligne de vente (une suppression ajoute une
+ * ligne compensatoire) et persiste d'un démarrage à l'autre dans {@code app.historique.repertoire}.
+ * Au démarrage, les lignes d'id supérieur à la dernière reprise sont relues, par tranches, en
+ * lecture seule (réplica s'il est configuré). Une ligne d'id inférieur peut aussi manquer : écouteur
+ * jamais exécuté (arrêt entre le commit et l'écouteur) alors qu'un id plus grand était ajouté, ou
+ * ligne coupée à la réouverture de l'historique. Si le nombre de lignes vivantes de l'historique
+ * diffère de celui de la base, les ids des deux côtés sont comparés et les lignes manquantes
+ * reprises. Une suppression survenue pendant un arrêt n'est pas reprise : seule une reconstruction
+ * (répertoire vidé) la retire.
+ */
+@Service
+public class HistoriqueVentesService {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoriqueVentesService.class);
+
+    private static final int TRANCHE_REPRISE = 10_000;
+    private static final int TRANCHE_IDS = 1_000;
+
+    @Value("${app.historique.repertoire:data/historique-ventes}")
+    private String repertoire;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    private HistoriqueVentes historique;
+
+    @PostConstruct
+    void demarrer() {
+        historique = HistoriqueVentes.ouvrir(Path.of(repertoire));
+        rattraper();
+        combler();
+        Ecouteur ecouteur = new Ecouteur();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, ecouteur);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, ecouteur);
+    }
+
+    @PreDestroy
+    void arreter() {
+        historique.forcer();
+    }
+
+    /**
+     * Ajoute les lignes de vente d'id supérieur à la dernière reprise : au démarrage, et après une
+     * écriture JDBC (jeu de données) que les écouteurs Hibernate ne voient pas.
+     *
+     * @return le nombre de lignes reprises
+     */
+    public long rattraper() {
+        TransactionTemplate lecture = lecture();
+        long avant = historique.lignes();
+        int lues;
+        do {
+            long depuis = historique.dernierLigneId();
+            lues = lecture.execute(status -> reprendre("l.id > ? ORDER BY l.id LIMIT " + TRANCHE_REPRISE, depuis));
+        } while (lues == TRANCHE_REPRISE);
+        historique.forcer();
+        return historique.lignes() - avant;
+    }
+
+    /**
+     * Reprend les lignes de la base absentes de l'historique sous le dernier id repris. Au démarrage
+     * seulement : une ligne validée dont l'écouteur n'a pas encore tourné serait ajoutée deux fois.
+     *
+     * @return le nombre de lignes reprises
+     */
+    long combler() {
+        TransactionTemplate lecture = lecture();
+        long[] vivants = historique.idsVivants();
+        Long enBase = lecture.execute(status -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lignes_vente", Long.class));
+        if (enBase == null || enBase == vivants.length) {
+            return 0;
+        }
+        List<Long> manquants = new ArrayList<>();
+        long depuis = 0;
+        List<Long> ids;
+        do {
+            long borne = depuis;
+            ids = lecture.execute(status -> jdbcTemplate.queryForList("SELECT id FROM lignes_vente WHERE id > ? ORDER BY id LIMIT "
+                    + TRANCHE_REPRISE, Long.class, borne));
+            for (Long id : ids) {
+                if (Arrays.binarySearch(vivants, id) < 0) {
+                    manquants.add(id);
+                }
+            }
+            depuis = ids.isEmpty() ? depuis : ids.get(ids.size() - 1);
+        } while (ids.size() == TRANCHE_REPRISE);
+
+        long reprises = 0;
+        for (int debut = 0; debut < manquants.size(); debut += TRANCHE_IDS) {
+            List<Long> tranche = manquants.subList(debut, Math.min(debut + TRANCHE_IDS, manquants.size()));
+            String parametres = String.join(", ", Collections.nCopies(tranche.size(), "?"));
+            reprises += lecture.execute(status -> reprendre("l.id IN (" + parametres + ") ORDER BY l.id", tranche.toArray()));
+        }
+        historique.forcer();
+        if (reprises > 0) {
+            log.warn("Historique des ventes : {} lignes manquantes reprises depuis la base", reprises);
+        }
+        return reprises;
+    }
+
+    private TransactionTemplate lecture() {
+        TransactionTemplate lecture = new TransactionTemplate(transactionManager);
+        lecture.setReadOnly(true);
+        return lecture;
+    }
+
+    private int reprendre(String condition, Object... parametres) {
+        return jdbcTemplate.query(
+                "SELECT l.id, v.date_vente, l.produit_id, l.quantite, l.prix_ventettc, l.cout_achatht FROM lignes_vente l "
+                        + "JOIN ventes v ON v.id = l.vente_id WHERE " + condition,
+                rs -> {
+                    int n = 0;
+                    while (rs.next()) {
+                        BigDecimal cout = rs.getBigDecimal(6);
+                        historique.ajouter(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(), rs.getLong(3),
+                                rs.getInt(4), Montant.centimes(rs.getBigDecimal(5)),
+                                cout == null ? HistoriqueVentes.SANS_COUT : Montant.centimes(cout));
+                        n++;
+                    }
+                    return n;
+                },
+                parametres);
+    }
+
+    /**
+     * @param debut début inclus, facultatif
+     * @param fin   fin exclue, facultative
+     * @param forme ne retient que les produits de cette forme, facultative
+     */
+    public List<AgregatVentesDto> analyser(RegroupementVentes par, LocalDateTime debut, LocalDateTime fin, FormeEnum forme) {
+        CatalogueSnapshot catalogue = catalogueSnapshotService.courant();
+        long[] produits = forme == null ? null : catalogue.ids(produit -> produit.forme() == forme);
+        HistoriqueVentes.Filtre filtre = new HistoriqueVentes.Filtre(debut, fin, produits);
+        return switch (par) {
+            case PRODUIT -> parProduit(filtre, catalogue, produit -> produit.id().toString(), true);
+            case FORME -> parProduit(filtre, catalogue, produit -> produit.forme() == null ? null : produit.forme().name(), false);
+            case DOSAGE -> parProduit(filtre, catalogue, ProduitDto::dosage, false);
+            case JOUR_SEMAINE -> historique.agreger(filtre, HistoriqueVentes.Cle.JOUR_SEMAINE).stream()
+                    .map(sommes -> agregat(Long.toString(sommes.cle()),
+                            DayOfWeek.of((int) sommes.cle()).getDisplayName(TextStyle.FULL, Locale.FRENCH), sommes))
+                    .toList();
+            case HEURE -> historique.agreger(filtre, HistoriqueVentes.Cle.HEURE).stream()
+                    .map(sommes -> agregat(Long.toString(sommes.cle()), null, sommes))
+                    .toList();
+        };
+    }
+
+    // Agrégation par produit dans l'historique, puis regroupement par attribut du catalogue en mémoire.
+    // Un produit retiré du catalogue garde son id par produit, et n'a pas de clé sinon.
+    private List<AgregatVentesDto> parProduit(HistoriqueVentes.Filtre filtre, CatalogueSnapshot catalogue,
+                                              Function<ProduitDto, String> cle, boolean parProduit) {
+        Map<String, Cumul> cumuls = new LinkedHashMap<>();
+        for (HistoriqueVentes.Sommes sommes : historique.agreger(filtre, HistoriqueVentes.Cle.PRODUIT)) {
+            ProduitDto produit = catalogue.produit(sommes.cle());
+            String valeur = produit != null ? cle.apply(produit) : parProduit ? Long.toString(sommes.cle()) : null;
+            Cumul cumul = cumuls.computeIfAbsent(Objects.requireNonNullElse(valeur, ""), v -> new Cumul(valeur));
+            cumul.ajouter(sommes, produit);
+        }
+        List<AgregatVentesDto> agregats = new ArrayList<>(cumuls.size());
+        for (Cumul cumul : cumuls.values()) {
+            String libelle = parProduit && cumul.produit != null ? cumul.produit.nomMedicament() : null;
+            agregats.add(new AgregatVentesDto(cumul.cle, libelle, cumul.lignes, cumul.quantite, Montant.euros(cumul.montant),
+                    Montant.euros(Montant.moins(cumul.montantCoute, cumul.cout)), cumul.quantiteSansCout));
+        }
+        agregats.sort(Comparator.comparing(AgregatVentesDto::chiffreAffaires).reversed());
+        return agregats;
+    }
+
+    private static AgregatVentesDto agregat(String cle, String libelle, HistoriqueVentes.Sommes sommes) {
+        return new AgregatVentesDto(cle, libelle, sommes.lignes(), sommes.quantite(), Montant.euros(sommes.montantCentimes()),
+                Montant.euros(sommes.margeCentimes()), sommes.quantiteSansCout());
+    }
+
+    private static final class Cumul {
+        private final String cle;
+        private long lignes;
+        private long quantite;
+        private long montant;
+        private long quantiteSansCout;
+        private long montantCoute;
+        private long cout;
+        private ProduitDto produit;
+
+        Cumul(String cle) {
+            this.cle = cle;
+        }
+
+        void ajouter(HistoriqueVentes.Sommes sommes, ProduitDto produit) {
+            lignes += sommes.lignes();
+            quantite += sommes.quantite();
+            montant += sommes.montantCentimes();
+            quantiteSansCout += sommes.quantiteSansCout();
+            montantCoute += sommes.montantCouteCentimes();
+            cout = Montant.plus(cout, sommes.coutCentimes());
+            this.produit = produit;
+        }
+    }
+
+    private void enregistrer(Object entite, int signe) {
+        if (!(entite instanceof LigneVente ligne) || ligne.getId() == null || ligne.getQuantite() == null
+                || ligne.getProduit() == null || ligne.getPrixVenteTTC() == null) {
+            return;
+        }
+        Vente vente = ligne.getVente();
+        if (vente == null || !Hibernate.isInitialized(vente) || vente.getDateVente() == null) {
+            return;
+        }
+        // Ligne compensatoire d'une vente modifiée : à la date de la ligne qu'elle annule, pas à la nouvelle
+        LocalDateTime dateVente = signe < 0 ? vente.getDateVenteEnregistree() : vente.getDateVente();
+        long cout = ligne.getCoutAchatHT() == null ? HistoriqueVentes.SANS_COUT : signe * Montant.centimes(ligne.getCoutAchatHT());
+        historique.ajouter(ligne.getId(), dateVente, ligne.getProduit().getId(), signe * ligne.getQuantite(),
+                Montant.centimes(ligne.getPrixVenteTTC()), cout);
+    }
+
+    private final class Ecouteur implements PostCommitInsertEventListener, PostCommitDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            enregistrer(event.getEntity(), 1);
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            enregistrer(event.getEntity(), -1);
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return persister.getMappedClass() == LigneVente.class;
+        }
+    }
+}
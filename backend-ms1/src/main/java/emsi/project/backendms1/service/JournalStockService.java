@@ -0,0 +1,140 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.MouvementStockDto;
+import emsi.project.backendms1.dtos.PageDto;
+import emsi.project.backendms1.dtos.SoldeLotDto;
+import emsi.project.backendms1.enums.TypeMouvement;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.MouvementStock;
+import emsi.project.backendms1.repository.MouvementStockRepo;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Journal des mouvements de stock, source de la quantité des lots. Chaque variation y est ajoutée
+ * dans la transaction qui la provoque; rien n'y est jamais modifié, et ni le lot ni le produit ne
+ * sont réécrits. La quantité courante d'un lot est son instantané (colonnes {@code quantite} et
+ * {@code dernier_mouvement_id} de {@code lot_de_stock}) plus les mouvements qui le suivent; un
+ * passage périodique y replie le journal et garde l'historique des instantanés
+ * ({@code instantane_lot}) pour le stock à date.
+ */
+@Service
+public class JournalStockService {
+
+    /** Quantité courante d'un lot en SQL natif, pour un {@code lot_de_stock} d'alias {@code l}. */
+    public static final String QUANTITE_LOT = "(l.quantite + (SELECT COALESCE(SUM(m.quantite), 0) FROM mouvement_stock m "
+            + "WHERE m.lot_id = l.id AND m.id > l.dernier_mouvement_id))";
+
+    private static final Logger log = LoggerFactory.getLogger(JournalStockService.class);
+    private static final int TRANCHE = 1000;
+
+    @Autowired
+    private MouvementStockRepo mouvementStockRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public MouvementStock enregistrer(TypeMouvement type, LotDeStock lot, int quantite, Long venteId, String motif) {
+        MouvementStock mouvement = new MouvementStock(null, LocalDateTime.now(), type, lot.getProduit().getId(),
+                lot.getId(), quantite, venteId, motif);
+        return mouvementStockRepository.save(mouvement);
+    }
+
+    /**
+     * Quantité d'un lot relue en lecture verrouillante, avant une sortie : la ligne du lot puis les
+     * mouvements qui suivent son instantané, dans leur dernière version validée. Deux sorties d'un
+     * même lot passent l'une après l'autre; les entrées restent de simples ajouts.
+     */
+    public int quantiteVerrouillee(Long lotId) {
+        List<long[]> lot = jdbcTemplate.query("SELECT quantite, dernier_mouvement_id FROM lot_de_stock WHERE id = ? FOR UPDATE",
+                (rs, i) -> new long[]{rs.getInt(1), rs.getLong(2)}, lotId);
+        if (lot.isEmpty()) {
+            throw new EntityNotFoundException("Stock non trouvé avec l'ID: " + lotId);
+        }
+        // Lignes et non SUM : le verrou ne s'applique pas à une requête agrégée
+        List<Integer> queue = jdbcTemplate.queryForList("SELECT quantite FROM mouvement_stock WHERE lot_id = ? AND id > ? "
+                + "FOR UPDATE", Integer.class, lotId, lot.get(0)[1]);
+        return (int) lot.get(0)[0] + queue.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<MouvementStockDto> historique(Long produitId, int page, int size) {
+        Page<MouvementStockDto> mouvements = mouvementStockRepository.findDtoByProduitId(produitId, PageRequest.of(page, size));
+        return PageDto.of(mouvements, mouvements.getContent());
+    }
+
+    @Transactional(readOnly = true)
+    public SoldeLotDto solde(Long lotId) {
+        List<long[]> lot = jdbcTemplate.query("SELECT quantite, dernier_mouvement_id FROM lot_de_stock WHERE id = ?",
+                (rs, i) -> new long[]{rs.getInt(1), rs.getLong(2)}, lotId);
+        if (lot.isEmpty()) {
+            throw new EntityNotFoundException("Lot non trouvé avec l'ID: " + lotId);
+        }
+        int quantiteInstantane = (int) lot.get(0)[0];
+        long[] queue = jdbcTemplate.queryForObject("SELECT COUNT(*), COALESCE(SUM(quantite), 0) FROM mouvement_stock "
+                + "WHERE lot_id = ? AND id > ?", (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)}, lotId, lot.get(0)[1]);
+        return new SoldeLotDto(lotId, quantiteInstantane + (int) queue[1], quantiteInstantane, queue[0]);
+    }
+
+    /**
+     * Replie dans l'instantané de chaque lot les mouvements ajoutés depuis le précédent passage,
+     * et en garde une copie dans {@code instantane_lot}. Les lots immobiles ne sont pas lus.
+     * <p>
+     * Les lectures du journal sont verrouillantes : un mouvement d'id déjà attribué mais pas encore
+     * validé (import de réception en cours) est attendu plutôt que sauté, aucun instantané ne peut
+     * donc le dépasser sans le compter.
+     *
+     * @return nombre de lots dont l'instantané a avancé
+     */
+    @Scheduled(cron = "${app.stock.instantanes.cron:0 30 2 * * *}")
+    @Transactional
+    public int prendreInstantanes() {
+        Long borne = jdbcTemplate.queryForObject("SELECT MAX(id) FROM mouvement_stock", Long.class);
+        Long precedente = jdbcTemplate.queryForObject("SELECT MAX(dernier_mouvement_id) FROM instantane_lot", Long.class);
+        long depuis = precedente == null ? 0 : precedente;
+        if (borne == null || borne <= depuis) {
+            return 0;
+        }
+
+        Set<Long> lots = new LinkedHashSet<>(jdbcTemplate.queryForList("SELECT lot_id FROM mouvement_stock "
+                + "WHERE id > ? AND id <= ? ORDER BY id FOR UPDATE", Long.class, depuis, borne));
+        List<Long> ids = new ArrayList<>(lots);
+        Timestamp date = Timestamp.valueOf(LocalDateTime.now());
+        int avances = 0;
+        for (int debut = 0; debut < ids.size(); debut += TRANCHE) {
+            List<Long> tranche = ids.subList(debut, Math.min(debut + TRANCHE, ids.size()));
+            // quantite avant dernier_mouvement_id : l'ancienne borne sert encore au calcul
+            jdbcTemplate.batchUpdate("UPDATE lot_de_stock SET quantite = quantite + (SELECT COALESCE(SUM(m.quantite), 0) "
+                            + "FROM mouvement_stock m WHERE m.lot_id = lot_de_stock.id AND m.id > lot_de_stock.dernier_mouvement_id "
+                            + "AND m.id <= ?), dernier_mouvement_id = ? WHERE id = ? AND dernier_mouvement_id < ?",
+                    tranche.stream().map(lotId -> new Object[]{borne, borne, lotId, borne}).toList());
+            // Les lots supprimés depuis n'ont plus de ligne : leur dernier instantané reste valable
+            String parametres = String.join(", ", Collections.nCopies(tranche.size(), "?"));
+            List<Object> arguments = new ArrayList<>(tranche.size() + 2);
+            arguments.add(date);
+            arguments.add(borne);
+            arguments.addAll(tranche);
+            avances += jdbcTemplate.update("INSERT INTO instantane_lot (lot_id, produit_id, dernier_mouvement_id, quantite, "
+                    + "date_instantane) SELECT id, product_id, dernier_mouvement_id, quantite, ? FROM lot_de_stock "
+                    + "WHERE dernier_mouvement_id = ? AND id IN (" + parametres + ")", arguments.toArray());
+        }
+        log.info("Instantanés de stock : {} lots jusqu'au mouvement {}", avances, borne);
+        return avances;
+    }
+}
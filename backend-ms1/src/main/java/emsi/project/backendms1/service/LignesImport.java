@@ -0,0 +1,118 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lecture en flux des fichiers d'import : chaque ligne CSV ou chaque objet d'un tableau JSON est
+ * remis au consommateur dès qu'il est lu, sous forme de champs texte. La conversion et la
+ * validation restent à l'appelant, qui peut ainsi rejeter une ligne sans interrompre l'import.
+ */
+final class LignesImport {
+
+    private LignesImport() {
+    }
+
+    record Ligne(long numero, Map<String, String> champs) {
+
+        /** @return la valeur du champ, ou {@code null} s'il est absent ou vide */
+        String get(String champ) {
+            String valeur = champs.get(champ);
+            return valeur == null || valeur.isBlank() ? null : valeur.trim();
+        }
+    }
+
+    /**
+     * CSV avec ligne d'en-tête; séparateur {@code ;} s'il figure dans l'en-tête, sinon {@code ,}.
+     * Les valeurs peuvent être entre guillemets (guillemet doublé pour un guillemet littéral).
+     * {@link Ligne#numero()} est le numéro de ligne du fichier, en-tête compris.
+     */
+    static void csv(Reader reader, Consumer<Ligne> consommateur) throws IOException {
+        BufferedReader lecteur = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+        String entete = lecteur.readLine();
+        if (entete == null) {
+            return;
+        }
+        if (entete.startsWith("\uFEFF")) {
+            entete = entete.substring(1);
+        }
+        char separateur = entete.indexOf(';') >= 0 ? ';' : ',';
+        List<String> colonnes = decouper(entete, separateur);
+
+        long numero = 1;
+        String texte;
+        while ((texte = lecteur.readLine()) != null) {
+            numero++;
+            if (texte.isBlank()) {
+                continue;
+            }
+            List<String> valeurs = decouper(texte, separateur);
+            Map<String, String> champs = new HashMap<>(colonnes.size() * 2);
+            for (int i = 0; i < colonnes.size() && i < valeurs.size(); i++) {
+                champs.put(colonnes.get(i).trim(), valeurs.get(i));
+            }
+            consommateur.accept(new Ligne(numero, champs));
+        }
+    }
+
+    /**
+     * Tableau JSON d'objets plats; {@link Ligne#numero()} est le rang de l'objet, à partir de 1.
+     */
+    static void json(JsonParser parser, Consumer<Ligne> consommateur) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Le fichier JSON doit contenir un tableau d'objets");
+        }
+        long numero = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            numero++;
+            JsonNode objet = parser.readValueAsTree();
+            Map<String, String> champs = new HashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = objet.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> champ = it.next();
+                if (!champ.getValue().isNull()) {
+                    champs.put(champ.getKey(), champ.getValue().asText());
+                }
+            }
+            consommateur.accept(new Ligne(numero, champs));
+        }
+    }
+
+    private static List<String> decouper(String ligne, char separateur) {
+        List<String> valeurs = new ArrayList<>();
+        StringBuilder courante = new StringBuilder();
+        boolean entreGuillemets = false;
+        for (int i = 0; i < ligne.length(); i++) {
+            char c = ligne.charAt(i);
+            if (entreGuillemets) {
+                if (c == '"' && i + 1 < ligne.length() && ligne.charAt(i + 1) == '"') {
+                    courante.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreGuillemets = false;
+                } else {
+                    courante.append(c);
+                }
+            } else if (c == '"') {
+                entreGuillemets = true;
+            } else if (c == separateur) {
+                valeurs.add(courante.toString());
+                courante.setLength(0);
+            } else {
+                courante.append(c);
+            }
+        }
+        valeurs.add(courante.toString());
+        return valeurs;
+    }
+}
@@ -0,0 +1,144 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.ClassementVentesDto;
+import emsi.project.backendms1.dtos.MeilleureVenteDto;
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.enums.PeriodeVentes;
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.repository.VenteRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Meilleures ventes de l'heure, du jour et de la semaine en cours, tenues en mémoire : chaque ligne
+ * de vente validée alimente une {@link FenetreVentes} par période (count-min sketch et tas des
+ * candidats). Un classement se lit sans requête SQL, avec une erreur bornée et rendue au client.
+ * <p>
+ * Au démarrage, les fenêtres sont reconstruites depuis la base. Les lignes écrites en JDBC (jeu de
+ * données) ne passent pas par Hibernate : {@link #reconstruire()} les reprend.
+ */
+@Service
+public class MeilleuresVentesService {
+
+    public static final int K_MAX = 50;
+    // Deux fois K_MAX : un produit proche de la limite ne sort pas du tas au moindre écart
+    private static final int CANDIDATS = 2 * K_MAX;
+    // Erreur e/2048 ≈ 0,13 % des unités de la période, confiance 1 - e^-4 ≈ 98 %
+    private static final int PROFONDEUR = 4;
+    private static final int LARGEUR = 2048;
+
+    @Autowired
+    private VenteRepo venteRepo;
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private volatile Map<PeriodeVentes, FenetreVentes> fenetres;
+
+    @PostConstruct
+    void demarrer() {
+        reconstruire();
+        Ecouteur ecouteur = new Ecouteur();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, ecouteur);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, ecouteur);
+    }
+
+    /** Recalcule les fenêtres depuis {@code lignes_vente}, une requête groupée par période. */
+    public void reconstruire() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        Map<PeriodeVentes, FenetreVentes> nouvelles = new EnumMap<>(PeriodeVentes.class);
+        for (PeriodeVentes periode : PeriodeVentes.values()) {
+            FenetreVentes fenetre = new FenetreVentes(periode, maintenant, CANDIDATS, PROFONDEUR, LARGEUR);
+            for (MeilleureVenteDto vente : venteRepo.sommerQuantitesParProduitDepuis(periode.debut(maintenant))) {
+                fenetre.ajouter(maintenant, vente.produitId(), vente.quantiteVendue());
+            }
+            nouvelles.put(periode, fenetre);
+        }
+        fenetres = nouvelles;
+    }
+
+    /**
+     * @param k nombre de produits, entre 1 et {@link #K_MAX}
+     */
+    public ClassementVentesDto classement(PeriodeVentes periode, int k) {
+        if (k < 1 || k > K_MAX) {
+            throw new IllegalArgumentException("Le nombre de produits doit être compris entre 1 et " + K_MAX);
+        }
+        FenetreVentes.Classement classement = fenetres.get(periode).classement(LocalDateTime.now(), k);
+        CatalogueSnapshot catalogue = catalogueSnapshotService.courant();
+        List<MeilleureVenteDto> produits = classement.candidats().stream()
+                .map(candidat -> {
+                    ProduitDto produit = catalogue.produit(candidat.produitId());
+                    return new MeilleureVenteDto(candidat.produitId(), produit == null ? null : produit.nomMedicament(),
+                            candidat.quantite());
+                })
+                .toList();
+        return new ClassementVentesDto(periode, classement.debut(), classement.total(), classement.erreurMax(), produits);
+    }
+
+    private void compter(Object entite, int signe) {
+        if (!(entite instanceof LigneVente ligne) || ligne.getQuantite() == null || ligne.getProduit() == null) {
+            return;
+        }
+        Vente vente = ligne.getVente();
+        // La vente est chargée par VenteService; un proxy non initialisé ne sera pas relu après le commit
+        if (vente == null || !Hibernate.isInitialized(vente) || vente.getDateVente() == null) {
+            return;
+        }
+        // Une ligne supprimée par la modification de sa vente est décomptée à la date où elle avait été comptée
+        LocalDateTime dateVente = signe < 0 ? vente.getDateVenteEnregistree() : vente.getDateVente();
+        for (FenetreVentes fenetre : fenetres.values()) {
+            fenetre.ajouter(dateVente, ligne.getProduit().getId(), (long) signe * ligne.getQuantite());
+        }
+    }
+
+    // Les lignes d'une vente modifiée sont supprimées puis recréées : insertions et suppressions suffisent
+    private final class Ecouteur implements PostCommitInsertEventListener, PostCommitDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            compter(event.getEntity(), 1);
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            compter(event.getEntity(), -1);
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return persister.getMappedClass() == LigneVente.class;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package emsi.project.backendms1.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Montants en centimes d'euro portés par un {@code long} : les totaux de vente et les agrégats se
+ * calculent sans allouer de {@link BigDecimal}. La conversion n'a lieu qu'aux frontières (requêtes
+ * de l'API, colonnes {@code decimal(…, 2)}), arrondie au centime le plus proche, la moitié
+ * s'éloignant de zéro (comme MySQL à l'écriture d'une colonne à deux décimales).
+ * <p>
+ * Les opérations lèvent {@link ArithmeticException} en cas de dépassement au lieu de boucler.
+ */
+public final class Montant {
+
+    public static final int ECHELLE = 2;
+
+    private Montant() {
+    }
+
+    /** Montant en centimes, arrondi au centime. */
+    public static long centimes(BigDecimal euros) {
+        return euros.setScale(ECHELLE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /** Montant en euros, à deux décimales. */
+    public static BigDecimal euros(long centimes) {
+        return BigDecimal.valueOf(centimes, ECHELLE);
+    }
+
+    /** Prix unitaire en centimes multiplié par une quantité. */
+    public static long fois(long prixCentimes, long quantite) {
+        return Math.multiplyExact(prixCentimes, quantite);
+    }
+
+    public static long plus(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long moins(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+}
@@ -7,6 +7,7 @@ import emsi.project.backendms1.repository.ProduitRepo;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -19,6 +20,7 @@ public class ProduitService {
     @Autowired
     private LotDeStockRepo stockLotRepository;
 
+    @Transactional(readOnly = true)
     public List<Produit> findAllProducts() {
         return productRepository.findAll();
     }
@@ -36,7 +38,6 @@ public class ProduitService {
         newP.setSeuilStock(product.getSeuilStock());
         newP.setForme(product.getForme());
         newP.setDosage(product.getDosage());
-        newP.setQuantiteTotaleEnStock(product.getQuantiteTotaleEnStock());
 
         return productRepository.save(newP);
     }
@@ -55,12 +56,12 @@ public class ProduitService {
         produitExistant.setSeuilStock(detailsProduit.getSeuilStock());
         produitExistant.setForme(detailsProduit.getForme());
         produitExistant.setDosage(detailsProduit.getDosage());
-        produitExistant.setQuantiteTotaleEnStock(detailsProduit.getQuantiteTotaleEnStock());
         return productRepository.save(produitExistant);
     }
 
+    @Transactional
     public void deleteProduct(Long id) {
-        Produit product = productRepository.findById(id)
+        Produit product = productRepository.findWithLotDeStocksById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'id: " + id));
 
         int remainingStock = stockLotRepository.calculateTotalStockQuantityForProduct(id);
@@ -70,16 +71,7 @@ public class ProduitService {
         productRepository.delete(product);
     }
 
-    public void updateTotalStock(Long productId) {
-        Produit product = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'id: " + productId));
-
-        int totalStock = stockLotRepository.calculateTotalStockQuantityForProduct(productId);
-        product.setQuantiteTotaleEnStock(totalStock);
-
-        productRepository.save(product);
-    }
-
+    @Transactional(readOnly = true)
     public Produit getProduitById(Long id) {
         return productRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'ID : " + id));
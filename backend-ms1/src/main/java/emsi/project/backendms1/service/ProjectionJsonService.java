@@ -0,0 +1,57 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Écrit une liste partielle ({@code ?fields=}) directement dans la réponse : la requête ne
+ * sélectionne que les colonnes demandées et chaque ligne est sérialisée dès sa lecture, sans
+ * liste intermédiaire ni DTO.
+ */
+@Service
+public class ProjectionJsonService {
+
+    private static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void ecrire(ChampsPartiels vue, List<String> champs, Map<String, Object> parametres, OutputStream out)
+            throws IOException {
+        TypedQuery<Tuple> query = entityManager.createQuery(vue.jpql(champs), Tuple.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE);
+        parametres.forEach(query::setParameter);
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+             Stream<Tuple> lignes = query.getResultStream()) {
+            json.writeStartArray();
+            for (Tuple ligne : (Iterable<Tuple>) lignes::iterator) {
+                json.writeStartObject();
+                for (int i = 0; i < champs.size(); i++) {
+                    json.writeFieldName(champs.get(i));
+                    json.writeObject(ligne.get(i));
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+    }
+}
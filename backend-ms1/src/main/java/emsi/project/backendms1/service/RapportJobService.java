@@ -0,0 +1,309 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.DemandeRapport;
+import emsi.project.backendms1.dtos.RapportJobDto;
+import emsi.project.backendms1.enums.StatutRapport;
+import emsi.project.backendms1.enums.TypeRapport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rapports longs (ventes par produit, expirations, valorisation) calculés en arrière-plan : la
+ * demande est enregistrée dans {@code rapport_job} et rendue aussitôt, le client suit l'avancement
+ * puis télécharge le CSV compressé gardé en base.
+ * <p>
+ * Les calculs tournent sur un pool borné ({@code app.rapports.threads}, file de
+ * {@code app.rapports.file}) : au plus autant de connexions prises au pool que de threads, le reste
+ * reste aux ventes. Chaque tranche est une transaction en lecture seule (réplica s'il est configuré)
+ * avec un délai maximal par requête. Entre deux tranches, l'avancement est écrit à condition que le
+ * rapport soit toujours en cours : une annulation, d'où qu'elle vienne, arrête le calcul à la
+ * tranche suivante.
+ * <p>
+ * Deux demandes identiques partagent le même calcul tant qu'il est en attente ou en cours. Un
+ * rapport terminé n'est jamais réutilisé : même sur une période passée, une vente peut être
+ * supprimée ou redatée après coup.
+ */
+@Service
+public class RapportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(RapportJobService.class);
+    static final long JOURS_MAX = 366;
+
+    private static final String COLONNES = "id, type, periode_debut, periode_fin, statut, progression, lignes, message, "
+            + "cree_le, demarre_le, termine_le, taille_resultat FROM rapport_job";
+
+    private static final RowMapper<RapportJobDto> JOB = (rs, i) -> {
+        Date debut = rs.getDate(3);
+        Date fin = rs.getDate(4);
+        Timestamp demarre = rs.getTimestamp(10);
+        Timestamp termine = rs.getTimestamp(11);
+        Long taille = rs.getObject(12, Long.class);
+        return new RapportJobDto(rs.getString(1), TypeRapport.valueOf(rs.getString(2)),
+                debut == null ? null : debut.toLocalDate(), fin == null ? null : fin.toLocalDate(),
+                StatutRapport.valueOf(rs.getString(5)), rs.getInt(6), rs.getLong(7), rs.getString(8),
+                rs.getTimestamp(9).toLocalDateTime(), demarre == null ? null : demarre.toLocalDateTime(),
+                termine == null ? null : termine.toLocalDateTime(), taille);
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.rapports.threads:2}")
+    private int threads;
+
+    @Value("${app.rapports.file:20}")
+    private int file;
+
+    @Value("${app.rapports.tranche:500}")
+    private int tranche;
+
+    @Value("${app.rapports.query-timeout-seconds:30}")
+    private int queryTimeoutSeconds;
+
+    @Value("${app.rapports.retention-heures:24}")
+    private long retentionHeures;
+
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate lecture;
+    private GenerateurRapports generateur;
+
+    /** Rapport rendu à une demande, et s'il s'agit d'un calcul déjà existant. */
+    public record Soumission(RapportJobDto job, boolean existant) {
+    }
+
+    @PostConstruct
+    void demarrer() {
+        AtomicInteger numero = new AtomicInteger();
+        // File bornée et refus au-delà : une rafale de demandes ne s'accumule pas en mémoire
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(file), r -> {
+            Thread thread = new Thread(r, "rapport-" + numero.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        lecture = new TransactionTemplate(transactionManager);
+        lecture.setReadOnly(true);
+        JdbcTemplate requetes = new JdbcTemplate(dataSource);
+        requetes.setQueryTimeout(queryTimeoutSeconds);
+        generateur = new GenerateurRapports(requetes, tranche);
+
+        // Une seule instance calcule les rapports : ceux d'un arrêt précédent ne reprendront pas
+        int interrompus = jdbcTemplate.update("UPDATE rapport_job SET statut = ?, message = ?, termine_le = ? "
+                        + "WHERE statut IN (?, ?)", StatutRapport.ECHEC.name(), "Interrompu par un redémarrage",
+                Timestamp.valueOf(LocalDateTime.now()), StatutRapport.EN_ATTENTE.name(), StatutRapport.EN_COURS.name());
+        if (interrompus > 0) {
+            log.warn("{} rapports interrompus par le redémarrage", interrompus);
+        }
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Enregistre la demande et la met en file, ou rend le calcul identique déjà en attente ou en cours.
+     *
+     * @throws IllegalArgumentException demande invalide
+     * @throws IllegalStateException    file pleine
+     */
+    public synchronized Soumission soumettre(DemandeRapport demande) {
+        DemandeRapport normalisee = normaliser(demande);
+        String cle = cle(normalisee);
+        Optional<RapportJobDto> existant = jdbcTemplate.query("SELECT " + COLONNES + " WHERE cle = ? "
+                        + "ORDER BY cree_le DESC LIMIT 1", JOB, cle).stream().findFirst()
+                .filter(job -> job.statut().actif());
+        if (existant.isPresent()) {
+            return new Soumission(existant.get(), true);
+        }
+
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO rapport_job (id, type, periode_debut, periode_fin, cle, statut, progression, lignes, "
+                        + "cree_le) VALUES (?, ?, ?, ?, ?, ?, 0, 0, ?)", id, normalisee.type().name(),
+                normalisee.debut() == null ? null : Date.valueOf(normalisee.debut()),
+                normalisee.fin() == null ? null : Date.valueOf(normalisee.fin()), cle, StatutRapport.EN_ATTENTE.name(),
+                Timestamp.valueOf(LocalDateTime.now()));
+        try {
+            executor.execute(() -> executer(id, normalisee));
+        } catch (RejectedExecutionException e) {
+            jdbcTemplate.update("DELETE FROM rapport_job WHERE id = ?", id);
+            throw new IllegalStateException("Trop de rapports en attente, réessayez plus tard");
+        }
+        return new Soumission(job(id).orElseThrow(), false);
+    }
+
+    // Hors transaction : lu sur le primaire, l'avancement n'attend pas la réplication
+    public Optional<RapportJobDto> job(String id) {
+        return jdbcTemplate.query("SELECT " + COLONNES + " WHERE id = ?", JOB, id).stream().findFirst();
+    }
+
+    /** Annule un rapport en attente ou en cours; sans effet sur un rapport déjà fini. */
+    public Optional<RapportJobDto> annuler(String id) {
+        jdbcTemplate.update("UPDATE rapport_job SET statut = ?, termine_le = ? WHERE id = ? AND statut IN (?, ?)",
+                StatutRapport.ANNULE.name(), Timestamp.valueOf(LocalDateTime.now()), id,
+                StatutRapport.EN_ATTENTE.name(), StatutRapport.EN_COURS.name());
+        return job(id);
+    }
+
+    /** CSV compressé (gzip) d'un rapport terminé, vide si le rapport n'existe pas ou n'est pas terminé. */
+    public Optional<byte[]> resultat(String id) {
+        List<byte[]> resultats = jdbcTemplate.query("SELECT resultat FROM rapport_job WHERE id = ? AND statut = ?",
+                (rs, i) -> rs.getBytes(1), id, StatutRapport.TERMINE.name());
+        return resultats.stream().findFirst();
+    }
+
+    /** Supprime les rapports finis depuis plus de {@code app.rapports.retention-heures}. */
+    @Scheduled(cron = "${app.rapports.purge.cron:0 15 * * * *}")
+    public int purger() {
+        int purges = jdbcTemplate.update("DELETE FROM rapport_job WHERE termine_le < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(retentionHeures)));
+        if (purges > 0) {
+            log.info("{} rapports purgés", purges);
+        }
+        return purges;
+    }
+
+    private void executer(String id, DemandeRapport demande) {
+        // Annulé pendant qu'il attendait dans la file
+        if (jdbcTemplate.update("UPDATE rapport_job SET statut = ?, demarre_le = ? WHERE id = ? AND statut = ?",
+                StatutRapport.EN_COURS.name(), Timestamp.valueOf(LocalDateTime.now()), id, StatutRapport.EN_ATTENTE.name()) == 0) {
+            return;
+        }
+        Path fichier = null;
+        try {
+            fichier = Files.createTempFile("rapport-", ".csv.gz");
+            long lignes = calculer(id, demande, fichier);
+            if (lignes < 0) {
+                log.info("Rapport {} annulé", id);
+                return;
+            }
+            long taille = Files.size(fichier);
+            try (InputStream contenu = Files.newInputStream(fichier)) {
+                jdbcTemplate.update("UPDATE rapport_job SET statut = ?, progression = 100, lignes = ?, resultat = ?, "
+                        + "taille_resultat = ?, termine_le = ? WHERE id = ? AND statut = ?", ps -> {
+                    ps.setString(1, StatutRapport.TERMINE.name());
+                    ps.setLong(2, lignes);
+                    ps.setBinaryStream(3, contenu, taille);
+                    ps.setLong(4, taille);
+                    ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                    ps.setString(6, id);
+                    ps.setString(7, StatutRapport.EN_COURS.name());
+                });
+            }
+        } catch (Exception e) {
+            log.warn("Rapport {} en échec", id, e);
+            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            jdbcTemplate.update("UPDATE rapport_job SET statut = ?, message = ?, termine_le = ? WHERE id = ? AND statut = ?",
+                    StatutRapport.ECHEC.name(), message.substring(0, Math.min(500, message.length())),
+                    Timestamp.valueOf(LocalDateTime.now()), id, StatutRapport.EN_COURS.name());
+        } finally {
+            if (fichier != null) {
+                try {
+                    Files.deleteIfExists(fichier);
+                } catch (IOException e) {
+                    log.warn("Fichier temporaire {} non supprimé", fichier, e);
+                }
+            }
+        }
+    }
+
+    // Nombre de lignes écrites, ou -1 si le rapport a été annulé en cours de route
+    private long calculer(String id, DemandeRapport demande, Path fichier) throws IOException {
+        try (Writer sortie = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(fichier)), StandardCharsets.UTF_8))) {
+            long total = lecture.execute(status -> generateur.total(demande));
+            sortie.write(generateur.entete(demande));
+            long curseur = 0;
+            long parcourues = 0;
+            long lignes = 0;
+            GenerateurRapports.Tranche suivante;
+            do {
+                long depuis = curseur;
+                suivante = lecture.execute(status -> generateur.suivante(demande, depuis, sortie));
+                curseur = suivante.curseur();
+                parcourues += suivante.unites();
+                lignes += suivante.lignes();
+                int progression = total == 0 ? 99 : (int) Math.min(99, parcourues * 100 / total);
+                if (jdbcTemplate.update("UPDATE rapport_job SET progression = ?, lignes = ? WHERE id = ? AND statut = ?",
+                        progression, lignes, id, StatutRapport.EN_COURS.name()) == 0) {
+                    return -1;
+                }
+            } while (!suivante.derniere());
+            return lignes;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static DemandeRapport normaliser(DemandeRapport demande) {
+        if (demande == null || demande.type() == null) {
+            throw new IllegalArgumentException("Le type de rapport est obligatoire");
+        }
+        if (!demande.type().avecPeriode()) {
+            return new DemandeRapport(demande.type(), null, null);
+        }
+        if (demande.debut() == null || demande.fin() == null) {
+            throw new IllegalArgumentException("Les dates de début et de fin sont obligatoires pour ce rapport");
+        }
+        if (demande.fin().isBefore(demande.debut())) {
+            throw new IllegalArgumentException("La date de fin précède la date de début");
+        }
+        if (ChronoUnit.DAYS.between(demande.debut(), demande.fin()) >= JOURS_MAX) {
+            throw new IllegalArgumentException("La période ne peut pas dépasser " + JOURS_MAX + " jours");
+        }
+        return demande;
+    }
+
+    private static String cle(DemandeRapport demande) {
+        String parametres = demande.type() + "|" + demande.debut() + "|" + demande.fin();
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(parametres.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
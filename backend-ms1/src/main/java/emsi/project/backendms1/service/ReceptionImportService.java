@@ -0,0 +1,279 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import emsi.project.backendms1.dtos.ErreurLigne;
+import emsi.project.backendms1.dtos.ReceptionRapport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Import en masse d'un bon de livraison (CSV ou JSON), lu en flux. Mêmes règles que
+ * {@link StockService#addStock} : un lot existant est complété si sa date d'expiration concorde,
+ * sinon il est créé.
+ * <p>
+ * Les produits sont indexés en mémoire une fois (EAN et id), les lots par tranche de lignes;
+ * les écritures partent en lots JDBC (lots créés, mouvements de réception) et la valorisation de
+ * chaque produit touché est recalculée une seule fois, à la fin. Une ligne invalide est rapportée
+ * et ignorée; une erreur SQL annule tout.
+ * <p>
+ * Colonnes : {@code codeEAN} (ou {@code produitId}), {@code numeroLot}, {@code dateExpiration}
+ * (AAAA-MM-JJ), {@code quantite}, {@code prixAchatHT} (facultatif).
+ */
+@Service
+public class ReceptionImportService {
+
+    private static final int TRANCHE = 1000;
+    private static final int ERREURS_MAX = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private ValorisationService valorisationService;
+
+    @Transactional
+    public ReceptionRapport importerCsv(Reader reader) throws IOException {
+        Import reception = new Import();
+        LignesImport.csv(reader, reception::ajouter);
+        return reception.terminer();
+    }
+
+    @Transactional
+    public ReceptionRapport importerJson(InputStream in) throws IOException {
+        Import reception = new Import();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            LignesImport.json(parser, reception::ajouter);
+        }
+        return reception.terminer();
+    }
+
+    private record Reception(long ligne, long produitId, String numeroLot, LocalDate dateExpiration,
+                             int quantite, BigDecimal prixAchatHT) {
+    }
+
+    /** État d'un import : index, tranche en cours, compteurs. */
+    private final class Import {
+
+        private final Map<String, Long> produitsParEan = new HashMap<>();
+        private final Set<Long> produits = new HashSet<>();
+        // produit -> numéro de lot -> date d'expiration, chargé à la demande par tranche
+        private final Map<Long, Map<String, LocalDate>> lotsParProduit = new HashMap<>();
+        private final Set<Long> produitsTouches = new LinkedHashSet<>();
+        private final List<LignesImport.Ligne> tranche = new ArrayList<>(TRANCHE);
+        private final List<ErreurLigne> erreurs = new ArrayList<>();
+        private final LocalDate aujourdhui = LocalDate.now();
+        private long lignes;
+        private long nombreErreurs;
+        private int lotsCrees;
+        private int lotsCompletes;
+
+        Import() {
+            jdbcTemplate.query("SELECT id, codeean FROM produit", rs -> {
+                long id = rs.getLong(1);
+                produits.add(id);
+                String ean = rs.getString(2);
+                if (ean != null) {
+                    produitsParEan.put(ean, id);
+                }
+            });
+        }
+
+        void ajouter(LignesImport.Ligne ligne) {
+            lignes++;
+            tranche.add(ligne);
+            if (tranche.size() == TRANCHE) {
+                ecrireTranche();
+            }
+        }
+
+        ReceptionRapport terminer() {
+            ecrireTranche();
+            if (!produitsTouches.isEmpty()) {
+                valorisationService.recalculerStock(produitsTouches);
+                catalogueVersion.modifieHorsJpa(true, true);
+            }
+            return new ReceptionRapport(lignes, lotsCrees, lotsCompletes, produitsTouches.size(),
+                    nombreErreurs, Collections.unmodifiableList(erreurs));
+        }
+
+        private void ecrireTranche() {
+            List<Reception> receptions = new ArrayList<>(tranche.size());
+            for (LignesImport.Ligne ligne : tranche) {
+                try {
+                    receptions.add(valider(ligne));
+                } catch (IllegalArgumentException e) {
+                    erreur(ligne.numero(), e.getMessage());
+                }
+            }
+            tranche.clear();
+            chargerLots(receptions);
+
+            List<Object[]> insertions = new ArrayList<>();
+            List<Object[]> mouvements = new ArrayList<>();
+            Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+            for (Reception reception : receptions) {
+                Map<String, LocalDate> lots = lotsParProduit.get(reception.produitId());
+                LocalDate expiration = lots.get(reception.numeroLot());
+                if (expiration == null) {
+                    lots.put(reception.numeroLot(), reception.dateExpiration());
+                    insertions.add(new Object[]{reception.numeroLot(), Date.valueOf(reception.dateExpiration()),
+                            reception.produitId(), reception.prixAchatHT(), Date.valueOf(aujourdhui)});
+                    lotsCrees++;
+                } else if (!expiration.equals(reception.dateExpiration())) {
+                    erreur(reception.ligne(), "Le lot " + reception.numeroLot()
+                            + " existe déjà avec une date d'expiration différente (" + expiration + ")");
+                    continue;
+                } else {
+                    lotsCompletes++;
+                }
+                mouvements.add(new Object[]{maintenant, reception.quantite(), reception.produitId(), reception.numeroLot()});
+                produitsTouches.add(reception.produitId());
+            }
+            // Lot créé avec un instantané vide : chaque réception, y compris la première, n'est qu'un mouvement
+            if (!insertions.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO lot_de_stock (numero_lot, date_expiration, product_id, quantite, "
+                        + "prix_achatht, date_reception) VALUES (?, ?, ?, 0, ?, ?)", insertions);
+            }
+            // Journal : l'id d'un lot créé n'est connu qu'en base, d'où l'INSERT ... SELECT
+            if (!mouvements.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO mouvement_stock (date_mouvement, type, produit_id, lot_id, quantite, motif) "
+                        + "SELECT ?, 'RECEPTION', product_id, id, ?, 'Import de réception' FROM lot_de_stock "
+                        + "WHERE product_id = ? AND numero_lot = ?", mouvements);
+            }
+        }
+
+        private void chargerLots(List<Reception> receptions) {
+            Set<Long> manquants = new LinkedHashSet<>();
+            for (Reception reception : receptions) {
+                if (!lotsParProduit.containsKey(reception.produitId())) {
+                    manquants.add(reception.produitId());
+                }
+            }
+            if (manquants.isEmpty()) {
+                return;
+            }
+            for (Long id : manquants) {
+                lotsParProduit.put(id, new HashMap<>());
+            }
+            String parametres = String.join(", ", Collections.nCopies(manquants.size(), "?"));
+            jdbcTemplate.query("SELECT product_id, numero_lot, date_expiration FROM lot_de_stock WHERE product_id IN ("
+                            + parametres + ")",
+                    rs -> {
+                        lotsParProduit.get(rs.getLong(1)).put(rs.getString(2), rs.getDate(3).toLocalDate());
+                    },
+                    manquants.toArray());
+        }
+
+        private Reception valider(LignesImport.Ligne ligne) {
+            long produitId = produit(ligne);
+
+            String numeroLot = ligne.get("numeroLot");
+            if (numeroLot == null) {
+                throw new IllegalArgumentException("Numéro de lot manquant");
+            }
+            if (numeroLot.length() > 100) {
+                throw new IllegalArgumentException("Numéro de lot trop long (100 caractères au plus)");
+            }
+
+            LocalDate dateExpiration;
+            try {
+                dateExpiration = LocalDate.parse(obligatoire(ligne, "dateExpiration"));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Date d'expiration invalide (AAAA-MM-JJ attendu): " + ligne.get("dateExpiration"));
+            }
+            if (dateExpiration.isBefore(aujourdhui)) {
+                throw new IllegalArgumentException("La date d'expiration ne peut pas être dans le passé");
+            }
+
+            int quantite;
+            try {
+                quantite = Integer.parseInt(obligatoire(ligne, "quantite"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Quantité invalide: " + ligne.get("quantite"));
+            }
+            if (quantite <= 0) {
+                throw new IllegalArgumentException("La quantité doit être positive");
+            }
+
+            BigDecimal prixAchatHT = null;
+            String prix = ligne.get("prixAchatHT");
+            if (prix != null) {
+                try {
+                    prixAchatHT = new BigDecimal(prix.replace(',', '.'));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Prix d'achat HT invalide: " + prix);
+                }
+                if (prixAchatHT.signum() < 0) {
+                    throw new IllegalArgumentException("Le prix d'achat HT ne peut pas être négatif");
+                }
+            }
+            return new Reception(ligne.numero(), produitId, numeroLot, dateExpiration, quantite, prixAchatHT);
+        }
+
+        private long produit(LignesImport.Ligne ligne) {
+            String ean = ligne.get("codeEAN");
+            if (ean != null) {
+                Long id = produitsParEan.get(ean);
+                if (id == null) {
+                    throw new IllegalArgumentException("Produit inconnu pour le code EAN " + ean);
+                }
+                return id;
+            }
+            String produitId = ligne.get("produitId");
+            if (produitId == null) {
+                throw new IllegalArgumentException("Champ codeEAN ou produitId manquant");
+            }
+            try {
+                long id = Long.parseLong(produitId);
+                if (produits.contains(id)) {
+                    return id;
+                }
+            } catch (NumberFormatException ignored) {
+                // rapporté ci-dessous
+            }
+            throw new IllegalArgumentException("Produit non trouvé avec l'ID : " + produitId);
+        }
+
+        private String obligatoire(LignesImport.Ligne ligne, String champ) {
+            String valeur = ligne.get(champ);
+            if (valeur == null) {
+                throw new IllegalArgumentException("Champ " + champ + " manquant");
+            }
+            return valeur;
+        }
+
+        private void erreur(long ligne, String message) {
+            nombreErreurs++;
+            if (erreurs.size() < ERREURS_MAX) {
+                erreurs.add(new ErreurLigne(ligne, message));
+            }
+        }
+    }
+}
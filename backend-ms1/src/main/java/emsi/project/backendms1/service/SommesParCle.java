@@ -0,0 +1,128 @@
+package emsi.project.backendms1.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Table de hachage à adressage ouvert, clés {@code long}, six sommes par clé : accumulateur des
+ * agrégations de {@link HistoriqueVentes}, sans objet alloué par ligne.
+ */
+final class SommesParCle {
+
+    private long[] cles = new long[16];
+    private boolean[] occupees = new boolean[16];
+    private long[] lignes = new long[16];
+    private long[] quantites = new long[16];
+    private long[] montants = new long[16];
+    private long[] quantitesSansCout = new long[16];
+    private long[] montantsCoutes = new long[16];
+    private long[] couts = new long[16];
+    private int taille;
+
+    void ajouter(long cle, long quantite, long montant, long cout) {
+        int i = position(cle);
+        if (!occupees[i]) {
+            occupees[i] = true;
+            cles[i] = cle;
+            if (++taille * 2 > cles.length) {
+                agrandir();
+                i = position(cle);
+            }
+        }
+        lignes[i] += Long.signum(quantite);
+        quantites[i] += quantite;
+        montants[i] += montant;
+        if (cout == HistoriqueVentes.SANS_COUT) {
+            quantitesSansCout[i] += quantite;
+        } else {
+            montantsCoutes[i] += montant;
+            couts[i] += cout;
+        }
+    }
+
+    SommesParCle fusionner(SommesParCle autre) {
+        SommesParCle grande = taille >= autre.taille ? this : autre;
+        SommesParCle petite = grande == this ? autre : this;
+        for (int i = 0; i < petite.cles.length; i++) {
+            if (petite.occupees[i]) {
+                grande.additionner(petite, i);
+            }
+        }
+        return grande;
+    }
+
+    /** Les sommes, par clé croissante. */
+    List<HistoriqueVentes.Sommes> sommes() {
+        List<HistoriqueVentes.Sommes> sommes = new ArrayList<>(taille);
+        for (int i = 0; i < cles.length; i++) {
+            if (occupees[i]) {
+                sommes.add(new HistoriqueVentes.Sommes(cles[i], lignes[i], quantites[i], montants[i], quantitesSansCout[i],
+                        montantsCoutes[i], couts[i]));
+            }
+        }
+        sommes.sort(Comparator.comparingLong(HistoriqueVentes.Sommes::cle));
+        return sommes;
+    }
+
+    private void additionner(SommesParCle autre, int j) {
+        long cle = autre.cles[j];
+        int i = position(cle);
+        if (!occupees[i]) {
+            occupees[i] = true;
+            cles[i] = cle;
+            if (++taille * 2 > cles.length) {
+                agrandir();
+                i = position(cle);
+            }
+        }
+        lignes[i] += autre.lignes[j];
+        quantites[i] += autre.quantites[j];
+        montants[i] += autre.montants[j];
+        quantitesSansCout[i] += autre.quantitesSansCout[j];
+        montantsCoutes[i] += autre.montantsCoutes[j];
+        couts[i] += autre.couts[j];
+    }
+
+    private int position(long cle) {
+        int masque = cles.length - 1;
+        int i = (int) (cle * 0x9E3779B97F4A7C15L >>> 40) & masque;
+        while (occupees[i] && cles[i] != cle) {
+            i = (i + 1) & masque;
+        }
+        return i;
+    }
+
+    private void agrandir() {
+        long[] anciennesCles = cles;
+        boolean[] anciennesOccupees = occupees;
+        long[] anciennesLignes = lignes;
+        long[] anciennesQuantites = quantites;
+        long[] anciensMontants = montants;
+        long[] anciennesQuantitesSansCout = quantitesSansCout;
+        long[] anciensMontantsCoutes = montantsCoutes;
+        long[] anciensCouts = couts;
+        int capacite = anciennesCles.length * 2;
+        cles = new long[capacite];
+        occupees = new boolean[capacite];
+        lignes = new long[capacite];
+        quantites = new long[capacite];
+        montants = new long[capacite];
+        quantitesSansCout = new long[capacite];
+        montantsCoutes = new long[capacite];
+        couts = new long[capacite];
+        for (int j = 0; j < anciennesCles.length; j++) {
+            if (anciennesOccupees[j]) {
+                int i = position(anciennesCles[j]);
+                occupees[i] = true;
+                cles[i] = anciennesCles[j];
+                lignes[i] = anciennesLignes[j];
+                quantites[i] = anciennesQuantites[j];
+                montants[i] = anciensMontants[j];
+                quantitesSansCout[i] = anciennesQuantitesSansCout[j];
+                montantsCoutes[i] = anciensMontantsCoutes[j];
+                couts[i] = anciensCouts[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LotADateDto;
+import emsi.project.backendms1.dtos.StockADateDto;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock à une date passée, reconstitué depuis le journal ({@link JournalStockService}). La date
+ * fixe une coupe : le dernier mouvement enregistré à cette date. Chaque lot repart de son
+ * instantané le plus récent avant la coupe, puis seuls les mouvements entre le dernier passage
+ * d'instantanés et la coupe sont rejoués.
+ * <p>
+ * Le journal fait foi dans l'ordre de ses ids : un mouvement validé en retard sur sa date compte
+ * à partir de la coupe qui suit son insertion.
+ */
+@Service
+public class StockADateService {
+
+    private static final String DERNIERS_INSTANTANES = "SELECT lot_id, MAX(dernier_mouvement_id) AS dernier "
+            + "FROM instantane_lot WHERE dernier_mouvement_id <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Bornes de rejeu : mouvements d'id dans ]instantane, mouvement]. */
+    private record Coupe(long mouvement, long instantane) {
+    }
+
+    @Transactional(readOnly = true)
+    public StockADateDto produit(Long produitId, LocalDateTime date) {
+        Coupe coupe = coupe(date);
+        Map<Long, Integer> quantites = new HashMap<>();
+        if (coupe.instantane() > 0) {
+            jdbcTemplate.query("SELECT i.lot_id, i.quantite FROM instantane_lot i JOIN (" + DERNIERS_INSTANTANES
+                    + " AND produit_id = ? GROUP BY lot_id) d ON d.lot_id = i.lot_id AND d.dernier = i.dernier_mouvement_id",
+                    rs -> {
+                        quantites.put(rs.getLong(1), rs.getInt(2));
+                    }, coupe.instantane(), produitId);
+        }
+        jdbcTemplate.query("SELECT lot_id, SUM(quantite) FROM mouvement_stock WHERE produit_id = ? AND id > ? AND id <= ? "
+                + "GROUP BY lot_id", rs -> {
+            quantites.merge(rs.getLong(1), rs.getInt(2), Integer::sum);
+        }, produitId, coupe.instantane(), coupe.mouvement());
+
+        if (quantites.isEmpty()
+                && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM produit WHERE id = ?", Integer.class, produitId) == 0) {
+            throw new EntityNotFoundException("Produit non trouvé avec l'ID : " + produitId);
+        }
+
+        Map<Long, LotADateDto> lotsActuels = new HashMap<>();
+        jdbcTemplate.query("SELECT id, numero_lot, date_expiration FROM lot_de_stock WHERE product_id = ?", rs -> {
+            lotsActuels.put(rs.getLong(1), lot(rs.getLong(1), rs.getString(2), rs.getDate(3), 0));
+        }, produitId);
+
+        List<LotADateDto> lots = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Long, Integer> entree : quantites.entrySet()) {
+            if (entree.getValue() == 0) {
+                continue;
+            }
+            LotADateDto actuel = lotsActuels.get(entree.getKey());
+            lots.add(actuel == null
+                    ? new LotADateDto(entree.getKey(), null, null, entree.getValue())
+                    : new LotADateDto(actuel.lotId(), actuel.numeroLot(), actuel.dateExpiration(), entree.getValue()));
+            total += entree.getValue();
+        }
+        lots.sort(Comparator.comparing(LotADateDto::dateExpiration, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(LotADateDto::lotId));
+        return new StockADateDto(date, produitId, total, lots);
+    }
+
+    @Transactional(readOnly = true)
+    public LotADateDto lot(Long lotId, LocalDateTime date) {
+        Coupe coupe = coupe(date);
+        int quantite = 0;
+        boolean connu = false;
+        if (coupe.instantane() > 0) {
+            List<Integer> instantane = jdbcTemplate.queryForList("SELECT quantite FROM instantane_lot WHERE lot_id = ? "
+                    + "AND dernier_mouvement_id <= ? ORDER BY dernier_mouvement_id DESC LIMIT 1",
+                    Integer.class, lotId, coupe.instantane());
+            if (!instantane.isEmpty()) {
+                quantite = instantane.get(0);
+                connu = true;
+            }
+        }
+        long[] queue = jdbcTemplate.queryForObject("SELECT COUNT(*), COALESCE(SUM(quantite), 0) FROM mouvement_stock "
+                        + "WHERE lot_id = ? AND id > ? AND id <= ?",
+                (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)}, lotId, coupe.instantane(), coupe.mouvement());
+        quantite += (int) queue[1];
+        connu |= queue[0] > 0;
+
+        List<LotADateDto> actuel = jdbcTemplate.query("SELECT id, numero_lot, date_expiration FROM lot_de_stock WHERE id = ?",
+                (rs, i) -> lot(rs.getLong(1), rs.getString(2), rs.getDate(3), 0), lotId);
+        if (actuel.isEmpty()) {
+            if (!connu) {
+                throw new EntityNotFoundException("Lot non trouvé avec l'ID: " + lotId);
+            }
+            return new LotADateDto(lotId, null, null, quantite);
+        }
+        return new LotADateDto(lotId, actuel.get(0).numeroLot(), actuel.get(0).dateExpiration(), quantite);
+    }
+
+    /** Inventaire de tous les produits en stock à la date, sans le détail des lots. */
+    @Transactional(readOnly = true)
+    public List<StockADateDto> inventaire(LocalDateTime date) {
+        Coupe coupe = coupe(date);
+        Map<Long, Integer> quantites = new TreeMap<>();
+        if (coupe.instantane() > 0) {
+            jdbcTemplate.query("SELECT i.produit_id, SUM(i.quantite) FROM instantane_lot i JOIN (" + DERNIERS_INSTANTANES
+                    + " GROUP BY lot_id) d ON d.lot_id = i.lot_id AND d.dernier = i.dernier_mouvement_id "
+                    + "GROUP BY i.produit_id", rs -> {
+                quantites.put(rs.getLong(1), rs.getInt(2));
+            }, coupe.instantane());
+        }
+        jdbcTemplate.query("SELECT produit_id, SUM(quantite) FROM mouvement_stock WHERE id > ? AND id <= ? "
+                + "GROUP BY produit_id", rs -> {
+            quantites.merge(rs.getLong(1), rs.getInt(2), Integer::sum);
+        }, coupe.instantane(), coupe.mouvement());
+
+        List<StockADateDto> inventaire = new ArrayList<>(quantites.size());
+        quantites.forEach((produitId, quantite) -> {
+            if (quantite != 0) {
+                inventaire.add(new StockADateDto(date, produitId, quantite, null));
+            }
+        });
+        return inventaire;
+    }
+
+    private Coupe coupe(LocalDateTime date) {
+        Long mouvement = jdbcTemplate.queryForObject("SELECT MAX(id) FROM mouvement_stock WHERE date_mouvement <= ?",
+                Long.class, Timestamp.valueOf(date));
+        if (mouvement == null) {
+            return new Coupe(0, 0);
+        }
+        Long instantane = jdbcTemplate.queryForObject("SELECT MAX(dernier_mouvement_id) FROM instantane_lot "
+                + "WHERE dernier_mouvement_id <= ?", Long.class, mouvement);
+        return new Coupe(mouvement, instantane == null ? 0 : instantane);
+    }
+
+    private static LotADateDto lot(long id, String numeroLot, Date dateExpiration, int quantite) {
+        LocalDate expiration = dateExpiration == null ? null : dateExpiration.toLocalDate();
+        return new LotADateDto(id, numeroLot, expiration, quantite);
+    }
+}
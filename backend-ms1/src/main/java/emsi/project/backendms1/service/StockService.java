@@ -1,18 +1,31 @@
 package emsi.project.backendms1.service;
 
+import emsi.project.backendms1.dtos.LotDeStockDto;
+import emsi.project.backendms1.dtos.LotsResume;
+import emsi.project.backendms1.dtos.PageDto;
+import emsi.project.backendms1.dtos.ProduitAvecLotsDto;
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.enums.TypeMouvement;
 import emsi.project.backendms1.models.LotDeStock;
 import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.observability.StockRecomputeEvent;
 import emsi.project.backendms1.repository.LotDeStockRepo;
 import emsi.project.backendms1.repository.ProduitRepo;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class StockService {
@@ -26,6 +39,13 @@ public class StockService {
     @Autowired
     private ProduitService productService;
 
+    @Autowired
+    private JournalStockService journalStock;
+
+    @Autowired
+    private ValorisationService valorisation;
+
+    @Transactional
     public LotDeStock addStock(Long productId, String numeroLot, LocalDate dateExpiration,
                                int quantite, BigDecimal prixAchatHT) {
         // Validation des paramètres
@@ -50,13 +70,8 @@ public class StockService {
                 throw new IllegalStateException("Le lot " + numeroLot + " existe déjà avec une date d'expiration différente");
             }
 
-            existingLot.setQuantite(existingLot.getQuantite() + quantite);
-            LotDeStock updatedLot = stockLotRepository.save(existingLot);
-
-            // Mettre à jour le stock total du produit
-            updateProductTotalStock(productId);
-
-            return updatedLot;
+            entrer(TypeMouvement.RECEPTION, existingLot, quantite, null, null);
+            return existingLot;
         }
 
         // Créer un nouveau lot de stock
@@ -64,26 +79,39 @@ public class StockService {
         newLot.setNumeroLot(numeroLot);
         newLot.setDateExpiration(dateExpiration);
         newLot.setProduit(produit);
-        newLot.setQuantite(quantite);
         newLot.setPrixAchatHT(prixAchatHT);
         newLot.setDateReception(LocalDate.now());
 
+        // Instantané vide : la quantité reçue n'est portée que par le mouvement de réception
         LotDeStock savedLot = stockLotRepository.save(newLot);
-
-        // Mettre à jour le stock total du produit
-        updateProductTotalStock(productId);
-
+        entrer(TypeMouvement.RECEPTION, savedLot, quantite, null, null);
         return savedLot;
     }
 
-    private void updateProductTotalStock(Long productId) {
-        Produit produit = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé"));
+    // Entrée dans un lot : un simple ajout au journal, sans verrou ni réécriture du lot
+    private void entrer(TypeMouvement type, LotDeStock lot, int quantite, Long venteId, String motif) {
+        lot.setQuantite(lot.getQuantite() + quantite);
+        journalStock.enregistrer(type, lot, quantite, venteId, motif);
+        mouvementEnregistre(lot, quantite);
+    }
 
-        int totalStock = stockLotRepository.calculateTotalStockQuantityForProduct(productId);
-        produit.setQuantiteTotaleEnStock(totalStock);
-        productRepository.save(produit);
+    // Toute variation de la quantité d'un lot passe ici : valorisation du produit. Le stock total
+    // n'est plus tenu sur le produit, il se lit depuis le journal
+    private void mouvementEnregistre(LotDeStock lot, int delta) {
+        StockRecomputeEvent event = new StockRecomputeEvent();
+        event.begin();
+
+        valorisation.mouvementStock(lot.getProduit().getId(), delta, lot.getPrixAchatHT());
+
+        if (event.shouldCommit()) {
+            event.lotId = lot.getId() != null ? lot.getId() : 0L;
+            event.produitId = lot.getProduit().getId();
+            event.delta = delta;
+            event.quantiteLot = lot.getQuantite();
+            event.commit();
+        }
     }
+    @Transactional
     public LotDeStock updateStockLot(Long lotId, String numeroLot, LocalDate dateExpiration, int quantite, BigDecimal prixAchatHT) {
         LotDeStock lot = stockLotRepository.findById(lotId)
                 .orElseThrow(() -> new EntityNotFoundException("Stock non trouvé avec l'ID: " + lotId));
@@ -96,19 +124,67 @@ public class StockService {
             throw new IllegalArgumentException("La date d'expiration ne peut pas être dans le passé");
         }
 
+        // Quantité saisie absolue : l'écart se calcule sur le stock relu sous verrou
+        int actuelle = journalStock.quantiteVerrouillee(lotId);
+        int delta = quantite - actuelle;
+        // Les unités déjà en lot changent de valeur avant que la variation ne s'ajoute au nouveau prix
+        valorisation.reevaluer(lot.getProduit().getId(), actuelle, lot.getPrixAchatHT(), prixAchatHT);
         lot.setNumeroLot(numeroLot);
         lot.setDateExpiration(dateExpiration);
         lot.setQuantite(quantite);
         lot.setPrixAchatHT(prixAchatHT);
 
         LotDeStock updatedLot = stockLotRepository.save(lot);
-
-        updateProductTotalStock(lot.getProduit().getId());
+        if (delta != 0) {
+            journalStock.enregistrer(TypeMouvement.AJUSTEMENT, updatedLot, delta, null, "Modification du lot");
+        }
+        mouvementEnregistre(updatedLot, delta);
 
         return updatedLot;
     }
 
+    @Transactional
     public LotDeStock removeStockFromLot(Long lotId, int quantity) {
+        LotDeStock updatedLot = sortirDuLot(lotId, quantity);
+        journalStock.enregistrer(TypeMouvement.AJUSTEMENT, updatedLot, -quantity, null, "Sortie manuelle");
+        return updatedLot;
+    }
+
+    @Transactional
+    public LotDeStock declarerPerte(Long lotId, int quantite, String motif) {
+        LotDeStock updatedLot = sortirDuLot(lotId, quantite);
+        journalStock.enregistrer(TypeMouvement.PERTE, updatedLot, -quantite, null, motif);
+        return updatedLot;
+    }
+
+    // Retour client : les unités réintègrent le lot d'où elles venaient
+    @Transactional
+    public LotDeStock enregistrerRetour(Long lotId, int quantite, String motif) {
+        if (quantite <= 0) {
+            throw new IllegalArgumentException("La quantité doit être positive");
+        }
+        LotDeStock lot = stockLotRepository.findById(lotId)
+                .orElseThrow(() -> new EntityNotFoundException("Stock non trouvé avec l'ID: " + lotId));
+
+        entrer(TypeMouvement.RETOUR, lot, quantite, null, motif);
+        return lot;
+    }
+
+    /**
+     * Sortie FEFO d'une vente. Le mouvement est journalisé par {@link VenteService}, qui seul
+     * connaît l'identifiant de la vente une fois celle-ci enregistrée : {@code dejaSorti} compte
+     * les unités déjà prises sur ce lot par la même vente, pas encore au journal.
+     */
+    @Transactional
+    public LotDeStock sortirPourVente(Long lotId, int quantity, int dejaSorti) {
+        return sortirDuLot(lotId, quantity, dejaSorti);
+    }
+
+    private LotDeStock sortirDuLot(Long lotId, int quantity) {
+        return sortirDuLot(lotId, quantity, 0);
+    }
+
+    private LotDeStock sortirDuLot(Long lotId, int quantity, int dejaSorti) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be positive");
         }
@@ -116,37 +192,77 @@ public class StockService {
         LotDeStock lot = stockLotRepository.findById(lotId)
                 .orElseThrow(() -> new EntityNotFoundException("Stock non trouvé avec l'ID: " + lotId));
 
-        if (lot.getQuantite() < quantity) {
-            throw new IllegalArgumentException("Insufficient stock in lot. Available: " + lot.getQuantite());
+        // Relu sous verrou et non sur l'entité, peut-être servie par le cache
+        int disponible = journalStock.quantiteVerrouillee(lotId) - dejaSorti;
+        if (disponible < quantity) {
+            throw new IllegalArgumentException("Insufficient stock in lot. Available: " + disponible);
         }
 
-        lot.setQuantite(lot.getQuantite() - quantity);
-        LotDeStock updatedLot = stockLotRepository.save(lot);
-
-        // Mettre à jour le stock total du produit
-        updateProductTotalStock(lot.getProduit().getId());
-
-        return updatedLot;
+        lot.setQuantite(disponible - quantity);
+        mouvementEnregistre(lot, -quantity);
+        return lot;
     }
 
+    @Transactional(readOnly = true)
     public List<LotDeStock> findAllStocksByProduitId(Long produitId) {
         return stockLotRepository.findByProduitId(produitId);
     }
 
+    @Transactional(readOnly = true)
+    public List<LotDeStockDto> findAllStockDtosByProduitId(Long produitId) {
+        return stockLotRepository.findDtoByProduitId(produitId);
+    }
+
+    /**
+     * Page de produits actifs avec leurs lots (ou leur seul résumé) : une requête pour la page, une
+     * pour tous les lots de la page, quel que soit le nombre de produits.
+     */
+    @Transactional(readOnly = true)
+    public PageDto<ProduitAvecLotsDto> findProduitsAvecLots(int page, int size, boolean avecLots) {
+        Page<ProduitDto> produits = productRepository.findAllProjectedByActifTrue(PageRequest.of(page, size, Sort.by("id")));
+        List<Long> ids = produits.getContent().stream().map(ProduitDto::id).toList();
+        if (ids.isEmpty()) {
+            return PageDto.of(produits, List.of());
+        }
+
+        List<ProduitAvecLotsDto> content;
+        if (avecLots) {
+            Map<Long, List<LotDeStockDto>> lotsParProduit = stockLotRepository.findDtoByProduitIdIn(ids).stream()
+                    .collect(Collectors.groupingBy(LotDeStockDto::produitId));
+            content = produits.getContent().stream()
+                    .map(produit -> {
+                        List<LotDeStockDto> lots = lotsParProduit.getOrDefault(produit.id(), List.of());
+                        return new ProduitAvecLotsDto(produit, LotsResume.de(produit.id(), lots), lots);
+                    })
+                    .toList();
+        } else {
+            Map<Long, LotsResume> resumes = stockLotRepository.resumerParProduitIdIn(ids).stream()
+                    .collect(Collectors.toMap(LotsResume::produitId, Function.identity()));
+            content = produits.getContent().stream()
+                    .map(produit -> new ProduitAvecLotsDto(produit,
+                            resumes.getOrDefault(produit.id(), LotsResume.vide(produit.id())), null))
+                    .toList();
+        }
+        return PageDto.of(produits, content);
+    }
+
     @Transactional
     public void removeLot(Long lotId) {
         LotDeStock lot = stockLotRepository.findById(lotId)
                 .orElseThrow(() -> new EntityNotFoundException("Lot non trouvé avec l'ID: " + lotId));
 
-        Long produitId = lot.getProduit().getId();
-
+        int quantite = journalStock.quantiteVerrouillee(lotId);
         stockLotRepository.delete(lot);
-        updateProductTotalStock(produitId);
+        if (quantite != 0) {
+            journalStock.enregistrer(TypeMouvement.AJUSTEMENT, lot, -quantite, null, "Lot supprimé");
+        }
+        lot.setQuantite(0);
+        mouvementEnregistre(lot, -quantite);
     }
 
 
     @Transactional
-    public void restituerStockAuxLots(Long produitId, int quantiteARestituer) {
+    public void restituerStockAuxLots(Long produitId, int quantiteARestituer, Long venteId) {
         if (quantiteARestituer <= 0) {
             return;
         }
@@ -161,12 +277,7 @@ public class StockService {
         }
 
         // Ajouter la quantité au lot qui expire le plus tard (premier de la liste triée DESC)
-        LotDeStock lotPourRestitution = lots.get(0);
-        lotPourRestitution.setQuantite(lotPourRestitution.getQuantite() + quantiteARestituer);
-        stockLotRepository.save(lotPourRestitution);
-
-        // Mettre à jour le stock total du produit (basé sur la somme des quantités des lots)
-        updateProductTotalStock(produitId);
+        entrer(TypeMouvement.ANNULATION_VENTE, lots.get(0), quantiteARestituer, venteId, null);
     }
 
 }
@@ -0,0 +1,164 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LotExpirantDto;
+import emsi.project.backendms1.dtos.MeilleureVenteDto;
+import emsi.project.backendms1.dtos.TableauDeBordDto;
+import emsi.project.backendms1.dtos.VentesPeriode;
+import emsi.project.backendms1.enums.PeriodeVentes;
+import emsi.project.backendms1.repository.LotDeStockRepo;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.repository.VenteRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Indicateurs du tableau de bord en un seul appel. Les agrégats, indépendants, partent en parallèle
+ * sur un pool borné, chacun dans sa propre transaction en lecture seule (donc sur le réplica s'il
+ * est configuré).
+ * <p>
+ * Le résultat est gardé {@code app.dashboard.cache-seconds}; pendant un calcul, les appels
+ * concurrents attendent ce même calcul au lieu d'en lancer un autre : trente tableaux de bord
+ * ouverts à l'ouverture de la pharmacie coûtent un seul jeu de requêtes. Les meilleures ventes de la semaine viennent de
+ * {@link MeilleuresVentesService}.
+ */
+@Service
+public class TableauDeBordService {
+
+    static final int JOURS_EXPIRATION = 30;
+    static final int LIMITE_LISTES = 5;
+
+    @Autowired
+    private VenteRepo venteRepo;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private LotDeStockRepo lotDeStockRepo;
+
+    @Autowired
+    private MeilleuresVentesService meilleuresVentesService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.dashboard.threads:4}")
+    private int threads;
+
+    @Value("${app.dashboard.cache-seconds:30}")
+    private long cacheSeconds;
+
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate lecture;
+    private final AtomicReference<Calcul> courant = new AtomicReference<>();
+
+    private record Calcul(long debut, CompletableFuture<TableauDeBordDto> resultat) {
+    }
+
+    @PostConstruct
+    void demarrer() {
+        AtomicInteger numero = new AtomicInteger();
+        // File bornée : un calcul à la fois, quatre agrégats; au-delà le thread appelant exécute
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(16), r -> {
+            Thread thread = new Thread(r, "tableau-de-bord-" + numero.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        lecture = new TransactionTemplate(transactionManager);
+        lecture.setReadOnly(true);
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    public TableauDeBordDto tableauDeBord() {
+        Calcul calcul = courant.get();
+        while (calcul == null || perime(calcul)) {
+            Calcul nouveau = new Calcul(System.nanoTime(), new CompletableFuture<>());
+            if (courant.compareAndSet(calcul, nouveau)) {
+                lancer(nouveau.resultat());
+                calcul = nouveau;
+            } else {
+                calcul = courant.get();
+            }
+        }
+        try {
+            return calcul.resultat().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Un calcul en cours n'est jamais périmé : on l'attend. Un échec n'est pas gardé en cache.
+    private boolean perime(Calcul calcul) {
+        CompletableFuture<TableauDeBordDto> resultat = calcul.resultat();
+        if (!resultat.isDone()) {
+            return false;
+        }
+        return resultat.isCompletedExceptionally()
+                || System.nanoTime() - calcul.debut() > TimeUnit.SECONDS.toNanos(cacheSeconds);
+    }
+
+    private void lancer(CompletableFuture<TableauDeBordDto> resultat) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        LocalDate aujourdhui = maintenant.toLocalDate();
+        PageRequest limite = PageRequest.of(0, LIMITE_LISTES);
+
+        CompletableFuture<VentesPeriode> ventes = lire(() -> venteRepo.resumerDepuis(aujourdhui.atStartOfDay()));
+        CompletableFuture<Produits> produits = lire(() -> new Produits(produitRepo.countByActifTrue(), produitRepo.compterSousSeuil()));
+        CompletableFuture<Expirations> expirations = lire(() -> new Expirations(
+                lotDeStockRepo.countByQuantiteGreaterThanAndDateExpirationBetween(0, aujourdhui, aujourdhui.plusDays(JOURS_EXPIRATION)),
+                lotDeStockRepo.findExpirants(aujourdhui, aujourdhui.plusDays(JOURS_EXPIRATION), limite)));
+        // Classement tenu en mémoire : pas de transaction
+        CompletableFuture<List<MeilleureVenteDto>> meilleures = CompletableFuture.supplyAsync(
+                () -> meilleuresVentesService.classement(PeriodeVentes.SEMAINE, LIMITE_LISTES).produits(), executor);
+
+        CompletableFuture.allOf(ventes, produits, expirations, meilleures)
+                .thenApply(ignore -> new TableauDeBordDto(maintenant,
+                        ventes.join().chiffreAffaires(), ventes.join().nombreVentes(),
+                        produits.join().actifs(), produits.join().sousSeuil(),
+                        expirations.join().nombre(), expirations.join().prochaines(),
+                        meilleures.join()))
+                .whenComplete((tableau, erreur) -> {
+                    if (erreur != null) {
+                        resultat.completeExceptionally(erreur instanceof CompletionException ? erreur.getCause() : erreur);
+                    } else {
+                        resultat.complete(tableau);
+                    }
+                });
+    }
+
+    private <T> CompletableFuture<T> lire(Supplier<T> requete) {
+        return CompletableFuture.supplyAsync(() -> lecture.execute(status -> requete.get()), executor);
+    }
+
+    private record Produits(long actifs, long sousSeuil) {
+    }
+
+    private record Expirations(long nombre, List<LotExpirantDto> prochaines) {
+    }
+}
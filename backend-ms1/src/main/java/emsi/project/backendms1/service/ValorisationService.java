@@ -0,0 +1,219 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.PageDto;
+import emsi.project.backendms1.dtos.ValorisationDto;
+import emsi.project.backendms1.dtos.ValorisationProduitDto;
+import emsi.project.backendms1.models.LigneVente;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Valorisation du stock et coût des ventes, tenus à jour par produit dans
+ * {@code valorisation_produit} : chaque mouvement d'un lot ajoute sa quantité au prix d'achat du
+ * lot, chaque ligne de vente son chiffre d'affaires et le coût des lots prélevés. Les écritures sont
+ * des incréments dans la transaction du mouvement; les rapports lisent une ligne par produit au lieu
+ * de joindre les ventes aux lots.
+ * <p>
+ * Une vente annulée rend son coût enregistré, tandis que ses unités reviennent au lot qui expire le
+ * plus tard (voir {@link StockService#restituerStockAuxLots}), à son prix : la valeur du stock suit
+ * toujours les lots.
+ */
+@Service
+public class ValorisationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ValorisationService.class);
+
+    private static final String QUANTITE = JournalStockService.QUANTITE_LOT;
+
+    private static final List<String> INCREMENTS = List.of("quantite_stock", "quantite_sans_cout", "valeur_stock",
+            "quantite_vendue", "quantite_vendue_sans_cout", "chiffre_affaires", "chiffre_affaires_coute", "cout_ventes");
+
+    private static final String COLONNES = "v.produit_id, p.nom_medicament, v.quantite_stock, v.quantite_sans_cout, "
+            + "v.valeur_stock, v.quantite_vendue, v.quantite_vendue_sans_cout, v.chiffre_affaires, "
+            + "v.chiffre_affaires_coute, v.cout_ventes FROM valorisation_produit v LEFT JOIN produit p ON p.id = v.produit_id";
+
+    private static final RowMapper<ValorisationProduitDto> LIGNE = (rs, i) -> {
+        BigDecimal coutVentes = rs.getBigDecimal(10);
+        return new ValorisationProduitDto(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getLong(4),
+                rs.getBigDecimal(5), rs.getLong(6), rs.getLong(7), rs.getBigDecimal(8), coutVentes,
+                rs.getBigDecimal(9).subtract(coutVentes));
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String requeteIncrement;
+
+    // Alias de ligne (MySQL 8.0.19+, VALUES() y est déprécié); H2 ne connaît que VALUES()
+    @PostConstruct
+    void choisirSyntaxeIncrement() {
+        String base = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        requeteIncrement = requeteIncrement(!"H2".equals(base));
+    }
+
+    static String requeteIncrement(boolean aliasDeLigne) {
+        String colonnes = String.join(", ", INCREMENTS);
+        StringBuilder sql = new StringBuilder("INSERT INTO valorisation_produit (produit_id, ").append(colonnes)
+                .append(") VALUES (?").append(", ?".repeat(INCREMENTS.size())).append(")")
+                .append(aliasDeLigne ? " AS n" : "").append(" ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < INCREMENTS.size(); i++) {
+            String colonne = INCREMENTS.get(i);
+            sql.append(i > 0 ? ", " : "").append(colonne).append(" = ").append(colonne).append(" + ")
+                    .append(aliasDeLigne ? "n." + colonne : "VALUES(" + colonne + ")");
+        }
+        return sql.toString();
+    }
+
+    /** Entrée (quantité positive) ou sortie d'unités d'un lot, à son prix d'achat. */
+    public void mouvementStock(Long produitId, int quantite, BigDecimal prixAchatHT) {
+        if (quantite == 0) {
+            return;
+        }
+        if (prixAchatHT == null) {
+            incrementer(produitId, quantite, quantite, 0, 0, 0, 0, 0, 0);
+        } else {
+            incrementer(produitId, quantite, 0, Montant.fois(Montant.centimes(prixAchatHT), quantite), 0, 0, 0, 0, 0);
+        }
+    }
+
+    /** Changement du prix d'achat d'un lot qui tenait {@code quantite} unités. */
+    public void reevaluer(Long produitId, int quantite, BigDecimal ancienPrix, BigDecimal nouveauPrix) {
+        boolean inchange = ancienPrix == null ? nouveauPrix == null
+                : nouveauPrix != null && ancienPrix.compareTo(nouveauPrix) == 0;
+        if (inchange || quantite == 0) {
+            return;
+        }
+        int sansCout = (nouveauPrix == null ? quantite : 0) - (ancienPrix == null ? quantite : 0);
+        long valeur = Montant.moins(valeur(nouveauPrix, quantite), valeur(ancienPrix, quantite));
+        incrementer(produitId, 0, sansCout, valeur, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Ajoute ({@code signe} = 1) ou retire ({@code signe} = -1) une ligne de vente des cumuls, avec le
+     * coût enregistré sur la ligne.
+     */
+    public void vente(LigneVente ligne, int signe) {
+        long quantite = (long) signe * ligne.getQuantite();
+        long montant = signe * ligne.getMontantTotalLigneCentimes();
+        if (ligne.getCoutAchatHT() == null) {
+            incrementer(ligne.getProduit().getId(), 0, 0, 0, quantite, quantite, montant, 0, 0);
+        } else {
+            incrementer(ligne.getProduit().getId(), 0, 0, 0, quantite, 0, montant, montant,
+                    signe * Montant.centimes(ligne.getCoutAchatHT()));
+        }
+    }
+
+    /**
+     * Coût d'achat des unités prélevées, au prix de chaque lot, ou {@code null} si l'un des lots n'a
+     * pas de prix d'achat.
+     */
+    public static BigDecimal coutAchat(List<FefoAllocator.Prise> prises) {
+        long cout = 0;
+        for (FefoAllocator.Prise prise : prises) {
+            if (prise.lot().getPrixAchatHT() == null) {
+                return null;
+            }
+            cout = Montant.plus(cout, Montant.fois(Montant.centimes(prise.lot().getPrixAchatHT()), prise.quantite()));
+        }
+        return Montant.euros(cout);
+    }
+
+    @Transactional(readOnly = true)
+    public ValorisationDto total() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*), COALESCE(SUM(quantite_stock), 0), "
+                + "COALESCE(SUM(quantite_sans_cout), 0), COALESCE(SUM(valeur_stock), 0), COALESCE(SUM(quantite_vendue), 0), "
+                + "COALESCE(SUM(quantite_vendue_sans_cout), 0), COALESCE(SUM(chiffre_affaires), 0), "
+                + "COALESCE(SUM(chiffre_affaires_coute), 0), COALESCE(SUM(cout_ventes), 0) FROM valorisation_produit",
+                (rs, i) -> {
+                    BigDecimal coutVentes = rs.getBigDecimal(9);
+                    return new ValorisationDto(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4),
+                            rs.getLong(5), rs.getLong(6), rs.getBigDecimal(7), coutVentes,
+                            rs.getBigDecimal(8).subtract(coutVentes));
+                });
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ValorisationProduitDto> produit(Long produitId) {
+        return jdbcTemplate.query("SELECT " + COLONNES + " WHERE v.produit_id = ?", LIGNE, produitId).stream().findFirst();
+    }
+
+    /** Produits par valeur de stock décroissante. */
+    @Transactional(readOnly = true)
+    public PageDto<ValorisationProduitDto> produits(int page, int size) {
+        long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM valorisation_produit", Long.class);
+        List<ValorisationProduitDto> content = jdbcTemplate.query("SELECT " + COLONNES
+                + " ORDER BY v.valeur_stock DESC, v.produit_id LIMIT ? OFFSET ?", LIGNE, size, (long) page * size);
+        return new PageDto<>(content, page, size, total, (int) ((total + size - 1) / size));
+    }
+
+    /**
+     * Recalcule le stock des produits donnés depuis leurs lots, après une écriture JDBC
+     * (import de réception) qui ne passe pas par {@link StockService}.
+     */
+    @Transactional
+    public void recalculerStock(Collection<Long> produitIds) {
+        if (produitIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> creations = produitIds.stream()
+                .map(id -> new Object[]{id, 0, 0, BigDecimal.ZERO, 0, 0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO})
+                .toList();
+        jdbcTemplate.batchUpdate(requeteIncrement, creations);
+        List<Object[]> ids = produitIds.stream().map(id -> new Object[]{id, id, id, id}).toList();
+        jdbcTemplate.batchUpdate("UPDATE valorisation_produit SET "
+                + "quantite_stock = (SELECT COALESCE(SUM(" + QUANTITE + "), 0) FROM lot_de_stock l WHERE l.product_id = ?), "
+                + "quantite_sans_cout = (SELECT COALESCE(SUM(" + QUANTITE + "), 0) FROM lot_de_stock l "
+                + "WHERE l.product_id = ? AND l.prix_achatht IS NULL), "
+                + "valeur_stock = (SELECT COALESCE(SUM(" + QUANTITE + " * l.prix_achatht), 0) FROM lot_de_stock l "
+                + "WHERE l.product_id = ?) "
+                + "WHERE produit_id = ?", ids);
+    }
+
+    /**
+     * Reconstruit toute la table depuis les lots et les lignes de vente, après un chargement en JDBC
+     * (jeu de données). Les cumuls de ventes des produits supprimés sont perdus.
+     */
+    @Transactional
+    public void recalculer() {
+        jdbcTemplate.update("DELETE FROM valorisation_produit");
+        int produits = jdbcTemplate.update("INSERT INTO valorisation_produit (produit_id, quantite_stock, quantite_sans_cout, "
+                + "valeur_stock, quantite_vendue, quantite_vendue_sans_cout, chiffre_affaires, chiffre_affaires_coute, cout_ventes) "
+                + "SELECT p.id, "
+                + "(SELECT COALESCE(SUM(" + QUANTITE + "), 0) FROM lot_de_stock l WHERE l.product_id = p.id), "
+                + "(SELECT COALESCE(SUM(" + QUANTITE + "), 0) FROM lot_de_stock l WHERE l.product_id = p.id "
+                + "AND l.prix_achatht IS NULL), "
+                + "(SELECT COALESCE(SUM(" + QUANTITE + " * l.prix_achatht), 0) FROM lot_de_stock l WHERE l.product_id = p.id), "
+                + "(SELECT COALESCE(SUM(v.quantite), 0) FROM lignes_vente v WHERE v.produit_id = p.id), "
+                + "(SELECT COALESCE(SUM(v.quantite), 0) FROM lignes_vente v WHERE v.produit_id = p.id AND v.cout_achatht IS NULL), "
+                + "(SELECT COALESCE(SUM(v.quantite * v.prix_ventettc), 0) FROM lignes_vente v WHERE v.produit_id = p.id), "
+                + "(SELECT COALESCE(SUM(v.quantite * v.prix_ventettc), 0) FROM lignes_vente v "
+                + "WHERE v.produit_id = p.id AND v.cout_achatht IS NOT NULL), "
+                + "(SELECT COALESCE(SUM(v.cout_achatht), 0) FROM lignes_vente v WHERE v.produit_id = p.id) "
+                + "FROM produit p");
+        log.info("Valorisation recalculée pour {} produits", produits);
+    }
+
+    private static long valeur(BigDecimal prix, int quantite) {
+        return prix == null ? 0 : Montant.fois(Montant.centimes(prix), quantite);
+    }
+
+    private void incrementer(Long produitId, int quantiteStock, int quantiteSansCout, long valeurStock,
+                             long quantiteVendue, long quantiteVendueSansCout, long chiffreAffaires,
+                             long chiffreAffairesCoute, long coutVentes) {
+        jdbcTemplate.update(requeteIncrement, produitId, quantiteStock, quantiteSansCout, Montant.euros(valeurStock),
+                quantiteVendue, quantiteVendueSansCout, Montant.euros(chiffreAffaires),
+                Montant.euros(chiffreAffairesCoute), Montant.euros(coutVentes));
+    }
+}
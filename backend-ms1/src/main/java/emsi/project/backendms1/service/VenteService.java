@@ -1,13 +1,18 @@
 package emsi.project.backendms1.service;
+import emsi.project.backendms1.dtos.LigneVenteDto;
 import emsi.project.backendms1.dtos.LigneVenteRequest;
+import emsi.project.backendms1.dtos.VenteDto;
 import emsi.project.backendms1.dtos.VenteRequest;
+import emsi.project.backendms1.enums.TypeMouvement;
+import emsi.project.backendms1.mapper.VenteMapper;
 import emsi.project.backendms1.models.*;
+import emsi.project.backendms1.observability.SaleAllocationEvent;
 import emsi.project.backendms1.repository.LotDeStockRepo;
 import emsi.project.backendms1.repository.ProduitRepo;
 import emsi.project.backendms1.repository.UserRepository;
 import emsi.project.backendms1.repository.VenteRepo;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
+import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -16,7 +21,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 @Service
 public class VenteService {
 
@@ -32,17 +39,30 @@ public class VenteService {
         @Autowired
         private StockService stockService;
 
+        @Autowired
+        private VenteMapper venteMapper;
+
+        @Autowired
+        private JournalStockService journalStock;
+
+        @Autowired
+        private ValorisationService valorisation;
+
 
 
         @Transactional
         public Vente creerVente(VenteRequest venteRequest) {
         User user = null;
+        SaleAllocationEvent allocationEvent = new SaleAllocationEvent();
+        allocationEvent.begin();
+        int lotsTouches = 0;
+        List<FefoAllocator.Prise> prises = new ArrayList<>();
 
 
         Vente vente = new Vente();
         vente.setDateVente(LocalDateTime.now());
         vente.setLignesVente(new ArrayList<>());
-        vente.setMontantTotal(BigDecimal.ZERO);
+        long montantTotal = 0;
 
         if (venteRequest.getLignesVente() == null || venteRequest.getLignesVente().isEmpty()) {
             throw new IllegalArgumentException("La liste des lignes de vente ne peut pas être vide.");
@@ -52,6 +72,9 @@ public class VenteService {
             Produit produit = produitRepository.findById(itemDto.getProduitId())
                     .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'ID: " + itemDto.getProduitId()));
 
+            if (!produit.isActif()) {
+                throw new IllegalArgumentException("Le produit " + produit.getNomMedicament() + " est retiré du catalogue.");
+            }
             if (itemDto.getQuantite() <= 0) {
                 throw new IllegalArgumentException("La quantité vendue pour le produit ID " + itemDto.getProduitId() + " doit être positive.");
             }
@@ -60,30 +83,21 @@ public class VenteService {
                 throw new IllegalArgumentException("Le prix unitaire de vente TTC pour le produit ID " + itemDto.getProduitId() + " doit être positif ou nul.");
             }
 
-            Produit currentProduitState = produitRepository.findById(produit.getId())
-                    .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'ID: " + produit.getId()));
-
-            if (currentProduitState.getQuantiteTotaleEnStock() < itemDto.getQuantite()) {
-                throw new IllegalArgumentException("Stock insuffisant pour le produit: " + produit.getNomMedicament() +
-                        ". Demandé: " + itemDto.getQuantite() + ", Disponible: " + currentProduitState.getQuantiteTotaleEnStock());
-            }
-
+            // Stock lu sur les lots, depuis le journal : le produit ne porte plus de total écrit
             List<LotDeStock> lots = lotDeStockRepository.findByProduitIdOrderByDateExpirationAsc(produit.getId());
-
-            if (lots.isEmpty() && itemDto.getQuantite() > 0) {
-                throw new IllegalStateException("Aucun lot de stock trouvé pour le produit: " + produit.getNomMedicament() + " alors que le stock total est > 0. Incohérence de données possible.");
+            int disponible = lots.stream().mapToInt(LotDeStock::getQuantite).sum();
+            if (disponible < itemDto.getQuantite()) {
+                throw new IllegalArgumentException("Stock insuffisant pour le produit: " + produit.getNomMedicament() +
+                        ". Demandé: " + itemDto.getQuantite() + ", Disponible: " + disponible);
             }
 
-            int quantiteRestanteAVendrePourProduit = itemDto.getQuantite();
-            for (LotDeStock lot : lots) {
-                if (quantiteRestanteAVendrePourProduit == 0) break;
-
-                int quantiteAPrendreDuLot = Math.min(quantiteRestanteAVendrePourProduit, lot.getQuantite());
-                if (quantiteAPrendreDuLot > 0) {
-                    stockService.removeStockFromLot(lot.getId(), quantiteAPrendreDuLot);
-                    quantiteRestanteAVendrePourProduit -= quantiteAPrendreDuLot;
-                }
+            FefoAllocator.Resultat allocation = FefoAllocator.allocate(lots, itemDto.getQuantite());
+            for (FefoAllocator.Prise prise : allocation.prises()) {
+                stockService.sortirPourVente(prise.lot().getId(), prise.quantite(), dejaSorti(prises, prise.lot()));
             }
+            prises.addAll(allocation.prises());
+            lotsTouches += allocation.prises().size();
+            int quantiteRestanteAVendrePourProduit = allocation.reste();
 
             if (quantiteRestanteAVendrePourProduit > 0) {
                 throw new IllegalStateException("N'a pas pu allouer la quantité totale pour le produit: " + produit.getNomMedicament() +
@@ -94,29 +108,44 @@ public class VenteService {
             LigneVente ligneVente = new LigneVente();
             ligneVente.setProduit(produit);
             ligneVente.setQuantite(itemDto.getQuantite());
-            ligneVente.setPrixVenteTTC(itemDto.getPrixUnitaireVenteTTC());
+            // Prix arrondi au centime dès la requête : la ligne enregistrée et le total portent le même montant
+            long prixCentimes = Montant.centimes(itemDto.getPrixUnitaireVenteTTC());
+            ligneVente.setPrixVenteTTC(Montant.euros(prixCentimes));
+            ligneVente.setCoutAchatHT(ValorisationService.coutAchat(allocation.prises()));
             ligneVente.setVente(vente);
 
             vente.getLignesVente().add(ligneVente);
-            vente.setMontantTotal(vente.getMontantTotal().add(ligneVente.getMontantTotalLigne()));
+            montantTotal = Montant.plus(montantTotal, Montant.fois(prixCentimes, itemDto.getQuantite()));
         }
+        vente.setMontantTotal(Montant.euros(montantTotal));
 
-        return venteRepository.save(vente);
+        Vente venteEnregistree = venteRepository.save(vente);
+        journaliserSorties(prises, venteEnregistree.getId());
+        for (LigneVente ligne : venteEnregistree.getLignesVente()) {
+            valorisation.vente(ligne, 1);
+        }
+        commitAllocationEvent(allocationEvent, "creation", venteEnregistree, lotsTouches);
+        return venteEnregistree;
     }
 
     @Transactional
     public Vente modifierVente(Long venteId, VenteRequest venteRequest) {
+        SaleAllocationEvent allocationEvent = new SaleAllocationEvent();
+        allocationEvent.begin();
+        int lotsTouches = 0;
+        List<FefoAllocator.Prise> prises = new ArrayList<>();
         Vente venteAModifier = venteRepository.findById(venteId)
                 .orElseThrow(() -> new EntityNotFoundException("Vente non trouvée avec l'ID: " + venteId));
 
         List<LigneVente> anciennesLignes = new ArrayList<>(venteAModifier.getLignesVente());
 
         for (LigneVente ancienneLigne : anciennesLignes) {
-            stockService.restituerStockAuxLots(ancienneLigne.getProduit().getId(), ancienneLigne.getQuantite());
+            stockService.restituerStockAuxLots(ancienneLigne.getProduit().getId(), ancienneLigne.getQuantite(), venteId);
+            valorisation.vente(ancienneLigne, -1);
         }
 
         venteAModifier.getLignesVente().clear();
-        venteAModifier.setMontantTotal(BigDecimal.ZERO);
+        long montantTotal = 0;
 
 
         if (venteRequest.getLignesVente() == null || venteRequest.getLignesVente().isEmpty()) {
@@ -127,6 +156,9 @@ public class VenteService {
             Produit produit = produitRepository.findById(itemDto.getProduitId())
                     .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'ID: " + itemDto.getProduitId()));
 
+            if (!produit.isActif()) {
+                throw new IllegalArgumentException("Le produit " + produit.getNomMedicament() + " est retiré du catalogue.");
+            }
             if (itemDto.getQuantite() <= 0) {
                 throw new IllegalArgumentException("La quantité vendue pour le produit ID " + itemDto.getProduitId() + " doit être positive.");
             }
@@ -134,30 +166,20 @@ public class VenteService {
                 throw new IllegalArgumentException("Le prix unitaire de vente TTC pour le produit ID " + itemDto.getProduitId() + " doit être positif ou nul.");
             }
 
-            Produit currentProduitState = produitRepository.findById(produit.getId())
-                    .orElseThrow(() -> new EntityNotFoundException("Produit non trouvé avec l'ID: " + produit.getId()));
-
-
-            if (currentProduitState.getQuantiteTotaleEnStock() < itemDto.getQuantite()) {
-                throw new IllegalArgumentException("Stock insuffisant après ajustement pour le produit: " + produit.getNomMedicament() +
-                        ". Demandé: " + itemDto.getQuantite() + ", Disponible: " + currentProduitState.getQuantiteTotaleEnStock());
-            }
-
             List<LotDeStock> lots = lotDeStockRepository.findByProduitIdOrderByDateExpirationAsc(produit.getId());
-            if (lots.isEmpty() && itemDto.getQuantite() > 0) {
-                throw new IllegalStateException("Aucun lot de stock trouvé pour le produit: " + produit.getNomMedicament() + " après restitution. Incohérence de données possible.");
+            int disponible = lots.stream().mapToInt(LotDeStock::getQuantite).sum();
+            if (disponible < itemDto.getQuantite()) {
+                throw new IllegalArgumentException("Stock insuffisant après ajustement pour le produit: " + produit.getNomMedicament() +
+                        ". Demandé: " + itemDto.getQuantite() + ", Disponible: " + disponible);
             }
 
-            int quantiteRestanteAVendrePourProduit = itemDto.getQuantite();
-            for (LotDeStock lot : lots) {
-                if (quantiteRestanteAVendrePourProduit == 0) break;
-
-                int quantiteAPrendreDuLot = Math.min(quantiteRestanteAVendrePourProduit, lot.getQuantite());
-                if (quantiteAPrendreDuLot > 0) {
-                    stockService.removeStockFromLot(lot.getId(), quantiteAPrendreDuLot);
-                    quantiteRestanteAVendrePourProduit -= quantiteAPrendreDuLot;
-                }
+            FefoAllocator.Resultat allocation = FefoAllocator.allocate(lots, itemDto.getQuantite());
+            for (FefoAllocator.Prise prise : allocation.prises()) {
+                stockService.sortirPourVente(prise.lot().getId(), prise.quantite(), dejaSorti(prises, prise.lot()));
             }
+            prises.addAll(allocation.prises());
+            lotsTouches += allocation.prises().size();
+            int quantiteRestanteAVendrePourProduit = allocation.reste();
 
             if (quantiteRestanteAVendrePourProduit > 0) {
                 throw new IllegalStateException("N'a pas pu allouer la quantité totale pour le produit (modification): " + produit.getNomMedicament() +
@@ -168,16 +190,49 @@ public class VenteService {
             LigneVente nouvelleLigne = new LigneVente();
             nouvelleLigne.setProduit(produit);
             nouvelleLigne.setQuantite(itemDto.getQuantite());
-            nouvelleLigne.setPrixVenteTTC(itemDto.getPrixUnitaireVenteTTC());
+            long prixCentimes = Montant.centimes(itemDto.getPrixUnitaireVenteTTC());
+            nouvelleLigne.setPrixVenteTTC(Montant.euros(prixCentimes));
+            nouvelleLigne.setCoutAchatHT(ValorisationService.coutAchat(allocation.prises()));
             nouvelleLigne.setVente(venteAModifier);
 
             venteAModifier.getLignesVente().add(nouvelleLigne);
-            venteAModifier.setMontantTotal(venteAModifier.getMontantTotal().add(nouvelleLigne.getMontantTotalLigne()));
+            montantTotal = Montant.plus(montantTotal, Montant.fois(prixCentimes, itemDto.getQuantite()));
         }
+        venteAModifier.setMontantTotal(Montant.euros(montantTotal));
 
         venteAModifier.setDateVente(LocalDateTime.now());
 
-        return venteRepository.save(venteAModifier);
+        Vente venteEnregistree = venteRepository.save(venteAModifier);
+        journaliserSorties(prises, venteId);
+        for (LigneVente ligne : venteEnregistree.getLignesVente()) {
+            valorisation.vente(ligne, 1);
+        }
+        commitAllocationEvent(allocationEvent, "modification", venteEnregistree, lotsTouches);
+        return venteEnregistree;
+    }
+
+    // Unités déjà prises sur le lot par les lignes précédentes de la vente, pas encore au journal
+    private static int dejaSorti(List<FefoAllocator.Prise> prises, LotDeStock lot) {
+        return prises.stream().filter(prise -> prise.lot() == lot).mapToInt(FefoAllocator.Prise::quantite).sum();
+    }
+
+    // Après l'enregistrement de la vente, pour que chaque sortie porte son identifiant
+    private void journaliserSorties(List<FefoAllocator.Prise> prises, Long venteId) {
+        for (FefoAllocator.Prise prise : prises) {
+            journalStock.enregistrer(TypeMouvement.VENTE, prise.lot(), -prise.quantite(), venteId, null);
+        }
+    }
+
+    private void commitAllocationEvent(SaleAllocationEvent event, String operation, Vente vente, int lotsTouches) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.venteId = vente.getId() != null ? vente.getId() : 0L;
+        event.operation = operation;
+        event.lignes = vente.getLignesVente().size();
+        event.lotsTouches = lotsTouches;
+        event.quantiteTotale = vente.getLignesVente().stream().mapToInt(LigneVente::getQuantite).sum();
+        event.commit();
     }
 
     @Transactional
@@ -186,17 +241,36 @@ public class VenteService {
                 .orElseThrow(() -> new EntityNotFoundException("Vente non trouvée avec l'ID: " + venteId));
 
         for (LigneVente ligne : venteASupprimer.getLignesVente()) {
-            stockService.restituerStockAuxLots(ligne.getProduit().getId(), ligne.getQuantite());
+            stockService.restituerStockAuxLots(ligne.getProduit().getId(), ligne.getQuantite(), venteId);
+            valorisation.vente(ligne, -1);
         }
         venteRepository.delete(venteASupprimer);
     }
 
+    @Transactional(readOnly = true)
     public Optional<Vente> getVenteById(Long id) {
             return venteRepository.findById(id);
         }
 
+        @Transactional(readOnly = true)
         public List<Vente> getAllVentes() {
             return venteRepository.findAll();
         }
+
+        // Deux requêtes (en-têtes puis lignes), aucune entité chargée
+        @Transactional(readOnly = true)
+        public Optional<VenteDto> getVenteDtoById(Long id) {
+            return venteRepository.findProjectedById(id)
+                    .map(resume -> venteMapper.toDto(resume, venteRepository.findLignesDtoByVenteId(id)));
+        }
+
+        @Transactional(readOnly = true)
+        public List<VenteDto> getAllVenteDtos() {
+            Map<Long, List<LigneVenteDto>> lignesParVente = venteRepository.findAllLignesDto().stream()
+                    .collect(Collectors.groupingBy(LigneVenteDto::venteId));
+            return venteRepository.findAllProjectedByOrderByIdAsc().stream()
+                    .map(resume -> venteMapper.toDto(resume, lignesParVente.getOrDefault(resume.getId(), List.of())))
+                    .toList();
+        }
     }
 
@@ -0,0 +1,61 @@
+-- Schéma tel que créé jusqu'ici par hibernate.ddl-auto=update.
+-- Sur une base existante, Flyway pose une baseline en version 1 et ce script n'est pas rejoué.
+
+create table produit (
+    id                       bigint       not null auto_increment,
+    codeean                  varchar(13),
+    dosage                   varchar(255),
+    forme                    enum ('CAPSULE','CREAM','INJECTION','POWDER','SACHET','SYRUP','TABLET') not null,
+    nom_medicament           varchar(255) not null,
+    prix_achatht             decimal(38,2),
+    prix_ventettc            decimal(38,2),
+    quantite_totale_en_stock integer      not null,
+    seuil_stock              integer      not null,
+    primary key (id)
+);
+
+create table lot_de_stock (
+    id              bigint       not null auto_increment,
+    date_expiration date         not null,
+    date_reception  date,
+    numero_lot      varchar(100) not null,
+    prix_achatht    decimal(10,2),
+    quantite        integer      not null,
+    product_id      bigint       not null,
+    primary key (id),
+    constraint fk_lot_de_stock_produit foreign key (product_id) references produit (id)
+);
+
+create table ventes (
+    id            bigint         not null auto_increment,
+    date_vente    datetime(6)    not null,
+    montant_total decimal(12,2)  not null,
+    primary key (id)
+);
+
+create table lignes_vente (
+    id               bigint        not null auto_increment,
+    date_expiration  date,
+    numero_lot_stock varchar(100),
+    prix_ventettc    decimal(10,2) not null,
+    quantite         integer       not null,
+    produit_id       bigint        not null,
+    vente_id         bigint        not null,
+    primary key (id),
+    constraint fk_lignes_vente_produit foreign key (produit_id) references produit (id),
+    constraint fk_lignes_vente_vente foreign key (vente_id) references ventes (id)
+);
+
+create table users (
+    id       bigint not null,
+    email    varchar(255),
+    password varchar(255),
+    role     varchar(255),
+    username varchar(255),
+    primary key (id)
+);
+
+create table users_seq (
+    next_val bigint
+);
+insert into users_seq values (1);
@@ -0,0 +1,26 @@
+-- Index des requêtes chaudes (LotDeStockRepo, ProduitRepo, VenteRepo, authentification).
+
+-- FEFO (findByProduitIdOrderByDateExpirationAsc/Desc, findByProduitId) et somme du stock
+-- (calculateTotalStockQuantityForProduct) : la quantité en fin d'index rend la somme couvrante.
+create index idx_lot_produit_expiration on lot_de_stock (product_id, date_expiration, quantite);
+
+-- findByProduitIdAndNumeroLot : un numéro de lot est unique par produit (StockService.addStock)
+create unique index uk_lot_produit_numero on lot_de_stock (product_id, numero_lot);
+
+-- findByCodeEAN / existsByCodeEAN (scan en caisse) et findByNomMedicament / existsByNomMedicament
+create unique index uk_produit_code_ean on produit (codeean);
+create index idx_produit_nom on produit (nom_medicament);
+
+-- Historique et agrégats de ventes par période
+create index idx_ventes_date on ventes (date_vente);
+
+-- Ventes par produit (rapports, suppression d'un produit)
+create index idx_lignes_vente_produit on lignes_vente (produit_id);
+
+-- findByUsername / existsByUsername / existsByEmail
+create unique index uk_users_username on users (username);
+create unique index uk_users_email on users (email);
+
+-- User passe de la table de séquence users_seq à l'auto-incrément, comme les autres entités
+alter table users modify id bigint not null auto_increment;
+drop table if exists users_seq;
@@ -0,0 +1,3 @@
+-- Synchronisation du catalogue fournisseur (CatalogueSyncService) : une référence absente du
+-- fichier est désactivée, pas supprimée, pour garder ses lots et son historique de ventes.
+alter table produit add column actif boolean not null default true;
@@ -0,0 +1,37 @@
+-- Journal des mouvements de stock : une ligne par variation de quantité d'un lot, jamais modifiée
+-- ni supprimée. Pas de clé étrangère vers le lot, le produit ou la vente : l'historique survit
+-- à leur suppression.
+create table mouvement_stock (
+    id             bigint       not null auto_increment,
+    date_mouvement datetime(6)  not null,
+    type           enum ('AJUSTEMENT','ANNULATION_VENTE','PERTE','RECEPTION','RETOUR','VENTE') not null,
+    produit_id     bigint       not null,
+    lot_id         bigint       not null,
+    quantite       integer      not null,
+    vente_id       bigint,
+    motif          varchar(255),
+    primary key (id)
+);
+
+-- Solde d'un lot (instantané + mouvements suivants) et historique par produit
+create index idx_mouvement_lot on mouvement_stock (lot_id, id, quantite);
+create index idx_mouvement_produit on mouvement_stock (produit_id, id);
+
+-- Instantanés périodiques : quantité de chaque lot après le mouvement dernier_mouvement_id
+create table instantane_lot (
+    id                   bigint      not null auto_increment,
+    lot_id               bigint      not null,
+    produit_id           bigint      not null,
+    dernier_mouvement_id bigint      not null,
+    quantite             integer     not null,
+    date_instantane      datetime(6) not null,
+    primary key (id)
+);
+
+create index idx_instantane_lot on instantane_lot (lot_id, dernier_mouvement_id);
+
+-- Le stock déjà en base entre au journal comme un ajustement initial
+insert into mouvement_stock (date_mouvement, type, produit_id, lot_id, quantite, motif)
+select current_timestamp, 'AJUSTEMENT', product_id, id, quantite, 'Reprise du stock existant'
+from lot_de_stock
+where quantite <> 0;
@@ -0,0 +1,4 @@
+-- Stock à une date passée (StockADateService) : coupe du journal à la date demandée, puis
+-- dernier instantané de chaque lot d'un produit avant cette coupe.
+create index idx_mouvement_date on mouvement_stock (date_mouvement, id);
+create index idx_instantane_produit on instantane_lot (produit_id, dernier_mouvement_id);
@@ -0,0 +1,34 @@
+-- Coût d'achat d'une ligne de vente, d'après les lots réellement prélevés (FEFO). Null pour les
+-- lignes antérieures, dont les lots ne sont pas connus, ou si un lot prélevé n'a pas de prix d'achat.
+alter table lignes_vente add column cout_achatht decimal(12,2);
+
+-- Valorisation par produit, tenue à jour à chaque mouvement de stock et à chaque vente : les
+-- rapports la lisent sans parcourir les lots ni l'historique des ventes. Pas de clé étrangère,
+-- comme le journal de stock : les cumuls de ventes survivent au produit.
+create table valorisation_produit (
+    produit_id                bigint        not null,
+    -- stock : unités en lots, dont sans prix d'achat, et valeur des autres au prix de leur lot
+    quantite_stock            integer       not null,
+    quantite_sans_cout        integer       not null,
+    valeur_stock              decimal(14,2) not null,
+    -- ventes cumulées : la marge porte sur les seules lignes dont le coût est connu
+    quantite_vendue           bigint        not null,
+    quantite_vendue_sans_cout bigint        not null,
+    chiffre_affaires          decimal(14,2) not null,
+    chiffre_affaires_coute    decimal(14,2) not null,
+    cout_ventes               decimal(14,2) not null,
+    primary key (produit_id)
+);
+
+insert into valorisation_produit (produit_id, quantite_stock, quantite_sans_cout, valeur_stock, quantite_vendue,
+                                  quantite_vendue_sans_cout, chiffre_affaires, chiffre_affaires_coute, cout_ventes)
+select p.id,
+       (select coalesce(sum(l.quantite), 0) from lot_de_stock l where l.product_id = p.id),
+       (select coalesce(sum(l.quantite), 0) from lot_de_stock l where l.product_id = p.id and l.prix_achatht is null),
+       (select coalesce(sum(l.quantite * l.prix_achatht), 0) from lot_de_stock l where l.product_id = p.id),
+       (select coalesce(sum(v.quantite), 0) from lignes_vente v where v.produit_id = p.id),
+       (select coalesce(sum(v.quantite), 0) from lignes_vente v where v.produit_id = p.id),
+       (select coalesce(sum(v.quantite * v.prix_ventettc), 0) from lignes_vente v where v.produit_id = p.id),
+       0,
+       0
+from produit p;
@@ -0,0 +1,23 @@
+-- Rapports calculés en arrière-plan (RapportJobService) : demande, avancement et résultat CSV
+-- compressé, gardé app.rapports.retention-heures après la fin du calcul.
+create table rapport_job (
+    id              varchar(36) not null,
+    type            varchar(30) not null,
+    periode_debut   date,
+    periode_fin     date,
+    -- empreinte du type et de la période : deux demandes identiques partagent le même calcul
+    cle             varchar(64) not null,
+    statut          varchar(20) not null,
+    progression     integer     not null,
+    lignes          bigint      not null,
+    message         varchar(500),
+    cree_le         datetime(6) not null,
+    demarre_le      datetime(6),
+    termine_le      datetime(6),
+    resultat        longblob,
+    taille_resultat bigint,
+    primary key (id)
+);
+
+create index idx_rapport_job_cle on rapport_job (cle, cree_le);
+create index idx_rapport_job_termine on rapport_job (termine_le);
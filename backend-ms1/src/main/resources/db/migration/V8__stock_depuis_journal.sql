@@ -0,0 +1,13 @@
+-- Le journal devient la source du stock : la quantité d'un lot n'est plus réécrite à chaque
+-- mouvement. lot_de_stock.quantite devient l'instantané du lot après dernier_mouvement_id, tenu
+-- par le passage d'instantanés; la quantité courante est cet instantané plus les mouvements
+-- suivants (idx_mouvement_lot).
+alter table lot_de_stock add column dernier_mouvement_id bigint not null default 0;
+
+-- Le journal fait foi : chaque lot repart de la somme de ses mouvements
+update lot_de_stock
+set quantite             = (select coalesce(sum(m.quantite), 0) from mouvement_stock m where m.lot_id = lot_de_stock.id),
+    dernier_mouvement_id = (select coalesce(max(m.id), 0) from mouvement_stock m where m.lot_id = lot_de_stock.id);
+
+-- Stock total d'un produit : somme de ses lots, calculée à la lecture
+alter table produit drop column quantite_totale_en_stock;
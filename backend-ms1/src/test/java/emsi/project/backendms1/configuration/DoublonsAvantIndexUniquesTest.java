@@ -0,0 +1,58 @@
+package emsi.project.backendms1.configuration;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DoublonsAvantIndexUniquesTest {
+
+    // Base à part : la migration est rejouée depuis V1, sans toucher à celle des autres tests
+    private final DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:doublons;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    @Test
+    @DisplayName("Migration V2 - refusée tant que des doublons existent, les valeurs à corriger sont listées")
+    void v2_doublonsSignales() {
+        flyway("1").migrate();
+        try {
+            jdbcTemplate.update("INSERT INTO produit (codeean, forme, nom_medicament, quantite_totale_en_stock, seuil_stock) "
+                    + "VALUES ('3400930000022', 'TABLET', 'Doliprane', 0, 5), ('3400930000022', 'TABLET', 'Dafalgan', 0, 5), "
+                    + "(NULL, 'SYRUP', 'Toplexil', 0, 5), (NULL, 'SYRUP', 'Hélicidine', 0, 5)");
+            jdbcTemplate.update("INSERT INTO users (id, email, username) VALUES (1, 'caisse@pharmacie.ma', 'caissier1'), "
+                    + "(2, 'caisse@pharmacie.ma', 'caissier2')");
+
+            FlywayException erreur = assertThrows(FlywayException.class, () -> flyway(null).migrate());
+            assertTrue(erreur.getMessage().contains("uk_produit_code_ean (produit.codeean) : '3400930000022' x2"), erreur.getMessage());
+            assertTrue(erreur.getMessage().contains("uk_users_email (users.email) : 'caisse@pharmacie.ma' x2"), erreur.getMessage());
+            assertEquals("1", jdbcTemplate.queryForObject("SELECT MAX(\"version\") FROM \"flyway_schema_history\" WHERE \"success\"",
+                    String.class));
+
+            // Une fois les doublons corrigés, la migration passe
+            jdbcTemplate.update("UPDATE produit SET codeean = NULL WHERE nom_medicament = 'Dafalgan'");
+            jdbcTemplate.update("UPDATE users SET email = 'caisse2@pharmacie.ma' WHERE id = 2");
+            flyway(null).migrate();
+        } finally {
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private Flyway flyway(String cible) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .target(cible == null ? "latest" : cible)
+                .callbacks(new DoublonsAvantIndexUniques())
+                .load();
+    }
+}
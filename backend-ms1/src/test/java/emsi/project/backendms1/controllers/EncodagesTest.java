@@ -0,0 +1,23 @@
+package emsi.project.backendms1.controllers;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncodagesTest {
+
+    @Test
+    @DisplayName("Accept-Encoding - gzip retenu selon son poids, q=0 le refuse")
+    void accepteGzip_selonLePoids() {
+        assertTrue(Encodages.accepteGzip("gzip, deflate, br"));
+        assertTrue(Encodages.accepteGzip("br;q=1.0, gzip;q=0.8"));
+        assertTrue(Encodages.accepteGzip("*"));
+        assertFalse(Encodages.accepteGzip("gzip;q=0"));
+        assertFalse(Encodages.accepteGzip("gzip; q=0.000, identity"));
+        assertFalse(Encodages.accepteGzip("*;q=1, gzip;q=0"));
+        assertFalse(Encodages.accepteGzip("identity"));
+        assertFalse(Encodages.accepteGzip(null));
+    }
+}
@@ -0,0 +1,120 @@
+package emsi.project.backendms1.dataset;
+
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.repository.UserRepository;
+import emsi.project.backendms1.service.JournalStockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class DatasetGeneratorTest {
+
+    private static final LocalDate AUJOURDHUI = LocalDate.of(2025, 6, 1);
+    private static final DatasetGenerator.Volumes VOLUMES = new DatasetGenerator.Volumes(200, 600, 3000, 90, 3, 7L, 100);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    private DatasetGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = new DatasetGenerator(jdbcTemplate, userRepository, new BCryptPasswordEncoder(4));
+    }
+
+    @Test
+    @DisplayName("Generate - volumes demandés, journal de stock complet et cohérent avec les lots")
+    void generate_volumesEtStockCoherent() {
+        DatasetGenerator.Resultat resultat = generator.generate(VOLUMES, AUJOURDHUI);
+
+        assertEquals(200, count("produit"));
+        assertEquals(600, count("lot_de_stock"));
+        assertEquals(3000, count("lignes_vente"));
+        assertEquals(resultat.ventes(), count("ventes"));
+        assertEquals(3, userRepository.count());
+        assertEquals(0, count("lot_de_stock l WHERE " + JournalStockService.QUANTITE_LOT + " <> "
+                + "(SELECT SUM(m.quantite) FROM mouvement_stock m WHERE m.lot_id = l.id)"));
+        // Chaque ligne de vente sort de son lot, reçu avant elle, sans le vider
+        assertEquals(3000, count("mouvement_stock WHERE type = 'VENTE'"));
+        assertEquals(jdbcTemplate.queryForObject("SELECT SUM(quantite) FROM lignes_vente", Long.class),
+                -jdbcTemplate.queryForObject("SELECT SUM(quantite) FROM mouvement_stock WHERE type = 'VENTE'", Long.class));
+        assertEquals(0, count("mouvement_stock v JOIN mouvement_stock r ON r.lot_id = v.lot_id AND r.type = 'RECEPTION' "
+                + "WHERE v.type = 'VENTE' AND (v.id < r.id OR v.date_mouvement < r.date_mouvement)"));
+        assertEquals(0, count("lot_de_stock l WHERE " + JournalStockService.QUANTITE_LOT + " < 10"));
+        assertEquals(0, count("ventes v WHERE v.montant_total <> "
+                + "(SELECT SUM(l.quantite * l.prix_ventettc) FROM lignes_vente l WHERE l.vente_id = v.id)"));
+    }
+
+    @Test
+    @DisplayName("Generate - popularité concentrée sur quelques produits")
+    void generate_popularitéZipfienne() {
+        generator.generate(VOLUMES, AUJOURDHUI);
+
+        Long top10 = jdbcTemplate.queryForObject("SELECT SUM(n) FROM (SELECT COUNT(*) AS n FROM lignes_vente "
+                + "GROUP BY produit_id ORDER BY n DESC LIMIT 10) t", Long.class);
+        // 5 % des références font bien plus de 5 % des lignes
+        assertTrue(top10 > 3000 * 0.3, "Top 10 : " + top10);
+    }
+
+    @Test
+    @DisplayName("Generate - même graine, même jeu de données")
+    void generate_reproductible() {
+        generator.generate(VOLUMES, AUJOURDHUI);
+        BigDecimal premier = jdbcTemplate.queryForObject("SELECT SUM(montant_total) FROM ventes", BigDecimal.class);
+        long ventes = count("ventes");
+
+        generator.generate(VOLUMES, AUJOURDHUI);
+        BigDecimal total = jdbcTemplate.queryForObject("SELECT SUM(montant_total) FROM ventes", BigDecimal.class);
+
+        assertEquals(2 * ventes, count("ventes"));
+        assertEquals(0, premier.multiply(BigDecimal.valueOf(2)).compareTo(total));
+    }
+
+    @Test
+    @DisplayName("Generate - les insertions JPA suivantes obtiennent un nouvel identifiant")
+    void generate_puisSaveJpa() {
+        generator.generate(VOLUMES, AUJOURDHUI);
+
+        Produit produit = new Produit();
+        produit.setNomMedicament("Doliprane");
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.saveAndFlush(produit);
+
+        assertNotNull(produit.getId());
+        assertEquals(201, count("produit"));
+    }
+
+    @Test
+    @DisplayName("Ean13 - clé de contrôle valide")
+    void ean13_cleValide() {
+        assertEquals("6110000000017", DatasetGenerator.ean13(1));
+        assertEquals(13, DatasetGenerator.ean13(123456789L).length());
+    }
+
+    private long count(String from) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Long.class);
+    }
+}
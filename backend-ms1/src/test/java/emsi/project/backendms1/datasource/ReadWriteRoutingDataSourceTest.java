@@ -0,0 +1,99 @@
+package emsi.project.backendms1.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate lecture;
+    private TransactionTemplate ecriture;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = base("primary");
+        DataSource replica = base("replica");
+        DataSource routing = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        jdbcTemplate = new JdbcTemplate(routing);
+        ecriture = new TransactionTemplate(transactionManager);
+        lecture = new TransactionTemplate(transactionManager);
+        lecture.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaPinning.close();
+    }
+
+    @Test
+    @DisplayName("Transaction en lecture seule - servie par le réplica")
+    void lectureSeule_servieParLeReplica() {
+        assertEquals("replica", lecture.execute(status -> origine()));
+    }
+
+    @Test
+    @DisplayName("Transaction d'écriture - servie par le primaire")
+    void ecriture_servieParLePrimaire() {
+        assertEquals("primary", ecriture.execute(status -> origine()));
+    }
+
+    @Test
+    @DisplayName("Lecture après écriture dans la même requête - reste sur le primaire")
+    void lectureApresEcriture_resteSurLePrimaire() {
+        int[] premiersEpinglages = {0};
+        ReplicaPinning.open(false, () -> premiersEpinglages[0]++);
+
+        assertEquals("replica", lecture.execute(status -> origine()));
+        ecriture.execute(status -> origine());
+        assertEquals("primary", lecture.execute(status -> origine()));
+        ecriture.execute(status -> origine());
+
+        assertEquals(1, premiersEpinglages[0]);
+    }
+
+    @Test
+    @DisplayName("Lecture forcée sur le primaire - le temps du bloc, sans épingler la requête")
+    void lectureForcee_surLePrimaireSansEpingler() {
+        int[] premiersEpinglages = {0};
+        ReplicaPinning.open(false, () -> premiersEpinglages[0]++);
+
+        try (ReplicaPinning.PrimaryScope primaire = ReplicaPinning.forcePrimary()) {
+            assertEquals("primary", lecture.execute(status -> origine()));
+        }
+        assertEquals("replica", lecture.execute(status -> origine()));
+        assertEquals(0, premiersEpinglages[0]);
+    }
+
+    @Test
+    @DisplayName("Écriture hors requête - n'épingle pas le thread")
+    void ecritureHorsRequete_nEpinglePas() {
+        ecriture.execute(status -> origine());
+
+        assertEquals("replica", lecture.execute(status -> origine()));
+    }
+
+    private String origine() {
+        return jdbcTemplate.queryForObject("SELECT nom FROM origine", String.class);
+    }
+
+    private static DataSource base(String nom) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + nom + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS origine (nom VARCHAR(20))");
+        jdbc.execute("DELETE FROM origine");
+        jdbc.update("INSERT INTO origine VALUES (?)", nom);
+        return dataSource;
+    }
+}
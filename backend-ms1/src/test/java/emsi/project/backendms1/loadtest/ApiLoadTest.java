@@ -0,0 +1,193 @@
+package emsi.project.backendms1.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.User;
+import emsi.project.backendms1.repository.LotDeStockRepo;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test de charge de bout en bout : démarre l'application sur un port aléatoire, remplit la base
+ * puis rejoue un trafic mixte de caisse (login, catalogue, ventes, réceptions, tableau de bord)
+ * en modèle ouvert. Le rapport (débit et percentiles par endpoint) est affiché et écrit dans
+ * {@code target/load-test-report.txt}.
+ *
+ * <pre>
+ * mvn -Pload-test test -Dload.duration=120 -Dload.scale=3
+ * </pre>
+ * Réglages : {@code load.warmup}/{@code load.duration} (secondes), {@code load.scale}
+ * (multiplie tous les débits), {@code load.produits} (taille du catalogue initial).
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "loadtest"})
+class ApiLoadTest {
+
+    private static final String USERNAME = "caissier";
+    private static final String PASSWORD = "caissier";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private LotDeStockRepo lotDeStockRepo;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void traficMixteDeCaisse() throws Exception {
+        int nbProduits = Integer.getInteger("load.produits", 500);
+        double scale = Double.parseDouble(System.getProperty("load.scale", "1"));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup", 10));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration", 60));
+
+        List<Long> produitIds = seed(nbProduits);
+        String token = login();
+        String base = "http://localhost:" + port;
+        AtomicLong receptions = new AtomicLong();
+
+        OpenModelLoad load = new OpenModelLoad(client, warmup, duration)
+                .scenario("login", 1 * scale, random -> HttpRequest.newBuilder(URI.create(base + "/api/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(credentials()))
+                        .build())
+                .scenario("produits/all", 5 * scale, random -> authorized(base + "/api/produits/all", token).GET().build())
+                .scenario("ventes POST", 15 * scale, random -> authorized(base + "/api/ventes", token)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(vente(random, produitIds)))
+                        .build())
+                .scenario("stock/add", 1 * scale, random -> authorized(base + "/api/stock/add?productId="
+                        + pick(random, produitIds) + "&numeroLot=REC-" + receptions.incrementAndGet()
+                        + "&dateExpiration=" + LocalDate.now().plusMonths(18) + "&quantite=" + random.nextInt(10, 200)
+                        + "&prixAchatHT=4.50", token)
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build())
+                .scenario("dashboard", 2 * scale, random -> authorized(base + "/api/rapports/dashboard", token).GET().build());
+
+        OpenModelLoad.Report report = load.run();
+        String table = report.format();
+        System.out.println(table);
+        Path out = Path.of("target", "load-test-report.txt");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, table);
+
+        for (OpenModelLoad.EndpointResult result : report.endpoints()) {
+            assertTrue(result.count() > 0, "Aucune réponse mesurée pour " + result.name());
+        }
+    }
+
+    private List<Long> seed(int nbProduits) {
+        if (userRepository.findByUsername(USERNAME) == null) {
+            userRepository.save(new User(null, USERNAME, passwordEncoder.encode(PASSWORD), "caissier@pharmacie.ma", "ROLE_USER"));
+        }
+
+        FormeEnum[] formes = FormeEnum.values();
+        List<Produit> produits = new ArrayList<>(nbProduits);
+        for (int i = 0; i < nbProduits; i++) {
+            Produit produit = new Produit();
+            produit.setNomMedicament("Médicament " + i);
+            produit.setCodeEAN(String.valueOf(3400930000000L + i));
+            produit.setPrixVenteTTC(new BigDecimal("25.90"));
+            produit.setPrixAchatHT(new BigDecimal("15.00"));
+            produit.setSeuilStock(20);
+            produit.setForme(formes[i % formes.length]);
+            produit.setDosage("500mg");
+            produits.add(produit);
+        }
+        produits = produitRepo.saveAll(produits);
+
+        List<LotDeStock> lots = new ArrayList<>(nbProduits * 2);
+        for (Produit produit : produits) {
+            for (int l = 0; l < 2; l++) {
+                LotDeStock lot = new LotDeStock();
+                lot.setProduit(produit);
+                lot.setNumeroLot("INIT-" + produit.getId() + "-" + l);
+                lot.setDateExpiration(LocalDate.now().plusMonths(6 + l * 12));
+                lot.setDateReception(LocalDate.now());
+                lot.setQuantiteInstantane(1_000_000);
+                lot.setPrixAchatHT(new BigDecimal("15.00"));
+                lots.add(lot);
+            }
+        }
+        lotDeStockRepo.saveAll(lots);
+        return produits.stream().map(Produit::getId).toList();
+    }
+
+    private String login() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials()))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        JsonNode body = mapper.readTree(response.body());
+        return body.get("token").asText();
+    }
+
+    private String credentials() {
+        return "{\"username\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private static HttpRequest.Builder authorized(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    // Panier de 1 à 4 articles; les produits de tête sont plus souvent scannés
+    private static String vente(SplittableRandom random, List<Long> produitIds) {
+        int lignes = random.nextInt(1, 5);
+        StringBuilder json = new StringBuilder("{\"lignesVente\":[");
+        for (int i = 0; i < lignes; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"produitId\":").append(pick(random, produitIds))
+                    .append(",\"quantite\":").append(random.nextInt(1, 3))
+                    .append(",\"prixUnitaireVenteTTC\":25.90}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static long pick(SplittableRandom random, List<Long> produitIds) {
+        double u = random.nextDouble();
+        return produitIds.get((int) (u * u * produitIds.size()));
+    }
+}
@@ -0,0 +1,157 @@
+package emsi.project.backendms1.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Générateur de charge en modèle ouvert : chaque scénario émet ses requêtes selon un processus
+ * de Poisson à débit fixe, sans attendre les réponses précédentes. La latence est mesurée depuis
+ * l'instant d'arrivée prévu (et non d'envoi effectif), ce qui évite la coordinated omission
+ * quand le serveur ou le générateur prend du retard.
+ */
+public class OpenModelLoad {
+
+    private final HttpClient client;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+
+    public OpenModelLoad(HttpClient client, Duration warmup, Duration duration) {
+        this.client = client;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    /**
+     * @param ratePerSecond débit d'arrivée moyen
+     * @param request       fabrique de requête; reçoit un aléa propre au scénario
+     */
+    public OpenModelLoad scenario(String name, double ratePerSecond, Function<SplittableRandom, HttpRequest> request) {
+        scenarios.put(name, new Scenario(name, ratePerSecond, request, new SplittableRandom(name.hashCode())));
+        return this;
+    }
+
+    public Report run() throws InterruptedException {
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        Queue<CompletableFuture<?>> inFlight = new ConcurrentLinkedQueue<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (Scenario scenario : scenarios.values()) {
+            Thread thread = new Thread(() -> scenario.drive(client, start, measureFrom, end, inFlight), "load-" + scenario.name);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+            // les requêtes en échec ou trop lentes sont déjà comptées comme erreurs
+        }
+
+        List<EndpointResult> results = new ArrayList<>();
+        for (Scenario scenario : scenarios.values()) {
+            results.add(new EndpointResult(scenario.name, scenario.rate, scenario.latencyMicros.copy(),
+                    scenario.errors.get(), duration.toNanos() / 1e9));
+        }
+        return new Report(results);
+    }
+
+    private static final class Scenario {
+        final String name;
+        final double rate;
+        final Function<SplittableRandom, HttpRequest> request;
+        final SplittableRandom random;
+        final Histogram latencyMicros = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(2), 3);
+        final AtomicLong errors = new AtomicLong();
+
+        Scenario(String name, double rate, Function<SplittableRandom, HttpRequest> request, SplittableRandom random) {
+            this.name = name;
+            this.rate = rate;
+            this.request = request;
+            this.random = random;
+        }
+
+        void drive(HttpClient client, long start, long measureFrom, long end, Queue<CompletableFuture<?>> inFlight) {
+            double meanIntervalNanos = 1e9 / rate;
+            long next = start;
+            while (true) {
+                // arrivées de Poisson : intervalles exponentiels
+                next += (long) (-Math.log(1.0 - random.nextDouble()) * meanIntervalNanos);
+                if (next >= end) {
+                    return;
+                }
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long intended = next;
+                boolean measured = intended >= measureFrom;
+                HttpRequest httpRequest = request.apply(random);
+                inFlight.add(client.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            if (!measured) {
+                                return;
+                            }
+                            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                            latencyMicros.recordValue(Math.min(micros, latencyMicros.getHighestTrackableValue()));
+                            if (error != null || response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        }));
+            }
+        }
+    }
+
+    public record EndpointResult(String name, double targetRate, Histogram latencyMicros, long errors, double seconds) {
+
+        public long count() {
+            return latencyMicros.getTotalCount();
+        }
+
+        public double throughput() {
+            return count() / seconds;
+        }
+
+        public double percentileMillis(double percentile) {
+            return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+
+    public record Report(List<EndpointResult> endpoints) {
+
+        public String format() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%-16s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+                    "endpoint", "cible/s", "req/s", "erreurs", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+            for (EndpointResult r : endpoints) {
+                out.append(String.format("%-16s %8.1f %8.1f %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        r.name(), r.targetRate(), r.throughput(), r.errors(),
+                        r.percentileMillis(50), r.percentileMillis(90), r.percentileMillis(99),
+                        r.percentileMillis(99.9), r.latencyMicros().getMaxValue() / 1000.0));
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({CatalogueSnapshotService.class, CatalogueVersion.class})
+class CatalogueSnapshotServiceTest {
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Catalogue modifié - aJour le relit aussitôt, courant sert l'ancienne photographie en attendant l'arrière-plan")
+    void catalogueModifie_aJourRelitAussitot() {
+        // Reconstruction en arrière-plan retardée : seule la lecture synchrone peut voir le produit
+        ReflectionTestUtils.setField(catalogueSnapshotService, "intervalleMs", 5_000L);
+        CatalogueSnapshot avant = catalogueSnapshotService.aJour();
+
+        Produit produit = new Produit();
+        produit.setNomMedicament("Nurofen");
+        produit.setCodeEAN("3400930000020");
+        produit.setSeuilStock(5);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.save(produit);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        try {
+            assertSame(avant, catalogueSnapshotService.courant());
+
+            CatalogueSnapshot apres = catalogueSnapshotService.aJour();
+            assertEquals(catalogueVersion.catalogue(), apres.version());
+            assertNull(avant.produit(produit.getId()));
+            assertNotNull(apres.produit(produit.getId()));
+            assertSame(apres, catalogueSnapshotService.courant());
+        } finally {
+            jdbcTemplate.update("DELETE FROM produit WHERE id = ?", produit.getId());
+            ReflectionTestUtils.setField(catalogueSnapshotService, "intervalleMs", 1_000L);
+        }
+    }
+}
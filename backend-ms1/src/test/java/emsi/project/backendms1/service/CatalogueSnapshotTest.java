@@ -0,0 +1,60 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import emsi.project.backendms1.dtos.ProduitDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogueSnapshotTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ProduitDto doliprane = new ProduitDto(7L, "Doliprane", "3400930000006", new BigDecimal("12.50"),
+            new BigDecimal("8.00"), 10, FormeEnum.TABLET, new String("500mg"), 42);
+    private final ProduitDto spasfon = new ProduitDto(3L, "Spasfon", null, null, new BigDecimal("2.10"),
+            null, null, new String("500mg"), 0);
+
+    @Test
+    @DisplayName("JSON pré-encodé - identique à la sérialisation Jackson des DTO, triés par id")
+    void json_identiqueAJackson() throws IOException {
+        CatalogueSnapshot snapshot = CatalogueSnapshot.de(4, List.of(doliprane, spasfon), objectMapper.getFactory());
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(List.of(spasfon, doliprane))),
+                objectMapper.readTree(snapshot.json()));
+        assertEquals(4, snapshot.version());
+        assertEquals(2, snapshot.taille());
+    }
+
+    @Test
+    @DisplayName("Gzip - se décompresse en JSON identique")
+    void gzip_seDecompresseEnJson() throws IOException {
+        CatalogueSnapshot snapshot = CatalogueSnapshot.de(1, List.of(doliprane, spasfon), objectMapper.getFactory());
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot.jsonGzip()))) {
+            assertArrayEquals(snapshot.json(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("Colonnes - relecture par id, chaînes dédoublonnées")
+    void colonnes_relectureEtDedoublonnage() {
+        CatalogueSnapshot snapshot = CatalogueSnapshot.de(1, List.of(doliprane, spasfon), objectMapper.getFactory());
+
+        assertEquals(doliprane, snapshot.produit(7L));
+        assertEquals(spasfon, snapshot.produit(3L));
+        assertNull(snapshot.produit(5L));
+        assertSame(snapshot.produit(7L).dosage(), snapshot.produit(3L).dosage());
+    }
+}
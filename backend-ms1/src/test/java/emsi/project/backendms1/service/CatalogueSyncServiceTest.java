@@ -0,0 +1,164 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.CatalogueSyncRapport;
+import emsi.project.backendms1.dtos.ErreurLigne;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({CatalogueSyncService.class, CatalogueVersion.class})
+class CatalogueSyncServiceTest {
+
+    private static final String ENTETE = "codeEAN;nomMedicament;prixVenteTTC;prixAchatHT;seuilStock;forme;dosage\n";
+
+    @Autowired
+    private CatalogueSyncService catalogueSyncService;
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Catalogue complet - créations, modifications, inchangés et absents désactivés")
+    void synchroniserCsv_diffParEan() throws IOException {
+        List<Produit> produits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            produits.add(produit(3400932000000L + i, "Produit " + i, "12.5"));
+        }
+        produitRepo.saveAll(produits);
+        entityManager.flush();
+        entityManager.clear();
+        int actifsAvant = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM produit WHERE actif AND codeean IS NOT NULL", Integer.class);
+
+        // 0-59 identiques (prix écrit autrement), 60-89 prix modifié, 90-99 absents, 20 nouveaux
+        StringBuilder csv = new StringBuilder(ENTETE);
+        for (int i = 0; i < 90; i++) {
+            csv.append(3400932000000L + i).append(";Produit ").append(i).append(';')
+                    .append(i < 60 ? "12,50" : "13.90").append(";8;10;tablet;500mg\n");
+        }
+        for (int i = 0; i < 20; i++) {
+            csv.append(3400932100000L + i).append(";Nouveau ").append(i).append(";9.90;;5;SYRUP;\n");
+        }
+
+        CatalogueSyncRapport rapport = catalogueSyncService.synchroniserCsv(new StringReader(csv.toString()), true);
+
+        assertEquals(110, rapport.lignes());
+        assertEquals(20, rapport.produitsCrees());
+        assertEquals(30, rapport.produitsModifies());
+        assertEquals(60, rapport.produitsInchanges());
+        assertEquals(actifsAvant - 90, rapport.produitsDesactives());
+        assertEquals(0, rapport.nombreErreurs());
+        assertEquals(0, new BigDecimal("13.90").compareTo(jdbcTemplate.queryForObject(
+                "SELECT prix_ventettc FROM produit WHERE codeean = '3400932000075'", BigDecimal.class)));
+        assertEquals(Boolean.FALSE, jdbcTemplate.queryForObject(
+                "SELECT actif FROM produit WHERE codeean = '3400932000095'", Boolean.class));
+        assertEquals("SYRUP", jdbcTemplate.queryForObject(
+                "SELECT forme FROM produit WHERE codeean = '3400932100007'", String.class));
+
+        // Le même fichier une seconde fois : plus rien à écrire
+        long version = catalogueVersion.catalogue();
+        rapport = catalogueSyncService.synchroniserCsv(new StringReader(csv.toString()), true);
+        assertEquals(110, rapport.produitsInchanges());
+        assertEquals(0, rapport.produitsCrees() + rapport.produitsModifies() + rapport.produitsDesactives());
+        assertEquals(version, catalogueVersion.catalogue());
+    }
+
+    @Test
+    @DisplayName("Lignes invalides - rapportées, la référence n'est pas désactivée pour autant")
+    void synchroniserJson_erreursParLigne() throws IOException {
+        produitRepo.save(produit(3400932200000L, "Existant", "4.00"));
+        entityManager.flush();
+        String json = "[{\"codeEAN\": \"3400932200000\", \"prixVenteTTC\": \"-1\"},"
+                + "{\"codeEAN\": \"3400932200001\", \"nomMedicament\": \"Sans forme\", \"seuilStock\": 3},"
+                + "{\"codeEAN\": \"3400932200002\", \"nomMedicament\": \"Gélule\", \"seuilStock\": 3, \"forme\": \"GELULE\"},"
+                + "{\"nomMedicament\": \"Sans EAN\"},"
+                + "{\"codeEAN\": \"3400932200003\", \"nomMedicament\": \"Crème\", \"seuilStock\": 2, \"forme\": \"CREAM\"},"
+                + "{\"codeEAN\": \"3400932200003\", \"nomMedicament\": \"Doublon\", \"seuilStock\": 2, \"forme\": \"CREAM\"}]";
+
+        CatalogueSyncRapport rapport = catalogueSyncService.synchroniserJson(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), false);
+
+        assertEquals(1, rapport.produitsCrees());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 6L), rapport.erreurs().stream().map(ErreurLigne::ligne).toList());
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT actif FROM produit WHERE codeean = '3400932200000'", Boolean.class));
+        assertEquals(0, new BigDecimal("4.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT prix_ventettc FROM produit WHERE codeean = '3400932200000'", BigDecimal.class)));
+    }
+
+    @Test
+    @DisplayName("Cache de second niveau - seuls les produits modifiés en sortent")
+    void synchroniserCsv_cacheResteChaud() throws IOException {
+        Produit inchange = produitRepo.save(produit(3400932300000L, "Inchangé", "7.00"));
+        Produit modifie = produitRepo.save(produit(3400932300001L, "Modifié", "7.00"));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        try {
+            produitRepo.findById(inchange.getId());
+            produitRepo.findById(modifie.getId());
+            assertTrue(entityManagerFactory.getCache().contains(Produit.class, inchange.getId()));
+
+            String csv = ENTETE
+                    + "3400932300000;Inchangé;7;8;10;TABLET;500mg\n"
+                    + "3400932300001;Modifié;7.50;8;10;TABLET;500mg\n";
+            CatalogueSyncRapport rapport = catalogueSyncService.synchroniserCsv(new StringReader(csv), false);
+
+            assertEquals(1, rapport.produitsModifies());
+            assertTrue(entityManagerFactory.getCache().contains(Produit.class, inchange.getId()));
+            assertFalse(entityManagerFactory.getCache().contains(Produit.class, modifie.getId()));
+        } finally {
+            produitRepo.deleteAllById(List.of(inchange.getId(), modifie.getId()));
+        }
+    }
+
+    private static Produit produit(long ean, String nom, String prixVenteTTC) {
+        Produit produit = new Produit();
+        produit.setNomMedicament(nom);
+        produit.setCodeEAN(String.valueOf(ean));
+        produit.setPrixVenteTTC(new BigDecimal(prixVenteTTC));
+        produit.setPrixAchatHT(new BigDecimal("8"));
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        produit.setDosage("500mg");
+        return produit;
+    }
+}
@@ -0,0 +1,86 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CatalogueVersion.class, StockService.class, ProduitService.class, JournalStockService.class, ValorisationService.class})
+class CatalogueVersionTest {
+
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProduitService produitService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Test
+    @DisplayName("Écritures - versions incrémentées au commit seulement, ETag changé")
+    void ecritures_incremententAuCommit() {
+        String etagProduits = catalogueVersion.etagProduits(null);
+        String etagLots = catalogueVersion.etagLots(null);
+        long stock = catalogueVersion.stock();
+
+        Produit produit = new Produit();
+        produit.setNomMedicament("Doliprane");
+        produit.setCodeEAN("3400930000005");
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitService.createProduct(produit);
+        stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 20, new BigDecimal("3.20"));
+
+        // Pas encore visible des autres transactions : l'ETag ne doit pas bouger
+        assertEquals(etagProduits, catalogueVersion.etagProduits(null));
+        assertEquals(stock, catalogueVersion.stock());
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        try {
+            assertNotEquals(etagProduits, catalogueVersion.etagProduits(null));
+            assertNotEquals(etagLots, catalogueVersion.etagLots(null));
+            // Le lot, puis son mouvement de réception
+            assertEquals(stock + 2, catalogueVersion.stock());
+            assertNotEquals(catalogueVersion.etagProduits(null), catalogueVersion.etagProduits("id,codeEAN"));
+            // Corps gzip et identité de la même photographie : deux ETags forts distincts
+            assertNotEquals(catalogueVersion.etagProduits(catalogueVersion.catalogue(), null),
+                    catalogueVersion.etagProduits(catalogueVersion.catalogue(), "gzip"));
+        } finally {
+            produitRepo.deleteById(produit.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Transaction annulée - versions inchangées")
+    void rollback_neChangeRien() {
+        long catalogue = catalogueVersion.catalogue();
+
+        Produit produit = new Produit();
+        produit.setNomMedicament("Spasfon");
+        produit.setSeuilStock(5);
+        produit.setForme(FormeEnum.TABLET);
+        produitService.createProduct(produit);
+        TestTransaction.end();
+
+        assertEquals(catalogue, catalogueVersion.catalogue());
+    }
+}
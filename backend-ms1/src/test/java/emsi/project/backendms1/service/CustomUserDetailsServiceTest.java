@@ -11,6 +11,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -102,6 +105,32 @@ class CustomUserDetailsServiceTest {
     }
 
 
+    @Test
+    @DisplayName("Charger Utilisateur par Nom - Compte administrateur configuré : ROLE_ADMIN en plus de son rôle")
+    void chargerUtilisateurParNom_devraitAjouterRoleAdmin_quandUtilisateurEstAdministrateur() {
+        ReflectionTestUtils.setField(customUserDetailsService, "admins", Set.of("admin"));
+        User admin = new User();
+        admin.setUsername("admin");
+        admin.setPassword("motDePasseCrypte");
+        admin.setRole("ROLE_USER");
+        User caissier = new User();
+        caissier.setUsername("caissier");
+        caissier.setPassword("motDePasseCrypte");
+        caissier.setRole("ROLE_USER");
+        when(userRepository.findByUsername("admin")).thenReturn(admin);
+        when(userRepository.findByUsername("caissier")).thenReturn(caissier);
+
+        UserDetails adminDetails = customUserDetailsService.loadUserByUsername("admin");
+        UserDetails caissierDetails = customUserDetailsService.loadUserByUsername("caissier");
+
+        assertEquals(2, adminDetails.getAuthorities().size());
+        assertTrue(adminDetails.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        assertTrue(adminDetails.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        assertEquals(1, caissierDetails.getAuthorities().size());
+        assertFalse(caissierDetails.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+    }
+
+
     @Test
     @DisplayName("Charger Utilisateur par Nom - Cas Erreur : Utilisateur non trouvé")
     void chargerUtilisateurParNom_devraitLeverUsernameNotFoundException_quandUtilisateurNexistePas() {
@@ -0,0 +1,74 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.enums.PeriodeVentes;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FenetreVentesTest {
+
+    private final LocalDateTime lundi = LocalDateTime.of(2025, 6, 2, 10, 15);
+
+    @Test
+    @DisplayName("Classement - les 20 premiers d'un flux très inégal, estimations dans la borne d'erreur")
+    void classement_fluxInegal() {
+        FenetreVentes fenetre = new FenetreVentes(PeriodeVentes.JOUR, lundi, 100, 4, 2048);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        // Loi de Zipf sur 5000 produits : quelques produits font l'essentiel des ventes
+        double[] cumul = new double[5000];
+        double somme = 0;
+        for (int i = 0; i < cumul.length; i++) {
+            somme += 1.0 / (i + 1);
+            cumul[i] = somme;
+        }
+        for (int i = 0; i < 200_000; i++) {
+            int rang = Arrays.binarySearch(cumul, random.nextDouble() * somme);
+            long produitId = 1000 + (rang < 0 ? -rang - 1 : rang);
+            long quantite = 1 + random.nextInt(3);
+            exact.merge(produitId, quantite, Long::sum);
+            fenetre.ajouter(lundi.plusMinutes(i % 600), produitId, quantite);
+        }
+
+        FenetreVentes.Classement classement = fenetre.classement(lundi.plusHours(11), 20);
+
+        List<Long> attendus = exact.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(20).map(Map.Entry::getKey).toList();
+        assertEquals(attendus, classement.candidats().stream().map(FenetreVentes.Candidat::produitId).toList());
+        assertEquals(exact.values().stream().mapToLong(Long::longValue).sum(), classement.total());
+        for (FenetreVentes.Candidat candidat : classement.candidats()) {
+            long vrai = exact.get(candidat.produitId());
+            assertTrue(candidat.quantite() >= vrai);
+            assertTrue(candidat.quantite() - vrai <= classement.erreurMax());
+        }
+    }
+
+    @Test
+    @DisplayName("Retraits et fin de période - ligne supprimée décomptée, nouvelle période repartie de zéro")
+    void retraitsEtFinDePeriode() {
+        FenetreVentes fenetre = new FenetreVentes(PeriodeVentes.HEURE, lundi, 10, 4, 2048);
+        fenetre.ajouter(lundi, 1L, 30);
+        fenetre.ajouter(lundi, 2L, 20);
+        fenetre.ajouter(lundi.minusHours(1), 3L, 500);
+        fenetre.ajouter(lundi, 1L, -25);
+
+        List<FenetreVentes.Candidat> candidats = fenetre.classement(lundi, 5).candidats();
+        assertEquals(List.of(new FenetreVentes.Candidat(2L, 20), new FenetreVentes.Candidat(1L, 5)), candidats);
+
+        FenetreVentes.Classement heureSuivante = fenetre.classement(lundi.plusHours(1), 5);
+        assertEquals(lundi.plusHours(1).withMinute(0), heureSuivante.debut());
+        assertEquals(0, heureSuivante.total());
+        assertEquals(List.of(), heureSuivante.candidats());
+    }
+}
@@ -0,0 +1,226 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.AgregatVentesDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.enums.RegroupementVentes;
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.repository.VenteRepo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({HistoriqueVentesService.class, CatalogueSnapshotService.class, CatalogueVersion.class})
+class HistoriqueVentesServiceTest {
+
+    @TempDir
+    static Path repertoire;
+
+    @DynamicPropertySource
+    static void repertoireHistorique(DynamicPropertyRegistry registry) {
+        registry.add("app.historique.repertoire", () -> repertoire.toString());
+    }
+
+    @Autowired
+    private HistoriqueVentesService historiqueVentesService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private VenteRepo venteRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    @Test
+    @DisplayName("Ventes validées - analysées par produit avec la marge du coût des lots, par forme, puis compensées à la suppression")
+    void ventesValidees_alimententLHistorique() {
+        // Prix d'achat du catalogue différent du coût des lots prélevés : seul ce dernier compte
+        Produit sirop = produit("Toplexil", "3400930000012", FormeEnum.SYRUP, new BigDecimal("3.00"));
+        Produit creme = produit("Biafine", "3400930000013", FormeEnum.CREAM, null);
+        LocalDateTime mardi = LocalDateTime.of(2025, 6, 3, 10, 30);
+        Vente vente = new Vente();
+        vente.setDateVente(mardi);
+        vente.setMontantTotal(new BigDecimal("34.25"));
+        vente.getLignesVente().add(ligne(vente, sirop, 3, "4.50", "7.20"));
+        vente.getLignesVente().add(ligne(vente, creme, 2, "10.38", null));
+        venteRepo.save(vente);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        // Photographie du catalogue reconstruite en arrière-plan : on attend celle qui contient les produits
+        catalogueSnapshotService.aJour();
+        try {
+            LocalDateTime debut = mardi.toLocalDate().atStartOfDay();
+            List<AgregatVentesDto> parProduit = historiqueVentesService.analyser(RegroupementVentes.PRODUIT, debut, debut.plusDays(1), null);
+            AgregatVentesDto toplexil = agregat(parProduit, sirop.getId().toString());
+            assertEquals("Toplexil", toplexil.libelle());
+            assertEquals(3L, toplexil.quantite());
+            assertEquals(new BigDecimal("13.50"), toplexil.chiffreAffaires());
+            assertEquals(new BigDecimal("6.30"), toplexil.marge());
+            assertEquals(0L, toplexil.quantiteSansCout());
+            AgregatVentesDto biafine = agregat(parProduit, creme.getId().toString());
+            assertEquals(new BigDecimal("0.00"), biafine.marge());
+            assertEquals(2L, biafine.quantiteSansCout());
+
+            List<AgregatVentesDto> sirops = historiqueVentesService.analyser(RegroupementVentes.FORME, debut, debut.plusDays(1), FormeEnum.SYRUP);
+            assertEquals(List.of(new AgregatVentesDto("SYRUP", null, 1L, 3L, new BigDecimal("13.50"), new BigDecimal("6.30"), 0L)), sirops);
+
+            List<AgregatVentesDto> parJour = historiqueVentesService.analyser(RegroupementVentes.JOUR_SEMAINE, debut, debut.plusDays(1), null);
+            assertEquals(List.of(new AgregatVentesDto("2", "mardi", 2L, 5L, new BigDecimal("34.26"), new BigDecimal("6.30"), 2L)), parJour);
+
+            TestTransaction.start();
+            venteRepo.delete(venteRepo.findById(vente.getId()).orElseThrow());
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+
+            AgregatVentesDto annule = agregat(historiqueVentesService.analyser(RegroupementVentes.PRODUIT, debut, debut.plusDays(1), null),
+                    sirop.getId().toString());
+            assertEquals(0L, annule.lignes());
+            assertEquals(new BigDecimal("0.00"), annule.chiffreAffaires());
+            assertEquals(new BigDecimal("0.00"), annule.marge());
+        } finally {
+            jdbcTemplate.update("DELETE FROM lignes_vente WHERE vente_id = ?", vente.getId());
+            jdbcTemplate.update("DELETE FROM ventes WHERE id = ?", vente.getId());
+            jdbcTemplate.update("DELETE FROM produit WHERE id IN (?, ?)", sirop.getId(), creme.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Reprise - les lignes écrites en JDBC sont ajoutées une seule fois")
+    void rattraper_lignesJdbc() {
+        Produit produit = produit("Hextril", "3400930000014", FormeEnum.SYRUP, null);
+        LocalDateTime date = LocalDateTime.of(2025, 6, 8, 18, 5);
+        jdbcTemplate.update("INSERT INTO ventes (date_vente, montant_total) VALUES (?, ?)", Timestamp.valueOf(date), new BigDecimal("12.00"));
+        Long venteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM ventes", Long.class);
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO lignes_vente (prix_ventettc, quantite, produit_id, vente_id, cout_achatht) "
+                    + "VALUES (?, ?, ?, ?, ?)", new BigDecimal("4.00"), 1, produit.getId(), venteId, i == 0 ? new BigDecimal("2.50") : null);
+        }
+
+        assertEquals(3, historiqueVentesService.rattraper());
+        assertEquals(0, historiqueVentesService.rattraper());
+
+        List<AgregatVentesDto> parHeure = historiqueVentesService.analyser(RegroupementVentes.HEURE, date.minusHours(1), date.plusHours(1), null);
+        assertEquals(List.of(new AgregatVentesDto("18", null, 3L, 3L, new BigDecimal("12.00"), new BigDecimal("1.50"), 2L)), parHeure);
+    }
+
+    @Test
+    @DisplayName("Reprise - une ligne manquée sous le dernier id repris est retrouvée au démarrage")
+    void combler_ligneManqueeSousLeDernierId() {
+        Produit produit = produit("Vicks", "3400930000021", FormeEnum.SYRUP, null);
+        LocalDateTime date = LocalDateTime.of(2025, 6, 9, 7, 40);
+        jdbcTemplate.update("INSERT INTO ventes (date_vente, montant_total) VALUES (?, ?)", Timestamp.valueOf(date), new BigDecimal("8.00"));
+        Long venteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM ventes", Long.class);
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("INSERT INTO lignes_vente (prix_ventettc, quantite, produit_id, vente_id, cout_achatht) "
+                    + "VALUES (?, ?, ?, ?, ?)", new BigDecimal("4.00"), 1, produit.getId(), venteId, new BigDecimal("2.50"));
+        }
+        // Seul l'écouteur de la seconde ligne a tourné avant l'arrêt
+        Long derniere = jdbcTemplate.queryForObject("SELECT MAX(id) FROM lignes_vente", Long.class);
+        HistoriqueVentes historique = (HistoriqueVentes) ReflectionTestUtils.getField(historiqueVentesService, "historique");
+        historique.ajouter(derniere, date, produit.getId(), 1, 400, 250);
+
+        assertEquals(0, historiqueVentesService.rattraper());
+        assertTrue(historiqueVentesService.combler() >= 1);
+        assertEquals(0, historiqueVentesService.combler());
+
+        List<AgregatVentesDto> parHeure = historiqueVentesService.analyser(RegroupementVentes.HEURE, date.minusMinutes(5), date.plusMinutes(5), null);
+        assertEquals(List.of(new AgregatVentesDto("7", null, 2L, 2L, new BigDecimal("8.00"), new BigDecimal("3.00"), 0L)), parHeure);
+    }
+
+    @Test
+    @DisplayName("Vente modifiée - la ligne compensatoire reste dans la période d'origine, la nouvelle ligne est datée du jour")
+    void venteModifiee_compenseALaDateDOrigine() {
+        Produit produit = produit("Actifed", "3400930000019", FormeEnum.TABLET, null);
+        LocalDateTime jeudi = LocalDateTime.of(2025, 6, 5, 9, 15);
+        Vente vente = new Vente();
+        vente.setDateVente(jeudi);
+        vente.setMontantTotal(new BigDecimal("20.00"));
+        vente.getLignesVente().add(ligne(vente, produit, 4, "5.00", "8.00"));
+        venteRepo.save(vente);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        try {
+            // Comme VenteService.modifierVente : lignes remplacées, vente redatée
+            TestTransaction.start();
+            Vente modifiee = venteRepo.findById(vente.getId()).orElseThrow();
+            modifiee.getLignesVente().clear();
+            modifiee.setDateVente(LocalDateTime.now());
+            modifiee.getLignesVente().add(ligne(modifiee, produit, 1, "5.00", "2.00"));
+            venteRepo.save(modifiee);
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+
+            LocalDateTime debut = jeudi.toLocalDate().atStartOfDay();
+            AgregatVentesDto origine = agregat(historiqueVentesService.analyser(RegroupementVentes.PRODUIT, debut, debut.plusDays(1), null),
+                    produit.getId().toString());
+            assertEquals(0L, origine.lignes());
+            assertEquals(new BigDecimal("0.00"), origine.chiffreAffaires());
+            assertEquals(new BigDecimal("0.00"), origine.marge());
+
+            LocalDateTime aujourdhui = LocalDateTime.now().toLocalDate().atStartOfDay();
+            AgregatVentesDto nouvelle = agregat(historiqueVentesService.analyser(RegroupementVentes.PRODUIT, aujourdhui,
+                    aujourdhui.plusDays(1), null), produit.getId().toString());
+            assertEquals(1L, nouvelle.quantite());
+            assertEquals(new BigDecimal("5.00"), nouvelle.chiffreAffaires());
+            assertEquals(new BigDecimal("3.00"), nouvelle.marge());
+        } finally {
+            jdbcTemplate.update("DELETE FROM lignes_vente WHERE vente_id = ?", vente.getId());
+            jdbcTemplate.update("DELETE FROM ventes WHERE id = ?", vente.getId());
+            jdbcTemplate.update("DELETE FROM produit WHERE id = ?", produit.getId());
+        }
+    }
+
+    private Produit produit(String nom, String ean, FormeEnum forme, BigDecimal prixAchatHT) {
+        Produit produit = new Produit();
+        produit.setNomMedicament(nom);
+        produit.setCodeEAN(ean);
+        produit.setSeuilStock(5);
+        produit.setForme(forme);
+        produit.setPrixAchatHT(prixAchatHT);
+        return produitRepo.save(produit);
+    }
+
+    private LigneVente ligne(Vente vente, Produit produit, int quantite, String prix, String cout) {
+        LigneVente ligne = new LigneVente();
+        ligne.setVente(vente);
+        ligne.setProduit(produit);
+        ligne.setQuantite(quantite);
+        ligne.setPrixVenteTTC(new BigDecimal(prix));
+        ligne.setCoutAchatHT(cout == null ? null : new BigDecimal(cout));
+        return ligne;
+    }
+
+    private AgregatVentesDto agregat(List<AgregatVentesDto> agregats, String cle) {
+        return agregats.stream().filter(a -> cle.equals(a.cle())).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,155 @@
+package emsi.project.backendms1.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistoriqueVentesTest {
+
+    private final LocalDateTime lundi = LocalDateTime.of(2025, 6, 2, 0, 0);
+
+    @TempDir
+    private Path repertoire;
+
+    @Test
+    @DisplayName("Agrégation parallèle sur plusieurs segments - mêmes sommes qu'un calcul ligne à ligne")
+    void agregation_identiqueAuCalculExact() {
+        HistoriqueVentes historique = HistoriqueVentes.ouvrir(repertoire, 1024);
+        Map<Long, long[]> exact = new TreeMap<>();
+        Random random = new Random(7);
+        LocalDateTime debut = lundi.plusDays(2);
+        LocalDateTime fin = lundi.plusDays(5);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime date = lundi.plusMinutes(i);
+            long produit = 1 + random.nextInt(40);
+            int quantite = 1 + random.nextInt(5);
+            long prix = 100 + random.nextInt(2000);
+            long cout = i % 5 == 0 ? HistoriqueVentes.SANS_COUT : quantite * prix / 2;
+            historique.ajouter(i + 1, date, produit, quantite, prix, cout);
+            if (!date.isBefore(debut) && date.isBefore(fin) && produit % 2 == 0) {
+                long[] sommes = exact.computeIfAbsent(produit, p -> new long[6]);
+                sommes[0]++;
+                sommes[1] += quantite;
+                sommes[2] += quantite * prix;
+                if (cout == HistoriqueVentes.SANS_COUT) {
+                    sommes[3] += quantite;
+                } else {
+                    sommes[4] += quantite * prix;
+                    sommes[5] += cout;
+                }
+            }
+        }
+
+        long[] produitsPairs = LongStream.rangeClosed(1, 40).filter(p -> p % 2 == 0).toArray();
+        List<HistoriqueVentes.Sommes> sommes = historique.agreger(
+                new HistoriqueVentes.Filtre(debut, fin, produitsPairs), HistoriqueVentes.Cle.PRODUIT);
+
+        assertEquals(exact.size(), sommes.size());
+        for (HistoriqueVentes.Sommes s : sommes) {
+            long[] attendu = exact.get(s.cle());
+            assertEquals(attendu[0], s.lignes());
+            assertEquals(attendu[1], s.quantite());
+            assertEquals(attendu[2], s.montantCentimes());
+            assertEquals(attendu[3], s.quantiteSansCout());
+            assertEquals(attendu[4], s.montantCouteCentimes());
+            assertEquals(attendu[5], s.coutCentimes());
+        }
+        assertEquals(10_000, historique.lignes());
+        assertEquals(10_000, historique.dernierLigneId());
+    }
+
+    @Test
+    @DisplayName("Réouverture - lignes relues sans rechargement, ajout poursuivi, compensation d'une ligne supprimée")
+    void reouverture_sansRechargement() {
+        HistoriqueVentes historique = HistoriqueVentes.ouvrir(repertoire, 1024);
+        for (int i = 0; i < 1500; i++) {
+            historique.ajouter(i + 1, lundi.plusHours(i % 48), 1L, 2, 350, 400);
+        }
+        historique.forcer();
+
+        HistoriqueVentes rouvert = HistoriqueVentes.ouvrir(repertoire, 1024);
+        assertEquals(1500, rouvert.lignes());
+        assertEquals(1500, rouvert.dernierLigneId());
+        rouvert.ajouter(1501, lundi.plusDays(6).plusHours(9), 2L, 4, 1000, 2000);
+        rouvert.ajouter(1501, lundi.plusDays(6).plusHours(9), 2L, -4, 1000, -2000);
+
+        List<HistoriqueVentes.Sommes> parJour = rouvert.agreger(new HistoriqueVentes.Filtre(null, null, null),
+                HistoriqueVentes.Cle.JOUR_SEMAINE);
+        assertEquals(List.of(
+                new HistoriqueVentes.Sommes(1, 756, 1512, 529_200, 0, 529_200, 302_400),
+                new HistoriqueVentes.Sommes(2, 744, 1488, 520_800, 0, 520_800, 297_600),
+                new HistoriqueVentes.Sommes(7, 0, 0, 0, 0, 0, 0)), parJour);
+
+        List<HistoriqueVentes.Sommes> parHeure = rouvert.agreger(
+                new HistoriqueVentes.Filtre(lundi, lundi.plusDays(1), null), HistoriqueVentes.Cle.HEURE);
+        assertEquals(24, parHeure.size());
+        assertEquals(new HistoriqueVentes.Sommes(0, 32, 64, 22_400, 0, 22_400, 12_800), parHeure.get(0));
+    }
+
+    @Test
+    @DisplayName("Ancien format - historique vidé à l'ouverture, la reprise repart du premier id")
+    void ancienFormat_vide() throws IOException {
+        HistoriqueVentes historique = HistoriqueVentes.ouvrir(repertoire, 1024);
+        for (int i = 0; i < 10; i++) {
+            historique.ajouter(i + 1, lundi.plusHours(i), 1L, 1, 100, 50);
+        }
+        historique.forcer();
+        try (FileChannel meta = FileChannel.open(repertoire.resolve("historique.meta"), StandardOpenOption.WRITE)) {
+            meta.truncate(16);
+        }
+
+        HistoriqueVentes rouvert = HistoriqueVentes.ouvrir(repertoire, 1024);
+        assertEquals(0, rouvert.lignes());
+        assertEquals(0, rouvert.dernierLigneId());
+        assertEquals(List.of(), rouvert.agreger(new HistoriqueVentes.Filtre(null, null, null), HistoriqueVentes.Cle.PRODUIT));
+    }
+
+    @Test
+    @DisplayName("Arrêt brutal - une ligne comptée mais dont une colonne manque est coupée à la réouverture")
+    void arretBrutal_ligneIncompleteCoupee() throws IOException {
+        HistoriqueVentes historique = HistoriqueVentes.ouvrir(repertoire, 1024);
+        for (int i = 0; i < 10; i++) {
+            historique.ajouter(i + 1, lundi.plusHours(i), 1L, 1, 100, 50);
+        }
+        historique.forcer();
+        for (int i = 10; i < 15; i++) {
+            historique.ajouter(i + 1, lundi.plusHours(i), 1L, 1, 100, 50);
+        }
+        // Page de la colonne des prix jamais écrite pour la 13e ligne et les suivantes
+        try (FileChannel prix = FileChannel.open(repertoire.resolve("segment-00000.prix"), StandardOpenOption.WRITE)) {
+            prix.write(ByteBuffer.allocate(3 * Long.BYTES), 12L * Long.BYTES);
+        }
+
+        HistoriqueVentes rouvert = HistoriqueVentes.ouvrir(repertoire, 1024);
+        assertEquals(12, rouvert.lignes());
+        assertEquals(12, rouvert.dernierLigneId());
+        assertArrayEquals(LongStream.rangeClosed(1, 12).toArray(), rouvert.idsVivants());
+    }
+
+    @Test
+    @DisplayName("Ids vivants - une ligne compensée n'y figure plus")
+    void idsVivants_sansLesLignesCompensees() {
+        HistoriqueVentes historique = HistoriqueVentes.ouvrir(repertoire, 1024);
+        for (long id : new long[]{5, 1, 3, 2, 4}) {
+            historique.ajouter(id, lundi, 1L, 2, 100, 50);
+        }
+        historique.ajouter(3, lundi, 1L, -2, 100, -50);
+
+        assertArrayEquals(new long[]{1, 2, 4, 5}, historique.idsVivants());
+    }
+}
@@ -0,0 +1,155 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LigneVenteRequest;
+import emsi.project.backendms1.dtos.MouvementStockDto;
+import emsi.project.backendms1.dtos.PageDto;
+import emsi.project.backendms1.dtos.SoldeLotDto;
+import emsi.project.backendms1.dtos.VenteRequest;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.enums.TypeMouvement;
+import emsi.project.backendms1.mapper.VenteMapperImpl;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.repository.ProduitRepo;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({JournalStockService.class, StockService.class, ProduitService.class, VenteService.class, ValorisationService.class, VenteMapperImpl.class})
+class JournalStockServiceTest {
+
+    @Autowired
+    private JournalStockService journalStockService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private VenteService venteService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Produit produit;
+
+    @BeforeEach
+    void setUp() {
+        produit = new Produit();
+        produit.setNomMedicament("Smecta");
+        produit.setCodeEAN("3400930000007");
+        produit.setSeuilStock(5);
+        produit.setForme(FormeEnum.SACHET);
+        produit = produitRepo.save(produit);
+    }
+
+    @Test
+    @DisplayName("Chaque variation d'un lot est journalisée, le solde du journal donne la quantité du lot")
+    void mouvements_journalises() {
+        LotDeStock lot = stockService.addStock(produit.getId(), "SM-1", LocalDate.now().plusYears(1), 20, new BigDecimal("2.10"));
+        stockService.declarerPerte(lot.getId(), 3, "Boîtes abîmées");
+        stockService.enregistrerRetour(lot.getId(), 1, null);
+        stockService.updateStockLot(lot.getId(), "SM-1", LocalDate.now().plusYears(1), 30, new BigDecimal("2.10"));
+        Vente vente = venteService.creerVente(venteDe(5));
+        venteService.supprimerVente(vente.getId());
+        entityManager.flush();
+
+        PageDto<MouvementStockDto> historique = journalStockService.historique(produit.getId(), 0, 50);
+        assertEquals(List.of(TypeMouvement.ANNULATION_VENTE, TypeMouvement.VENTE, TypeMouvement.AJUSTEMENT,
+                        TypeMouvement.RETOUR, TypeMouvement.PERTE, TypeMouvement.RECEPTION),
+                historique.content().stream().map(MouvementStockDto::type).toList());
+        assertEquals(List.of(5, -5, 12, 1, -3, 20), historique.content().stream().map(MouvementStockDto::quantite).toList());
+        assertEquals(vente.getId(), historique.content().get(1).venteId());
+
+        SoldeLotDto solde = journalStockService.solde(lot.getId());
+        assertEquals(30, solde.quantite());
+    }
+
+    @Test
+    @DisplayName("Perte - refusée au-delà du stock du lot, rien n'est journalisé")
+    void perte_auDelaDuStock() {
+        LotDeStock lot = stockService.addStock(produit.getId(), "SM-2", LocalDate.now().plusYears(1), 4, null);
+
+        assertThrows(IllegalArgumentException.class, () -> stockService.declarerPerte(lot.getId(), 5, null));
+        entityManager.flush();
+        assertEquals(1, journalStockService.historique(produit.getId(), 0, 50).totalElements());
+    }
+
+    @Test
+    @DisplayName("Instantanés - le solde repart du dernier instantané et ne lit que les mouvements suivants")
+    void instantanes_bornentLeSolde() {
+        LotDeStock lot = stockService.addStock(produit.getId(), "SM-3", LocalDate.now().plusYears(1), 40, null);
+        stockService.declarerPerte(lot.getId(), 4, null);
+        entityManager.flush();
+        assertEquals(1, journalStockService.prendreInstantanes());
+        assertEquals(1, instantanesDuLot(lot.getId()));
+        assertEquals(0, journalStockService.prendreInstantanes());
+
+        stockService.declarerPerte(lot.getId(), 6, null);
+        entityManager.flush();
+        SoldeLotDto solde = journalStockService.solde(lot.getId());
+        assertEquals(36, solde.quantiteInstantane());
+        assertEquals(1, solde.mouvementsDepuisInstantane());
+        assertEquals(30, solde.quantite());
+    }
+
+    @Test
+    @DisplayName("Journal source du stock - un mouvement ne réécrit ni le lot ni le produit, le passage avance l'instantané")
+    void instantanes_seulsAEcrireLeLot() {
+        LotDeStock lot = stockService.addStock(produit.getId(), "SM-4", LocalDate.now().plusYears(1), 40, null);
+        stockService.declarerPerte(lot.getId(), 4, null);
+        entityManager.flush();
+        // Le lot garde son instantané initial : la quantité courante vient du journal
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT quantite FROM lot_de_stock WHERE id = ?", Integer.class, lot.getId()));
+        assertEquals(36, quantiteCourante(lot.getId()));
+        entityManager.clear();
+        assertEquals(36, produitRepo.findById(produit.getId()).orElseThrow().getQuantiteTotaleEnStock());
+
+        journalStockService.prendreInstantanes();
+        Long dernier = jdbcTemplate.queryForObject("SELECT MAX(id) FROM mouvement_stock WHERE lot_id = ?", Long.class, lot.getId());
+        assertEquals(36, jdbcTemplate.queryForObject("SELECT quantite FROM lot_de_stock WHERE id = ?", Integer.class, lot.getId()));
+        assertEquals(dernier, jdbcTemplate.queryForObject("SELECT dernier_mouvement_id FROM lot_de_stock WHERE id = ?", Long.class, lot.getId()));
+        assertEquals(36, quantiteCourante(lot.getId()));
+        assertEquals(36, jdbcTemplate.queryForObject("SELECT quantite FROM instantane_lot WHERE lot_id = ?", Integer.class, lot.getId()));
+    }
+
+    private int quantiteCourante(Long lotId) {
+        return jdbcTemplate.queryForObject("SELECT " + JournalStockService.QUANTITE_LOT + " FROM lot_de_stock l WHERE l.id = ?",
+                Integer.class, lotId);
+    }
+
+    private int instantanesDuLot(Long lotId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM instantane_lot WHERE lot_id = ?", Integer.class, lotId);
+    }
+
+    private VenteRequest venteDe(int quantite) {
+        LigneVenteRequest ligne = new LigneVenteRequest();
+        ligne.setProduitId(produit.getId());
+        ligne.setQuantite(quantite);
+        ligne.setPrixUnitaireVenteTTC(new BigDecimal("4.50"));
+        VenteRequest request = new VenteRequest();
+        request.setLignesVente(List.of(ligne));
+        return request;
+    }
+}
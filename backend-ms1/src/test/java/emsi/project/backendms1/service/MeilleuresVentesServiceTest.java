@@ -0,0 +1,188 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.ClassementVentesDto;
+import emsi.project.backendms1.dtos.MeilleureVenteDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.enums.PeriodeVentes;
+import emsi.project.backendms1.models.LigneVente;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.repository.VenteRepo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({MeilleuresVentesService.class, CatalogueSnapshotService.class, CatalogueVersion.class})
+class MeilleuresVentesServiceTest {
+
+    @Autowired
+    private MeilleuresVentesService meilleuresVentesService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private VenteRepo venteRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    @Test
+    @DisplayName("Lignes validées - comptées à l'insertion et décomptées à la suppression, sans requête de classement")
+    void lignesValidees_alimententLeClassement() {
+        Produit produit = produit("Gaviscon", "3400930000010");
+        Vente vente = new Vente();
+        vente.setDateVente(LocalDateTime.now());
+        vente.setMontantTotal(new BigDecimal("4000.00"));
+        LigneVente ligne = new LigneVente();
+        ligne.setVente(vente);
+        ligne.setProduit(produit);
+        ligne.setQuantite(800);
+        ligne.setPrixVenteTTC(new BigDecimal("5.00"));
+        vente.getLignesVente().add(ligne);
+        venteRepo.save(vente);
+
+        // Rien avant le commit
+        assertEquals(0, quantite(meilleuresVentesService.classement(PeriodeVentes.HEURE, 50), produit.getId()));
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        // Photographie du catalogue reconstruite en arrière-plan : on attend celle qui contient le produit
+        catalogueSnapshotService.aJour();
+        try {
+            for (PeriodeVentes periode : PeriodeVentes.values()) {
+                ClassementVentesDto classement = meilleuresVentesService.classement(periode, 1);
+                assertEquals(produit.getId(), classement.produits().get(0).produitId());
+                assertEquals(800L, classement.produits().get(0).quantiteVendue());
+                assertEquals("Gaviscon", classement.produits().get(0).nomMedicament());
+            }
+
+            TestTransaction.start();
+            venteRepo.delete(venteRepo.findById(vente.getId()).orElseThrow());
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+
+            assertEquals(0, quantite(meilleuresVentesService.classement(PeriodeVentes.JOUR, 50), produit.getId()));
+        } finally {
+            jdbcTemplate.update("DELETE FROM lignes_vente WHERE produit_id = ?", produit.getId());
+            jdbcTemplate.update("DELETE FROM ventes WHERE id = ?", vente.getId());
+            jdbcTemplate.update("DELETE FROM produit WHERE id = ?", produit.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Vente modifiée - ses anciennes lignes sont décomptées de leur heure d'origine, pas de l'heure courante")
+    void venteModifiee_decompteALaDateDOrigine() {
+        Produit produit = produit("Maalox", "3400930000017");
+        Produit remplacant = produit("Rennie", "3400930000018");
+        Vente courante = vente(LocalDateTime.now(), produit, 5);
+        Vente ancienne = vente(LocalDateTime.now().minusHours(2), produit, 300);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        try {
+            assertEquals(5, quantite(meilleuresVentesService.classement(PeriodeVentes.HEURE, 50), produit.getId()));
+
+            // Comme VenteService.modifierVente : lignes remplacées, vente redatée
+            TestTransaction.start();
+            Vente modifiee = venteRepo.findById(ancienne.getId()).orElseThrow();
+            modifiee.getLignesVente().clear();
+            modifiee.setDateVente(LocalDateTime.now());
+            modifiee.getLignesVente().add(ligne(modifiee, remplacant, 1));
+            venteRepo.save(modifiee);
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+
+            ClassementVentesDto heure = meilleuresVentesService.classement(PeriodeVentes.HEURE, 50);
+            assertEquals(5, quantite(heure, produit.getId()));
+            assertEquals(1, quantite(heure, remplacant.getId()));
+        } finally {
+            for (Vente vente : new Vente[]{courante, ancienne}) {
+                jdbcTemplate.update("DELETE FROM lignes_vente WHERE vente_id = ?", vente.getId());
+                jdbcTemplate.update("DELETE FROM ventes WHERE id = ?", vente.getId());
+            }
+            jdbcTemplate.update("DELETE FROM produit WHERE id IN (?, ?)", produit.getId(), remplacant.getId());
+            meilleuresVentesService.reconstruire();
+        }
+    }
+
+    @Test
+    @DisplayName("Reconstruction - reprend les ventes de la période depuis la base")
+    void reconstruction_depuisLaBase() {
+        Produit produit = produit("Strepsils", "3400930000011");
+        jdbcTemplate.update("INSERT INTO ventes (date_vente, montant_total) VALUES (?, ?)",
+                Timestamp.valueOf(LocalDateTime.now()), new BigDecimal("2100.00"));
+        Long venteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM ventes", Long.class);
+        jdbcTemplate.update("INSERT INTO lignes_vente (prix_ventettc, quantite, produit_id, vente_id) VALUES (?, ?, ?, ?)",
+                new BigDecimal("3.50"), 600, produit.getId(), venteId);
+
+        meilleuresVentesService.reconstruire();
+
+        try {
+            assertEquals(600, quantite(meilleuresVentesService.classement(PeriodeVentes.SEMAINE, 50), produit.getId()));
+        } finally {
+            // Les données du test sont annulées : on repart d'un état propre pour les autres tests
+            TestTransaction.end();
+            meilleuresVentesService.reconstruire();
+        }
+    }
+
+    @Test
+    @DisplayName("Nombre de produits hors bornes - refusé")
+    void nombreHorsBornes_refuse() {
+        assertThrows(IllegalArgumentException.class, () -> meilleuresVentesService.classement(PeriodeVentes.JOUR, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> meilleuresVentesService.classement(PeriodeVentes.JOUR, MeilleuresVentesService.K_MAX + 1));
+    }
+
+    private Produit produit(String nom, String ean) {
+        Produit produit = new Produit();
+        produit.setNomMedicament(nom);
+        produit.setCodeEAN(ean);
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        return produitRepo.save(produit);
+    }
+
+    private Vente vente(LocalDateTime date, Produit produit, int quantite) {
+        Vente vente = new Vente();
+        vente.setDateVente(date);
+        vente.setMontantTotal(new BigDecimal(quantite));
+        vente.getLignesVente().add(ligne(vente, produit, quantite));
+        return venteRepo.save(vente);
+    }
+
+    private static LigneVente ligne(Vente vente, Produit produit, int quantite) {
+        LigneVente ligne = new LigneVente();
+        ligne.setVente(vente);
+        ligne.setProduit(produit);
+        ligne.setQuantite(quantite);
+        ligne.setPrixVenteTTC(BigDecimal.ONE);
+        return ligne;
+    }
+
+    private long quantite(ClassementVentesDto classement, Long produitId) {
+        return classement.produits().stream().filter(p -> p.produitId().equals(produitId))
+                .mapToLong(MeilleureVenteDto::quantiteVendue).sum();
+    }
+}
@@ -0,0 +1,48 @@
+package emsi.project.backendms1.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MontantTest {
+
+    @Test
+    @DisplayName("Conversion - arrondi au centime, la moitié s'éloignant de zéro")
+    void centimes_arrondiAuCentime() {
+        assertEquals(450, Montant.centimes(new BigDecimal("4.5")));
+        assertEquals(1234, Montant.centimes(new BigDecimal("12.34")));
+        assertEquals(1235, Montant.centimes(new BigDecimal("12.345")));
+        assertEquals(1234, Montant.centimes(new BigDecimal("12.3449")));
+        assertEquals(-1235, Montant.centimes(new BigDecimal("-12.345")));
+        assertEquals(new BigDecimal("12.30"), Montant.euros(1230));
+        assertEquals(new BigDecimal("-0.05"), Montant.euros(-5));
+    }
+
+    @Test
+    @DisplayName("Totaux - identiques au calcul en BigDecimal")
+    void totaux_identiquesABigDecimal() {
+        SplittableRandom random = new SplittableRandom(11);
+        BigDecimal attendu = BigDecimal.ZERO;
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal prix = BigDecimal.valueOf(random.nextLong(0, 1_000_000), 2);
+            int quantite = random.nextInt(1, 50);
+            attendu = attendu.add(prix.multiply(BigDecimal.valueOf(quantite)));
+            total = Montant.plus(total, Montant.fois(Montant.centimes(prix), quantite));
+        }
+        assertEquals(attendu, Montant.euros(total));
+    }
+
+    @Test
+    @DisplayName("Dépassement - une exception plutôt qu'un total faux")
+    void depassement_leveUneException() {
+        assertThrows(ArithmeticException.class, () -> Montant.plus(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Montant.fois(Long.MAX_VALUE / 2, 3));
+        assertThrows(ArithmeticException.class, () -> Montant.centimes(new BigDecimal("1e20")));
+    }
+}
@@ -145,13 +145,13 @@ class ProduitServiceTest {
     void deleteProduct_whenProductExistsAndNoStock_shouldDeleteProduct() {
         Long productId = 1L;
         Produit productToDelete = produit1;
-        when(productRepository.findById(productId)).thenReturn(Optional.of(productToDelete));
+        when(productRepository.findWithLotDeStocksById(productId)).thenReturn(Optional.of(productToDelete));
         when(stockLotRepository.calculateTotalStockQuantityForProduct(productId)).thenReturn(0);
         doNothing().when(productRepository).delete(productToDelete);
 
         produitService.deleteProduct(productId);
 
-        verify(productRepository, times(1)).findById(productId);
+        verify(productRepository, times(1)).findWithLotDeStocksById(productId);
         verify(stockLotRepository, times(1)).calculateTotalStockQuantityForProduct(productId);
         verify(productRepository, times(1)).delete(productToDelete);
     }
@@ -161,7 +161,7 @@ class ProduitServiceTest {
         Long productId = 1L;
         Produit productToDelete = produit1;
         int remainingStock = 10;
-        when(productRepository.findById(productId)).thenReturn(Optional.of(productToDelete));
+        when(productRepository.findWithLotDeStocksById(productId)).thenReturn(Optional.of(productToDelete));
         when(stockLotRepository.calculateTotalStockQuantityForProduct(productId)).thenReturn(remainingStock);
 
         IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
@@ -169,7 +169,7 @@ class ProduitServiceTest {
         });
         assertEquals("Impossible de supprimer le produit : stock restant disponible (" + remainingStock + " unités)", exception.getMessage());
 
-        verify(productRepository, times(1)).findById(productId);
+        verify(productRepository, times(1)).findWithLotDeStocksById(productId);
         verify(stockLotRepository, times(1)).calculateTotalStockQuantityForProduct(productId);
         verify(productRepository, never()).delete(any(Produit.class));
     }
@@ -177,53 +177,15 @@ class ProduitServiceTest {
     @Test
     void deleteProduct_whenProductDoesNotExist_shouldThrowEntityNotFoundException() {
         Long productId = 99L;
-        when(productRepository.findById(productId)).thenReturn(Optional.empty());
+        when(productRepository.findWithLotDeStocksById(productId)).thenReturn(Optional.empty());
 
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> {
             produitService.deleteProduct(productId);
         });
         assertEquals("Produit non trouvé avec l'id: " + productId, exception.getMessage());
 
-        verify(productRepository, times(1)).findById(productId);
+        verify(productRepository, times(1)).findWithLotDeStocksById(productId);
         verify(stockLotRepository, never()).calculateTotalStockQuantityForProduct(anyLong());
         verify(productRepository, never()).delete(any(Produit.class));
     }
-
-    @Test
-    void updateTotalStock_whenProductExists_shouldUpdateStockAndSave() {
-        Long productId = 1L;
-        Produit productToUpdateStock = produit1;
-        int newTotalStock = 50;
-        productToUpdateStock.setQuantiteTotaleEnStock(5);
-
-        when(productRepository.findById(productId)).thenReturn(Optional.of(productToUpdateStock));
-        when(stockLotRepository.calculateTotalStockQuantityForProduct(productId)).thenReturn(newTotalStock);
-        ArgumentCaptor<Produit> productCaptor = ArgumentCaptor.forClass(Produit.class);
-        when(productRepository.save(productCaptor.capture())).thenReturn(productToUpdateStock);
-
-        produitService.updateTotalStock(productId);
-
-        verify(productRepository, times(1)).findById(productId);
-        verify(stockLotRepository, times(1)).calculateTotalStockQuantityForProduct(productId);
-        verify(productRepository, times(1)).save(any(Produit.class));
-
-        Produit savedProduct = productCaptor.getValue();
-        assertEquals(newTotalStock, savedProduct.getQuantiteTotaleEnStock());
-        assertEquals(productId, savedProduct.getId());
-    }
-
-    @Test
-    void updateTotalStock_whenProductDoesNotExist_shouldThrowEntityNotFoundException() {
-        Long productId = 99L;
-        when(productRepository.findById(productId)).thenReturn(Optional.empty());
-
-        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> {
-            produitService.updateTotalStock(productId);
-        });
-        assertEquals("Produit non trouvé avec l'id: " + productId, exception.getMessage());
-
-        verify(productRepository, times(1)).findById(productId);
-        verify(stockLotRepository, never()).calculateTotalStockQuantityForProduct(anyLong());
-        verify(productRepository, never()).save(any(Produit.class));
-    }
-}
\ No newline at end of file
+}
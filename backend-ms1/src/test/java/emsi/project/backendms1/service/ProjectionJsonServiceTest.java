@@ -0,0 +1,118 @@
+package emsi.project.backendms1.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.support.SqlBudget;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ProjectionJsonService.class, StockService.class, ProduitService.class, JournalStockService.class, ValorisationService.class})
+class ProjectionJsonServiceTest {
+
+    @Autowired
+    private ProjectionJsonService projectionJsonService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Produit produit;
+
+    @BeforeEach
+    void setUp() {
+        produit = new Produit();
+        produit.setNomMedicament("Doliprane");
+        produit.setCodeEAN("3400930000004");
+        produit.setPrixVenteTTC(new BigDecimal("12.50"));
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.save(produit);
+        stockService.addStock(produit.getId(), "LOT-A", LocalDate.of(2031, 5, 1), 20, new BigDecimal("3.20"));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Produits avec fields - une requête, seulement id et les champs demandés")
+    void produitsPartiels_seulementLesChampsDemandes() throws IOException {
+        List<String> champs = ChampsPartiels.PRODUITS.parser("nomMedicament, codeEAN,nomMedicament");
+
+        JsonNode json = objectMapper.readTree(SqlBudget.atMost(1, () -> ecrire(ChampsPartiels.PRODUITS, champs, Map.of())));
+
+        assertEquals(List.of("id", "nomMedicament", "codeEAN"), champs);
+        JsonNode premier = json.get(0);
+        List<String> cles = new ArrayList<>();
+        premier.fieldNames().forEachRemaining(cles::add);
+        assertEquals(champs, cles);
+        assertEquals("3400930000004", premier.get("codeEAN").asText());
+    }
+
+    @Test
+    @DisplayName("Lots avec fields - filtrés par produit, dates au format ISO")
+    void lotsPartiels_filtresParProduit() throws IOException {
+        List<String> champs = ChampsPartiels.LOTS.parser("dateExpiration,quantite");
+
+        JsonNode json = objectMapper.readTree(ecrire(ChampsPartiels.LOTS, champs, Map.of("produitId", produit.getId())));
+
+        assertEquals(1, json.size());
+        assertEquals("2031-05-01", json.get(0).get("dateExpiration").asText());
+        assertEquals(20, json.get(0).get("quantite").asInt());
+    }
+
+    @Test
+    @DisplayName("Champ inconnu - refusé avant toute requête")
+    void champInconnu_refuse() {
+        assertThrows(ChampsPartiels.ChampInconnuException.class, () -> ChampsPartiels.PRODUITS.parser("nomMedicament,motDePasse"));
+    }
+
+    @Test
+    @DisplayName("JPQL - ne sélectionne que les chemins demandés")
+    void jpql_neSelectionneQueLesChampsDemandes() {
+        assertEquals("SELECT e.id, e.prixVenteTTC FROM Produit e WHERE e.actif = true ORDER BY e.id",
+                ChampsPartiels.PRODUITS.jpql(List.of("id", "prixVenteTTC")));
+    }
+
+    private byte[] ecrire(ChampsPartiels vue, List<String> champs, Map<String, Object> parametres) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            projectionJsonService.ecrire(vue, champs, parametres, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
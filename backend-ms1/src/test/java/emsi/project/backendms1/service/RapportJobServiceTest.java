@@ -0,0 +1,181 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.DemandeRapport;
+import emsi.project.backendms1.dtos.RapportJobDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.enums.StatutRapport;
+import emsi.project.backendms1.enums.TypeRapport;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(RapportJobService.class)
+class RapportJobServiceTest {
+
+    @Autowired
+    private RapportJobService rapportJobService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<String> jobs = new ArrayList<>();
+
+    @AfterEach
+    void nettoyer() {
+        jobs.forEach(id -> jdbcTemplate.update("DELETE FROM rapport_job WHERE id = ?", id));
+    }
+
+    @Test
+    @DisplayName("Ventes par produit - calculé par tranches, CSV gardé en base, recalculé après coup")
+    void ventesParProduit_termineEtRecalcule() throws Exception {
+        // Une tranche par produit : l'avancement passe par plusieurs écritures
+        ReflectionTestUtils.setField(rapportJobService, "generateur", new GenerateurRapports(jdbcTemplate, 1));
+        Produit produit = new Produit();
+        produit.setNomMedicament("Doliprane; 500mg");
+        produit.setCodeEAN("3400930000016");
+        produit.setSeuilStock(5);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.save(produit);
+        // Le calcul tourne sur un autre thread : seules les données validées lui sont visibles
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        LocalDate hier = LocalDate.now().minusDays(1);
+        Long venteId = null;
+        try {
+            jdbcTemplate.update("INSERT INTO ventes (date_vente, montant_total) VALUES (?, ?)",
+                    Timestamp.valueOf(hier.atTime(11, 0)), new BigDecimal("15.00"));
+            venteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM ventes", Long.class);
+            jdbcTemplate.update("INSERT INTO lignes_vente (prix_ventettc, quantite, produit_id, vente_id, cout_achatht) "
+                    + "VALUES (?, ?, ?, ?, ?)", new BigDecimal("2.50"), 6, produit.getId(), venteId, new BigDecimal("9.00"));
+
+            DemandeRapport demande = new DemandeRapport(TypeRapport.VENTES_PAR_PRODUIT, hier, hier);
+            RapportJobService.Soumission soumission = rapportJobService.soumettre(demande);
+            jobs.add(soumission.job().id());
+            assertFalse(soumission.existant());
+
+            RapportJobDto termine = attendre(soumission.job().id());
+            assertEquals(StatutRapport.TERMINE, termine.statut());
+            assertEquals(100, termine.progression());
+            assertEquals(1, termine.lignes());
+            assertTrue(termine.tailleResultat() > 0);
+            List<String> csv = csv(rapportJobService.resultat(termine.id()).orElseThrow());
+            assertEquals(2, csv.size());
+            assertEquals(produit.getId() + ";\"Doliprane; 500mg\";6;15.00;9.00;6.00;0", csv.get(1));
+
+            // Une vente passée peut encore changer : une demande identique relance le calcul
+            jdbcTemplate.update("DELETE FROM lignes_vente WHERE vente_id = ?", venteId);
+            RapportJobService.Soumission nouveau = rapportJobService.soumettre(demande);
+            jobs.add(nouveau.job().id());
+            assertFalse(nouveau.existant());
+            RapportJobDto recalcule = attendre(nouveau.job().id());
+            assertEquals(StatutRapport.TERMINE, recalcule.statut());
+            assertEquals(0, recalcule.lignes());
+        } finally {
+            if (venteId != null) {
+                jdbcTemplate.update("DELETE FROM lignes_vente WHERE vente_id = ?", venteId);
+                jdbcTemplate.update("DELETE FROM ventes WHERE id = ?", venteId);
+            }
+            jdbcTemplate.update("DELETE FROM produit WHERE id = ?", produit.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Annulation - un rapport en file ne démarre pas, aucun résultat")
+    void annulation_enFile() throws Exception {
+        TestTransaction.end();
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(rapportJobService, "executor");
+        CountDownLatch liberer = new CountDownLatch(1);
+        for (int i = 0; i < executor.getMaximumPoolSize(); i++) {
+            executor.execute(() -> {
+                try {
+                    liberer.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        RapportJobDto job;
+        try {
+            job = rapportJobService.soumettre(new DemandeRapport(TypeRapport.VALORISATION, null, null)).job();
+            jobs.add(job.id());
+            assertEquals(StatutRapport.EN_ATTENTE, job.statut());
+            // Même demande tant qu'elle est en attente : même calcul
+            assertEquals(job.id(), rapportJobService.soumettre(new DemandeRapport(TypeRapport.VALORISATION,
+                    LocalDate.now(), null)).job().id());
+
+            assertEquals(StatutRapport.ANNULE, rapportJobService.annuler(job.id()).orElseThrow().statut());
+        } finally {
+            liberer.countDown();
+        }
+        while (executor.getActiveCount() > 0 || !executor.getQueue().isEmpty()) {
+            Thread.sleep(10);
+        }
+        RapportJobDto apres = rapportJobService.job(job.id()).orElseThrow();
+        assertEquals(StatutRapport.ANNULE, apres.statut());
+        assertNull(apres.demarreLe());
+        assertNull(apres.tailleResultat());
+        assertTrue(rapportJobService.resultat(job.id()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Demande invalide - période manquante, inversée ou trop longue")
+    void demandeInvalide() {
+        assertThrows(IllegalArgumentException.class, () -> rapportJobService.soumettre(
+                new DemandeRapport(TypeRapport.EXPIRATIONS, LocalDate.now(), null)));
+        assertThrows(IllegalArgumentException.class, () -> rapportJobService.soumettre(
+                new DemandeRapport(TypeRapport.VENTES_PAR_PRODUIT, LocalDate.now(), LocalDate.now().minusDays(1))));
+        assertThrows(IllegalArgumentException.class, () -> rapportJobService.soumettre(
+                new DemandeRapport(TypeRapport.VENTES_PAR_PRODUIT, LocalDate.now().minusYears(2), LocalDate.now())));
+        assertThrows(IllegalArgumentException.class, () -> rapportJobService.soumettre(new DemandeRapport(null, null, null)));
+    }
+
+    private RapportJobDto attendre(String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            RapportJobDto job = rapportJobService.job(id).orElseThrow();
+            if (!job.statut().actif()) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Rapport " + id + " toujours en cours");
+    }
+
+    private static List<String> csv(byte[] gzip) throws IOException {
+        try (InputStream contenu = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return new String(contenu.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+}
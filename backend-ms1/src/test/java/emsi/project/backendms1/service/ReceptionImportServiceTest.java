@@ -0,0 +1,139 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.ErreurLigne;
+import emsi.project.backendms1.dtos.ReceptionRapport;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.ProduitRepo;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ReceptionImportService.class, CatalogueVersion.class, ValorisationService.class})
+class ReceptionImportServiceTest {
+
+    private static final String ENTETE = "codeEAN;numeroLot;dateExpiration;quantite;prixAchatHT\n";
+
+    @Autowired
+    private ReceptionImportService receptionImportService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Produit> produits = new ArrayList<>();
+    private final LocalDate expiration = LocalDate.now().plusYears(1);
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 50; i++) {
+            Produit produit = new Produit();
+            produit.setNomMedicament("Produit " + i);
+            produit.setCodeEAN(String.valueOf(3400931000000L + i));
+            produit.setSeuilStock(10);
+            produit.setForme(FormeEnum.TABLET);
+            produits.add(produitRepo.save(produit));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Bon de 10000 lignes - lots créés puis complétés par le seul journal, valorisation recalculée une fois par produit")
+    void importerCsv_bonDeLivraisonComplet() throws IOException {
+        // 100 lots par produit, chacun reçu deux fois : 5000 créations, 5000 compléments
+        StringBuilder csv = new StringBuilder(ENTETE);
+        for (int passage = 0; passage < 2; passage++) {
+            for (int lot = 0; lot < 100; lot++) {
+                for (Produit produit : produits) {
+                    csv.append(produit.getCodeEAN()).append(";L").append(lot).append(';').append(expiration)
+                            .append(";3;4,20\n");
+                }
+            }
+        }
+
+        ReceptionRapport rapport = receptionImportService.importerCsv(new StringReader(csv.toString()));
+
+        assertEquals(10000, rapport.lignes());
+        assertEquals(5000, rapport.lotsCrees());
+        assertEquals(5000, rapport.lotsCompletes());
+        assertEquals(0, rapport.nombreErreurs());
+        assertEquals(50, rapport.produitsRecalcules());
+        Produit premier = produits.get(0);
+        assertEquals(600, stockProduit(premier.getId()));
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT " + JournalStockService.QUANTITE_LOT
+                + " FROM lot_de_stock l WHERE l.product_id = ? AND l.numero_lot = 'L7'", Integer.class, premier.getId()));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mouvement_stock m JOIN lot_de_stock l "
+                + "ON l.id = m.lot_id WHERE l.product_id = ? AND l.numero_lot = 'L7'", Integer.class, premier.getId()));
+        assertEquals(0, new BigDecimal("4.20").compareTo(jdbcTemplate.queryForObject(
+                "SELECT prix_achatht FROM lot_de_stock WHERE product_id = ? AND numero_lot = 'L7'", BigDecimal.class, premier.getId())));
+    }
+
+    @Test
+    @DisplayName("Lignes invalides - rapportées avec leur numéro, les autres importées")
+    void importerCsv_erreursParLigne() throws IOException {
+        String ean = produits.get(0).getCodeEAN();
+        String csv = ENTETE
+                + ean + ";A1;" + expiration + ";10;\n"
+                + "9999999999999;A2;" + expiration + ";10;\n"
+                + ean + ";A3;" + LocalDate.now().minusDays(1) + ";10;\n"
+                + ean + ";A4;" + expiration + ";zéro;\n"
+                + ean + ";A1;" + expiration.plusDays(1) + ";5;\n"
+                + "\n"
+                + ean + ";A1;" + expiration + ";5;\n";
+
+        ReceptionRapport rapport = receptionImportService.importerCsv(new StringReader(csv));
+
+        assertEquals(6, rapport.lignes());
+        assertEquals(4, rapport.nombreErreurs());
+        assertEquals(List.of(3L, 4L, 5L, 6L), rapport.erreurs().stream().map(ErreurLigne::ligne).toList());
+        assertEquals(15, stockProduit(produits.get(0).getId()));
+    }
+
+    @Test
+    @DisplayName("JSON - tableau d'objets, produit désigné par son id")
+    void importerJson_parProduitId() throws IOException {
+        Long id = produits.get(1).getId();
+        String json = "[{\"produitId\": " + id + ", \"numeroLot\": \"J1\", \"dateExpiration\": \"" + expiration
+                + "\", \"quantite\": 8, \"prixAchatHT\": 3.5},"
+                + "{\"produitId\": 0, \"numeroLot\": \"J2\", \"dateExpiration\": \"" + expiration + "\", \"quantite\": 1}]";
+
+        ReceptionRapport rapport = receptionImportService.importerJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, rapport.lotsCrees());
+        assertEquals(List.of(2L), rapport.erreurs().stream().map(ErreurLigne::ligne).toList());
+        assertEquals(8, stockProduit(id));
+    }
+
+    private int stockProduit(Long produitId) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(" + JournalStockService.QUANTITE_LOT + "), 0) "
+                + "FROM lot_de_stock l WHERE l.product_id = ?", Integer.class, produitId);
+    }
+}
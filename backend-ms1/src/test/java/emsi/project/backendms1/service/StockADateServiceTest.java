@@ -0,0 +1,136 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LotADateDto;
+import emsi.project.backendms1.dtos.StockADateDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.LotDeStockRepo;
+import emsi.project.backendms1.repository.ProduitRepo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({StockADateService.class, JournalStockService.class})
+class StockADateServiceTest {
+
+    @Autowired
+    private StockADateService stockADateService;
+
+    @Autowired
+    private JournalStockService journalStockService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private LotDeStockRepo lotDeStockRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Produit produit;
+    private LotDeStock lotA;
+    private LotDeStock lotB;
+
+    @BeforeEach
+    void setUp() {
+        produit = new Produit();
+        produit.setNomMedicament("Amoxicilline");
+        produit.setCodeEAN("3400930000008");
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.CAPSULE);
+        produit = produitRepo.save(produit);
+        lotA = lotDeStockRepo.save(lot("AMX-A", LocalDate.of(2027, 3, 31)));
+        lotB = lotDeStockRepo.save(lot("AMX-B", LocalDate.of(2026, 12, 31)));
+        entityManager.flush();
+
+        // Premier semestre, puis instantané; la fin d'année reste à rejouer depuis le journal
+        mouvement("2025-01-10T09:00", lotA, "RECEPTION", 100);
+        mouvement("2025-02-01T10:00", lotB, "RECEPTION", 50);
+        mouvement("2025-03-01T11:00", lotA, "VENTE", -30);
+        mouvement("2025-06-01T12:00", lotA, "PERTE", -20);
+        journalStockService.prendreInstantanes();
+        mouvement("2025-12-01T15:00", lotB, "VENTE", -50);
+        mouvement("2026-01-15T08:30", lotA, "RETOUR", 5);
+    }
+
+    @Test
+    @DisplayName("Produit - stock et lots non vides à différentes dates, avant et après l'instantané")
+    void produit_aDifferentesDates() {
+        StockADateDto fevrier = stockADateService.produit(produit.getId(), LocalDateTime.parse("2025-02-15T00:00"));
+        assertEquals(150, fevrier.quantite());
+        // Tri par date d'expiration : B expire avant A
+        assertEquals(List.of("AMX-B", "AMX-A"), fevrier.lots().stream().map(LotADateDto::numeroLot).toList());
+
+        assertEquals(100, stockADateService.produit(produit.getId(), LocalDateTime.parse("2025-07-01T00:00")).quantite());
+
+        StockADateDto finAnnee = stockADateService.produit(produit.getId(), LocalDateTime.parse("2025-12-31T23:59:59"));
+        assertEquals(50, finAnnee.quantite());
+        assertEquals(List.of(lotA.getId()), finAnnee.lots().stream().map(LotADateDto::lotId).toList());
+
+        assertEquals(55, stockADateService.produit(produit.getId(), LocalDateTime.parse("2026-02-01T00:00")).quantite());
+
+        StockADateDto avant = stockADateService.produit(produit.getId(), LocalDateTime.parse("2024-01-01T00:00"));
+        assertEquals(0, avant.quantite());
+        assertEquals(List.of(), avant.lots());
+    }
+
+    @Test
+    @DisplayName("Lot - quantité à la date, y compris après sa suppression")
+    void lot_aLaDate() {
+        assertEquals(70, stockADateService.lot(lotA.getId(), LocalDateTime.parse("2025-03-15T00:00")).quantite());
+        assertEquals(50, stockADateService.lot(lotB.getId(), LocalDateTime.parse("2025-11-30T00:00")).quantite());
+
+        lotDeStockRepo.delete(lotB);
+        entityManager.flush();
+        LotADateDto supprime = stockADateService.lot(lotB.getId(), LocalDateTime.parse("2025-11-30T00:00"));
+        assertEquals(50, supprime.quantite());
+        assertEquals(null, supprime.numeroLot());
+
+        assertThrows(EntityNotFoundException.class, () -> stockADateService.lot(-1L, LocalDateTime.now()));
+    }
+
+    @Test
+    @DisplayName("Inventaire - quantité par produit à la date")
+    void inventaire_parProduit() {
+        List<StockADateDto> inventaire = stockADateService.inventaire(LocalDateTime.parse("2025-07-01T00:00"));
+
+        StockADateDto ligne = inventaire.stream().filter(s -> s.produitId().equals(produit.getId())).findFirst().orElseThrow();
+        assertEquals(100, ligne.quantite());
+        assertEquals(null, ligne.lots());
+    }
+
+    private LotDeStock lot(String numero, LocalDate expiration) {
+        LotDeStock lot = new LotDeStock();
+        lot.setProduit(produit);
+        lot.setNumeroLot(numero);
+        lot.setDateExpiration(expiration);
+        return lot;
+    }
+
+    private void mouvement(String date, LotDeStock lot, String type, int quantite) {
+        jdbcTemplate.update("INSERT INTO mouvement_stock (date_mouvement, type, produit_id, lot_id, quantite) VALUES (?, ?, ?, ?, ?)",
+                Timestamp.valueOf(LocalDateTime.parse(date)), type, produit.getId(), lot.getId(), quantite);
+    }
+}
@@ -0,0 +1,171 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LotDeStockDto;
+import emsi.project.backendms1.dtos.PageDto;
+import emsi.project.backendms1.dtos.ProduitAvecLotsDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.observability.SqlStats;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.support.SqlBudget;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({StockService.class, ProduitService.class, JournalStockService.class, ValorisationService.class})
+class StockServiceSqlBudgetTest {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Produit produit;
+
+    @BeforeEach
+    void setUp() {
+        produit = new Produit();
+        produit.setNomMedicament("Doliprane");
+        produit.setCodeEAN("3400930000001");
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.save(produit);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Ajouter Stock - reste dans son budget SQL")
+    void ajouterStock_resteDansSonBudgetSql() {
+        LotDeStock lot = SqlBudget.atMost(6, () -> {
+            LotDeStock saved = stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 20, new BigDecimal("3.20"));
+            entityManager.flush();
+            return saved;
+        });
+
+        assertEquals(20, lot.getQuantite());
+    }
+
+    @Test
+    @DisplayName("Lister les lots d'un produit - reste dans son budget SQL")
+    void listerLots_resteDansSonBudgetSql() {
+        stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 20, new BigDecimal("3.20"));
+        stockService.addStock(produit.getId(), "LOT-B", LocalDate.now().plusYears(2), 5, new BigDecimal("3.10"));
+        entityManager.flush();
+        entityManager.clear();
+
+        // Les lots seuls : le produit reste un proxy LAZY
+        List<LotDeStock> lots = SqlBudget.atMost(1, () -> stockService.findAllStocksByProduitId(produit.getId()));
+
+        assertEquals(2, lots.size());
+    }
+
+    @Test
+    @DisplayName("Lister les lots en DTO - une requête, aucune entité dans le contexte de persistance")
+    void listerLotsDto_sansHydratation() {
+        stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 20, new BigDecimal("3.20"));
+        stockService.addStock(produit.getId(), "LOT-B", LocalDate.now().plusYears(2), 5, new BigDecimal("3.10"));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<LotDeStockDto> lots = SqlBudget.atMost(1, () -> stockService.findAllStockDtosByProduitId(produit.getId()));
+
+        assertEquals(2, lots.size());
+        assertEquals(produit.getId(), lots.get(0).produitId());
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    @DisplayName("Produits avec lots - la page et ses lots en deux requêtes, quel que soit le nombre de produits")
+    void produitsAvecLots_deuxRequetes() {
+        Produit autre = new Produit();
+        autre.setNomMedicament("Spasfon");
+        autre.setCodeEAN("3400930000003");
+        autre.setSeuilStock(5);
+        autre.setForme(FormeEnum.TABLET);
+        autre = produitRepo.save(autre);
+        Produit desactive = new Produit();
+        desactive.setNomMedicament("Débridat");
+        desactive.setCodeEAN("3400930000022");
+        desactive.setSeuilStock(5);
+        desactive.setForme(FormeEnum.TABLET);
+        desactive.setActif(false);
+        desactive = produitRepo.save(desactive);
+        LocalDate proche = LocalDate.now().plusMonths(3);
+        stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 20, new BigDecimal("3.20"));
+        stockService.addStock(produit.getId(), "LOT-B", proche, 5, new BigDecimal("3.10"));
+        stockService.addStock(autre.getId(), "LOT-C", LocalDate.now().plusYears(2), 7, new BigDecimal("2.00"));
+        stockService.addStock(desactive.getId(), "LOT-D", LocalDate.now().plusYears(2), 4, new BigDecimal("1.50"));
+        entityManager.flush();
+        entityManager.clear();
+
+        PageDto<ProduitAvecLotsDto> avecLots = SqlBudget.atMost(2, () -> stockService.findProduitsAvecLots(0, 50, true));
+        PageDto<ProduitAvecLotsDto> resumes = SqlBudget.atMost(2, () -> stockService.findProduitsAvecLots(0, 50, false));
+
+        // La référence désactivée n'est pas listée
+        assertEquals(2, avecLots.totalElements());
+        assertEquals(2, resumes.totalElements());
+        ProduitAvecLotsDto doliprane = avecLots.content().get(0);
+        assertEquals(2, doliprane.lots().size());
+        assertEquals(25L, doliprane.resume().quantiteTotale());
+        assertEquals(proche, doliprane.resume().prochaineExpiration());
+        assertEquals(doliprane.resume(), resumes.content().get(0).resume());
+        assertEquals(1L, resumes.content().get(1).resume().nombreLots());
+        assertNull(resumes.content().get(0).lots());
+    }
+
+    @Test
+    @DisplayName("Relire un produit - servi par le cache de second niveau")
+    void relireProduit_serviParLeCacheDeSecondNiveau() {
+        // Le cache n'accepte que des entités validées : on commite le produit du setUp
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        try {
+            produitRepo.findById(produit.getId());
+
+            Produit relu = SqlBudget.atMost(0, () -> produitRepo.findById(produit.getId()).orElseThrow());
+
+            assertEquals("Doliprane", relu.getNomMedicament());
+        } finally {
+            produitRepo.deleteById(produit.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Mouvement de stock - une insertion au journal, ni le lot ni le produit ne sont réécrits")
+    void mouvementStock_sansReecriture() {
+        LotDeStock lot = stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 20, new BigDecimal("3.20"));
+        entityManager.flush();
+        entityManager.clear();
+
+        SqlStats.Snapshot perte = SqlBudget.measure(() -> {
+            stockService.declarerPerte(lot.getId(), 3, null);
+            entityManager.flush();
+        });
+
+        assertEquals(0, perte.updates());
+        entityManager.clear();
+        assertEquals(17, produitRepo.findById(produit.getId()).orElseThrow().getQuantiteTotaleEnStock());
+    }
+}
@@ -1,5 +1,6 @@
 package emsi.project.backendms1.service;
 
+import emsi.project.backendms1.enums.TypeMouvement;
 import emsi.project.backendms1.models.LotDeStock;
 import emsi.project.backendms1.models.Produit;
 import emsi.project.backendms1.repository.LotDeStockRepo;
@@ -9,7 +10,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -20,6 +20,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -33,6 +34,12 @@ class StockServiceTest {
     @Mock // Crée un mock pour ProduitRepo
     private ProduitRepo productRepository;
 
+    @Mock // Journal des mouvements : seul l'appel compte ici
+    private JournalStockService journalStock;
+
+    @Mock // Valorisation du stock : seul l'appel compte ici
+    private ValorisationService valorisation;
+
     // @Mock // Pas nécessaire ici car ProduitService n'est pas directement utilisé dans les méthodes testées
     // private ProduitService productService;
 
@@ -56,7 +63,6 @@ class StockServiceTest {
         produitTest = new Produit();
         produitTest.setId(produitId);
         produitTest.setNomMedicament("Test Produit");
-        produitTest.setQuantiteTotaleEnStock(quantiteInitiale); // Stock initial avant ajout/modif
 
         // Initialisation d'un lot de stock existant pour certains tests
         lotExistantTest = new LotDeStock();
@@ -64,7 +70,7 @@ class StockServiceTest {
         lotExistantTest.setProduit(produitTest);
         lotExistantTest.setNumeroLot(numeroLot);
         lotExistantTest.setDateExpiration(dateExpirationFuture);
-        lotExistantTest.setQuantite(quantiteInitiale);
+        lotExistantTest.setQuantite(quantiteInitiale); // Quantité lue depuis le journal
         lotExistantTest.setPrixAchatHT(prixAchat);
         lotExistantTest.setDateReception(LocalDate.now().minusDays(5));
     }
@@ -87,15 +93,12 @@ class StockServiceTest {
             }
             return lotSauve;
         });
-        // Simule le calcul du stock total après ajout
-        when(stockLotRepository.calculateTotalStockQuantityForProduct(produitId)).thenReturn(quantiteAjoutee); // Nouveau total = qté ajoutée
-        when(productRepository.save(any(Produit.class))).thenReturn(produitTest); // Simule la sauvegarde du produit mis à jour
-
         // Appel de la méthode à tester
         LotDeStock resultat = stockService.addStock(produitId, numeroLot, dateExpirationFuture, quantiteAjoutee, prixAchat);
 
         // Assertions
         assertNotNull(resultat);
+        assertEquals(0, resultat.getQuantiteInstantane()); // La quantité reçue n'est portée que par le journal
         assertEquals(numeroLot, resultat.getNumeroLot());
         assertEquals(dateExpirationFuture, resultat.getDateExpiration());
         assertEquals(quantiteAjoutee, resultat.getQuantite());
@@ -104,17 +107,12 @@ class StockServiceTest {
         assertNotNull(resultat.getDateReception()); // Vérifie que la date de réception est définie
 
         // Vérifications des interactions avec les mocks
-        verify(productRepository,times(2)).findById(produitId);
+        verify(productRepository).findById(produitId);
         verify(stockLotRepository).findByProduitIdAndNumeroLot(produitId, numeroLot);
-        // Doit sauvegarder le nouveau lot ET le produit mis à jour
-        verify(stockLotRepository, times(1)).save(any(LotDeStock.class)); // Lot sauvegardé
-        verify(stockLotRepository).calculateTotalStockQuantityForProduct(produitId);
-        verify(productRepository, times(1)).save(any(Produit.class)); // Produit mis à jour
-
-        // Vérification plus précise de la mise à jour du stock total du produit
-        ArgumentCaptor<Produit> produitCaptor = ArgumentCaptor.forClass(Produit.class);
-        verify(productRepository).save(produitCaptor.capture());
-        assertEquals(quantiteAjoutee, produitCaptor.getValue().getQuantiteTotaleEnStock()); // Le stock total doit être le nouveau total calculé
+        // Le nouveau lot est sauvegardé, la réception journalisée; le produit n'est pas réécrit
+        verify(stockLotRepository, times(1)).save(any(LotDeStock.class));
+        verify(journalStock).enregistrer(TypeMouvement.RECEPTION, resultat, quantiteAjoutee, null, null);
+        verify(productRepository, never()).save(any(Produit.class));
     }
 
     @Test
@@ -126,12 +124,6 @@ class StockServiceTest {
         when(productRepository.findById(produitId)).thenReturn(Optional.of(produitTest));
         // Le lot existe déjà avec le même numéro et la même date
         when(stockLotRepository.findByProduitIdAndNumeroLot(produitId, numeroLot)).thenReturn(Optional.of(lotExistantTest));
-        // Simule la sauvegarde du lot mis à jour
-        when(stockLotRepository.save(any(LotDeStock.class))).thenReturn(lotExistantTest); // Retourne le lot mis à jour
-        // Simule le calcul du stock total après mise à jour
-        when(stockLotRepository.calculateTotalStockQuantityForProduct(produitId)).thenReturn(quantiteTotaleAttendue);
-        when(productRepository.save(any(Produit.class))).thenReturn(produitTest); // Simule la sauvegarde du produit mis à jour
-
         // Appel de la méthode à tester
         LotDeStock resultat = stockService.addStock(produitId, numeroLot, dateExpirationFuture, quantiteAjoutee, prixAchat);
 
@@ -143,16 +135,12 @@ class StockServiceTest {
         assertEquals(dateExpirationFuture, resultat.getDateExpiration());
 
         // Vérifications des interactions
-        verify(productRepository,times(2)).findById(produitId);
+        verify(productRepository).findById(produitId);
         verify(stockLotRepository).findByProduitIdAndNumeroLot(produitId, numeroLot);
-        verify(stockLotRepository, times(1)).save(lotExistantTest); // Le lot existant est sauvegardé
-        verify(stockLotRepository).calculateTotalStockQuantityForProduct(produitId);
-        verify(productRepository, times(1)).save(any(Produit.class)); // Produit mis à jour
-
-        // Vérification de la mise à jour du stock total du produit
-        ArgumentCaptor<Produit> produitCaptor = ArgumentCaptor.forClass(Produit.class);
-        verify(productRepository).save(produitCaptor.capture());
-        assertEquals(quantiteTotaleAttendue, produitCaptor.getValue().getQuantiteTotaleEnStock());
+        // Un complément de lot n'est qu'un mouvement : ni le lot ni le produit ne sont réécrits
+        verify(journalStock).enregistrer(TypeMouvement.RECEPTION, lotExistantTest, quantiteAjoutee, null, null);
+        verify(stockLotRepository, never()).save(any(LotDeStock.class));
+        verify(productRepository, never()).save(any(Produit.class));
     }
 
     @Test
@@ -246,14 +234,11 @@ class StockServiceTest {
         LocalDate nouvelleDateExp = dateExpirationFuture.plusMonths(1);
         int nouvelleQuantite = 100;
         BigDecimal nouveauPrix = new BigDecimal("12.00");
-        int stockTotalAttenduApresMaj = nouvelleQuantite; // Supposons que c'est le seul lot pour simplifier
 
         // Configuration Mocks
         when(stockLotRepository.findById(lotId)).thenReturn(Optional.of(lotExistantTest));
+        when(journalStock.quantiteVerrouillee(lotId)).thenReturn(quantiteInitiale); // Quantité relue sous verrou
         when(stockLotRepository.save(any(LotDeStock.class))).thenAnswer(i -> i.getArgument(0)); // Retourne l'objet sauvegardé
-        when(productRepository.findById(produitId)).thenReturn(Optional.of(produitTest)); // Pour updateProductTotalStock
-        when(stockLotRepository.calculateTotalStockQuantityForProduct(produitId)).thenReturn(stockTotalAttenduApresMaj);
-        when(productRepository.save(any(Produit.class))).thenReturn(produitTest); // Sauvegarde produit
 
         // Action
         LotDeStock resultat = stockService.updateStockLot(lotId, nouveauNumeroLot, nouvelleDateExp, nouvelleQuantite, nouveauPrix);
@@ -268,16 +253,11 @@ class StockServiceTest {
 
         // Vérification des interactions
         verify(stockLotRepository).findById(lotId);
-        verify(stockLotRepository, times(1)).save(any(LotDeStock.class)); // Sauvegarde du lot mis à jour
-        // Vérifications pour updateProductTotalStock
-        verify(productRepository).findById(produitId);
-        verify(stockLotRepository).calculateTotalStockQuantityForProduct(produitId);
-        verify(productRepository, times(1)).save(any(Produit.class)); // Sauvegarde du produit
-
-        // Vérification de la mise à jour du stock produit
-        ArgumentCaptor<Produit> produitCaptor = ArgumentCaptor.forClass(Produit.class);
-        verify(productRepository).save(produitCaptor.capture());
-        assertEquals(stockTotalAttenduApresMaj, produitCaptor.getValue().getQuantiteTotaleEnStock());
+        verify(stockLotRepository, times(1)).save(any(LotDeStock.class)); // Numéro, date et prix du lot
+        // L'écart de quantité va au journal, le produit n'est pas réécrit
+        verify(journalStock).enregistrer(TypeMouvement.AJUSTEMENT, resultat, nouvelleQuantite - quantiteInitiale, null,
+                "Modification du lot");
+        verify(productRepository, never()).save(any(Produit.class));
     }
 
     @Test
@@ -344,14 +324,10 @@ class StockServiceTest {
     void retirerStockDuLot_devraitReduireQuantiteEtMajStockProduit() {
         int quantiteARetirer = 15;
         int quantiteRestanteAttendue = quantiteInitiale - quantiteARetirer;
-        int stockTotalAttenduApresRetrait = quantiteRestanteAttendue; // Supposons un seul lot
 
         // Configuration Mocks
         when(stockLotRepository.findById(lotId)).thenReturn(Optional.of(lotExistantTest)); // Trouve le lot
-        when(stockLotRepository.save(any(LotDeStock.class))).thenAnswer(i -> i.getArgument(0)); // Simule sauvegarde lot
-        when(productRepository.findById(produitId)).thenReturn(Optional.of(produitTest)); // Pour updateProductTotalStock
-        when(stockLotRepository.calculateTotalStockQuantityForProduct(produitId)).thenReturn(stockTotalAttenduApresRetrait);
-        when(productRepository.save(any(Produit.class))).thenReturn(produitTest); // Simule sauvegarde produit
+        when(journalStock.quantiteVerrouillee(lotId)).thenReturn(quantiteInitiale); // Quantité relue sous verrou
 
         // Action
         LotDeStock resultat = stockService.removeStockFromLot(lotId, quantiteARetirer);
@@ -363,16 +339,10 @@ class StockServiceTest {
 
         // Vérifications des interactions
         verify(stockLotRepository).findById(lotId);
-        verify(stockLotRepository, times(1)).save(any(LotDeStock.class)); // Sauvegarde du lot mis à jour
-        // Vérifications pour updateProductTotalStock
-        verify(productRepository).findById(produitId);
-        verify(stockLotRepository).calculateTotalStockQuantityForProduct(produitId);
-        verify(productRepository, times(1)).save(any(Produit.class)); // Sauvegarde du produit
-
-        // Vérification de la mise à jour du stock produit
-        ArgumentCaptor<Produit> produitCaptor = ArgumentCaptor.forClass(Produit.class);
-        verify(productRepository).save(produitCaptor.capture());
-        assertEquals(stockTotalAttenduApresRetrait, produitCaptor.getValue().getQuantiteTotaleEnStock());
+        // La sortie n'est qu'un mouvement : ni le lot ni le produit ne sont réécrits
+        verify(journalStock).enregistrer(TypeMouvement.AJUSTEMENT, resultat, -quantiteARetirer, null, "Sortie manuelle");
+        verify(stockLotRepository, never()).save(any(LotDeStock.class));
+        verify(productRepository, never()).save(any(Produit.class));
     }
 
     @Test
@@ -422,6 +392,7 @@ class StockServiceTest {
 
         // Configuration Mock : trouve le lot
         when(stockLotRepository.findById(lotId)).thenReturn(Optional.of(lotExistantTest));
+        when(journalStock.quantiteVerrouillee(lotId)).thenReturn(quantiteInitiale);
 
         // Action & Assertion
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -430,8 +401,8 @@ class StockServiceTest {
 
         assertEquals("Insufficient stock in lot. Available: " + quantiteInitiale, exception.getMessage()); // Message en anglais
 
-        // Vérification qu'aucune sauvegarde n'a eu lieu
+        // Vérification qu'aucune sauvegarde ni aucun mouvement n'a eu lieu
         verify(stockLotRepository, never()).save(any(LotDeStock.class));
-        verify(productRepository, never()).save(any(Produit.class));
+        verify(journalStock, never()).enregistrer(any(), any(), anyInt(), any(), any());
     }
 }
\ No newline at end of file
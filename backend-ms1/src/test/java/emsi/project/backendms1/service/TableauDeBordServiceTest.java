@@ -0,0 +1,152 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.TableauDeBordDto;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.repository.LotDeStockRepo;
+import emsi.project.backendms1.repository.ProduitRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({TableauDeBordService.class, MeilleuresVentesService.class, CatalogueSnapshotService.class, CatalogueVersion.class})
+class TableauDeBordServiceTest {
+
+    @Autowired
+    private TableauDeBordService tableauDeBordService;
+
+    @Autowired
+    private MeilleuresVentesService meilleuresVentesService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private LotDeStockRepo lotDeStockRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogueSnapshotService catalogueSnapshotService;
+
+    @BeforeEach
+    void viderLeCache() {
+        ((AtomicReference<?>) ReflectionTestUtils.getField(tableauDeBordService, "courant")).set(null);
+    }
+
+    @Test
+    @DisplayName("Agrégats - chiffre du jour, sous seuil, lots expirants et meilleures ventes")
+    void agregats_refletentLesDonneesValidees() {
+        ReflectionTestUtils.setField(tableauDeBordService, "cacheSeconds", 0L);
+        // Les agrégats tournent sur d'autres threads : seules les données validées leur sont visibles
+        TableauDeBordDto avant = tableauDeBordService.tableauDeBord();
+
+        Produit produit = new Produit();
+        produit.setNomMedicament("Smecta");
+        produit.setCodeEAN("3400930000009");
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.SACHET);
+        produit = produitRepo.save(produit);
+        LotDeStock lot = new LotDeStock();
+        lot.setProduit(produit);
+        lot.setNumeroLot("SMC-1");
+        lot.setDateExpiration(LocalDate.now().plusDays(10));
+        lot.setQuantiteInstantane(3);
+        lotDeStockRepo.save(lot);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        Long venteId = null;
+        try {
+            jdbcTemplate.update("INSERT INTO ventes (date_vente, montant_total) VALUES (?, ?)",
+                    Timestamp.valueOf(LocalDateTime.now()), new BigDecimal("2500.00"));
+            venteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM ventes", Long.class);
+            jdbcTemplate.update("INSERT INTO lignes_vente (prix_ventettc, quantite, produit_id, vente_id) VALUES (?, ?, ?, ?)",
+                    new BigDecimal("2.50"), 1000, produit.getId(), venteId);
+            // Vente écrite en JDBC : le classement en mémoire ne la voit qu'après reconstruction
+            meilleuresVentesService.reconstruire();
+            // Photographie du catalogue reconstruite en arrière-plan : on attend celle qui contient le produit
+            catalogueSnapshotService.aJour();
+
+            TableauDeBordDto apres = tableauDeBordService.tableauDeBord();
+
+            assertEquals(0, new BigDecimal("2500.00").compareTo(apres.chiffreAffairesJour().subtract(avant.chiffreAffairesJour())));
+            assertEquals(avant.ventesJour() + 1, apres.ventesJour());
+            assertEquals(avant.produitsActifs() + 1, apres.produitsActifs());
+            assertEquals(avant.produitsSousSeuil() + 1, apres.produitsSousSeuil());
+            assertEquals(avant.lotsExpirants() + 1, apres.lotsExpirants());
+            assertEquals(produit.getId(), apres.meilleuresVentes().get(0).produitId());
+            assertEquals(1000L, apres.meilleuresVentes().get(0).quantiteVendue());
+            assertEquals("Smecta", apres.meilleuresVentes().get(0).nomMedicament());
+        } finally {
+            if (venteId != null) {
+                jdbcTemplate.update("DELETE FROM lignes_vente WHERE vente_id = ?", venteId);
+                jdbcTemplate.update("DELETE FROM ventes WHERE id = ?", venteId);
+            }
+            jdbcTemplate.update("DELETE FROM lot_de_stock WHERE product_id = ?", produit.getId());
+            jdbcTemplate.update("DELETE FROM produit WHERE id = ?", produit.getId());
+            meilleuresVentesService.reconstruire();
+        }
+    }
+
+    @Test
+    @DisplayName("Appels concurrents - un seul calcul partagé, puis servi par le cache")
+    void appelsConcurrents_unSeulCalcul() throws Exception {
+        ReflectionTestUtils.setField(tableauDeBordService, "cacheSeconds", 60L);
+        TestTransaction.end();
+
+        int appels = 30;
+        ExecutorService clients = Executors.newFixedThreadPool(appels);
+        try {
+            CountDownLatch depart = new CountDownLatch(1);
+            List<Future<TableauDeBordDto>> reponses = new ArrayList<>();
+            for (int i = 0; i < appels; i++) {
+                reponses.add(clients.submit(() -> {
+                    depart.await();
+                    return tableauDeBordService.tableauDeBord();
+                }));
+            }
+            depart.countDown();
+
+            Set<TableauDeBordDto> resultats = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Future<TableauDeBordDto> reponse : reponses) {
+                resultats.add(reponse.get());
+            }
+            assertEquals(1, resultats.size());
+            assertTrue(resultats.contains(tableauDeBordService.tableauDeBord()));
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LigneVenteRequest;
+import emsi.project.backendms1.dtos.ValorisationDto;
+import emsi.project.backendms1.dtos.ValorisationProduitDto;
+import emsi.project.backendms1.dtos.VenteRequest;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.mapper.VenteMapperImpl;
+import emsi.project.backendms1.models.LotDeStock;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.repository.ProduitRepo;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ValorisationService.class, StockService.class, ProduitService.class, JournalStockService.class, VenteService.class,
+        VenteMapperImpl.class})
+class ValorisationServiceTest {
+
+    @Autowired
+    private ValorisationService valorisationService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private VenteService venteService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Produit produit;
+
+    @BeforeEach
+    void setUp() {
+        produit = new Produit();
+        produit.setNomMedicament("Spasfon");
+        produit.setCodeEAN("3400930000015");
+        produit.setSeuilStock(5);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.save(produit);
+    }
+
+    @Test
+    @DisplayName("Vente - coût des lots prélevés en FEFO, stock valorisé au prix de chaque lot")
+    void vente_coutDesLotsPreleves() {
+        ValorisationDto totalAvant = valorisationService.total();
+        stockService.addStock(produit.getId(), "SP-1", LocalDate.now().plusMonths(3), 2, new BigDecimal("3.00"));
+        LotDeStock tardif = stockService.addStock(produit.getId(), "SP-2", LocalDate.now().plusYears(2), 10, new BigDecimal("5.00"));
+
+        Vente vente = venteService.creerVente(venteDe(4, "10.00"));
+
+        // 2 × 3,00 du lot qui expire le premier, puis 2 × 5,00
+        assertEquals(new BigDecimal("16.00"), vente.getLignesVente().get(0).getCoutAchatHT());
+        ValorisationProduitDto apresVente = valorisationService.produit(produit.getId()).orElseThrow();
+        assertEquals(8, apresVente.quantiteStock());
+        assertEquals(new BigDecimal("40.00"), apresVente.valeurStock());
+        assertEquals(4, apresVente.quantiteVendue());
+        assertEquals(new BigDecimal("40.00"), apresVente.chiffreAffaires());
+        assertEquals(new BigDecimal("16.00"), apresVente.coutVentes());
+        assertEquals(new BigDecimal("24.00"), apresVente.marge());
+
+        // Nouveau prix d'achat : les 8 unités restantes sont réévaluées
+        stockService.updateStockLot(tardif.getId(), "SP-2", tardif.getDateExpiration(), 8, new BigDecimal("6.00"));
+        assertEquals(new BigDecimal("48.00"), valorisationService.produit(produit.getId()).orElseThrow().valeurStock());
+        assertEquals(0, new BigDecimal("48.00").compareTo(valorisationService.total().valeurStock().subtract(totalAvant.valeurStock())));
+
+        // Les cumuls incrémentaux égalent un recalcul complet depuis les lots et les lignes
+        entityManager.flush();
+        ValorisationProduitDto incremental = valorisationService.produit(produit.getId()).orElseThrow();
+        valorisationService.recalculer();
+        assertEquals(incremental, valorisationService.produit(produit.getId()).orElseThrow());
+
+        // Annulation : le coût enregistré est rendu, les unités reviennent au lot qui expire le plus tard
+        venteService.supprimerVente(vente.getId());
+        ValorisationProduitDto annulee = valorisationService.produit(produit.getId()).orElseThrow();
+        assertEquals(12, annulee.quantiteStock());
+        assertEquals(new BigDecimal("72.00"), annulee.valeurStock());
+        assertEquals(0, annulee.quantiteVendue());
+        assertEquals(new BigDecimal("0.00"), annulee.coutVentes());
+        assertEquals(new BigDecimal("0.00"), annulee.marge());
+    }
+
+    @Test
+    @DisplayName("Lot sans prix d'achat - coût inconnu, exclu de la marge mais compté à part")
+    void lotSansPrix_exclusDeLaMarge() {
+        stockService.addStock(produit.getId(), "SP-3", LocalDate.now().plusYears(1), 6, null);
+
+        Vente vente = venteService.creerVente(venteDe(2, "7.50"));
+
+        assertNull(vente.getLignesVente().get(0).getCoutAchatHT());
+        ValorisationProduitDto valorisation = valorisationService.produit(produit.getId()).orElseThrow();
+        assertEquals(4, valorisation.quantiteStock());
+        assertEquals(4, valorisation.quantiteSansCout());
+        assertEquals(new BigDecimal("0.00"), valorisation.valeurStock());
+        assertEquals(2, valorisation.quantiteVendueSansCout());
+        assertEquals(new BigDecimal("15.00"), valorisation.chiffreAffaires());
+        assertEquals(new BigDecimal("0.00"), valorisation.marge());
+        assertEquals(List.of(valorisation), valorisationService.produits(0, 500).content().stream()
+                .filter(v -> v.produitId().equals(produit.getId())).toList());
+    }
+
+    private VenteRequest venteDe(int quantite, String prix) {
+        LigneVenteRequest ligne = new LigneVenteRequest();
+        ligne.setProduitId(produit.getId());
+        ligne.setQuantite(quantite);
+        ligne.setPrixUnitaireVenteTTC(new BigDecimal(prix));
+        VenteRequest request = new VenteRequest();
+        request.setLignesVente(List.of(ligne));
+        return request;
+    }
+
+    @Test
+    @DisplayName("Incrément - alias de ligne pour MySQL, VALUES() pour H2")
+    void requeteIncrement_syntaxeParBase() {
+        String mysql = ValorisationService.requeteIncrement(true);
+        assertTrue(mysql.contains("VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) AS n ON DUPLICATE KEY UPDATE "
+                + "quantite_stock = quantite_stock + n.quantite_stock, "), mysql);
+        assertTrue(mysql.endsWith("cout_ventes = cout_ventes + n.cout_ventes"), mysql);
+        assertFalse(mysql.contains("VALUES("), mysql);
+
+        String h2 = ValorisationService.requeteIncrement(false);
+        assertTrue(h2.contains("?) ON DUPLICATE KEY UPDATE quantite_stock = quantite_stock + VALUES(quantite_stock), "), h2);
+    }
+}
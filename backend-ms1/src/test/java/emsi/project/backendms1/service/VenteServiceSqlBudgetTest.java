@@ -0,0 +1,90 @@
+package emsi.project.backendms1.service;
+
+import emsi.project.backendms1.dtos.LigneVenteRequest;
+import emsi.project.backendms1.dtos.VenteDto;
+import emsi.project.backendms1.dtos.VenteRequest;
+import emsi.project.backendms1.enums.FormeEnum;
+import emsi.project.backendms1.mapper.VenteMapperImpl;
+import emsi.project.backendms1.models.Produit;
+import emsi.project.backendms1.models.Vente;
+import emsi.project.backendms1.repository.ProduitRepo;
+import emsi.project.backendms1.support.SqlBudget;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({VenteService.class, StockService.class, ProduitService.class, JournalStockService.class, ValorisationService.class, VenteMapperImpl.class})
+class VenteServiceSqlBudgetTest {
+
+    @Autowired
+    private VenteService venteService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProduitRepo produitRepo;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        Produit produit = new Produit();
+        produit.setNomMedicament("Doliprane");
+        produit.setCodeEAN("3400930000002");
+        produit.setPrixVenteTTC(new BigDecimal("12.50"));
+        produit.setSeuilStock(10);
+        produit.setForme(FormeEnum.TABLET);
+        produit = produitRepo.save(produit);
+        stockService.addStock(produit.getId(), "LOT-A", LocalDate.now().plusYears(1), 100, new BigDecimal("8.00"));
+
+        for (int i = 0; i < 3; i++) {
+            LigneVenteRequest ligne = new LigneVenteRequest();
+            ligne.setProduitId(produit.getId());
+            ligne.setQuantite(2);
+            ligne.setPrixUnitaireVenteTTC(new BigDecimal("12.50"));
+            VenteRequest request = new VenteRequest();
+            request.setLignesVente(List.of(ligne, ligne));
+            venteService.creerVente(request);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Lister les ventes - ventes et lignes en une seule requête")
+    void listerVentes_uneSeuleRequete() {
+        List<Vente> ventes = SqlBudget.atMost(1, () -> venteService.getAllVentes());
+        entityManager.clear();
+
+        assertEquals(3, ventes.size());
+        assertEquals(6, ventes.stream().mapToInt(v -> v.getLignesVente().size()).sum());
+    }
+
+    @Test
+    @DisplayName("Lister les ventes en DTO - en-têtes et lignes projetés, aucune entité chargée")
+    void listerVentesDto_sansHydratation() {
+        List<VenteDto> ventes = SqlBudget.atMost(2, () -> venteService.getAllVenteDtos());
+
+        assertEquals(3, ventes.size());
+        assertEquals(6, ventes.stream().mapToInt(v -> v.lignesVente().size()).sum());
+        assertEquals(0, new BigDecimal("50.00").compareTo(ventes.get(0).montantTotal()));
+        assertEquals(0, new BigDecimal("25.00").compareTo(ventes.get(0).lignesVente().get(0).montantTotalLigne()));
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+}
@@ -0,0 +1,51 @@
+package emsi.project.backendms1.support;
+
+import emsi.project.backendms1.observability.SqlStats;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Assertions de budget SQL pour les tests d'intégration JPA.
+ * S'appuie sur les compteurs {@link SqlStats} alimentés par l'inspecteur Hibernate.
+ *
+ * <pre>
+ * LotDeStock lot = SqlBudget.atMost(5, () -&gt; stockService.addStock(...));
+ * </pre>
+ */
+public final class SqlBudget {
+
+    private SqlBudget() {
+    }
+
+    /** Exécute l'action et échoue si elle émet plus de {@code maxStatements} instructions SQL. */
+    public static <T> T atMost(int maxStatements, Supplier<T> action) {
+        SqlStats.Snapshot before = SqlStats.snapshot();
+        T result = action.get();
+        check(maxStatements, SqlStats.snapshot().minus(before));
+        return result;
+    }
+
+    public static void atMost(int maxStatements, Runnable action) {
+        atMost(maxStatements, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /** Exécute l'action et retourne les compteurs SQL qu'elle a produits, sans assertion. */
+    public static SqlStats.Snapshot measure(Runnable action) {
+        SqlStats.Snapshot before = SqlStats.snapshot();
+        action.run();
+        return SqlStats.snapshot().minus(before);
+    }
+
+    private static void check(int maxStatements, SqlStats.Snapshot delta) {
+        if (delta.statements() > maxStatements) {
+            fail("Budget SQL dépassé : " + delta.statements() + " instructions pour un budget de " + maxStatements
+                    + " (select=" + delta.selects() + ", insert=" + delta.inserts()
+                    + ", update=" + delta.updates() + ", delete=" + delta.deletes() + ")");
+        }
+    }
+}